@@ -0,0 +1,45 @@
+package war.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import war.ai.AIConfig;
+import war.main.BattleSimulator;
+import war.main.BattleSimulator.BattleResult;
+
+/**
+ * 1試合まるごとの処理量（BattleSimulator.runGame）のベンチマーク。
+ * 試合番号を毎回進めるので、様々な展開の試合の平均になる。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class BattleSimulatorBenchmark {
+
+    private BattleSimulator sim;
+    private long gameNo;
+
+    @Setup
+    public void setup() {
+        sim = new BattleSimulator(new AIConfig(), 1L);
+        sim.setVerbose(false);
+    }
+
+    @Benchmark
+    public BattleResult runGame() {
+        return sim.runGame(++gameNo);
+    }
+}
@@ -0,0 +1,38 @@
+package war.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * benchmarks.jar のエントリポイント。
+ *
+ * JMH 標準の org.openjdk.jmh.Main と同じ引数を受け付けるが、
+ * 常に GC プロファイラを付けて実行するので、各ベンチマークの結果に
+ * 時間と割り当て量（gc.alloc.rate.norm = 1操作あたりのバイト数）が並ぶ。
+ *
+ * 使い方:
+ *   mvn -P bench package
+ *   java -jar target/benchmarks.jar                  全ベンチマーク
+ *   java -jar target/benchmarks.jar EnemyAI          名前（正規表現）で絞り込み
+ *   java -jar target/benchmarks.jar -l               一覧表示
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams()
+                || cli.shouldListProfilers() || cli.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);        // 一覧・ヘルプは標準の処理に任せる
+            return;
+        }
+
+        Options options = new OptionsBuilder()
+            .parent(cli)
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,62 @@
+package war.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import war.tank.Tank;
+
+/**
+ * 戦闘計算（Tank の攻撃・命中率・基準ダメージ）のベンチマーク。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CombatBenchmark {
+
+    private List<Tank> tanks;
+    private Tank shooter;
+    private Tank target;
+
+    @Setup
+    public void setup() {
+        tanks   = Fixtures.lineup();
+        shooter = tanks.get(0);
+        target  = tanks.get(1);
+    }
+
+    /**
+     * 1発の攻撃（命中判定・ダメージ・被弾方向の補正を含む）。
+     * 弾薬・行動力・HPが減るので、毎回2両を初期状態に戻してから撃つ（その分も計測に含まれる）。
+     */
+    @Benchmark
+    public int attackTarget() {
+        shooter.reset(Fixtures.POSE[0][0], Fixtures.POSE[0][1], Fixtures.POSE[0][2]);
+        target.reset(Fixtures.POSE[1][0], Fixtures.POSE[1][1], Fixtures.POSE[1][2]);
+        shooter.attackTarget(target);
+        return target.getHp();
+    }
+
+    @Benchmark
+    public double hitRate() {
+        return shooter.HitRate(target);
+    }
+
+    @Benchmark
+    public double normalDamage() {
+        return shooter.normalDamage(target);
+    }
+}
@@ -0,0 +1,52 @@
+package war.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import war.ai.AIConfig;
+import war.ai.EnemyAI3;
+import war.tank.Tank;
+
+/**
+ * 敵AI 1両1ターン分の判断と行動（EnemyAI3.takeTurn）のベンチマーク。
+ * 行動で位置・弾薬・HPが変わるので、毎回全戦車を初期状態に戻してから実行する
+ * （戻す処理も計測に含まれるが、takeTurn に比べて十分小さい）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EnemyAIBenchmark {
+
+    private List<Tank> tanks;
+    private List<Tank> targets;
+    private List<Tank> friends;
+    private EnemyAI3   ai;
+
+    @Setup
+    public void setup() {
+        tanks   = Fixtures.lineup();
+        targets = tanks.subList(0, 1);
+        friends = tanks.subList(1, 4);
+        ai      = new EnemyAI3(23, EnemyAI3.Side.PC, new AIConfig());
+    }
+
+    @Benchmark
+    public int takeTurn() {
+        Fixtures.reset(tanks);
+        return ai.takeTurn(tanks.get(1), targets, friends);
+    }
+}
@@ -0,0 +1,49 @@
+package war.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import war.tank.GameRandom;
+import war.tank.LightTank;
+import war.tank.MediumTank;
+import war.tank.Tank;
+import war.tank.Tiger2;
+
+/**
+ * ベンチマーク共通の戦場（BattleSimulator と同じ編成を、射程内に寄せた配置）。
+ *
+ * 初期配置のままだと互いに射程外で攻撃・被弾の経路を通らないため、
+ * 交戦中の局面を想定して中央付近に配置する。
+ */
+final class Fixtures {
+
+    private Fixtures() {}
+
+    /** 配置（編成順に x, y, angle） */
+    static final double[][] POSE = {
+        { 10, 10,   0 },        // タイガー（プレイヤー側）
+        { 14, 13, 210 },        // チャフィー
+        { 10, 15, 180 },        // シャーマン１号
+        { 15, 10, 270 },        // シャーマン２号
+    };
+
+    /** 編成を生成し、乱数源を固定する */
+    static List<Tank> lineup() {
+        List<Tank> tanks = new ArrayList<>();
+        tanks.add(new Tiger2("タイガー",         0, 10, 10));
+        tanks.add(new LightTank("チャフィー",    1, 14, 13));
+        tanks.add(new MediumTank("シャーマン１号", 1, 10, 15));
+        tanks.add(new MediumTank("シャーマン２号", 1, 15, 10));
+        GameRandom rng = new GameRandom(42L);
+        for (Tank t : tanks) t.setRandom(rng);
+        reset(tanks);
+        return tanks;
+    }
+
+    /** 全戦車を配置どおり・満タンの状態に戻す */
+    static void reset(List<Tank> tanks) {
+        for (int i = 0; i < tanks.size(); i++) {
+            tanks.get(i).reset(POSE[i][0], POSE[i][1], POSE[i][2]);
+        }
+    }
+}
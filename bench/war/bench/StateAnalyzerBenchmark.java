@@ -0,0 +1,51 @@
+package war.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import war.ai.BattleState;
+import war.ai.StateAnalyzer;
+import war.tank.Tank;
+
+/**
+ * 戦場情報収集（StateAnalyzer.analyze）のベンチマーク。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StateAnalyzerBenchmark {
+
+    private final StateAnalyzer analyzer = new StateAnalyzer();
+    private Tank self;
+    private Tank target;
+    private List<Tank> allies;
+    private List<Tank> enemies;
+
+    @Setup
+    public void setup() {
+        List<Tank> tanks = Fixtures.lineup();
+        self    = tanks.get(1);
+        target  = tanks.get(0);
+        allies  = tanks.subList(1, 4);
+        enemies = tanks.subList(0, 1);
+    }
+
+    @Benchmark
+    public BattleState analyze() {
+        return analyzer.analyze(self, target, allies, enemies, 1);
+    }
+}
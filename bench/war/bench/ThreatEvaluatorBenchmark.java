@@ -0,0 +1,83 @@
+package war.bench;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import war.ai.AIConfig;
+import war.ai.BattleState;
+import war.ai.StateAnalyzer;
+import war.ai.ThreatEvaluator;
+import war.ai.ThreatEvaluator.Times;
+import war.tank.Tank;
+
+/**
+ * 行動判断パラメータ（AC/DC/AT/DT）計算のベンチマーク。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ThreatEvaluatorBenchmark {
+
+    /** getProbabilityGreaterThan の引数 */
+    @State(Scope.Thread)
+    public static class Threshold {
+        /** Irwin-Hall の和の個数（SINGLE = 3, DOUBLE = 6） */
+        @Param({ "3", "6" })
+        public int n;
+
+        /** 閾値（0〜1）。ループ回数が変わるので中央寄りと端寄りを測る */
+        @Param({ "0.35", "0.8" })
+        public double t;
+    }
+
+    /** getParam 用の評価器と交戦中の2両 */
+    @State(Scope.Thread)
+    public static class Evaluator {
+        @Param({ "SINGLE", "DOUBLE" })
+        public Times times;
+
+        ThreatEvaluator evaluator;
+        Tank self;
+        Tank target;
+
+        @Setup
+        public void setup() {
+            List<Tank> tanks = Fixtures.lineup();
+            self   = tanks.get(1);
+            target = tanks.get(0);
+            BattleState state = new StateAnalyzer().analyze(self, target,
+                tanks.subList(1, 4), tanks.subList(0, 1), 1);
+            evaluator = new ThreatEvaluator(new AIConfig(), state);
+        }
+    }
+
+    @Benchmark
+    public double getProbabilityGreaterThan(Threshold p) {
+        return ThreatEvaluator.getProbabilityGreaterThan(p.t, p.n);
+    }
+
+    /** 表を使わない包除原理の計算（比較用） */
+    @Benchmark
+    public double irwinHallTail(Threshold p) {
+        return ThreatEvaluator.irwinHallTail(p.t, p.n);
+    }
+
+    @Benchmark
+    public double getParam(Evaluator e) {
+        return e.evaluator.getParam(e.times, e.self, e.target);
+    }
+}
@@ -90,27 +90,40 @@ public class AIConfig {
      * @throws RuntimeException ファイル読み込み失敗時
      */
     public static AIConfig fromJson(String jsonPath) {
-        AIConfig cfg = new AIConfig();
         try {
             String json = new String(Files.readAllBytes(Paths.get(jsonPath)));
-            cfg.THREAT_ZONE_1      = parseDouble(json, "THREAT_ZONE_1",      cfg.THREAT_ZONE_1);
-            cfg.THREAT_ZONE_2      = parseDouble(json, "THREAT_ZONE_2",      cfg.THREAT_ZONE_2);
-            cfg.P01_Z1_AA_AC_2_O   = parseDouble(json, "P01_Z1_AA_AC_2_O",   cfg.P01_Z1_AA_AC_2_O);
-            cfg.P02_Z1_AE_DT_2_U   = parseDouble(json, "P02_Z1_AE_DT_2_U",   cfg.P02_Z1_AE_DT_2_U);
-            cfg.P03_Z1_ER_DT_2_U   = parseDouble(json, "P03_Z1_ER_DT_2_U",   cfg.P03_Z1_ER_DT_2_U);
-            cfg.P05_Z2_CA_AT_1_O   = parseDouble(json, "P05_Z2_CA_AT_1_O",   cfg.P05_Z2_CA_AT_1_O);
-            cfg.P06_Z2_AA_DC_2_U   = parseDouble(json, "P06_Z2_AA_DC_2_U",   cfg.P06_Z2_AA_DC_2_U);
-            cfg.P07_Z2_AE_DT_2_U   = parseDouble(json, "P07_Z2_AE_DT_2_U",   cfg.P07_Z2_AE_DT_2_U);
-            cfg.P08_Z2_EE_DT_2_O   = parseDouble(json, "P08_Z2_EE_DT_2_O",   cfg.P08_Z2_EE_DT_2_O);
-            cfg.P10_Z3_CC_DT_2_U   = parseDouble(json, "P10_Z3_CC_DT_2_U",   cfg.P10_Z3_CC_DT_2_U);
-            cfg.P11_Z3_CA_DT_2_U   = parseDouble(json, "P11_Z3_CA_DT_2_U",   cfg.P11_Z3_CA_DT_2_U);
-            cfg.RANK_1_THREAT      = parseDouble(json, "RANK_1_THREAT",      cfg.RANK_1_THREAT);
-            cfg.RANK_2_THREAT      = parseDouble(json, "RANK_2_THREAT",      cfg.RANK_2_THREAT);
-            cfg.RANK_3_THREAT      = parseDouble(json, "RANK_3_THREAT",      cfg.RANK_3_THREAT);
-            cfg.RANK_4_THREAT      = parseDouble(json, "RANK_4_THREAT",      cfg.RANK_4_THREAT);
+            return fromJsonString(json);
         } catch (IOException e) {
             throw new RuntimeException("AIConfig JSONの読み込みに失敗: " + jsonPath, e);
         }
+    }
+
+    /**
+     * JSON文字列からAIConfigを生成する（ファイルを介さない版）。
+     * キーは文字列中のどこにあってもよいので、評価サーバーのリクエスト行
+     * {"id":1, "games":200, "config":{...}} をそのまま渡せる。
+     * 見つからないキーはデフォルト値のまま。
+     *
+     * @param json JSON文字列
+     * @return 読み込んだAIConfigインスタンス
+     */
+    public static AIConfig fromJsonString(String json) {
+        AIConfig cfg = new AIConfig();
+        cfg.THREAT_ZONE_1      = parseDouble(json, "THREAT_ZONE_1",      cfg.THREAT_ZONE_1);
+        cfg.THREAT_ZONE_2      = parseDouble(json, "THREAT_ZONE_2",      cfg.THREAT_ZONE_2);
+        cfg.P01_Z1_AA_AC_2_O   = parseDouble(json, "P01_Z1_AA_AC_2_O",   cfg.P01_Z1_AA_AC_2_O);
+        cfg.P02_Z1_AE_DT_2_U   = parseDouble(json, "P02_Z1_AE_DT_2_U",   cfg.P02_Z1_AE_DT_2_U);
+        cfg.P03_Z1_ER_DT_2_U   = parseDouble(json, "P03_Z1_ER_DT_2_U",   cfg.P03_Z1_ER_DT_2_U);
+        cfg.P05_Z2_CA_AT_1_O   = parseDouble(json, "P05_Z2_CA_AT_1_O",   cfg.P05_Z2_CA_AT_1_O);
+        cfg.P06_Z2_AA_DC_2_U   = parseDouble(json, "P06_Z2_AA_DC_2_U",   cfg.P06_Z2_AA_DC_2_U);
+        cfg.P07_Z2_AE_DT_2_U   = parseDouble(json, "P07_Z2_AE_DT_2_U",   cfg.P07_Z2_AE_DT_2_U);
+        cfg.P08_Z2_EE_DT_2_O   = parseDouble(json, "P08_Z2_EE_DT_2_O",   cfg.P08_Z2_EE_DT_2_O);
+        cfg.P10_Z3_CC_DT_2_U   = parseDouble(json, "P10_Z3_CC_DT_2_U",   cfg.P10_Z3_CC_DT_2_U);
+        cfg.P11_Z3_CA_DT_2_U   = parseDouble(json, "P11_Z3_CA_DT_2_U",   cfg.P11_Z3_CA_DT_2_U);
+        cfg.RANK_1_THREAT      = parseDouble(json, "RANK_1_THREAT",      cfg.RANK_1_THREAT);
+        cfg.RANK_2_THREAT      = parseDouble(json, "RANK_2_THREAT",      cfg.RANK_2_THREAT);
+        cfg.RANK_3_THREAT      = parseDouble(json, "RANK_3_THREAT",      cfg.RANK_3_THREAT);
+        cfg.RANK_4_THREAT      = parseDouble(json, "RANK_4_THREAT",      cfg.RANK_4_THREAT);
         return cfg;
     }
 
@@ -146,6 +159,62 @@ public class AIConfig {
         }
     }
 
+    // ========================================================================
+    // パラメータベクトル変換（最適化アルゴリズム用）
+    // ========================================================================
+
+    /** toArray / fromArray の並び順（JSONのキー名と同じ） */
+    public static final String[] PARAM_NAMES = {
+        "THREAT_ZONE_1", "THREAT_ZONE_2",
+        "P01_Z1_AA_AC_2_O", "P02_Z1_AE_DT_2_U", "P03_Z1_ER_DT_2_U",
+        "P05_Z2_CA_AT_1_O", "P06_Z2_AA_DC_2_U", "P07_Z2_AE_DT_2_U",
+        "P08_Z2_EE_DT_2_O", "P10_Z3_CC_DT_2_U", "P11_Z3_CA_DT_2_U",
+        "RANK_1_THREAT", "RANK_2_THREAT", "RANK_3_THREAT", "RANK_4_THREAT"
+    };
+
+    /** 全パラメータの下限・上限（いずれも 0〜1 の比率・確率・係数） */
+    public static final double PARAM_MIN = 0.0;
+    public static final double PARAM_MAX = 1.0;
+
+    /** パラメータを PARAM_NAMES の順に並べた配列を返す */
+    public double[] toArray() {
+        return new double[] {
+            THREAT_ZONE_1, THREAT_ZONE_2,
+            P01_Z1_AA_AC_2_O, P02_Z1_AE_DT_2_U, P03_Z1_ER_DT_2_U,
+            P05_Z2_CA_AT_1_O, P06_Z2_AA_DC_2_U, P07_Z2_AE_DT_2_U,
+            P08_Z2_EE_DT_2_O, P10_Z3_CC_DT_2_U, P11_Z3_CA_DT_2_U,
+            RANK_1_THREAT, RANK_2_THREAT, RANK_3_THREAT, RANK_4_THREAT
+        };
+    }
+
+    /**
+     * PARAM_NAMES の順に並んだ配列から AIConfig を生成する。
+     *
+     * @param v 長さ PARAM_NAMES.length の配列
+     */
+    public static AIConfig fromArray(double[] v) {
+        if (v.length != PARAM_NAMES.length) {
+            throw new IllegalArgumentException("パラメータ数が違います: " + v.length);
+        }
+        AIConfig cfg = new AIConfig();
+        cfg.THREAT_ZONE_1    = v[0];
+        cfg.THREAT_ZONE_2    = v[1];
+        cfg.P01_Z1_AA_AC_2_O = v[2];
+        cfg.P02_Z1_AE_DT_2_U = v[3];
+        cfg.P03_Z1_ER_DT_2_U = v[4];
+        cfg.P05_Z2_CA_AT_1_O = v[5];
+        cfg.P06_Z2_AA_DC_2_U = v[6];
+        cfg.P07_Z2_AE_DT_2_U = v[7];
+        cfg.P08_Z2_EE_DT_2_O = v[8];
+        cfg.P10_Z3_CC_DT_2_U = v[9];
+        cfg.P11_Z3_CA_DT_2_U = v[10];
+        cfg.RANK_1_THREAT    = v[11];
+        cfg.RANK_2_THREAT    = v[12];
+        cfg.RANK_3_THREAT    = v[13];
+        cfg.RANK_4_THREAT    = v[14];
+        return cfg;
+    }
+
     /**
      * 現在のパラメータをJSON文字列として返す（デバッグ・保存用）。
      */
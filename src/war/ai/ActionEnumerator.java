@@ -0,0 +1,569 @@
+package war.ai;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import war.main.BattleSimulator;
+import war.tank.MediumTank;
+import war.tank.Tank;
+
+/**
+ * ActionEnumerator - 1ターンにとれる行動列の結果（行動後の状態）を列挙する
+ *
+ * 行動力（activePoint、最大8）の範囲で、次の行動を好きな順に組み合わせた行動列を考える。
+ *
+ *   回転  : 30度ずつ左右に（ROT_CST）
+ *   前進・後退: 向いている方向・その逆方向の盤端の点に向けて Tank.move と同じ規則で
+ *          speed × MOV_CST マス進む（MOV_CST。向きは変わらない）
+ *   攻撃  : その場から撃つ（ATC_CST。弾薬が必要。撃った位置を記録する）
+ *   補給  : 弾薬を満タンにする（CHG_CST。1ターンに1回）
+ *   修理  : 残りの行動力をすべて使う（行動力が残っているときだけ）
+ *
+ * 行動列は違っても結果が同じになるもの（回転と移動の順序違いなど）が多いので、
+ * 行動後の状態（位置・向き・残り行動力・弾薬・撃った位置・修理・補給）が同じものは1つにまとめる。
+ * 途中でやめてもよいので、たどり着ける状態はすべて結果になる（何もしない結果も含む）。
+ *
+ * 結果は (位置, 向き, 行動力, 弾薬) ごとにキャッシュし、呼び出し元の int 配列に
+ * 1件 STRIDE 個の int で書き込む（X, Y, HEADING, ... の位置で読む）。
+ * キャッシュが温まった後は割り当てをしない（初めての状態の列挙とキャッシュの拡張のときだけ配列を伸ばす）。
+ * キャッシュは上限（MAX_CACHE_INTS）を超えたら全部捨てて作り直す。
+ *
+ * 弾薬は「このターンに撃てる数」に丸めて扱う（行動力8・ATC_CST 4 なら 0〜2）。
+ * HP は扱わない（修理に使った行動力 REPAIR から呼び出し元が計算する）。
+ * 諸元（速度・各行動のコスト）は戦車の種類ごとに違うので、種類ごとにインスタンスを作る。
+ * スレッドセーフではない。
+ *
+ * 使い方:
+ *   ActionEnumerator actions = new ActionEnumerator(self, MAX_GRID);
+ *   int[] buf = new int[256 * ActionEnumerator.STRIDE];
+ *   int n = actions.enumerate((int) self.getX(), (int) self.getY(),
+ *                             ActionEnumerator.headingOf(self.getAngle()), self.activity(), self.getAmmo(), buf);
+ *   for (int i = 0; i < n; i++) { int x = buf[i * STRIDE + X]; ... }
+ */
+public final class ActionEnumerator {
+
+    // ======================================================================
+    // 結果の1件の並び
+    // ======================================================================
+
+    /** 行動後の位置 */
+    public static final int X = 0, Y = 1;
+    /** 行動後の向き（0〜11。30度単位） */
+    public static final int HEADING = 2;
+    /** 残りの行動力 */
+    public static final int ACTIVITY = 3;
+    /** 使った行動力 */
+    public static final int COST = 4;
+    /** 撃った回数（0〜2）と、撃った位置 */
+    public static final int SHOTS = 5, SHOT1_X = 6, SHOT1_Y = 7, SHOT2_X = 8, SHOT2_Y = 9;
+    /** 修理に使った行動力（0 なら修理しない） */
+    public static final int REPAIR = 10;
+    /** 補給したか（0 ならしない。1 以上なら、補給の前に撃った回数 + 1） */
+    public static final int RELOAD = 11;
+
+    /** 1件の int の数 */
+    public static final int STRIDE = 12;
+
+    /** 向きの数（30度単位） */
+    public static final int HEADINGS = 12;
+
+    // ======================================================================
+    // 定数
+    // ======================================================================
+
+    /** 1ターンに記録できる攻撃の数 */
+    private static final int MAX_SHOTS = 2;
+
+    /** キャッシュの結果の int の数の上限（超えたら全部捨てる） */
+    private static final int MAX_CACHE_INTS = 1 << 22;
+
+    /** 前進・後退の目標点を置く距離（盤端まで届く長さ） */
+    private static final int REACH = 64;
+
+    // 状態を詰めた long のビット位置
+    private static final int B_X = 0, B_Y = 6, B_HEAD = 12, B_ACT = 16, B_AMMO = 20, B_SHOTS = 22,
+                             B_S1X = 24, B_S1Y = 30, B_S2X = 36, B_S2Y = 42, B_REPAIR = 48, B_RELOAD = 52;
+
+    // ======================================================================
+    // 諸元
+    // ======================================================================
+
+    private final int maxGrid;
+    private final int steps;            // 1回の移動のマス数（speed × MOV_CST）
+    private final int movCst, rotCst, atcCst, chgCst;
+    private final int maxAct;
+    private final int ammoCap;          // 弾薬の丸め先（このターンに撃てる数）
+    private final int reloadAmmo;       // 補給後の弾薬（丸めたもの）
+
+    /** 向きごとの前進方向の単位ベクトル（12時が0度・Y は下向きが正） */
+    private final double[] dirX = new double[HEADINGS];
+    private final double[] dirY = new double[HEADINGS];
+
+    // ======================================================================
+    // キャッシュ（開番地法。キー 0 は空き）
+    // ======================================================================
+
+    private long[] cacheKeys   = new long[1 << 12];
+    private int[]  cacheOffset = new int[1 << 12];
+    private int[]  cacheCount  = new int[1 << 12];
+    private int    cacheEntries;
+
+    /** 結果を STRIDE 個ずつ並べた置き場 */
+    private int[] pool = new int[1 << 14];
+    private int   poolSize;
+
+    // ======================================================================
+    // 列挙の作業領域
+    // ======================================================================
+
+    /** たどり着いた状態（たどり着いた順） */
+    private long[] found = new long[256];
+    private int    foundCount;
+
+    /** たどり着いた状態の集合（開番地法。キー 0 は空き、状態 + 1 を入れる） */
+    private long[] seen = new long[1024];
+
+    // 集計（動作確認用）
+    private long lookups, misses, flushes;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param spec    諸元を写す戦車（同じ種類の戦車ならどれでもよい）
+     * @param maxGrid グリッドサイズ - 1（移動先は 0 〜 maxGrid - 1。Maneuver と同じ）
+     */
+    public ActionEnumerator(Tank spec, int maxGrid) {
+        if (maxGrid > 64) throw new IllegalArgumentException("グリッドが大きすぎます: " + maxGrid);
+        if (spec.getMaxAct() > 15 || spec.getMaxAct() / spec.getAtcCost() > MAX_SHOTS) {
+            throw new IllegalArgumentException("行動力・攻撃コストが範囲外です: " + spec.getMaxAct() + " / " + spec.getAtcCost());
+        }
+        this.maxGrid    = maxGrid;
+        this.steps      = (int) (spec.getSpeed() * spec.getMovCost());
+        this.movCst     = spec.getMovCost();
+        this.rotCst     = spec.getRotCost();
+        this.atcCst     = spec.getAtcCost();
+        this.chgCst     = spec.getChgCost();
+        this.maxAct     = spec.getMaxAct();
+        this.ammoCap    = spec.getMaxAct() / spec.getAtcCost();
+        this.reloadAmmo = Math.min(spec.getMaxAmmo(), ammoCap);
+        for (int h = 0; h < HEADINGS; h++) {
+            dirX[h] =  Math.sin(Math.toRadians(h * 30.0));
+            dirY[h] = -Math.cos(Math.toRadians(h * 30.0));
+        }
+    }
+
+    /** 車体の角度（度）を向きの番号（0〜11）にする */
+    public static int headingOf(double angle) {
+        return Math.floorMod((int) Math.round(angle / 30.0), HEADINGS);
+    }
+
+    // ======================================================================
+    // 列挙
+    // ======================================================================
+
+    /**
+     * (x, y) で向き heading、行動力 activity、弾薬 ammo の戦車がこのターンにたどり着ける状態を out に書き込む。
+     * out に入りきらない場合は入るだけ書き込む（戻り値は全件数なので、足りなければ大きくして呼び直す）。
+     *
+     * @param x, y    マス目の位置（0 〜 maxGrid - 1）
+     * @param heading 向きの番号（headingOf で求める）
+     * @return 結果の件数
+     */
+    public int enumerate(int x, int y, int heading, int activity, int ammo, int[] out) {
+        lookups++;
+        int act = Math.max(0, Math.min(maxAct, activity));
+        long key = pack(x, y, heading, act, Math.min(Math.max(0, ammo), ammoCap)) + 1;
+
+        int at = slot(key);
+        if (cacheKeys[at] != key) {
+            misses++;
+            at = fill(key, x, y, heading, act, Math.min(Math.max(0, ammo), ammoCap));
+        }
+
+        int count = cacheCount[at];
+        int room  = Math.min(count, out.length / STRIDE);
+        System.arraycopy(pool, cacheOffset[at], out, 0, room * STRIDE);
+        return count;
+    }
+
+    /** 呼び出し回数・キャッシュになかった回数・キャッシュを捨てた回数 */
+    public String cacheReport() {
+        return String.format("呼び出し %d  列挙 %d（%.1f%%）  キャッシュ %d状態 %d件  破棄 %d",
+                             lookups, misses, 100.0 * misses / Math.max(1, lookups),
+                             cacheEntries, poolSize / STRIDE, flushes);
+    }
+
+    /** キャッシュにない状態を列挙して登録し、キャッシュの位置を返す */
+    private int fill(long key, int x, int y, int heading, int act, int ammo) {
+        search(pack(x, y, heading, act, ammo), act);
+
+        int ints = foundCount * STRIDE;
+        if (poolSize + ints > MAX_CACHE_INTS || (cacheEntries + 1) * 2 > cacheKeys.length) {
+            if (poolSize + ints > MAX_CACHE_INTS) {
+                flush();
+            } else {
+                growCache();
+            }
+        }
+        if (poolSize + ints > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolSize + ints));
+        }
+
+        int at = slot(key);
+        cacheKeys[at]   = key;
+        cacheOffset[at] = poolSize;
+        cacheCount[at]  = foundCount;
+        cacheEntries++;
+        for (int i = 0; i < foundCount; i++) {
+            unpack(found[i], act, pool, poolSize);
+            poolSize += STRIDE;
+        }
+        return at;
+    }
+
+    /** start からたどり着ける状態を found に集める（幅優先。found がそのまま待ち行列） */
+    private void search(long start, int startAct) {
+        Arrays.fill(seen, 0L);
+        foundCount = 0;
+        add(start);
+
+        for (int i = 0; i < foundCount; i++) {
+            long s     = found[i];
+            int  x     = field(s, B_X, 6),     y      = field(s, B_Y, 6);
+            int  head  = field(s, B_HEAD, 4),  act    = field(s, B_ACT, 4);
+            int  ammo  = field(s, B_AMMO, 2),  shots  = field(s, B_SHOTS, 2);
+            int  repair = field(s, B_REPAIR, 4), reload = field(s, B_RELOAD, 2);
+            if (act == 0 || repair != 0) continue;
+
+            // 回転
+            if (act >= rotCst) {
+                add(with(with(s, B_HEAD, 4, (head + 1) % HEADINGS), B_ACT, 4, act - rotCst));
+                add(with(with(s, B_HEAD, 4, (head + HEADINGS - 1) % HEADINGS), B_ACT, 4, act - rotCst));
+            }
+            // 前進・後退
+            if (act >= movCst && steps > 0) {
+                addMove(s, x, y, head, act);
+                addMove(s, x, y, (head + HEADINGS / 2) % HEADINGS, act);
+            }
+            // 攻撃
+            if (act >= atcCst && ammo > 0 && shots < MAX_SHOTS) {
+                long t = with(s, B_ACT, 4, act - atcCst);
+                t = with(t, B_AMMO, 2, ammo - 1);
+                t = with(t, B_SHOTS, 2, shots + 1);
+                t = with(t, (shots == 0) ? B_S1X : B_S2X, 6, x);
+                t = with(t, (shots == 0) ? B_S1Y : B_S2Y, 6, y);
+                add(t);
+            }
+            // 補給
+            if (act >= chgCst && reload == 0) {
+                long t = with(s, B_ACT, 4, act - chgCst);
+                t = with(t, B_AMMO, 2, reloadAmmo);
+                add(with(t, B_RELOAD, 2, shots + 1));
+            }
+            // 修理（残りの行動力をすべて使う）
+            add(with(with(s, B_REPAIR, 4, act), B_ACT, 4, 0));
+        }
+    }
+
+    /** 方向 dir の盤端の点に向けて移動した状態を加える（その場から動けない・盤外に出る場合は加えない） */
+    private void addMove(long s, int x, int y, int dir, int act) {
+        double tx = moveTargetX(x, dir), ty = moveTargetY(y, dir);
+        if (tx == x && ty == y) return;
+
+        // Tank.move と同じ規則（X距離・Y距離の遠い方へ1マスずつ）
+        double cx = x, cy = y;
+        for (int i = 0; i < steps; i++) {
+            if (Math.abs(tx - cx) >= Math.abs(ty - cy)) {
+                cx += (tx - cx >= 0) ? 1 : -1;
+            } else {
+                cy += (ty - cy >= 0) ? 1 : -1;
+            }
+        }
+        if (cx < 0 || cy < 0 || cx > maxGrid - 1 || cy > maxGrid - 1) return;
+
+        long t = with(s, B_X, 6, (int) cx);
+        t = with(t, B_Y, 6, (int) cy);
+        add(with(t, B_ACT, 4, act - movCst));
+    }
+
+    /** 方向 dir に進むときの目標点（整数のマスに丸め、盤内に収める） */
+    private double moveTargetX(int x, int dir) {
+        return clamp(Math.rint(x + dirX[dir] * REACH), 0, maxGrid - 1);
+    }
+
+    private double moveTargetY(int y, int dir) {
+        return clamp(Math.rint(y + dirY[dir] * REACH), 0, maxGrid - 1);
+    }
+
+    /** 初めての状態なら found に加える */
+    private void add(long state) {
+        long k = state + 1;
+        int  mask = seen.length - 1;
+        int  i    = hash(k) & mask;
+        while (seen[i] != 0) {
+            if (seen[i] == k) return;
+            i = (i + 1) & mask;
+        }
+        seen[i] = k;
+        if (foundCount == found.length) found = Arrays.copyOf(found, foundCount * 2);
+        found[foundCount++] = state;
+
+        if (foundCount * 2 > seen.length) {
+            seen = new long[seen.length * 2];
+            for (int j = 0; j < foundCount; j++) {
+                long kj = found[j] + 1;
+                int  m  = hash(kj) & (seen.length - 1);
+                while (seen[m] != 0) m = (m + 1) & (seen.length - 1);
+                seen[m] = kj;
+            }
+        }
+    }
+
+    // ======================================================================
+    // キャッシュの操作
+    // ======================================================================
+
+    /** key の入っている位置、なければ入れる位置 */
+    private int slot(long key) {
+        int mask = cacheKeys.length - 1;
+        int i    = hash(key) & mask;
+        while (cacheKeys[i] != 0 && cacheKeys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void growCache() {
+        long[] keys   = cacheKeys;
+        int[]  offset = cacheOffset;
+        int[]  count  = cacheCount;
+        cacheKeys   = new long[keys.length * 2];
+        cacheOffset = new int[keys.length * 2];
+        cacheCount  = new int[keys.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == 0) continue;
+            int at = slot(keys[i]);
+            cacheKeys[at]   = keys[i];
+            cacheOffset[at] = offset[i];
+            cacheCount[at]  = count[i];
+        }
+    }
+
+    private void flush() {
+        Arrays.fill(cacheKeys, 0L);
+        cacheEntries = 0;
+        poolSize     = 0;
+        flushes++;
+    }
+
+    // ======================================================================
+    // 状態の詰め方
+    // ======================================================================
+
+    private static long pack(int x, int y, int heading, int act, int ammo) {
+        return ((long) x << B_X) | ((long) y << B_Y) | ((long) Math.floorMod(heading, HEADINGS) << B_HEAD)
+             | ((long) act << B_ACT) | ((long) ammo << B_AMMO);
+    }
+
+    private static void unpack(long s, int startAct, int[] out, int at) {
+        out[at + X]        = field(s, B_X, 6);
+        out[at + Y]        = field(s, B_Y, 6);
+        out[at + HEADING]  = field(s, B_HEAD, 4);
+        out[at + ACTIVITY] = field(s, B_ACT, 4);
+        out[at + COST]     = startAct - field(s, B_ACT, 4);
+        out[at + SHOTS]    = field(s, B_SHOTS, 2);
+        out[at + SHOT1_X]  = field(s, B_S1X, 6);
+        out[at + SHOT1_Y]  = field(s, B_S1Y, 6);
+        out[at + SHOT2_X]  = field(s, B_S2X, 6);
+        out[at + SHOT2_Y]  = field(s, B_S2Y, 6);
+        out[at + REPAIR]   = field(s, B_REPAIR, 4);
+        out[at + RELOAD]   = field(s, B_RELOAD, 2);
+    }
+
+    private static int field(long s, int bit, int width) {
+        return (int) (s >>> bit) & ((1 << width) - 1);
+    }
+
+    private static long with(long s, int bit, int width, int value) {
+        long mask = ((1L << width) - 1) << bit;
+        return (s & ~mask) | ((long) value << bit);
+    }
+
+    private static int hash(long k) {
+        k *= 0x9E3779B97F4A7C15L;
+        return (int) (k ^ (k >>> 32));
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 実際の戦車（Tank）で行動列を総当たりした結果と、列挙の結果が同じ集合になることを確かめ、
+    // キャッシュに載った後の1回あたりの時間と割り当て量を測る
+
+    public static void main(String[] args) {
+        int maxGrid = BattleSimulator.GRID_SIZE - 1;
+        Tank tank   = new MediumTank("列挙", 1, 0, 0);
+        Tank target = new MediumTank("的", 0, 0, 0);
+        ActionEnumerator actions = new ActionEnumerator(tank, maxGrid);
+        int[] buf = new int[4096 * STRIDE];
+
+        int cases = 0, mismatches = 0, maxResults = 0;
+        long sequences = 0;
+        int[][] starts = { {5, 5}, {0, 0}, {maxGrid - 1, 3}, {11, maxGrid - 1}, {1, 12} };
+        for (int[] p : starts) {
+            for (int h = 0; h < HEADINGS; h++) {
+                Set<String> expected = new HashSet<>();
+                sequences += bruteForce(actions, tank, target, p[0], p[1], h, new int[8], 0, expected);
+                int n = actions.enumerate(p[0], p[1], h, tank.getMaxAct(), tank.getMaxAmmo(), buf);
+                Set<String> actual = new HashSet<>();
+                for (int i = 0; i < n; i++) actual.add(Arrays.toString(Arrays.copyOfRange(buf, i * STRIDE, i * STRIDE + STRIDE)));
+                if (!expected.equals(actual) || actual.size() != n) mismatches++;
+                maxResults = Math.max(maxResults, n);
+                cases++;
+            }
+        }
+        System.out.printf("総当たりとの比較: %d通りの開始状態（行動列 %d本）で不一致 %d、結果は最大 %d件%n",
+                          cases, sequences, mismatches, maxResults);
+
+        // キャッシュに載った後の呼び出し
+        com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long sink = 0;
+        for (int warm = 0; warm < 3; warm++) {
+            for (int x = 0; x < maxGrid; x++) for (int y = 0; y < maxGrid; y++) {
+                sink += actions.enumerate(x, y, (x + y) % HEADINGS, 8, 1000, buf);
+            }
+        }
+        long calls = 0;
+        long bytes0 = mx.getCurrentThreadAllocatedBytes();
+        long t0 = System.nanoTime();
+        for (int r = 0; r < 20; r++) {
+            for (int x = 0; x < maxGrid; x++) for (int y = 0; y < maxGrid; y++) {
+                sink += actions.enumerate(x, y, (x + y) % HEADINGS, 8, 1000, buf);
+                calls++;
+            }
+        }
+        long t1 = System.nanoTime();
+        long bytes1 = mx.getCurrentThreadAllocatedBytes();
+        System.out.printf("キャッシュ済みの呼び出し: %.1f ns/回  割り当て %d バイト/回  (%d)%n",
+                          (double) (t1 - t0) / calls, (bytes1 - bytes0) / calls, sink);
+        System.out.println(actions.cacheReport());
+        if (mismatches > 0) System.exit(1);
+    }
+
+    /**
+     * 行動列を1つずつ実際の戦車に最初から適用し直し、たどり着いた状態を結果の並びの文字列で集める。
+     *
+     * @return 調べた行動列の数
+     */
+    private static long bruteForce(ActionEnumerator e, Tank tank, Tank target, int x0, int y0, int h0,
+                                   int[] seq, int len, Set<String> results) {
+        // 行動: 0 右回転, 1 左回転, 2 前進, 3 後退, 4 攻撃, 5 補給, 6 修理
+        tank.reset(x0, y0, h0 * 30.0);
+        target.reset(0, 0, 0);
+        int[] rec = new int[STRIDE];
+        int shots = 0;
+        boolean reloaded = false, repaired = false;
+        for (int i = 0; i < len; i++) {
+            int  x = (int) tank.getX(), y = (int) tank.getY(), h = headingOf(tank.getAngle());
+            switch (seq[i]) {
+                case 0: tank.rotate(30);  break;
+                case 1: tank.rotate(-30); break;
+                case 2: case 3: {
+                    int dir = (seq[i] == 2) ? h : (h + HEADINGS / 2) % HEADINGS;
+                    tank.move(e.moveTargetX(x, dir), e.moveTargetY(y, dir));
+                    break;
+                }
+                case 4:
+                    rec[shots == 0 ? SHOT1_X : SHOT2_X] = x;
+                    rec[shots == 0 ? SHOT1_Y : SHOT2_Y] = y;
+                    shots++;
+                    tank.attackTarget(target);
+                    break;
+                case 5:
+                    rec[RELOAD] = shots + 1;
+                    reloaded = true;
+                    tank.reloadAmmo(tank.getMaxAmmo() - tank.getAmmo());
+                    break;
+                case 6:
+                    rec[REPAIR] = tank.activity();
+                    repaired = true;
+                    tank.repair();
+                    break;
+            }
+        }
+        rec[X]        = (int) tank.getX();
+        rec[Y]        = (int) tank.getY();
+        rec[HEADING]  = headingOf(tank.getAngle());
+        rec[ACTIVITY] = tank.activity();
+        rec[COST]     = tank.getMaxAct() - tank.activity();
+        rec[SHOTS]    = shots;
+        results.add(Arrays.toString(rec));
+
+        long count = 1;
+        int act = tank.activity();
+        if (act == 0 || repaired) return count;
+        for (int a = 0; a <= 6; a++) {
+            boolean legal;
+            switch (a) {
+                case 0: case 1: legal = act >= tank.getRotCost(); break;
+                case 2: case 3: {
+                    int x = (int) tank.getX(), y = (int) tank.getY(), h = headingOf(tank.getAngle());
+                    int dir = (a == 2) ? h : (h + HEADINGS / 2) % HEADINGS;
+                    double tx = e.moveTargetX(x, dir), ty = e.moveTargetY(y, dir);
+                    legal = act >= tank.getMovCost() && !(tx == x && ty == y) && e.steps > 0
+                            && e.staysInside(x, y, tx, ty);
+                    break;
+                }
+                case 4: legal = act >= tank.getAtcCost() && shots < MAX_SHOTS; break;
+                case 5: legal = act >= tank.getChgCost() && !reloaded;         break;
+                default: legal = true;
+            }
+            if (!legal) continue;
+            seq[len] = a;
+            count += bruteForce(e, tank, target, x0, y0, h0, seq, len + 1, results);
+            // 再帰から戻ったら、この長さまでの状態を作り直す
+            replay(e, tank, target, x0, y0, h0, seq, len);
+        }
+        return count;
+    }
+
+    /** seq の先頭 len 個を最初から適用し直す（bruteForce の再帰から戻った後の状態の復元） */
+    private static void replay(ActionEnumerator e, Tank tank, Tank target, int x0, int y0, int h0, int[] seq, int len) {
+        tank.reset(x0, y0, h0 * 30.0);
+        for (int i = 0; i < len; i++) {
+            int x = (int) tank.getX(), y = (int) tank.getY(), h = headingOf(tank.getAngle());
+            switch (seq[i]) {
+                case 0: tank.rotate(30);  break;
+                case 1: tank.rotate(-30); break;
+                case 2: case 3: {
+                    int dir = (seq[i] == 2) ? h : (h + HEADINGS / 2) % HEADINGS;
+                    tank.move(e.moveTargetX(x, dir), e.moveTargetY(y, dir));
+                    break;
+                }
+                case 4: tank.attackTarget(target);                              break;
+                case 5: tank.reloadAmmo(tank.getMaxAmmo() - tank.getAmmo());    break;
+                case 6: tank.repair();                                          break;
+            }
+        }
+    }
+
+    /** (x, y) から (tx, ty) へ移動した先が盤内か（addMove と同じ判定。総当たり用） */
+    private boolean staysInside(int x, int y, double tx, double ty) {
+        double cx = x, cy = y;
+        for (int i = 0; i < steps; i++) {
+            if (Math.abs(tx - cx) >= Math.abs(ty - cy)) {
+                cx += (tx - cx >= 0) ? 1 : -1;
+            } else {
+                cy += (ty - cy >= 0) ? 1 : -1;
+            }
+        }
+        return cx >= 0 && cy >= 0 && cx <= maxGrid - 1 && cy <= maxGrid - 1;
+    }
+}
@@ -6,6 +6,9 @@ package war.ai;
  *
  * StateAnalyzer が収集した情報をまとめる。
  * ThreatEvaluator・ActionSelector・BattleLogger に渡して使う。
+ *
+ * StateAnalyzer.analyze(state, ...) で同じインスタンスに上書きして使い回せる。
+ * その場合 disListFromEnemy は作業用バッファなので、有効な要素数は disListCount で見ること。
  */
 public class BattleState {
 
@@ -38,6 +41,7 @@ public class BattleState {
     public int    distanceRankFromEnemy;    // 敵からの距離順位（1=最も近い）
 
     public double[]  disListFromEnemy;    // 敵からの距離配列
+    public int       disListCount;        // disListFromEnemy の有効要素数
     
     public double closestAllyDistance;      // 最も近い味方との距離
     public double averageAllyHP;            // 味方の平均HP割合（0.0〜1.0）
@@ -0,0 +1,32 @@
+package war.ai;
+
+/**
+ * Branch - EnemyAI3 のフローチャートの分岐（行動パターン）
+ *
+ * label は従来 log() に渡していた文字列と同じ。
+ * zone は判定に使ったゾーン（1: 決戦領域, 2: 戦闘領域, 3: それ以外, 0: 判定なし）。
+ */
+public enum Branch {
+    P1  ("P1 ATC,ATC",    1),
+    P2  ("P2 ATC,ESC",    1),
+    P3  ("P3 REP,ESC",    1),
+    P4  ("P4 ESC,ESC",    1),
+    P5  ("P5 APR,ATC",    2),
+    P6  ("P6 ATC,ATC",    2),
+    P7  ("P7 ESC,REP",    2),
+    P8  ("P8 ESC,ESC",    2),
+    P9  ("P9 ESC,REP",    2),
+    P11 ("P11 APR,APR",   3),
+    P12 ("P12 APR,ATC",   3),
+    P13 ("P13 ATC, ATC",  3),
+    ETC0("ETC0",          0),
+    ETC1("ETC1",          3);
+
+    public final String label;
+    public final int    zone;
+
+    Branch(String label, int zone) {
+        this.label = label;
+        this.zone  = zone;
+    }
+}
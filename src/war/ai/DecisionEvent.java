@@ -0,0 +1,63 @@
+package war.ai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * DecisionEvent - EnemyAI3.takeTurn 1回分の判断と行動の JFR イベント
+ *
+ * 1万試合で約180万件と件数が多いので、不要なら記録設定で無効にする:
+ *   -XX:StartFlightRecording=...,+war.Decision#enabled=false
+ */
+@StackTrace(false)      // 件数が多く、発生箇所は常に同じなのでスタックは取らない
+@Name("war.Decision")
+@Label("AI判断")
+@Category({ "War", "AI" })
+@Description("EnemyAI3.takeTurn で選んだ分岐と判断パラメータ")
+public class DecisionEvent extends Event {
+
+    /** イベント型（記録中のどれかで有効になっているかを、インスタンスを作らずに調べるため） */
+    private static final class Type {
+        static final EventType EVENT_TYPE = EventType.getEventType(DecisionEvent.class);
+    }
+
+    /**
+     * このイベントを記録中のレコーディングがあるか。
+     * takeTurn は大きくイベントのエスケープ解析が効かないので、
+     * 無効なときはインスタンスを作らずに済ませる（定常状態の判断をヒープ割り当てなしにするため）。
+     */
+    public static boolean enabled() {
+        return Type.EVENT_TYPE.isEnabled();
+    }
+
+    @Label("戦車")
+    public String tank;
+
+    @Label("陣営")
+    public int side;
+
+    @Label("分岐")
+    public String branch;
+
+    @Label("ゾーン")
+    @Description("1: 決戦領域, 2: 戦闘領域, 3: それ以外")
+    public int zone;
+
+    @Label("距離比")
+    @Description("目標との距離 / 射程（ゾーン判定に使う値）")
+    public double distanceRatio;
+
+    @Label("AC1") public double ac1;
+    @Label("AC2") public double ac2;
+    @Label("DC1") public double dc1;
+    @Label("DC2") public double dc2;
+    @Label("AT1") public double at1;
+    @Label("AT2") public double at2;
+    @Label("DT1") public double dt1;
+    @Label("DT2") public double dt2;
+}
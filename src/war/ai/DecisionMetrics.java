@@ -0,0 +1,242 @@
+package war.ai;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import war.tank.Tank;
+
+/**
+ * DecisionMetrics - EnemyAI3 の分岐選択回数の集計
+ *
+ * 分岐 × 機種 × 陣営 ごとに LongAdder で数える。
+ * LongAdder はスレッドごとに別セルへ加算するので、並列バッチの全ワーカーが
+ * 1つのインスタンスに同時に記録してもロック・競合による遅延がほとんどない。
+ * ゾーン別の回数は分岐から決まる（Branch.zone）ので、集計時に求める。
+ *
+ * 使い方:
+ *   DecisionMetrics metrics = new DecisionMetrics();
+ *   enemyAI.setDecisionMetrics(metrics);      // 同じインスタンスを全ワーカーに渡す
+ *   ...バッチ実行...
+ *   System.out.print(metrics.report());
+ *
+ * setDecisionMetrics を呼ばない EnemyAI3 は GLOBAL に記録する。
+ *
+ * 判断1回にかかった時間も、AI（コントローラ）ごと・分岐ごとの LatencyHistogram に記録する。
+ * report() の末尾に p50 / p99 / p999 / max を出す。
+ */
+public class DecisionMetrics {
+
+    private static final int SIDES    = 2;
+    private static final int BRANCHES = Branch.values().length;
+
+    /** 個別に指定しなかった AI が記録する共有インスタンス（BRANCHES より後に初期化すること） */
+    public static final DecisionMetrics GLOBAL = new DecisionMetrics();
+
+    /** 機種名 → [陣営 * BRANCHES + 分岐] の回数 */
+    private final Map<String, LongAdder[]> byType = new ConcurrentHashMap<>();
+
+    /** 分岐ごとの判断時間 */
+    private final LatencyHistogram[] branchLatency = new LatencyHistogram[BRANCHES];
+
+    /** AI（コントローラ名）ごとの判断時間 */
+    private final Map<String, LatencyHistogram> controllerLatency = new ConcurrentHashMap<>();
+
+    public DecisionMetrics() {
+        for (int i = 0; i < BRANCHES; i++) branchLatency[i] = new LatencyHistogram();
+    }
+
+    // ======================================================================
+    // 記録
+    // ======================================================================
+
+    /**
+     * 1回の判断を記録する。
+     *
+     * @param branch 選んだ分岐
+     * @param self   判断した戦車（機種・陣営を記録する）
+     */
+    public void record(Branch branch, Tank self) {
+        String type = self.getType();
+        LongAdder[] cells = byType.get(type != null ? type : "?");
+        if (cells == null) cells = byType.computeIfAbsent(type != null ? type : "?", k -> newCells());
+        cells[self.getJinei() * BRANCHES + branch.ordinal()].increment();
+    }
+
+    /**
+     * 1回の判断を、かかった時間とともに記録する。
+     *
+     * @param branch 選んだ分岐
+     * @param self   判断した戦車
+     * @param nanos  判断と行動にかかった時間（ナノ秒）
+     */
+    public void record(Branch branch, Tank self, long nanos) {
+        record(branch, self);
+        branchLatency[branch.ordinal()].record(nanos);
+    }
+
+    /**
+     * AI（コントローラ）1回分の判断時間を記録する。
+     *
+     * @param controller AIの名前（"PlayerAI" など。名前ごとに別のヒストグラムになる）
+     * @param nanos      takeTurn にかかった時間（ナノ秒）
+     */
+    public void recordLatency(String controller, long nanos) {
+        controllerHistogram(controller).record(nanos);
+    }
+
+    /**
+     * AI（コントローラ）ごとの判断時間ヒストグラムを返す（なければ作る）。
+     * 毎回名前で引かずに済むよう、AI側で保持して直接 record() してよい。
+     */
+    public LatencyHistogram controllerHistogram(String controller) {
+        LatencyHistogram h = controllerLatency.get(controller);
+        return (h != null) ? h : controllerLatency.computeIfAbsent(controller, k -> new LatencyHistogram());
+    }
+
+    /** 分岐ごとの判断時間 */
+    public LatencyHistogram branchLatency(Branch branch) {
+        return branchLatency[branch.ordinal()];
+    }
+
+    /** AI（コントローラ）ごとの判断時間（未記録なら null） */
+    public LatencyHistogram controllerLatency(String controller) {
+        return controllerLatency.get(controller);
+    }
+
+    private static LongAdder[] newCells() {
+        LongAdder[] cells = new LongAdder[SIDES * BRANCHES];
+        for (int i = 0; i < cells.length; i++) cells[i] = new LongAdder();
+        return cells;
+    }
+
+    /** 全カウンターを0に戻す（バッチの区切りで呼ぶ） */
+    public void reset() {
+        for (LongAdder[] cells : byType.values()) {
+            for (LongAdder c : cells) c.reset();
+        }
+        for (LatencyHistogram h : branchLatency) h.reset();
+        for (LatencyHistogram h : controllerLatency.values()) h.reset();
+    }
+
+    // ======================================================================
+    // 集計
+    // ======================================================================
+
+    /** 指定条件の回数（type = null で全機種、side = -1 で両陣営） */
+    public long count(Branch branch, String type, int side) {
+        long sum = 0;
+        for (Map.Entry<String, LongAdder[]> e : byType.entrySet()) {
+            if (type != null && !type.equals(e.getKey())) continue;
+            for (int s = 0; s < SIDES; s++) {
+                if (side >= 0 && s != side) continue;
+                sum += e.getValue()[s * BRANCHES + branch.ordinal()].sum();
+            }
+        }
+        return sum;
+    }
+
+    /** 分岐の全体回数 */
+    public long count(Branch branch) {
+        return count(branch, null, -1);
+    }
+
+    /** 指定ゾーンの回数 */
+    public long zoneCount(int zone) {
+        long sum = 0;
+        for (Branch b : Branch.values()) {
+            if (b.zone == zone) sum += count(b);
+        }
+        return sum;
+    }
+
+    /** 全判断回数 */
+    public long total() {
+        long sum = 0;
+        for (Branch b : Branch.values()) sum += count(b);
+        return sum;
+    }
+
+    /**
+     * AIConfig の閾値パラメータごとに、判断の中で比較に使われた回数を返す。
+     * フローチャート上、分岐 Pn に至るまでに評価した条件から逆算する。
+     * （RANK_*_THREAT は DC/DT の計算で毎回使うので、全判断回数と同じ）
+     */
+    public long parameterUsage(String paramName) {
+        switch (paramName) {
+            case "THREAT_ZONE_1":    return total() - count(Branch.ETC0);
+            case "THREAT_ZONE_2":    return total() - count(Branch.ETC0) - zoneCount(1);
+            case "P01_Z1_AA_AC_2_O": return zoneCount(1);
+            case "P02_Z1_AE_DT_2_U": return zoneCount(1) - count(Branch.P1);
+            case "P03_Z1_ER_DT_2_U": return count(Branch.P3) + count(Branch.P4);
+            case "P05_Z2_CA_AT_1_O": return zoneCount(2);
+            case "P06_Z2_AA_DC_2_U": return zoneCount(2) - count(Branch.P5);
+            case "P07_Z2_AE_DT_2_U": return count(Branch.P7) + count(Branch.P8) + count(Branch.P9);
+            case "P08_Z2_EE_DT_2_O": return count(Branch.P8) + count(Branch.P9);
+            case "P10_Z3_CC_DT_2_U": return count(Branch.P11) + count(Branch.P12) + count(Branch.P13);
+            case "P11_Z3_CA_DT_2_U": return count(Branch.P11) + count(Branch.P12);
+            default:                 return total() - count(Branch.ETC0);
+        }
+    }
+
+    /**
+     * バッチ集計表（分岐ごとの回数・割合、陣営別・機種別の内訳、パラメータの使用回数）。
+     */
+    public String report() {
+        long total = total();
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== AI分岐の選択回数（全").append(total).append("回） ===\n");
+        if (total == 0) return sb.toString();
+
+        List<String> types = new ArrayList<>(byType.keySet());
+        Collections.sort(types);
+
+        sb.append(String.format("%-6s %4s %10s %7s %10s %10s", "分岐", "ゾーン", "回数", "割合", "陣営0", "陣営1"));
+        for (String t : types) sb.append(String.format(" %10s", t));
+        sb.append('\n');
+
+        for (Branch b : Branch.values()) {
+            long n = count(b);
+            if (n == 0) continue;
+            sb.append(String.format("%-6s %4d %10d %6.2f%% %10d %10d",
+                b.name(), b.zone, n, n * 100.0 / total, count(b, null, 0), count(b, null, 1)));
+            for (String t : types) sb.append(String.format(" %10d", count(b, t, -1)));
+            sb.append('\n');
+        }
+
+        sb.append("ゾーン別:");
+        for (int z = 1; z <= 3; z++) {
+            sb.append(String.format("  Z%d=%.2f%%", z, zoneCount(z) * 100.0 / total));
+        }
+        sb.append('\n');
+
+        sb.append("パラメータの使用回数（判断に影響した回数）:\n");
+        for (String p : AIConfig.PARAM_NAMES) {
+            long n = parameterUsage(p);
+            sb.append(String.format("  %-18s %10d %6.2f%%%n", p, n, n * 100.0 / total));
+        }
+        sb.append(latencyReport());
+        return sb.toString();
+    }
+
+    /** 判断時間の集計表（AIごと・分岐ごとの p50 / p99 / p999 / max） */
+    public String latencyReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== 判断時間 ===\n");
+
+        List<String> names = new ArrayList<>(controllerLatency.keySet());
+        Collections.sort(names);
+        for (String name : names) {
+            sb.append(String.format("  %-18s %s%n", name, controllerLatency.get(name).summary()));
+        }
+        for (Branch b : Branch.values()) {
+            LatencyHistogram h = branchLatency[b.ordinal()];
+            if (h.count() == 0) continue;
+            sb.append(String.format("  %-18s %s%n", b.name(), h.summary()));
+        }
+        return sb.toString();
+    }
+}
@@ -6,12 +6,20 @@ package war.ai;
 // AI2 ⇒　AI3の変更点:
 // 戦車の動作をForward Back Left Rightに変更
 //
+// 判断に使う作業用オブジェクト（StateAnalyzer・BattleState・ThreatEvaluator・
+// 試算用の TankSnapshot）はインスタンスごとに1つ持って使い回す。
+// → 定常状態の takeTurn はヒープを割り当てない（main で確認できる）
 //======================================================================
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
+import java.util.List;
 
-import war.tank.DummyTank;
+import war.tank.LightTank;
+import war.tank.MediumTank;
+import war.tank.Movable;
 import war.tank.Tank;
+import war.tank.TankSnapshot;
 
 
 /**
@@ -19,7 +27,7 @@ import war.tank.Tank;
  * 敵の1ターン分の行動を決定・実行する。
  * ダメージ計算等は Tank クラスへ委譲する。
  */
-public class EnemyAI3 {
+public class EnemyAI3 implements EnemyController {
 
     // ======================================================================
     // 定数（戦術パラメータ）
@@ -37,6 +45,36 @@ public class EnemyAI3 {
     }
     
     private Side playSide;
+
+    /** 分岐選択回数・判断時間の記録先（並列ワーカー間で共有してよい） */
+    private DecisionMetrics metrics = DecisionMetrics.GLOBAL;
+
+    /** 戦車どうしの距離・方向のキャッシュ（移動した戦車の分だけ計算し直す） */
+    private final PairGeometry geometry = new PairGeometry();
+
+    // ======================================================================
+    // 判断用の作業領域（takeTurn のたびに上書きして使い回す）
+    // ======================================================================
+
+    private final StateAnalyzer   analyzer;
+    private final BattleState     state = new BattleState();
+    private final ThreatEvaluator evaluator;
+
+    /** 行動前の試算に使う自分の写し（DummyTank の代わり） */
+    private final TankSnapshot what = new TankSnapshot();
+
+    /** 相手陣営の火力の地図（設定したときだけ、退避・前進のマス選びに使う） */
+    private InfluenceMap influence;
+
+    /** 行動中の戦車（地図の問い合わせで諸元・陣営に使う） */
+    private Tank actor;
+
+    /** 判断時間の集計に使う名前（陣営ごとに分ける） */
+    private String controllerName;
+
+    /** controllerName の判断時間ヒストグラム（metrics から取得して保持する） */
+    private LatencyHistogram latency;
+
     // ======================================================================
     // コンストラクタ
     // ======================================================================
@@ -48,17 +86,41 @@ public class EnemyAI3 {
         this.MAX_GRID = maxGrid;
         this.playSide = activeSide;
         this.aiConfig = aiConfig;
+        this.controllerName = "EnemyAI3[" + activeSide + "]";
+        this.latency = metrics.controllerHistogram(controllerName);
+        this.analyzer  = new StateAnalyzer(geometry);
+        this.evaluator = new ThreatEvaluator(aiConfig, state, geometry);
     }
     public EnemyAI3(int maxGrid ,Side activeSide) {
-        this.MAX_GRID = maxGrid;
-        this.playSide = activeSide;
-        this.aiConfig = new AIConfig();
+        this(maxGrid, activeSide, new AIConfig());
     }
 
     // ======================================================================
     // 公開メソッド
     // ======================================================================
 
+    /** 分岐選択回数の記録先を設定する（未設定なら DecisionMetrics.GLOBAL） */
+    @Override
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        this.metrics = metrics;
+        this.latency = metrics.controllerHistogram(controllerName);
+    }
+
+    /**
+     * 相手陣営の火力の地図を使うようにする（null なら使わない。既定は使わない）。
+     * 使う場合、escapeOne・progOne は1両の敵から真っすぐ離れる・向かう代わりに、
+     * 離れる・近づく方向のうち地図の火力が最も弱いマスに向かう方向へ動く。
+     */
+    public void setInfluenceMap(InfluenceMap map) {
+        this.influence = map;
+    }
+
+    /** 判断時間の集計に使う名前を変える（PlayerAI から使う場合など） */
+    public void setControllerName(String name) {
+        this.controllerName = name;
+        this.latency = metrics.controllerHistogram(name);
+    }
+
     
     
     
@@ -69,8 +131,12 @@ public class EnemyAI3 {
      * @param enemy      行動させる敵戦車
      * @param friendlies 攻撃対象候補の味方戦車リスト
      * @return 0: 正常終了
+     *
+     * リストは読むだけでコピーしない（SideRoster のビューをそのまま渡せる）。
      */
-    public int takeTurn(Tank self, ArrayList<Tank> targets, ArrayList<Tank> friends) {
+    @Override
+    public int takeTurn(Tank self, List<Tank> targets, List<Tank> friends) {
+        long startNanos = System.nanoTime();             // 判断時間は目標選びなどの前処理も含める
    
         /**
          * self			行動対象戦車
@@ -82,19 +148,23 @@ public class EnemyAI3 {
 //		AIConfig aiConfig = new AIConfig();
     	
     	if (!self.isAlive()) return 0;
+        geometry.sync(targets, friends);
+        if (influence != null) influence.sync(targets, friends);
+        actor = self;
         Tank target = selectTarget(self, targets);
         if (target == null) return 0;
 
+    	DecisionEvent event = DecisionEvent.enabled() ? new DecisionEvent() : null;   // JFR 記録中のみ
+    	if (event != null) event.begin();
+
     	// *******  情報収集  *******
-        StateAnalyzer getstat = new StateAnalyzer();
+        analyzer.analyze(state, self, target, friends, targets, 1);
         
-        BattleState stat = getstat.analyze(self, target, friends,targets, 1);
-        
-        DummyTank cloneSelf = new DummyTank(self);
-        BattleState cloneStat = getstat.analyze(cloneSelf, target, friends, targets, 1);
+        // 試算用の写し（同じ位置から作るので戦場状態は state と同じ。analyze し直さない）
+        TankSnapshot cloneSelf = what.set(self);
 
 		// フローチャートの実装	
-    	ThreatEvaluator dec = new ThreatEvaluator(aiConfig, stat);
+    	ThreatEvaluator dec = evaluator;
 
     		//　1.ゾーン判断
         //　1.1 AC DC 算出
@@ -117,7 +187,7 @@ public class EnemyAI3 {
         
         //　1.ゾーン決定
         
-        double z = self.distance(target)/self.getRange();
+        double z = geometry.distance(self, target)/self.getRange();
 ;
         //debub用
 
@@ -126,56 +196,56 @@ public class EnemyAI3 {
 
 
 
-		String ret = "ETC0";
+		Branch ret = Branch.ETC0;
 
     	if (z < aiConfig.THREAT_ZONE_1) {
     		if (AC2 > aiConfig.P01_Z1_AA_AC_2_O ) {
     			self.attackTarget(target);
     			self.attackTarget(target);
-    	        ret = "P1 ATC,ATC";
+    	        ret = Branch.P1;
 
     			
     		} else if(DT2 < aiConfig.P02_Z1_AE_DT_2_U){
     			self.attackTarget(target);
     			escapeOne(self,target);
-    	        ret = "P2 ATC,ESC";
+    	        ret = Branch.P2;
     		} else if(DT2 < aiConfig.P03_Z1_ER_DT_2_U) {
     			escapeOne(self,target);
     			self.repair();
-    	        ret = "P3 REP,ESC";
+    	        ret = Branch.P3;
     		} else {
     			escapeOne(self,target);
     			escapeOne(self,target);
-    	        ret = "P4 ESC,ESC";
+    	        ret = Branch.P4;
     		}    				
     	} else if (z < aiConfig.THREAT_ZONE_2) {
 
     		if (AT1 > aiConfig.P05_Z2_CA_AT_1_O ) {
 				progOne(self,target.getX(),target.getY());
     			self.attackTarget(target);
-    	        ret = "P5 APR,ATC";
+    	        ret = Branch.P5;
     			
     		} else if(DC2 < aiConfig.P06_Z2_AA_DC_2_U){
     			self.attackTarget(target);
     			self.attackTarget(target);
-    	        ret = "P6 ATC,ATC";
+    	        ret = Branch.P6;
     		} else if(DT2 < aiConfig.P07_Z2_AE_DT_2_U){
     			escapeOne(self,target);
     			self.repair();
-    	        ret = "P7 ESC,REP";
+    	        ret = Branch.P7;
     		} else if(DT2 > aiConfig.P08_Z2_EE_DT_2_O) {
     			escapeOne(self,target);
     			escapeOne(self,target);
-    	        ret = "P8 ESC,ESC";
+    	        ret = Branch.P8;
     		} else {
     			escapeOne(self,target);
     			self.repair();    				
-    	        ret = "P9 ESC,REP";
+    	        ret = Branch.P9;
     		}
     	} else if(self.getHp() < self.getMaxHp()){
     		self.reloadAmmo(self.getMaxAmmo()-self.getAmmo());
     		self.repair();
-	        ret = "ETC1";
+	        ret = Branch.ETC1;
     		
     	} else {
     		if(DT2 < aiConfig.P10_Z3_CC_DT_2_U ){
@@ -184,18 +254,31 @@ public class EnemyAI3 {
                 DT2 = dec.calcDT(ThreatEvaluator.Times.DOUBLE, cloneSelf, target);        
         		if(DT2 < aiConfig.P11_Z3_CA_DT_2_U ){
     				progOne(self,target.getX(),target.getY());
-        	        ret = "P11 APR,APR";        			
+        	        ret = Branch.P11;        			
         		} else  {
         			self.attackTarget(target);
-    	        ret = "P12 APR,ATC";
+    	        ret = Branch.P12;
         		}
         	} else {
 				progOne(self,target.getX(),target.getY());
-    	        ret = "P13 ATC, ATC";
+    	        ret = Branch.P13;
     		}    		
     		
      	}
-    	log(self, ret);
+    	long elapsed = System.nanoTime() - startNanos;
+    	metrics.record(ret, self, elapsed);
+    	latency.record(elapsed);
+    	if (event != null && event.shouldCommit()) {
+    		event.tank          = self.getName();
+    		event.side          = self.getJinei();
+    		event.branch        = ret.name();
+    		event.zone          = ret.zone;
+    		event.distanceRatio = z;
+    		event.ac1 = AC1; event.ac2 = AC2; event.dc1 = DC1; event.dc2 = DC2;
+    		event.at1 = AT1; event.at2 = AT2; event.dt1 = DT1; event.dt2 = DT2;
+    		event.commit();
+    	}
+    	log(self, ret.label);
         return 0;
     }
     
@@ -210,14 +293,15 @@ public class EnemyAI3 {
      * HP 割合が低く（倒しやすく）、距離が近い相手を優先する。
      * スコア = HP割合 × 5 + 距離（値が小さいほど優先）
      */
-    private Tank selectTarget(Tank enemy, ArrayList<Tank> friendlies) {
+    private Tank selectTarget(Tank enemy, List<Tank> friendlies) {
         Tank   best      = null;
         double bestScore = Double.MAX_VALUE;
 
-        for (Tank t : friendlies) {
+        for (int i = 0; i < friendlies.size(); i++) {
+            Tank t = friendlies.get(i);
             if (!t.isAlive()) continue;
             double hpRatio = (double) t.getHp() / t.getMaxHp();
-            double dist    = enemy.distance(t);
+            double dist    = geometry.distance(enemy, t);
             double score   = hpRatio * 5.0 + dist;
             if (score < bestScore) {
                 bestScore = score;
@@ -235,51 +319,22 @@ public class EnemyAI3 {
 //        return enemy.distance(target) <= (enemy.getRange()*OPT_RANGE_MAX);
 //    }
 
-    /** 値を [min, max] の範囲にクランプする */
-    private double clamp(double value, double min, double max) {
-        return Math.max(min, Math.min(max, value));
-    }
-     
-
-    // 移動アクション
-	public void progOne(Tank tank, double x, double y) {
-        double nx = clamp(x, 0, MAX_GRID - 1);
-        double ny = clamp(y, 0, MAX_GRID - 1);
-        
-// 方向転換 角度は12時が0度とする0～360度で表現することとXY座標は下方向がY+なので、式が以下のようになる
-        double curAngle = tank.getAngle();
-        double tarAngle = (int)(((450 - Math.toDegrees(Math.atan2(-y + tank.getY(),x - tank.getX()))) % 360 + 15)/30) * 30.0;
-        
-        tank.rotate(tarAngle - curAngle);  
-        
-        // 行動力が残っていて　敵との距離が1マス以上ある場合
-        
-        if(tank.activity() > 0 && Math.abs(x - tank.getX()) +Math.abs(y - tank.getY()) > 1.1) {
-        tank.move(nx,ny);        		
+    // 移動アクション（動き方は Maneuver にまとめてある）
+	public void progOne(Movable tank, double x, double y) {
+        if (influence != null && actor != null) {
+            Maneuver.progVia(tank, influence, actor, x, y, MAX_GRID);
+        } else {
+            Maneuver.progOne(tank, x, y, MAX_GRID);
         }
-        		
 	}
 
     // 退避アクション
-	public void escapeOne(Tank tank, Tank teki) {
-		if(tank.activity() <= 0 ) return;
-
-    	//退避方向は敵とは逆方向
-        double escWayX = tank.getX() - teki.getX();
-        double escWayY = tank.getY() - teki.getY(); 
-        double nx = clamp(escWayX + tank.getX(), 0, MAX_GRID -1);
-        double ny = clamp(escWayY + tank.getY(), 0, MAX_GRID -1);
-
-		
-		//　敵に正面を向ける = 退避方向とは逆方向なので、180度加算する
-		
-		// 方向転換 角度は12時が0度とする0～360度で表現することとXY座標は下方向がY+なので、式が以下のようになる
-        double curAngle = tank.getAngle();
-        double tarAngle = (int)(((450 - Math.toDegrees(Math.atan2( - escWayY, escWayX)) + 180 ) % 360 + 15)/30) * 30.0;
-        
-        tank.rotate(tarAngle - curAngle);        
-        if(tank.activity() > 0) tank.move(nx,ny);        		
-        	
+	public void escapeOne(Movable tank, Tank teki) {
+        if (influence != null && actor != null) {
+            Maneuver.escapeVia(tank, influence, actor, teki, MAX_GRID);
+        } else {
+            Maneuver.escapeOne(tank, teki, MAX_GRID);
+        }
     }
 	
     /** デバッグ用ログ出力 */
@@ -287,4 +342,46 @@ public class EnemyAI3 {
 //        System.out.println("[AI] " + self.getName()  + msg + " → " + self.getX() +", "+self.getY());
     }
 
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 十分に回して JIT が落ち着いた後の takeTurn が、ヒープを割り当てないことを確認する
+    // （1判断あたり1バイト未満なら OK。1回でも new すれば最低16バイトになる）
+
+    public static void main(String[] args) {
+        int warmup   = (args.length >= 1) ? Integer.parseInt(args[0]) : 200_000;
+        int measured = (args.length >= 2) ? Integer.parseInt(args[1]) : 100_000;
+
+        List<Tank> player = new ArrayList<>();
+        List<Tank> pc     = new ArrayList<>();
+        player.add(new MediumTank("P1", 0, 5, 5));
+        pc.add(new LightTank("E1", 1, 12, 12));
+        pc.add(new MediumTank("E2", 1, 3, 14));
+        pc.add(new MediumTank("E3", 1, 14, 3));
+
+        EnemyAI3 ai = new EnemyAI3(23, Side.PC, new AIConfig());
+        ai.setDecisionMetrics(new DecisionMetrics());
+
+        for (int i = 0; i < warmup; i++) decide(ai, player, pc, i);
+
+        com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long before = mx.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < measured; i++) decide(ai, player, pc, i);
+        long bytes = mx.getCurrentThreadAllocatedBytes() - before;
+
+        boolean ok = bytes < measured;
+        System.out.printf("判断 %d 回: 割り当て %d バイト（%.3f バイト/回） %s%n",
+                          measured, bytes, (double) bytes / measured, ok ? "OK" : "NG");
+        if (!ok) System.exit(1);
+    }
+
+    /** 配置を少しずつ変えて1回判断させる（いろいろな分岐を通すため） */
+    private static void decide(EnemyAI3 ai, List<Tank> player, List<Tank> pc, int i) {
+        player.get(0).reset(2 + i % 11, 2 + (i / 11) % 13, (i % 12) * 30.0);
+        pc.get(0).reset(12, 12, 180);
+        pc.get(1).reset(3, 14, 90);
+        pc.get(2).reset(14, 3, 270);
+        ai.takeTurn(pc.get(i % 3), player, pc);
+    }
 }
@@ -0,0 +1,92 @@
+package war.ai;
+
+import java.util.List;
+
+import war.tank.Tank;
+
+/**
+ * EnemyController - 敵側AI（陣営の戦車を1両ずつ動かすAI）の共通インターフェース
+ *
+ * BattleSimulator・TankBattleGame は敵側の戦車ごとに takeTurn を呼ぶだけなので、
+ * このインターフェースを実装したAIなら EnemyAI3 と差し替えて使える。
+ *
+ *   - EnemyAI3        : フローチャート（閾値で13通りの行動パターンから選ぶ）
+ *                       "influence" は退避・前進のマスを InfluenceMap（相手の火力の地図）で選ぶ
+ *   - RolloutPlanner  : 候補の行動パターンを、残りの試合を乱数で進めた結果で比べる
+ *   - ExpectimaxAI    : 行動力8の範囲の行動列を、命中・ダメージを確率分岐にして探索する
+ *   - MctsAI          : 行動パターンの列をモンテカルロ木探索で探索する（置換表つき・根の並列化）
+ *
+ * 使い方:
+ *   EnemyController ai = EnemyController.create("expectimax", GRID_SIZE - 1, config);
+ *   ai.takeTurn(enemy, friendlies, enemies);
+ *   ai.close();                                      // 使い終わったら
+ */
+public interface EnemyController extends AutoCloseable {
+
+    /**
+     * 戦車1両の1ターン分の行動を実行する。
+     * リストは読むだけでコピーしない（SideRoster のビューをそのまま渡せる）。
+     *
+     * @param self    行動させる戦車
+     * @param targets 攻撃対象の陣営の生存戦車
+     * @param friends 自陣営の生存戦車（self を含む）
+     * @return 0: 正常終了
+     */
+    int takeTurn(Tank self, List<Tank> targets, List<Tank> friends);
+
+    /** 分岐選択回数・判断時間の記録先を設定する */
+    void setDecisionMetrics(DecisionMetrics metrics);
+
+    /**
+     * 探索用のスレッドプールなどを解放する（このAIを使うシミュレーターを破棄するときに呼ぶ）。
+     * 何も持たないAIは何もしない。
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * 名前で敵側AIを生成する（起動時の切り替え用）。
+     * "rollout" の並列度は1（並列バッチのワーカーごとに作る場合の値）。
+     *
+     * @param name     "flowchart"（EnemyAI3）・"influence"・"rollout"・"expectimax"・"mcts"・"mlp"（MlpAI.DEFAULT_MODEL を読む）。null・空なら EnemyAI3
+     * @param maxGrid  グリッドサイズ - 1
+     * @param config   EnemyAI3 のパラメータ（RolloutPlanner は乱数で進める試合の敵側AIにも使う）
+     */
+    static EnemyController create(String name, int maxGrid, AIConfig config) {
+        return create(name, maxGrid, config, 1);
+    }
+
+    /**
+     * 名前で敵側AIを生成する。"rollout" の設定はシステムプロパティで上書きできる:
+     *   -Drollout.parallelism=4     試行を並列に進めるワーカー数（省略時は parallelism）
+     *   -Drollout.budgetMillis=50   1回の判断の時間予算（ミリ秒。0 なら制限なし）
+     *   -Drollout.rollouts=32       1候補あたりの試行回数
+     *   -Drollout.horizon=8         先読みするターン数
+     *
+     * @param parallelism "rollout" のワーカー数の既定値（ゲーム画面のように1試合だけ動かすなら2以上）
+     */
+    static EnemyController create(String name, int maxGrid, AIConfig config, int parallelism) {
+        if (name == null || name.isEmpty() || name.equals("flowchart")) {
+            return new EnemyAI3(maxGrid, EnemyAI3.Side.PC, config);
+        }
+        switch (name) {
+            case "influence": {
+                EnemyAI3 ai = new EnemyAI3(maxGrid, EnemyAI3.Side.PC, config);
+                ai.setInfluenceMap(new InfluenceMap(maxGrid + 1));
+                return ai;
+            }
+            case "rollout":
+                return new RolloutPlanner(maxGrid, config,
+                    Integer.getInteger("rollout.rollouts", RolloutPlanner.DEFAULT_ROLLOUTS),
+                    Integer.getInteger("rollout.horizon", RolloutPlanner.DEFAULT_HORIZON),
+                    Long.getLong("rollout.budgetMillis", RolloutPlanner.DEFAULT_BUDGET_NANOS / 1_000_000L) * 1_000_000L,
+                    Integer.getInteger("rollout.parallelism", parallelism));
+            case "expectimax": return new ExpectimaxAI(maxGrid);
+            case "mcts":       return new MctsAI(maxGrid, config);
+            case "mlp":        return new MlpAI(maxGrid, MlpModel.load(MlpAI.DEFAULT_MODEL));
+            default:
+                throw new IllegalArgumentException("不明な敵AI: " + name + "（flowchart / influence / rollout / expectimax / mcts / mlp）");
+        }
+    }
+}
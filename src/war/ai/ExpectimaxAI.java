@@ -0,0 +1,486 @@
+package war.ai;
+
+import java.util.List;
+import java.util.random.RandomGenerator;
+
+import war.main.BattleSimulator;
+import war.tank.Tank;
+import war.tank.TankSnapshot;
+
+/**
+ * ExpectimaxAI - 命中・ダメージを確率分岐にした探索で行動を選ぶ敵側AI
+ *
+ * 1ターンの行動力（8）の範囲でとれる行動列を木にして探索する。
+ *
+ *   自分の手番（最大値をとる節）:
+ *     ATC（各相手への攻撃）・APR（前進）・ESC（退避）・FACE（その場で相手を向く）・REP（修理）・END（終了）
+ *     行動力が変わらない行動（向きが同じ FACE、行動力不足の移動など）は候補にしない
+ *   偶然の節（ATC のあと）:
+ *     命中 / 外れ（確率 = 命中率。Tank.HitRate と同じ表）
+ *     命中時のダメージは一様乱数3個の和を3点（1/6, 2/3, 1/6）で近似し、
+ *     Tank.rollDamage に通して整数のダメージにする（同じダメージになる点はまとめる）
+ *   葉（ターン終了時）の評価:
+ *     相手に与えたHP割合 + 撃破ボーナス
+ *     − 次の相手の手番で受ける期待ダメージ（その場で2発 / 1マス分寄って1発 の大きい方）
+ *       相手も EnemyAI3 と同じ選び方（HP割合×5 + 距離 が最小）で狙うとみなし、
+ *       味方の方が狙われる位置なら自分への期待ダメージは0とする
+ *     + 次の自分の手番で与えられる期待ダメージ × POTENTIAL
+ *
+ * 評価値の上下限が分かっているので、偶然の節は Star1 法で枝刈りする
+ * （残りの分岐が全て上限／下限でも結果が変わらなければ打ち切る）。
+ * 行動数1から深さを増やす反復深化で探索し、時間予算を超えたら直前の深さの結果を使う
+ * （深さ1は必ず最後まで探索する）。行動を1つ実行するたびに、実際の命中結果から探索し直す。
+ *
+ * 探索中の状態は深さごとの TankSnapshot と HP の配列に持ち、takeTurn はヒープを割り当てない。
+ * スレッドセーフではない（シミュレーター・ゲームごとにインスタンスを作る）。
+ */
+public class ExpectimaxAI implements EnemyController {
+
+    // ======================================================================
+    // 定数
+    // ======================================================================
+
+    /** 1ターンの判断の時間予算（ナノ秒） */
+    public static final long DEFAULT_BUDGET_NANOS = 2_000_000L;
+
+    /** 1ターンの行動数の上限（反復深化の最大の深さ） */
+    private static final int MAX_DEPTH = 4;
+
+    /** 扱う相手の最大数 */
+    private static final int MAX_OPPONENTS = 8;
+
+    /**
+     * 評価値の重み（標準の編成で敵勝率を見て決めた値）。
+     * POTENTIAL が 1 以下だと射程外で睨み合って引き分けが続き、2 を超えると単独で突っ込んで各個撃破される。
+     */
+    private static final double KILL      = 3.0;    // 撃破ボーナス
+    private static final double DEATH     = 1.0;    // 期待ダメージで自分が倒れる場合の減点
+    private static final double POTENTIAL = 1.5;    // 次の手番で与えられる期待ダメージの重み
+
+    /** 一様乱数3個の和の3点近似（平均 1.5・分散 0.25 が一致する点と重み） */
+    private static final double[] SUM_POINTS  = { 1.5 - Math.sqrt(0.75), 1.5, 1.5 + Math.sqrt(0.75) };
+    private static final double[] SUM_WEIGHTS = { 1.0 / 6, 2.0 / 3, 1.0 / 6 };
+
+    /** 行動の番号（ATC は ATC + 相手の番号） */
+    private static final int END = 0, REP = 1, APR = 2, ESC = 3, FACE = 4, ATC = 5;
+
+    /** ATC 以外の行動の試す順 */
+    private static final int[] MOVES = { APR, FACE, ESC, REP };
+
+    // ======================================================================
+    // 設定
+    // ======================================================================
+
+    private final int  maxGrid;
+    private final long budgetNanos;
+
+    private DecisionMetrics  metrics = DecisionMetrics.GLOBAL;
+    private LatencyHistogram latency;
+
+    // ======================================================================
+    // 探索の作業領域（深さごと。takeTurn のたびに上書きして使い回す）
+    // ======================================================================
+
+    /** 深さ d の時点の自分 */
+    private final TankSnapshot[] me = new TankSnapshot[MAX_DEPTH + 2];
+
+    /** 深さ d の時点の相手のHP [d][相手] */
+    private final int[][] oppHp = new int[MAX_DEPTH + 2][MAX_OPPONENTS];
+
+    /** 偶然の節の分岐（確率と、命中した相手の分岐後のHP） [d][分岐] */
+    private final double[][] outProb = new double[MAX_DEPTH + 1][SUM_POINTS.length + 1];
+    private final int[][]    outHp   = new int[MAX_DEPTH + 1][SUM_POINTS.length + 1];
+
+    /** このターンの相手（ターン開始時の生存戦車）と、ターン開始時のHP */
+    private final Tank[] opp      = new Tank[MAX_OPPONENTS];
+    private final int[]  oppStart = new int[MAX_OPPONENTS];
+    private int          oppCount;
+
+    /** 前進・退避・向きを合わせる相手 */
+    private Tank focus;
+
+    /** 自陣営の生存戦車（相手がどの戦車を狙うかの推定に使う） */
+    private List<Tank> friends;
+
+    /** ターン開始時の自分のHP */
+    private int selfStart;
+
+    /** 評価値の上限・下限（Star1 の枝刈りに使う） */
+    private double upper, lower;
+
+    private final FixedDraw draw = new FixedDraw();
+
+    private long    deadline;
+    private boolean aborted, cutByDepth, checkTime;
+    private int     rootBest;
+
+    /** 探索した節の数・探索回数・完了した深さの合計（動作確認用） */
+    private long nodes, searches, depthSum;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param maxGrid グリッドサイズ - 1（EnemyAI3 と同じ）
+     */
+    public ExpectimaxAI(int maxGrid) {
+        this(maxGrid, DEFAULT_BUDGET_NANOS);
+    }
+
+    /**
+     * @param maxGrid     グリッドサイズ - 1
+     * @param budgetNanos 1ターンの判断の時間予算（0 以下なら制限なし）
+     */
+    public ExpectimaxAI(int maxGrid, long budgetNanos) {
+        this.maxGrid     = maxGrid;
+        this.budgetNanos = budgetNanos;
+        this.latency     = metrics.controllerHistogram(name());
+        for (int d = 0; d < me.length; d++) me[d] = new TankSnapshot();
+    }
+
+    private String name() {
+        return "ExpectimaxAI";
+    }
+
+    // ======================================================================
+    // EnemyController
+    // ======================================================================
+
+    @Override
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        this.metrics = metrics;
+        this.latency = metrics.controllerHistogram(name());
+    }
+
+    @Override
+    public int takeTurn(Tank self, List<Tank> targets, List<Tank> friends) {
+        long startNanos = System.nanoTime();
+        if (!self.isAlive()) return 0;
+
+        oppCount = 0;
+        for (int i = 0; i < targets.size() && oppCount < MAX_OPPONENTS; i++) {
+            Tank t = targets.get(i);
+            if (!t.isAlive()) continue;
+            opp[oppCount]      = t;
+            oppStart[oppCount] = t.getHp();
+            oppCount++;
+        }
+        focus = selectTarget(self);
+        if (focus == null) return 0;
+        this.friends = friends;
+
+        deadline  = (budgetNanos > 0) ? startNanos + budgetNanos : Long.MAX_VALUE;
+        selfStart = self.getHp();
+        upper     = oppCount * (1 + KILL) + 0.5 + POTENTIAL;
+        lower     = -1 - DEATH;
+
+        // 1行動ずつ実行し、実際の命中結果から探索し直す
+        for (int step = 0; step < MAX_DEPTH * 2 && self.isAlive(); step++) {
+            int action = search(self);
+            if (action == END) break;
+            int before = self.activity();
+            apply(self, action);
+            if (action == REP || self.activity() == before) break;
+        }
+
+        latency.record(System.nanoTime() - startNanos);
+        return 0;
+    }
+
+    /** 探索した節の数 */
+    public long nodeCount() {
+        return nodes;
+    }
+
+    /** 1回の探索で完了した深さの平均 */
+    public double averageDepth() {
+        return (searches > 0) ? (double) depthSum / searches : 0.0;
+    }
+
+    // ======================================================================
+    // 探索
+    // ======================================================================
+
+    /** 現在の状態から反復深化で探索し、最初に実行する行動を返す */
+    private int search(Tank self) {
+        me[0].setCurrent(self);
+        for (int k = 0; k < oppCount; k++) oppHp[0][k] = opp[k].isAlive() ? opp[k].getHp() : 0;
+
+        int best = END;
+        int completed = 0;
+        aborted   = false;
+        checkTime = false;          // 深さ1は時間切れでも最後まで探索する
+        for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+            cutByDepth = false;
+            rootBest   = END;
+            maxNode(0, depth, lower, upper, best);
+            if (aborted) break;
+            best      = rootBest;
+            completed = depth;
+            checkTime = true;
+            if (!cutByDepth) break;                 // 行動力を使い切るまで探索できた
+        }
+        searches++;
+        depthSum += completed;
+        return best;
+    }
+
+    /**
+     * 自分の手番の節。
+     *
+     * @param pv 最初に試す行動（前の深さの最善手。根でのみ使う）
+     */
+    private double maxNode(int d, int depthLeft, double alpha, double beta, int pv) {
+        nodes++;
+        if (checkTime && (nodes & 63) == 0 && System.nanoTime() > deadline) aborted = true;
+        if (aborted) return 0;
+
+        double best       = evaluate(d);            // END
+        int    bestAction = END;
+        if (me[d].activity() <= 0) return best;
+        if (depthLeft == 0) {
+            cutByDepth = true;
+            return best;
+        }
+        if (best >= beta) return best;
+        if (best > alpha) alpha = best;
+
+        int n = oppCount + MOVES.length;
+        for (int i = -1; i < n; i++) {
+            int action;
+            if (i < 0) {
+                if (d != 0 || pv == END) continue;
+                action = pv;
+            } else {
+                action = (i < oppCount) ? ATC + i : MOVES[i - oppCount];
+                if (d == 0 && action == pv) continue;
+            }
+
+            double v = (action >= ATC) ? chanceNode(d, action - ATC, depthLeft, alpha, beta)
+                                       : moveNode(d, action, depthLeft, alpha, beta);
+            if (aborted) return 0;
+            if (Double.isNaN(v)) continue;          // この状態では意味のない行動
+            if (v > best) {
+                best       = v;
+                bestAction = action;
+                if (best >= beta) break;
+                if (best > alpha) alpha = best;
+            }
+        }
+        if (d == 0) rootBest = bestAction;
+        return best;
+    }
+
+    /** 乱数の絡まない行動（APR・ESC・FACE・REP） */
+    private double moveNode(int d, int action, int depthLeft, double alpha, double beta) {
+        TankSnapshot next = me[d + 1].set(me[d]);
+        switch (action) {
+            case APR:  Maneuver.progOne(next, focus.getX(), focus.getY(), maxGrid); break;
+            case ESC:  Maneuver.escapeOne(next, focus, maxGrid);                    break;
+            case FACE: Maneuver.face(next, focus);                                  break;
+            case REP:  next.repair();                                               break;
+        }
+        if (next.activity() == me[d].activity()) return Double.NaN;
+        System.arraycopy(oppHp[d], 0, oppHp[d + 1], 0, oppCount);
+        return maxNode(d + 1, depthLeft - 1, alpha, beta, END);
+    }
+
+    /** 相手 k への攻撃（命中・ダメージの偶然の節。Star1 法で枝刈り） */
+    private double chanceNode(int d, int k, int depthLeft, double alpha, double beta) {
+        Tank target = opp[k];
+        if (oppHp[d][k] <= 0 || !me[d].canAttack()) return Double.NaN;
+        double p = me[d].hitRate(target);
+        if (p <= 0) return Double.NaN;
+
+        int m = outcomes(d, k, target, p);
+
+        double known = 0, remaining = 1;
+        for (int i = 0; i < m; i++) {
+            double pi = outProb[d][i];
+            remaining -= pi;
+            double a = (alpha - known - remaining * upper) / pi;
+            double b = (beta  - known - remaining * lower) / pi;
+
+            me[d + 1].set(me[d]).previewAttack(target);         // 弾薬・行動力を消費
+            System.arraycopy(oppHp[d], 0, oppHp[d + 1], 0, oppCount);
+            oppHp[d + 1][k] = outHp[d][i];
+
+            double v = maxNode(d + 1, depthLeft - 1, Math.max(a, lower), Math.min(b, upper), END);
+            if (aborted) return 0;
+            known += pi * v;
+            if (known + remaining * upper <= alpha) return known + remaining * upper;
+            if (known + remaining * lower >= beta)  return known + remaining * lower;
+        }
+        return known;
+    }
+
+    /**
+     * 攻撃の分岐（外れ・ダメージ別の命中）を outProb / outHp[d] に書き、分岐の数を返す。
+     */
+    private int outcomes(int d, int k, Tank target, double p) {
+        double nd   = me[d].normalDamage(target);
+        double gain = target.angleGain(Tank.impactAngle(target.getAngle(), target.getX(), target.getY(),
+                                                        me[d].getX(), me[d].getY()));
+        int m = 0;
+        for (int j = 0; j < SUM_POINTS.length; j++) {
+            draw.value = SUM_POINTS[j] / 3;
+            int hp = oppHp[d][k];
+            hp -= Tank.rollDamage(nd, me[d].getRrate(), draw) * gain;     // Tank.takeDamage と同じ丸め
+            if (hp <= 0) hp = 0;
+            double w = p * SUM_WEIGHTS[j];
+            if (m > 0 && outHp[d][m - 1] == hp) {
+                outProb[d][m - 1] += w;                 // 同じ結果になる点はまとめる
+            } else {
+                outHp[d][m]   = hp;
+                outProb[d][m] = w;
+                m++;
+            }
+        }
+        if (p < 1) {
+            outHp[d][m]   = oppHp[d][k];
+            outProb[d][m] = 1 - p;
+            m++;
+        }
+        return m;
+    }
+
+    // ======================================================================
+    // 葉の評価
+    // ======================================================================
+
+    /** 深さ d の状態でターンを終えた場合の評価値（lower 〜 upper） */
+    private double evaluate(int d) {
+        TankSnapshot self = me[d];
+        double dealt = 0, incoming = 0, potential = 0;
+
+        for (int k = 0; k < oppCount; k++) {
+            int hp = oppHp[d][k];
+            Tank o = opp[k];
+            dealt += (double) (oppStart[k] - hp) / o.getMaxHp();
+            if (hp <= 0) {
+                if (oppStart[k] > 0) dealt += KILL;
+                continue;
+            }
+            incoming += reply(o, self);
+            potential = Math.max(potential, Math.min(1.0, threat(self, o) / hp));
+        }
+
+        int    hpNow    = self.getHp();
+        double expected = Math.max(0, hpNow - incoming);
+        double value    = dealt + (expected - selfStart) / self.getMaxHp() + POTENTIAL * potential;
+        if (incoming >= hpNow) value -= DEATH;
+        return Math.max(lower, Math.min(upper, value));
+    }
+
+    /** 相手 o が次の手番で self に与える期待ダメージ（その場で撃つか、寄ってから撃つかの大きい方） */
+    private double reply(Tank o, TankSnapshot self) {
+        if (!targetedBy(o, self)) return 0;
+        double gain  = self.source().angleGain(Tank.impactAngle(self.getAngle(), self.getX(), self.getY(),
+                                                                o.getX(), o.getY()));
+        int    shots = o.getMaxAct() / o.getAtcCost();
+        double stay  = shots * self.hitRateFrom(o) * meanDamage(self.normalDamageFrom(o), o.getRrate());
+
+        double d     = Math.max(0, self.distance(o) - (int) (o.getSpeed() * o.getMovCost()));
+        double close = (o.getMaxAct() - o.getMovCost()) / o.getAtcCost()
+                     * Tank.hitRate(d, o.getAhd(), o.getRange())
+                     * meanDamage(Tank.normalDamage(d, o.getRange(), o.getAttack(), self.getDefense()), o.getRrate());
+        return Math.max(stay, close) * gain;
+    }
+
+    /** 相手 o が味方の中で self を狙うか（EnemyAI3.selectTarget と同じ選び方） */
+    private boolean targetedBy(Tank o, TankSnapshot self) {
+        double dx = self.getX() - o.getX(), dy = self.getY() - o.getY();
+        double selfScore = (double) self.getHp() / self.getMaxHp() * 5.0 + Math.sqrt(dx * dx + dy * dy);
+        for (int i = 0; i < friends.size(); i++) {
+            Tank f = friends.get(i);
+            if (f == self.source() || !f.isAlive()) continue;
+            if ((double) f.getHp() / f.getMaxHp() * 5.0 + PairGeometry.calcDistance(o, f) < selfScore) return false;
+        }
+        return true;
+    }
+
+    /** self が次の手番で o に与えられる期待ダメージ（その場で2発） */
+    private double threat(TankSnapshot self, Tank o) {
+        int shots = self.source().getMaxAct() / self.source().getAtcCost();
+        double gain = o.angleGain(Tank.impactAngle(o.getAngle(), o.getX(), o.getY(), self.getX(), self.getY()));
+        return shots * self.hitRate(o) * meanDamage(self.normalDamage(o), self.getRrate()) * gain;
+    }
+
+    private double meanDamage(double normalDamage, double rRate) {
+        draw.value = 0.5;
+        return Tank.rollDamage(normalDamage, rRate, draw);
+    }
+
+    // ======================================================================
+    // 実行
+    // ======================================================================
+
+    private void apply(Tank self, int action) {
+        switch (action) {
+            case REP:  self.repair();                                               break;
+            case APR:  Maneuver.progOne(self, focus.getX(), focus.getY(), maxGrid); break;
+            case ESC:  Maneuver.escapeOne(self, focus, maxGrid);                    break;
+            case FACE: Maneuver.face(self, focus);                                  break;
+            default:   self.attackTarget(opp[action - ATC]);                        break;
+        }
+    }
+
+    /** EnemyAI3.selectTarget と同じ（HP割合×5 + 距離 が最小の相手） */
+    private Tank selectTarget(Tank self) {
+        Tank   best      = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int k = 0; k < oppCount; k++) {
+            Tank t = opp[k];
+            double score = (double) t.getHp() / t.getMaxHp() * 5.0 + PairGeometry.calcDistance(self, t);
+            if (score < bestScore) {
+                bestScore = score;
+                best      = t;
+            }
+        }
+        return best;
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 同じシード・同じ試合番号で、敵側を EnemyAI3 にした場合と比べる
+
+    public static void main(String[] args) {
+        int  games = (args.length >= 1) ? Integer.parseInt(args[0]) : 2000;
+        long seed  = (args.length >= 2) ? Long.parseLong(args[1])   : 20260101L;
+        AIConfig config = AIConfig.fromJson("./ai_config.json");
+
+        ExpectimaxAI[] ai = new ExpectimaxAI[1];
+        BattleSimulator flowchart  = new BattleSimulator(config, seed);
+        BattleSimulator expectimax = new BattleSimulator(config, seed,
+            () -> ai[0] = new ExpectimaxAI(BattleSimulator.GRID_SIZE - 1));
+        flowchart.setVerbose(false);
+        expectimax.setVerbose(false);
+
+        long t0 = System.nanoTime();
+        double flowRate = flowchart.runBatchSilent(games);
+        long t1 = System.nanoTime();
+        double exptRate = expectimax.runBatchSilent(games);
+        long t2 = System.nanoTime();
+
+        System.out.printf("EnemyAI3    : 敵勝率 %.4f  %8.0f 試合/秒  判断 %s%n", flowRate,
+                          games / ((t1 - t0) / 1e9),
+                          flowchart.getDecisionMetrics().controllerLatency("EnemyAI3[PC]").summary());
+        System.out.printf("ExpectimaxAI: 敵勝率 %.4f  %8.0f 試合/秒  判断 %s%n", exptRate,
+                          games / ((t2 - t1) / 1e9),
+                          expectimax.getDecisionMetrics().controllerLatency("ExpectimaxAI").summary());
+        System.out.printf("探索: 節 %d, 平均の深さ %.2f%n", ai[0].nodeCount(), ai[0].averageDepth());
+    }
+
+    // ======================================================================
+    // 内部クラス: FixedDraw（rollDamage に決まった乱数値を渡す）
+    // ======================================================================
+
+    private static final class FixedDraw implements RandomGenerator {
+        double value;
+
+        @Override public double nextDouble() { return value; }
+        @Override public long   nextLong()   { return Double.doubleToRawLongBits(value); }
+    }
+}
@@ -0,0 +1,407 @@
+package war.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import war.main.BattleSimulator;
+import war.tank.CombatTable;
+import war.tank.HeavyTank;
+import war.tank.LightTank;
+import war.tank.MediumTank;
+import war.tank.Movable;
+import war.tank.Tank;
+
+/**
+ * InfluenceMap - 相手陣営の火力（1発あたりの期待ダメージ）のマス目ごとの地図
+ *
+ * EnemyAI3.escapeOne は1両の敵から真っすぐ離れ、progOne は1両に真っすぐ向かうだけなので、
+ * 相手陣営全体の火力が弱い場所を知らない。この地図は陣営ごとに GRID_SIZE² マスの配列を持ち、
+ * 「そのマスにいると、相手の生存戦車全員から1発ずつ撃たれた場合に受ける期待ダメージの合計」
+ * （命中率 × 基準ダメージ。CombatTable の表の値）を入れておく。
+ *
+ *   - 基準ダメージは防御側の諸元（防御力）で変わるので、陣営 × 防御側の諸元ごとに1枚持つ
+ *   - 攻撃側1両ぶんの値は射程内の正方形（型紙）にして持ち、戦車が動いたら
+ *     前のマスの型紙を引いて新しいマスの型紙を足す（動いた戦車の周りだけ書き換える）
+ *   - 値は 1/SCALE ダメージ単位の整数で持つ（足し引きを繰り返しても誤差が溜まらない）
+ *   - 位置が変わったかどうかは Tank.positionVersion()、破壊は isAlive() で判定する（PairGeometry と同じ）
+ *
+ * 問い合わせ（incoming）は配列を1つ引くだけ。escapeDirection / approachDirection は
+ * 1回の移動で着く12方向のマスを調べ、火力の弱いマスに向かう方向を返す。
+ * スレッドセーフではない（AI のインスタンスごとに1つ持つ）。
+ *
+ * 使い方:
+ *   influence.sync(targets, friends);                         // takeTurn の最初に
+ *   double dmg = influence.incoming(self, x, y);              // self がそのマスで受ける期待ダメージ
+ *   int dir = influence.escapeDirection(self, self, teki, MAX_GRID);
+ */
+public class InfluenceMap {
+
+    /** 値の単位（1/SCALE ダメージ） */
+    private static final int SCALE = 16;
+
+    /** 戦車の表の大きさ（番号は TankSlots が決める） */
+    private static final int SLOTS = TankSlots.CAPACITY;
+
+    /** 移動方向の数（30度単位） */
+    public static final int DIRECTIONS = 12;
+
+    /** 移動方向の目標点を置く距離（盤端まで届く長さ） */
+    private static final int REACH = 64;
+
+    private final int grid;
+
+    // ======================================================================
+    // 地図（陣営 × 防御側の諸元ごとに1枚）
+    // ======================================================================
+
+    /** [陣営][諸元番号] → 地図の番号（なければ -1） */
+    private final int[][] layerOf = { new int[0], new int[0] };
+
+    private final List<int[]> layers     = new ArrayList<>();
+    private final List<int[]> layerInfo  = new ArrayList<>();    // {陣営, 防御側の諸元番号}
+
+    /** [攻撃側の諸元番号][防御側の諸元番号] → 型紙（(2R+1)² マス。R は攻撃側の射程） */
+    private int[][][] stamps = new int[0][][];
+
+    // ======================================================================
+    // 地図に載せた戦車
+    // ======================================================================
+
+    private final TankSlots slots    = new TankSlots();
+    private final Tank[]    tanks    = slots.tanks;
+    private final int[]     version  = new int[SLOTS];
+    private final boolean[] stamped  = new boolean[SLOTS];
+    private final int[]     stampX   = new int[SLOTS];
+    private final int[]     stampY   = new int[SLOTS];
+
+    /** 方向の選択の作業領域（方向ごとの距離の変化・着くマス） */
+    private final double[] gainBuf = new double[DIRECTIONS];
+    private final int[]    landBuf = new int[DIRECTIONS * 2];
+
+    /** 型紙を足し引きした回数（動作確認用） */
+    private long restamped;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /** @param gridSize グリッドサイズ（BattleSimulator.GRID_SIZE） */
+    public InfluenceMap(int gridSize) {
+        this.grid = gridSize;
+    }
+
+    // ======================================================================
+    // 更新
+    // ======================================================================
+
+    /**
+     * リストの戦車を地図に登録し、前回から動いた・破壊された戦車の分だけ地図を書き換える。
+     * 破壊された戦車はリストから消えるので、登録済みの戦車は isAlive() で調べる。
+     */
+    public void sync(List<Tank> a, List<Tank> b) {
+        if (!register(a) || !register(b)) {
+            clear();                          // 表が満杯: 地図を空にして今のリストだけ載せ直す
+            if (!register(a) || !register(b)) {
+                throw new IllegalStateException("戦車が多すぎます（" + SLOTS + " 両まで）");
+            }
+        }
+        for (int i = 0, n = slots.count(); i < n; i++) {
+            int  s = slots.slotAt(i);
+            Tank t = tanks[s];
+            boolean alive = t.isAlive();
+            if (alive == stamped[s] && (!alive || t.positionVersion() == version[s])) continue;
+
+            int x = (int) t.getX(), y = (int) t.getY();
+            version[s] = t.positionVersion();
+            if (alive && stamped[s] && x == stampX[s] && y == stampY[s]) continue;
+
+            if (stamped[s]) stamp(t, stampX[s], stampY[s], -1);
+            if (alive)      stamp(t, x, y, +1);
+            stamped[s] = alive;
+            stampX[s]  = x;
+            stampY[s]  = y;
+        }
+    }
+
+    /** 未登録の戦車を空いている番号に登録する（表が満杯なら false） */
+    private boolean register(List<Tank> list) {
+        for (int i = 0; i < list.size(); i++) {
+            Tank t = list.get(i);
+            if (slots.find(t) >= 0) continue;
+            int s = slots.add(t);
+            if (s < 0) return false;
+            stamped[s] = false;
+            version[s] = t.positionVersion() - 1;
+            layer(t.getJinei(), t.getCombatSpec());          // 防御側として問い合わせる地図を用意する
+        }
+        return true;
+    }
+
+    /** 登録した戦車を全て外し、地図を 0 に戻す（用意した地図と型紙は残す） */
+    public void clear() {
+        for (int[] cells : layers) Arrays.fill(cells, 0);
+        slots.clear();
+    }
+
+    /** 攻撃側 t の型紙を (cx, cy) を中心に、相手陣営の全ての地図へ sign 倍で足す */
+    private void stamp(Tank t, int cx, int cy, int sign) {
+        int side = 1 - t.getJinei();
+        int r    = t.getRange();
+        for (int k = 0; k < layers.size(); k++) {
+            int[] info = layerInfo.get(k);
+            if (info[0] != side) continue;
+            int[] cells = layers.get(k);
+            int[] pat   = stampOf(t.getCombatSpec(), info[1], r);
+            int   w     = 2 * r + 1;
+            for (int dx = -r; dx <= r; dx++) {
+                int x = cx + dx;
+                if (x < 0 || x >= grid) continue;
+                int row = (dx + r) * w + r;
+                for (int dy = -r; dy <= r; dy++) {
+                    int y = cy + dy;
+                    if (y < 0 || y >= grid) continue;
+                    cells[x * grid + y] += sign * pat[row + dy];
+                }
+            }
+        }
+        restamped++;
+    }
+
+    /** 陣営 side・防御側の諸元 spec の地図（なければ作り、地図に載っている攻撃側を全部足す） */
+    private int layer(int side, int spec) {
+        if (spec >= layerOf[side].length) {
+            int old = layerOf[side].length;
+            layerOf[side] = Arrays.copyOf(layerOf[side], spec + 1);
+            Arrays.fill(layerOf[side], old, spec + 1, -1);
+        }
+        if (layerOf[side][spec] >= 0) return layerOf[side][spec];
+
+        int k = layers.size();
+        layers.add(new int[grid * grid]);
+        layerInfo.add(new int[] { side, spec });
+        layerOf[side][spec] = k;
+
+        int[] cells = layers.get(k);
+        for (int i = 0, n = slots.count(); i < n; i++) {
+            int s = slots.slotAt(i);
+            if (!stamped[s] || tanks[s].getJinei() == side) continue;
+            Tank  t   = tanks[s];
+            int   r   = t.getRange();
+            int[] pat = stampOf(t.getCombatSpec(), spec, r);
+            for (int dx = -r; dx <= r; dx++) {
+                for (int dy = -r; dy <= r; dy++) {
+                    int x = stampX[s] + dx, y = stampY[s] + dy;
+                    if (x < 0 || x >= grid || y < 0 || y >= grid) continue;
+                    cells[x * grid + y] += pat[(dx + r) * (2 * r + 1) + dy + r];
+                }
+            }
+        }
+        return k;
+    }
+
+    /** 攻撃側・防御側の諸元の組の型紙（初めての組なら CombatTable の値から作る） */
+    private int[] stampOf(int attacker, int defender, int range) {
+        int n = Math.max(attacker, defender) + 1;
+        if (n > stamps.length) {
+            int[][][] grown = new int[n][][];
+            for (int i = 0; i < stamps.length; i++) grown[i] = Arrays.copyOf(stamps[i], n);
+            for (int i = stamps.length; i < n; i++) grown[i] = new int[n][];
+            stamps = grown;
+        }
+        if (stamps[attacker].length < n) stamps[attacker] = Arrays.copyOf(stamps[attacker], n);
+        if (stamps[attacker][defender] != null) return stamps[attacker][defender];
+
+        CombatTable table = CombatTable.of(attacker, defender);
+        int   w   = 2 * range + 1;
+        int[] pat = new int[w * w];
+        for (int dx = -range; dx <= range; dx++) {
+            for (int dy = -range; dy <= range; dy++) {
+                int d2 = dx * dx + dy * dy;
+                pat[(dx + range) * w + dy + range] = (int) Math.round(table.hitRate(d2) * table.normalDamage(d2) * SCALE);
+            }
+        }
+        stamps[attacker][defender] = pat;
+        return pat;
+    }
+
+    // ======================================================================
+    // 問い合わせ
+    // ======================================================================
+
+    /**
+     * defender（の陣営・諸元の戦車）がマス (x, y) で、相手の生存戦車全員から1発ずつ撃たれた場合の期待ダメージ。
+     * 盤外は 0。
+     */
+    public double incoming(Tank defender, int x, int y) {
+        if (x < 0 || y < 0 || x >= grid || y >= grid) return 0;
+        int side = defender.getJinei(), spec = defender.getCombatSpec();
+        if (spec >= layerOf[side].length || layerOf[side][spec] < 0) return 0;
+        return (double) layers.get(layerOf[side][spec])[x * grid + y] / SCALE;
+    }
+
+    /**
+     * teki から離れる移動のうち、着いたマスの火力が最も弱い方向（0〜11。なければ -1）。
+     * 離れる距離が最大の方向の半分以上離れる方向だけを候補にする。
+     *
+     * @param mover   動かすもの（実際の戦車か試算用の写し）
+     * @param spec    mover の諸元・陣営（速度・防御力）
+     */
+    public int escapeDirection(Movable mover, Tank spec, Tank teki, int maxGrid) {
+        return choose(mover, spec, teki.getX(), teki.getY(), maxGrid, +1);
+    }
+
+    /**
+     * (x, y) に近づく移動のうち、着いたマスの火力が最も弱い方向（0〜11。なければ -1）。
+     * 近づく距離が最大の方向の半分以上近づく方向だけを候補にする。
+     */
+    public int approachDirection(Movable mover, Tank spec, double x, double y, int maxGrid) {
+        return choose(mover, spec, x, y, maxGrid, -1);
+    }
+
+    /** 方向 dir に進むときの目標点（Tank.move に渡す。盤内に収めてある） */
+    public double targetX(Movable mover, int dir, int maxGrid) {
+        return clamp(Math.rint(mover.getX() + Math.sin(Math.toRadians(dir * 30.0)) * REACH), 0, maxGrid - 1);
+    }
+
+    public double targetY(Movable mover, int dir, int maxGrid) {
+        return clamp(Math.rint(mover.getY() - Math.cos(Math.toRadians(dir * 30.0)) * REACH), 0, maxGrid - 1);
+    }
+
+    /** sign = +1 なら (px, py) から離れる、-1 なら近づく方向を選ぶ */
+    private int choose(Movable mover, Tank spec, double px, double py, int maxGrid, int sign) {
+        int    steps = (int) (spec.getSpeed() * spec.getMovCost());
+        double x0 = mover.getX(), y0 = mover.getY();
+        double d0 = Math.hypot(px - x0, py - y0);
+
+        // 各方向の着くマスと、距離の変化（sign の向きに正）
+        double bestGain = 0;
+        int    landX0 = 0, landY0 = 0;
+        double[] gain = gainBuf;
+        int[]    land = landBuf;
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            double tx = targetX(mover, dir, maxGrid), ty = targetY(mover, dir, maxGrid);
+            gain[dir] = Double.NaN;
+            if (tx == x0 && ty == y0) continue;
+            double cx = x0, cy = y0;
+            for (int i = 0; i < steps; i++) {                 // Tank.move と同じ規則
+                if (Math.abs(tx - cx) >= Math.abs(ty - cy)) {
+                    cx += (tx - cx >= 0) ? 1 : -1;
+                } else {
+                    cy += (ty - cy >= 0) ? 1 : -1;
+                }
+            }
+            if (cx < 0 || cy < 0 || cx > maxGrid - 1 || cy > maxGrid - 1) continue;
+            gain[dir] = sign * (Math.hypot(px - cx, py - cy) - d0);
+            land[dir * 2]     = (int) cx;
+            land[dir * 2 + 1] = (int) cy;
+            bestGain = Math.max(bestGain, gain[dir]);
+        }
+        if (bestGain <= 0) return -1;
+
+        int    best     = -1;
+        double bestFire = Double.MAX_VALUE;
+        for (int dir = 0; dir < DIRECTIONS; dir++) {
+            if (!(gain[dir] >= bestGain / 2)) continue;
+            double fire = incoming(spec, land[dir * 2], land[dir * 2 + 1]);
+            if (fire < bestFire || (fire == bestFire && gain[dir] > gain[best])) {
+                bestFire = fire;
+                best     = dir;
+            }
+        }
+        return best;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 戦車を乱数で動かし・破壊しながら、差分で書き換えた地図が
+    // 毎回作り直した地図と、CombatTable から直接足した値に一致することを確かめる
+    // （getSerial() の下位ビットが A1 と同じ戦車を B 側に入れ、番号がぶつかる場合も調べる）
+
+    public static void main(String[] args) {
+        int  steps = (args.length >= 1) ? Integer.parseInt(args[0]) : 200000;
+        int  grid  = BattleSimulator.GRID_SIZE;
+        Random rnd = new Random(7);
+
+        List<Tank> sideA = new ArrayList<>(), sideB = new ArrayList<>();
+        sideA.add(new MediumTank("A1", 0, 2, 2));
+        sideA.add(new HeavyTank ("A2", 0, 4, 3));
+        sideB.add(new LightTank ("B1", 1, 20, 20));
+        sideB.add(new MediumTank("B2", 1, 18, 21));
+        sideB.add(new HeavyTank ("B3", 1, 21, 17));
+        Tank twin;
+        do {
+            twin = new LightTank("B4", 1, 6, 6);
+        } while (TankSlots.home(twin) != TankSlots.home(sideA.get(0)));
+        sideB.add(twin);
+
+        InfluenceMap incremental = new InfluenceMap(grid);
+        int  mismatches = 0;
+        long t0 = System.nanoTime(), rebuildNanos = 0;
+        for (int step = 0; step < steps; step++) {
+            List<Tank> side = rnd.nextBoolean() ? sideA : sideB;
+            Tank t = side.get(rnd.nextInt(side.size()));
+            if (rnd.nextInt(200) == 0) {
+                t.takeDamage(t.getHp() * 10, t.getX(), t.getY() - 1);    // 破壊
+            } else if (rnd.nextInt(400) == 0) {
+                t.reset(rnd.nextInt(grid - 1), rnd.nextInt(grid - 1), 0);  // 次の試合で復活
+            } else if (t.isAlive()) {
+                t.resetAct();
+                t.move(rnd.nextInt(grid - 1), rnd.nextInt(grid - 1));
+            }
+            incremental.sync(sideA, sideB);
+
+            if (step % 100 == 0) {
+                long r0 = System.nanoTime();
+                InfluenceMap rebuilt = new InfluenceMap(grid);
+                rebuilt.sync(sideA, sideB);
+                for (List<Tank> list : List.of(sideA, sideB)) {
+                    for (Tank d : list) {
+                        for (int x = 0; x < grid; x++) for (int y = 0; y < grid; y++) {
+                            double v = incremental.incoming(d, x, y);
+                            if (v != rebuilt.incoming(d, x, y) || v != direct(d, x, y, sideA, sideB)) mismatches++;
+                        }
+                    }
+                }
+                rebuildNanos += System.nanoTime() - r0;
+            }
+        }
+        long elapsed = System.nanoTime() - t0 - rebuildNanos;
+        System.out.printf("差分更新と作り直しの比較: %d回の移動で 不一致 %d  型紙の足し引き %d回  %.2f µs/移動%n",
+                          steps, mismatches, incremental.restamped, elapsed / 1e3 / steps);
+
+        // 番号がぶつかる2両が両方とも地図に載っていること
+        Tank a1 = sideA.get(0), b1 = sideB.get(0);
+        a1.reset(3, 3, 0);
+        twin.reset(10, 10, 0);
+        incremental.sync(sideA, sideB);
+        boolean both = incremental.incoming(b1, 3, 3) > 0 && incremental.incoming(a1, 10, 10) > 0
+                    && incremental.slots.find(a1) != incremental.slots.find(twin);
+        System.out.printf("下位ビットが同じ戦車: 番号 %d / %d  火力 %.2f / %.2f %s%n",
+                          incremental.slots.find(a1), incremental.slots.find(twin),
+                          incremental.incoming(b1, 3, 3), incremental.incoming(a1, 10, 10), both ? "OK" : "NG");
+        if (mismatches > 0 || !both) System.exit(1);
+    }
+
+    /** 相手の生存戦車全員の期待ダメージを CombatTable から直接足した値（動作確認用） */
+    private static double direct(Tank defender, int x, int y, List<Tank> a, List<Tank> b) {
+        long sum = 0;
+        for (List<Tank> list : List.of(a, b)) {
+            for (Tank t : list) {
+                if (!t.isAlive() || t.getJinei() == defender.getJinei()) continue;
+                int dx = x - (int) t.getX(), dy = y - (int) t.getY(), r = t.getRange();
+                if (Math.abs(dx) > r || Math.abs(dy) > r) continue;
+                CombatTable table = CombatTable.of(t.getCombatSpec(), defender.getCombatSpec());
+                int d2 = dx * dx + dy * dy;
+                sum += Math.round(table.hitRate(d2) * table.normalDamage(d2) * SCALE);
+            }
+        }
+        return (double) sum / SCALE;
+    }
+}
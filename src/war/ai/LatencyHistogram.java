@@ -0,0 +1,193 @@
+package war.ai;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * LatencyHistogram - 処理時間（ナノ秒）の対数バケットヒストグラム
+ *
+ * 2のべき乗ごとの区間をさらに8分割したバケットに数える（相対誤差 12.5% 以内）。
+ * バケット数は固定（約500個）なので、何件記録してもメモリは増えない。
+ * 複数スレッドから同時に record() してよい。
+ * 記録はスレッドIDのハッシュで選んだ区画（Stripe）に書き、読むとき（count・percentile・summary）に
+ * 全区画を合計する（LongAdder と同じ考え方）。区画の数はコア数から決めた固定値で、
+ * スレッドが入れ替わっても増えない。並列バッチの全ワーカーが1つのヒストグラムを共有しても、
+ * 同じ区画に当たったスレッドどうし以外は同じキャッシュラインを奪い合わない。
+ *
+ * 使い方:
+ *   long t0 = System.nanoTime();
+ *   ...計測対象...
+ *   hist.record(System.nanoTime() - t0);
+ *   System.out.println(hist.summary());     // n, p50, p99, p999, max
+ */
+public class LatencyHistogram {
+
+    /** 1オクターブ（2倍の区間）あたりのバケット数 = 2^SUB_BITS */
+    private static final int SUB_BITS  = 3;
+    private static final int SUB_COUNT = 1 << SUB_BITS;
+
+    /** 0 〜 2^63 ナノ秒を覆うバケット数 */
+    private static final int BUCKETS = (64 - SUB_BITS + 1) * SUB_COUNT;
+
+    /** 区画の数（コア数以上の2のべき乗。64まで） */
+    private static final int STRIPES =
+        Math.min(64, Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1)) << 1);
+
+    /** 1区画の記録（同じ区画に複数のスレッドが当たることがあるので、足すのは原子的に行う） */
+    private static final class Stripe {
+        final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        final AtomicLong      total  = new AtomicLong();
+        final AtomicLong      max    = new AtomicLong();
+    }
+
+    /** 区画（初めて当たったときに作る。null は未使用） */
+    private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(STRIPES);
+
+    // ======================================================================
+    // 記録
+    // ======================================================================
+
+    /** 1件記録する（負の値は0として扱う） */
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        Stripe stripe = stripe();
+        stripe.counts.getAndIncrement(bucketOf(nanos));
+        stripe.total.getAndIncrement();
+        long m = stripe.max.get();
+        while (nanos > m && !stripe.max.compareAndSet(m, nanos)) m = stripe.max.get();
+    }
+
+    /** 呼び出し元のスレッドの区画（スレッドIDをかき混ぜて選ぶ） */
+    private Stripe stripe() {
+        long id = Thread.currentThread().threadId();
+        int  k  = (int) ((id * 0x9E3779B97F4A7C15L) >>> 58) & (STRIPES - 1);
+        Stripe stripe = stripes.get(k);
+        if (stripe == null) {
+            stripes.compareAndSet(k, null, new Stripe());
+            stripe = stripes.get(k);
+        }
+        return stripe;
+    }
+
+    /** 全件を消去する（記録中のスレッドがあると、その記録は残ることがある） */
+    public void reset() {
+        for (int k = 0; k < STRIPES; k++) {
+            Stripe stripe = stripes.get(k);
+            if (stripe == null) continue;
+            for (int i = 0; i < BUCKETS; i++) stripe.counts.set(i, 0);
+            stripe.total.set(0);
+            stripe.max.set(0);
+        }
+    }
+
+    /** 値 → バケット番号（SUB_COUNT 未満はそのまま、以上は指数と上位 SUB_BITS ビットで決める） */
+    static int bucketOf(long v) {
+        if (v < SUB_COUNT) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);                 // v の最上位ビット位置
+        int sub = (int) (v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);  // 次の SUB_BITS ビット
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** バケットに入る最大の値 */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        int sub = bucket % SUB_COUNT;
+        long lower = (1L << exp) | ((long) sub << (exp - SUB_BITS));
+        return lower + (1L << (exp - SUB_BITS)) - 1;
+    }
+
+    // ======================================================================
+    // 集計
+    // ======================================================================
+
+    /** 記録件数 */
+    public long count() {
+        long n = 0;
+        for (int k = 0; k < STRIPES; k++) {
+            Stripe stripe = stripes.get(k);
+            if (stripe != null) n += stripe.total.get();
+        }
+        return n;
+    }
+
+    /** 最大値（ナノ秒） */
+    public long max() {
+        long m = 0;
+        for (int k = 0; k < STRIPES; k++) {
+            Stripe stripe = stripes.get(k);
+            if (stripe != null) m = Math.max(m, stripe.max.get());
+        }
+        return m;
+    }
+
+    /**
+     * 指定分位点の値（ナノ秒）。該当バケットの上限を返す（最大値を超えない）。
+     *
+     * @param q 分位（0.5 = 中央値, 0.99 = 99パーセンタイル）
+     */
+    public long percentile(double q) {
+        long n = 0;
+        long[] snapshot = new long[BUCKETS];
+        for (int k = 0; k < STRIPES; k++) {
+            Stripe stripe = stripes.get(k);
+            if (stripe == null) continue;
+            for (int i = 0; i < BUCKETS; i++) snapshot[i] += stripe.counts.get(i);
+        }
+        for (int i = 0; i < BUCKETS; i++) n += snapshot[i];
+        if (n == 0) return 0;
+
+        long rank = (long) Math.ceil(q * n);
+        if (rank < 1) rank = 1;
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) return Math.min(bucketUpperBound(i), max());
+        }
+        return max();
+    }
+
+    /** 「n=… p50=… p99=… p999=… max=…」（マイクロ秒） */
+    public String summary() {
+        return String.format("n=%d p50=%.1fµs p99=%.1fµs p999=%.1fµs max=%.1fµs",
+            count(), percentile(0.5) / 1e3, percentile(0.99) / 1e3,
+            percentile(0.999) / 1e3, max() / 1e3);
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+
+    public static void main(String[] args) throws InterruptedException {
+        // バケット境界の確認: 値が自分のバケットの上限以下・前のバケットの上限より大きいこと
+        for (long v = 0; v < 1_000_000; v++) {
+            int b = bucketOf(v);
+            if (v > bucketUpperBound(b) || (b > 0 && v <= bucketUpperBound(b - 1))) {
+                throw new AssertionError("バケット境界の誤り: v=" + v + " bucket=" + b);
+            }
+        }
+
+        // 既知の分布で分位点を確認（1〜100000ns の一様分布 → p50 ≒ 50µs, p99 ≒ 99µs）
+        LatencyHistogram h = new LatencyHistogram();
+        for (long v = 1; v <= 100_000; v++) h.record(v);
+        System.out.println(h.summary());
+
+        // 複数スレッドからの記録がすべて合計されること（区画を読むときに足す。
+        // 区画の数より多いスレッドで、同じ区画に当たった記録も失われないこと）
+        LatencyHistogram shared = new LatencyHistogram();
+        Thread[] threads = new Thread[STRIPES * 2 + 1];
+        for (int t = 0; t < threads.length; t++) {
+            final long offset = t * 1_000L;
+            threads[t] = new Thread(() -> {
+                for (long v = 1; v <= 100_000; v++) shared.record(v + offset);
+            });
+            threads[t].start();
+        }
+        for (Thread t : threads) t.join();
+        long    expectMax = 100_000 + (threads.length - 1) * 1_000L;
+        boolean ok = shared.count() == 100_000L * threads.length && shared.max() == expectMax;
+        System.out.println(threads.length + "スレッド（区画 " + STRIPES + "）: " + shared.summary() + (ok ? " OK" : " NG"));
+        if (!ok) System.exit(1);
+    }
+}
@@ -0,0 +1,108 @@
+package war.ai;
+
+import war.tank.Movable;
+import war.tank.Tank;
+
+/**
+ * Maneuver - 前進（APR）・退避（ESC）の動き方
+ *
+ * EnemyAI3 の progOne / escapeOne と同じ動き。RolloutPlanner・ExpectimaxAI も同じ動き方で
+ * 行動するよう、ここにまとめて EnemyAI3 からも呼ぶ（ArrayBattleEngine には同じ式の配列版がある）。
+ * Movable を受け取るので、実際の戦車にも試算用の TankSnapshot にも使える。
+ * progVia / escapeVia は InfluenceMap（相手の火力の地図）で向かうマスを選ぶ版。
+ */
+public final class Maneuver {
+
+    private Maneuver() {}
+
+    /**
+     * 目標方向を向いて前進する（1マス以内なら向くだけ）。
+     *
+     * @param maxGrid グリッドサイズ - 1（移動先は 0 〜 maxGrid - 1 に収める）
+     */
+    public static void progOne(Movable tank, double x, double y, int maxGrid) {
+        double nx = clamp(x, 0, maxGrid - 1);
+        double ny = clamp(y, 0, maxGrid - 1);
+
+        // 方向転換 角度は12時が0度とする0～360度で表現することとXY座標は下方向がY+なので、式が以下のようになる
+        double curAngle = tank.getAngle();
+        double tarAngle = (int)(((450 - Math.toDegrees(Math.atan2(-y + tank.getY(),x - tank.getX()))) % 360 + 15)/30) * 30.0;
+
+        tank.rotate(tarAngle - curAngle);
+
+        // 行動力が残っていて　敵との距離が1マス以上ある場合
+        if (tank.activity() > 0 && Math.abs(x - tank.getX()) + Math.abs(y - tank.getY()) > 1.1) {
+            tank.move(nx, ny);
+        }
+    }
+
+    /**
+     * 敵に正面を向けたまま、敵と逆方向へ後退する。
+     *
+     * @param maxGrid グリッドサイズ - 1
+     */
+    public static void escapeOne(Movable tank, Tank teki, int maxGrid) {
+        if (tank.activity() <= 0) return;
+
+        // 退避方向は敵とは逆方向
+        double escWayX = tank.getX() - teki.getX();
+        double escWayY = tank.getY() - teki.getY();
+        double nx = clamp(escWayX + tank.getX(), 0, maxGrid - 1);
+        double ny = clamp(escWayY + tank.getY(), 0, maxGrid - 1);
+
+        // 敵に正面を向ける = 退避方向とは逆方向なので、180度加算する
+        double curAngle = tank.getAngle();
+        double tarAngle = (int)(((450 - Math.toDegrees(Math.atan2( - escWayY, escWayX)) + 180 ) % 360 + 15)/30) * 30.0;
+
+        tank.rotate(tarAngle - curAngle);
+        if (tank.activity() > 0) tank.move(nx, ny);
+    }
+
+    /**
+     * progOne の地図版: (x, y) に近づく方向のうち、着くマスの火力が最も弱い方向を向いて前進する
+     * （近づける方向がない・1マス以内なら progOne と同じ）。
+     *
+     * @param spec tank の諸元・陣営（tank が試算用の写しの場合は写し元の戦車）
+     */
+    public static void progVia(Movable tank, InfluenceMap map, Tank spec, double x, double y, int maxGrid) {
+        int dir = (Math.abs(x - tank.getX()) + Math.abs(y - tank.getY()) > 1.1)
+                ? map.approachDirection(tank, spec, x, y, maxGrid) : -1;
+        if (dir < 0) {
+            progOne(tank, x, y, maxGrid);
+            return;
+        }
+        progOne(tank, map.targetX(tank, dir, maxGrid), map.targetY(tank, dir, maxGrid), maxGrid);
+    }
+
+    /**
+     * escapeOne の地図版: 敵に正面を向けたまま、敵から離れる方向のうち着くマスの火力が最も弱い方向へ後退する
+     * （離れられる方向がなければ escapeOne と同じ）。
+     */
+    public static void escapeVia(Movable tank, InfluenceMap map, Tank spec, Tank teki, int maxGrid) {
+        if (tank.activity() <= 0) return;
+        int dir = map.escapeDirection(tank, spec, teki, maxGrid);
+        if (dir < 0) {
+            escapeOne(tank, teki, maxGrid);
+            return;
+        }
+        double tx = map.targetX(tank, dir, maxGrid), ty = map.targetY(tank, dir, maxGrid);
+        face(tank, teki);
+        if (tank.activity() > 0) tank.move(tx, ty);
+    }
+
+    /**
+     * 移動せずに target の方を向く（progOne の向きの求め方と同じ）。
+     */
+    public static void face(Movable tank, Tank target) {
+        tank.rotate(faceAngle(tank, target) - tank.getAngle());
+    }
+
+    /** tank から見た target の方向（30度単位に丸めた角度） */
+    public static double faceAngle(Movable tank, Tank target) {
+        return (int)(((450 - Math.toDegrees(Math.atan2(-target.getY() + tank.getY(), target.getX() - tank.getX()))) % 360 + 15)/30) * 30.0;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
@@ -0,0 +1,645 @@
+package war.ai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import war.main.ArrayBattleEngine;
+import war.main.BattleSimulator;
+import war.tank.Tank;
+
+/**
+ * MctsAI - モンテカルロ木探索で行動パターンを選ぶ敵側AI（EnemyAI3 の比較用の強い相手）
+ *
+ * 木の節は「self の手番の盤面」、枝は行動パターン（Plan）。1回の反復は
+ *
+ *   選択   : 盤面を戻し、節ごとに UCB1 で Plan を選んで ArrayBattleEngine.advance で進める
+ *            （他の戦車はフローチャートのAI、命中・ダメージは反復ごとに違う乱数）
+ *   展開   : 置換表にない盤面に着いたら登録する
+ *   プレイアウト: そこから全戦車フローチャートのAIで horizon ターン目まで進めて評価する
+ *   逆伝播 : 通った節の Plan ごとの回数・評価値の合計に足す
+ *
+ * 節は置換表（TranspositionTable）に盤面のハッシュで引いて持つので、乱数の結果が違っても
+ * 同じ盤面に着けば同じ節になる。ハッシュは全戦車の
+ *   位置（マス）・向き（30度単位）・HP（16段階と撃破）・弾薬（9段階）・行動力
+ * の Zobrist ハッシュ（要素ごとの乱数の XOR）。置換表の大きさは固定で、2つずつの組に入れ、
+ * 空きがなければ前の判断の節 → 訪問回数の少ない節 の順に置き換える。
+ * 判断をまたいで置換表を使い回す（次の手番で同じ盤面に着けばそれまでの統計が残っている）。
+ *
+ *   - 根の並列化: parallelism 個のワーカーがそれぞれエンジンと置換表を持って独立に探索し、
+ *     根の Plan ごとの訪問回数を足して最も多い Plan を実行する
+ *   - 乱数シードは盤面から決めるので、予算で打ち切らなければ同じ試合は同じ行動になる
+ *   - 判断ごとの節の数・プレイアウト数を lastNodeCount / lastPlayoutCount で参照できる
+ *
+ * 先読みの試合はプレイヤー側を PlayerAI（pAiConfig）として進める（RolloutPlanner と同じ）。
+ * スレッドセーフではない（シミュレーター・ゲームごとにインスタンスを作る）。
+ * parallelism が2以上なら、使い終わったら close でワーカーのスレッドを止める。
+ */
+public class MctsAI implements EnemyController {
+
+    // ======================================================================
+    // 定数（デフォルト値）
+    // ======================================================================
+
+    /** 1回の判断の反復回数（全ワーカーの合計） */
+    public static final int  DEFAULT_ITERATIONS = 256;
+
+    /** 先読みするターン数（木の中とプレイアウトの合計） */
+    public static final int  DEFAULT_HORIZON = 8;
+
+    /** 1回の判断の時間予算（ナノ秒） */
+    public static final long DEFAULT_BUDGET_NANOS = 20_000_000L;
+
+    /** 置換表の大きさ（ワーカーごと。2のべき乗） */
+    public static final int  DEFAULT_TABLE_SIZE = 1 << 14;
+
+    /** UCB1 の探索の強さ（評価値は -1〜1） */
+    private static final double EXPLORATION = 1.0;
+
+    private static final Plan[] PLANS = Plan.values();
+    private static final int    NPLAN = PLANS.length;
+
+    // ======================================================================
+    // 設定
+    // ======================================================================
+
+    private final int      maxGrid;
+    private final AIConfig config;
+    private final int      iterations;
+    private final int      horizon;
+    private final long     budgetNanos;
+    private final int      parallelism;
+    private final int      tableSize;
+
+    private DecisionMetrics  metrics = DecisionMetrics.GLOBAL;
+    private LatencyHistogram latency;
+
+    // ======================================================================
+    // 探索の作業領域（登場する戦車が変わったときだけ作り直す）
+    // ======================================================================
+
+    /** エンジンのスロット順の戦車（陣営0の戦車が先） */
+    private final List<Tank> lineup = new ArrayList<>();
+
+    private Worker[] workers = new Worker[0];
+
+    /** parallelism が2以上のときだけ作る */
+    private ForkJoinPool pool;
+
+    /** 判断の通し番号（置換表の世代） */
+    private int generation;
+
+    // ======================================================================
+    // 集計（動作確認用）
+    // ======================================================================
+
+    private int  lastNodes, lastPlayouts;
+    private long decisions, totalNodes, totalPlayouts, maxNodes, maxPlayouts, totalReplaced;
+    private final long[] chosen = new long[NPLAN];
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * 1ワーカー（呼び出し元のスレッド）で探索する。並列バッチではワーカーごとに
+     * インスタンスができるので、根の並列化は使う側で parallelism を指定したときだけにする。
+     *
+     * @param maxGrid グリッドサイズ - 1（EnemyAI3 と同じ）
+     * @param config  先読みの試合で敵側のフローチャートに使うパラメータ
+     */
+    public MctsAI(int maxGrid, AIConfig config) {
+        this(maxGrid, config, DEFAULT_ITERATIONS, DEFAULT_HORIZON, DEFAULT_BUDGET_NANOS,
+             1, DEFAULT_TABLE_SIZE);
+    }
+
+    /**
+     * @param maxGrid     グリッドサイズ - 1
+     * @param config      先読みの試合で敵側のフローチャートに使うパラメータ
+     * @param iterations  1回の判断の反復回数（全ワーカーの合計。1以上）
+     * @param horizon     先読みするターン数（1以上）
+     * @param budgetNanos 1回の判断の時間予算（0 以下なら制限なし）
+     * @param parallelism 独立に探索するワーカー数（1なら呼び出し元のスレッドで探索する）
+     * @param tableSize   ワーカーごとの置換表の節の数（2のべき乗に切り上げる）
+     */
+    public MctsAI(int maxGrid, AIConfig config, int iterations, int horizon,
+                  long budgetNanos, int parallelism, int tableSize) {
+        this.maxGrid     = maxGrid;
+        this.config      = config;
+        this.iterations  = Math.max(1, iterations);
+        this.horizon     = Math.max(1, horizon);
+        this.budgetNanos = budgetNanos;
+        this.parallelism = Math.max(1, parallelism);
+        this.tableSize   = Integer.highestOneBit(Math.max(2, tableSize - 1)) << 1;
+        this.latency     = metrics.controllerHistogram(name());
+    }
+
+    private String name() {
+        return "MctsAI";
+    }
+
+    /** ワーカーのスレッドを止める（作っていなければ何もしない） */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    // ======================================================================
+    // EnemyController
+    // ======================================================================
+
+    @Override
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        this.metrics = metrics;
+        this.latency = metrics.controllerHistogram(name());
+    }
+
+    @Override
+    public int takeTurn(Tank self, List<Tank> targets, List<Tank> friends) {
+        long startNanos = System.nanoTime();
+        if (!self.isAlive()) return 0;
+        Tank target = selectTarget(self, targets);
+        if (target == null) return 0;
+
+        sync(targets, friends);
+
+        Plan best = search(self, target, startNanos);
+        best.execute(self, target, maxGrid);
+        chosen[best.ordinal()]++;
+
+        latency.record(System.nanoTime() - startNanos);
+        return 0;
+    }
+
+    // ======================================================================
+    // 集計の参照
+    // ======================================================================
+
+    /** 直前の判断で置換表に登録した節の数（全ワーカーの合計） */
+    public int lastNodeCount() {
+        return lastNodes;
+    }
+
+    /** 直前の判断のプレイアウト数（全ワーカーの合計） */
+    public int lastPlayoutCount() {
+        return lastPlayouts;
+    }
+
+    /** パターンごとの選択回数 */
+    public long chosenCount(Plan plan) {
+        return chosen[plan.ordinal()];
+    }
+
+    /** 判断あたりの節・プレイアウト数と、置き換えた節の数 */
+    public String searchReport() {
+        long n = Math.max(1, decisions);
+        return String.format("判断 %d回  節 平均 %.1f 最大 %d  プレイアウト 平均 %.1f 最大 %d  置換 %d",
+                             decisions, (double) totalNodes / n, maxNodes,
+                             (double) totalPlayouts / n, maxPlayouts, totalReplaced);
+    }
+
+    // ======================================================================
+    // 探索
+    // ======================================================================
+
+    private Plan search(Tank self, Tank target, long startNanos) {
+        int  selfSlot   = lineup.indexOf(self);
+        int  targetSlot = lineup.indexOf(target);
+        long seed       = boardSeed(selfSlot);
+        long deadline   = (budgetNanos > 0) ? startNanos + budgetNanos : Long.MAX_VALUE;
+        generation++;
+
+        for (Worker w : workers) w.prepare(selfSlot, targetSlot, seed, deadline);
+        if (workers.length == 1) {
+            workers[0].call();
+        } else {
+            pool.invokeAll(List.of(workers));
+        }
+
+        // 根の訪問回数を足す（同数なら評価値の合計が大きい方、それも同じなら Plan の順で先の方）
+        Plan   best       = PLANS[0];
+        long   bestVisits = -1;
+        double bestValue  = -Double.MAX_VALUE;
+        for (int p = 0; p < NPLAN; p++) {
+            long   visits = 0;
+            double value  = 0;
+            for (Worker w : workers) {
+                visits += w.rootVisits[p];
+                value  += w.rootValue[p];
+            }
+            if (visits > bestVisits || (visits == bestVisits && value > bestValue)) {
+                bestVisits = visits;
+                bestValue  = value;
+                best       = PLANS[p];
+            }
+        }
+
+        int nodes = 0, playouts = 0;
+        for (Worker w : workers) {
+            nodes         += w.nodes;
+            playouts      += w.playouts;
+            totalReplaced += w.replaced;
+        }
+        lastNodes     = nodes;
+        lastPlayouts  = playouts;
+        decisions++;
+        totalNodes    += nodes;
+        totalPlayouts += playouts;
+        maxNodes       = Math.max(maxNodes, nodes);
+        maxPlayouts    = Math.max(maxPlayouts, playouts);
+        return best;
+    }
+
+    /** 盤面（全戦車の HP・位置・向き）と行動する戦車から乱数シードを決める（RolloutPlanner と同じ） */
+    private long boardSeed(int selfSlot) {
+        long h = 0x9E3779B97F4A7C15L * (selfSlot + 1);
+        for (int s = 0; s < lineup.size(); s++) {
+            Tank t = lineup.get(s);
+            h = h * 31 + (t.isAlive() ? t.getHp() : 0);
+            h = h * 31 + (long) t.getX();
+            h = h * 31 + (long) t.getY();
+            h = h * 31 + (long) t.getAngle();
+        }
+        return h;
+    }
+
+    /** EnemyAI3.selectTarget と同じ（HP割合×5 + 距離 が最小の相手） */
+    private Tank selectTarget(Tank self, List<Tank> targets) {
+        Tank   best      = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            Tank t = targets.get(i);
+            if (!t.isAlive()) continue;
+            double score = (double) t.getHp() / t.getMaxHp() * 5.0 + PairGeometry.calcDistance(self, t);
+            if (score < bestScore) {
+                bestScore = score;
+                best      = t;
+            }
+        }
+        return best;
+    }
+
+    // ======================================================================
+    // エンジン・置換表の準備
+    // ======================================================================
+
+    /** 知らない戦車が登場したら、スロット順を決め直してエンジンと置換表を作り直す */
+    private void sync(List<Tank> targets, List<Tank> friends) {
+        if (!known(targets) || !known(friends)) {
+            lineup.clear();
+            boolean targetsFirst = !targets.isEmpty() && targets.get(0).getJinei() == 0;
+            lineup.addAll(targetsFirst ? targets : friends);
+            lineup.addAll(targetsFirst ? friends : targets);
+
+            // PlayerAI(GRID_SIZE - 1) は内部で EnemyAI3(GRID_SIZE - 2) を使う
+            Zobrist zobrist = new Zobrist(lineup.size(), maxGrid + 1);
+            workers = new Worker[parallelism];
+            for (int w = 0; w < parallelism; w++) {
+                workers[w] = new Worker(w, new ArrayBattleEngine(lineup, new pAiConfig(), maxGrid - 1,
+                                                              config, maxGrid, 0L),
+                                        zobrist, new TranspositionTable(tableSize));
+            }
+            if (parallelism > 1 && pool == null) pool = new ForkJoinPool(parallelism);
+        }
+        for (Worker w : workers) w.engine.load(lineup);
+    }
+
+    private boolean known(List<Tank> list) {
+        for (int i = 0; i < list.size(); i++) {
+            if (!lineup.contains(list.get(i))) return false;
+        }
+        return true;
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 同じシードで、敵側を EnemyAI3 にした場合と比べる。
+    // 予算なしで同じ試合を2回進め、同じ結果になることも確かめる
+
+    public static void main(String[] args) {
+        int  games    = (args.length >= 1) ? Integer.parseInt(args[0]) : 100;
+        long seed     = (args.length >= 2) ? Long.parseLong(args[1])   : 20260101L;
+        int  parallel = (args.length >= 3) ? Integer.parseInt(args[2])
+                                           : Runtime.getRuntime().availableProcessors();
+        AIConfig config = AIConfig.fromJson("./ai_config.json");
+        int maxGrid = BattleSimulator.GRID_SIZE - 1;
+
+        MctsAI[] ai = new MctsAI[1];
+        BattleSimulator flowchart = new BattleSimulator(config, seed);
+        BattleSimulator mcts      = new BattleSimulator(config, seed,
+            () -> ai[0] = new MctsAI(maxGrid, config, DEFAULT_ITERATIONS, DEFAULT_HORIZON, 0,
+                                     parallel, DEFAULT_TABLE_SIZE));
+        BattleSimulator again     = new BattleSimulator(config, seed,
+            () -> new MctsAI(maxGrid, config, DEFAULT_ITERATIONS, DEFAULT_HORIZON, 0,
+                             parallel, DEFAULT_TABLE_SIZE));
+        flowchart.setVerbose(false);
+        mcts.setVerbose(false);
+        again.setVerbose(false);
+
+        int  mismatches = 0;
+        long flowWins = 0, mctsWins = 0, flowNanos = 0, mctsNanos = 0;
+        for (int i = 1; i <= games; i++) {
+            long t0 = System.nanoTime();
+            BattleSimulator.BattleResult f = flowchart.runGame(i);
+            long t1 = System.nanoTime();
+            BattleSimulator.BattleResult m = mcts.runGame(i);
+            long t2 = System.nanoTime();
+            if (i <= 10 && !m.toCsvRow(i).equals(again.runGame(i).toCsvRow(i))) mismatches++;
+            flowNanos += t1 - t0;
+            mctsNanos += t2 - t1;
+            if (f.winner == 1) flowWins++;
+            if (m.winner == 1) mctsWins++;
+        }
+
+        System.out.printf("EnemyAI3: 敵勝率 %.4f  %8.1f 試合/秒%n",
+                          (double) flowWins / games, games / (flowNanos / 1e9));
+        System.out.printf("MctsAI  : 敵勝率 %.4f  %8.1f 試合/秒  判断 %s%n",
+                          (double) mctsWins / games, games / (mctsNanos / 1e9),
+                          mcts.getDecisionMetrics().controllerLatency("MctsAI").summary());
+        System.out.printf("探索（並列度 %d）: %s%n", parallel, ai[0].searchReport());
+        StringBuilder sb = new StringBuilder("選んだパターン:");
+        for (Plan p : PLANS) sb.append(' ').append(p.label).append('=').append(ai[0].chosenCount(p));
+        System.out.println(sb);
+        System.out.printf("再実行との比較: 10試合中 不一致 %d%n", mismatches);
+        mcts.close();
+        again.close();
+        if (mismatches > 0) System.exit(1);
+    }
+
+    // ======================================================================
+    // 内部クラス: Worker（1本の木を探索する）
+    // ======================================================================
+
+    private final class Worker implements Callable<Void> {
+        final int                index;
+        final ArrayBattleEngine  engine;
+        final Zobrist            zobrist;
+        final TranspositionTable table;
+
+        /** 根の Plan ごとの訪問回数・評価値の合計（根は置換表に置かないので置き換えられない） */
+        final int[]    rootVisits = new int[NPLAN];
+        final double[] rootValue  = new double[NPLAN];
+
+        /** この判断で登録した節・プレイアウト・置き換えた節の数 */
+        int nodes, playouts, replaced;
+
+        /** 反復で通った節（置換表の位置・キー・選んだ Plan） */
+        private final int[]  pathIndex;
+        private final long[] pathKey;
+        private final int[]  pathPlan;
+
+        private int  self, target;
+        private long seed, deadline;
+
+        Worker(int index, ArrayBattleEngine engine, Zobrist zobrist, TranspositionTable table) {
+            this.index     = index;
+            this.engine    = engine;
+            this.zobrist   = zobrist;
+            this.table     = table;
+            this.pathIndex = new int[horizon];
+            this.pathKey   = new long[horizon];
+            this.pathPlan  = new int[horizon];
+        }
+
+        void prepare(int self, int target, long seed, long deadline) {
+            this.self     = self;
+            this.target   = target;
+            this.seed     = seed;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Void call() {
+            Arrays.fill(rootVisits, 0);
+            Arrays.fill(rootValue, 0.0);
+            nodes = playouts = 0;
+            int replacedBefore = table.replaced;
+            table.generation = generation;
+
+            int ownSide = engine.side(self);
+            for (int k = index; k < iterations; k += parallelism) {
+                if (k > parallelism - 1 && System.nanoTime() > deadline) break;   // 1回目は必ず行う
+                engine.restore(seed + 0x9E3779B97F4A7C15L * k);
+
+                // --- 根 ---
+                int rootPlan  = selectRoot();
+                int endResult = engine.advance(self, target, PLANS[rootPlan]);
+                int depth     = 0;
+
+                // --- 選択・展開 ---
+                double value;
+                while (true) {
+                    if (endResult != -1 || engine.hp(self) <= 0 || engine.turns() >= horizon) {
+                        value = engine.evaluate(ownSide, endResult);
+                        break;
+                    }
+                    long key = zobrist.hash(engine);
+                    int  at  = table.find(key);
+                    if (at < 0) {
+                        table.insert(key);
+                        nodes++;
+                        value = engine.playout(self, horizon);
+                        playouts++;
+                        break;
+                    }
+                    int p = table.select(at);
+                    pathIndex[depth] = at;
+                    pathKey[depth]   = key;
+                    pathPlan[depth]  = p;
+                    depth++;
+                    endResult = engine.advance(self, engine.targetOf(self), PLANS[p]);
+                }
+
+                // --- 逆伝播（途中で置き換えられた節には足さない） ---
+                rootVisits[rootPlan]++;
+                rootValue[rootPlan] += value;
+                for (int d = 0; d < depth; d++) {
+                    table.update(pathIndex[d], pathKey[d], pathPlan[d], value);
+                }
+            }
+            replaced = table.replaced - replacedBefore;
+            return null;
+        }
+
+        /** 根の Plan を UCB1 で選ぶ */
+        private int selectRoot() {
+            int total = 0;
+            for (int p = 0; p < NPLAN; p++) total += rootVisits[p];
+            return ucb1(rootVisits, rootValue, 0, total);
+        }
+    }
+
+    /** UCB1 で Plan を選ぶ（未訪問の Plan があれば Plan の順で先のもの） */
+    private static int ucb1(int[] visits, double[] value, int offset, int total) {
+        double logTotal = Math.log(Math.max(1, total));
+        int    best     = 0;
+        double bestUcb  = -Double.MAX_VALUE;
+        for (int p = 0; p < NPLAN; p++) {
+            int n = visits[offset + p];
+            if (n == 0) return p;
+            double ucb = value[offset + p] / n + EXPLORATION * Math.sqrt(logTotal / n);
+            if (ucb > bestUcb) {
+                bestUcb = ucb;
+                best    = p;
+            }
+        }
+        return best;
+    }
+
+    // ======================================================================
+    // 内部クラス: Zobrist（盤面のハッシュ）
+    // ======================================================================
+
+    /**
+     * 戦車ごと・要素ごと・値ごとの乱数を XOR する。
+     * 値は 位置 0〜grid-1、向き 0〜11（30度単位）、HP 0〜15（16段階）と 16（撃破）、
+     * 弾薬 0〜8（9段階）、行動力 0〜8。範囲外の値は端に寄せる。
+     */
+    private static final class Zobrist {
+        private static final int HEADINGS = 12, HP_BUCKETS = 17, AMMO_BUCKETS = 9, ACTIVITY = 9;
+
+        private final int    grid;
+        private final long[] posX, posY, heading, hp, ammo, activity;
+
+        Zobrist(int slots, int grid) {
+            SplittableRandom random = new SplittableRandom(0x5EED_2026L);
+            this.grid = grid;
+            posX     = fill(random, slots * grid);
+            posY     = fill(random, slots * grid);
+            heading  = fill(random, slots * HEADINGS);
+            hp       = fill(random, slots * HP_BUCKETS);
+            ammo     = fill(random, slots * AMMO_BUCKETS);
+            activity = fill(random, slots * ACTIVITY);
+        }
+
+        private static long[] fill(SplittableRandom random, int length) {
+            long[] keys = new long[length];
+            for (int i = 0; i < length; i++) keys[i] = random.nextLong();
+            return keys;
+        }
+
+        long hash(ArrayBattleEngine engine) {
+            long h = 0;
+            for (int s = 0; s < engine.slotCount(); s++) {
+                int hpBucket;
+                if (engine.hp(s) <= 0) {
+                    hpBucket = HP_BUCKETS - 1;
+                } else {
+                    hpBucket = bound(engine.hp(s) * (HP_BUCKETS - 1) / (engine.maxHp(s) + 1), HP_BUCKETS - 1);
+                }
+                int ammoBucket = bound(engine.ammo(s) * (AMMO_BUCKETS - 1) / Math.max(1, engine.maxAmmo(s)), AMMO_BUCKETS);
+                int head       = Math.floorMod((int) Math.round(engine.angle(s) / 30.0), HEADINGS);
+
+                h ^= posX    [s * grid         + bound((int) engine.x(s), grid)];
+                h ^= posY    [s * grid         + bound((int) engine.y(s), grid)];
+                h ^= heading [s * HEADINGS     + head];
+                h ^= hp      [s * HP_BUCKETS   + hpBucket];
+                h ^= ammo    [s * AMMO_BUCKETS + ammoBucket];
+                h ^= activity[s * ACTIVITY     + bound(engine.activity(s), ACTIVITY)];
+            }
+            return h;
+        }
+
+        private static int bound(int value, int size) {
+            return Math.max(0, Math.min(size - 1, value));
+        }
+    }
+
+    // ======================================================================
+    // 内部クラス: TranspositionTable（大きさ固定の置換表）
+    // ======================================================================
+
+    /**
+     * 節ごとのキー・世代・訪問回数と、Plan ごとの訪問回数・評価値の合計を配列に持つ。
+     * キーの下位ビットで2つずつの組を決め、組の中で探す。空きがなければ
+     * 前の判断の節（世代が古い）→ 訪問回数が少ない節 の順に置き換える。
+     * キー 0 は空きの印に使う（ハッシュが 0 になる盤面は 1 に読み替える）。
+     */
+    private static final class TranspositionTable {
+        private final int      mask;
+        private final long[]   keys;
+        private final int[]    born;
+        private final int[]    visits;
+        private final int[]    planVisits;
+        private final double[] planValue;
+
+        /** 登録する節の世代（判断の通し番号） */
+        int generation;
+
+        /** 置き換えた節の数（累計） */
+        int replaced;
+
+        TranspositionTable(int size) {
+            mask       = size - 1;
+            keys       = new long[size];
+            born       = new int[size];
+            visits     = new int[size];
+            planVisits = new int[size * NPLAN];
+            planValue  = new double[size * NPLAN];
+        }
+
+        /** キーの節の位置（なければ -1） */
+        int find(long key) {
+            key = nonZero(key);
+            int b = bucket(key);
+            if (keys[b]     == key) return touch(b);
+            if (keys[b + 1] == key) return touch(b + 1);
+            return -1;
+        }
+
+        /** キーの節を登録する（置き換えた場合は統計を消す） */
+        void insert(long key) {
+            key = nonZero(key);
+            int b  = bucket(key);
+            int at = (keys[b] == 0) ? b : (keys[b + 1] == 0) ? b + 1 : victim(b);
+            if (keys[at] != 0) replaced++;
+            keys[at]   = key;
+            born[at]   = generation;
+            visits[at] = 1;
+            Arrays.fill(planVisits, at * NPLAN, at * NPLAN + NPLAN, 0);
+            Arrays.fill(planValue,  at * NPLAN, at * NPLAN + NPLAN, 0.0);
+        }
+
+        /** 節 at で次に試す Plan */
+        int select(int at) {
+            return ucb1(planVisits, planValue, at * NPLAN, visits[at]);
+        }
+
+        /** 節 at の Plan p に評価値を足す（at がもう別の盤面に置き換わっていれば何もしない） */
+        void update(int at, long key, int p, double value) {
+            if (keys[at] != nonZero(key)) return;
+            visits[at]++;
+            planVisits[at * NPLAN + p]++;
+            planValue [at * NPLAN + p] += value;
+        }
+
+        /** 組の中で置き換える方（古い世代 → 訪問回数の少ない方 → 組の2番目） */
+        private int victim(int b) {
+            boolean oldA = born[b]     != generation;
+            boolean oldB = born[b + 1] != generation;
+            if (oldA != oldB) return oldA ? b : b + 1;
+            return (visits[b] < visits[b + 1]) ? b : b + 1;
+        }
+
+        /** 今回の判断でも使った節は世代を更新する（置き換えの対象から外す） */
+        private int touch(int at) {
+            born[at] = generation;
+            return at;
+        }
+
+        private int bucket(long key) {
+            return (int) (key ^ (key >>> 32)) & mask & ~1;
+        }
+
+        private static long nonZero(long key) {
+            return (key == 0) ? 1 : key;
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package war.ai;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import war.main.BattleSimulator;
+import war.tank.LightTank;
+import war.tank.MediumTank;
+import war.tank.Tank;
+
+/**
+ * MlpAI - ニューラルネット（MlpModel）の出力で行動パターンを選ぶ敵側AI
+ *
+ * 戦車ごとの BattleState（StateAnalyzer の結果）を FEATURES 個の特徴量にして MlpModel に通し、
+ * 出力の先頭 Plan.values().length 個（方策。各パターンの点数）が最大の Plan を実行する。
+ * 出力がもう1つあれば価値（この局面からの勝ちやすさ。tanh で -1〜1）として lastValue で参照できる。
+ *
+ *   - 半ターンの最初に呼ばれたとき、自陣営の生存戦車全員の特徴量をまとめて1回で推論し、
+ *     同じ半ターンの残りの戦車はその結果を使う（まとめて推論した後に動いた味方の分は反映しない）
+ *   - 作業用の配列は使い回すので、定常状態の takeTurn はヒープを割り当てない（main で確認できる）
+ *   - 重みは MlpTrainer（または外部の学習スクリプト）が書き出したファイルを読む（形式は MlpModel）
+ *
+ * スレッドセーフではない（シミュレーター・ゲームごとにインスタンスを作る。MlpModel も共有しない）。
+ */
+public class MlpAI implements EnemyController {
+
+    /** 既定の重みファイル */
+    public static final String DEFAULT_MODEL = "./mlp_policy.bin";
+
+    /** 特徴量の数 */
+    public static final int FEATURES = 13;
+
+    private static final Plan[] PLANS = Plan.values();
+
+    // ======================================================================
+    // 設定
+    // ======================================================================
+
+    private final int      maxGrid;
+    private final MlpModel model;
+
+    private DecisionMetrics  metrics = DecisionMetrics.GLOBAL;
+    private LatencyHistogram latency;
+
+    // ======================================================================
+    // 判断用の作業領域
+    // ======================================================================
+
+    private final PairGeometry  geometry = new PairGeometry();
+    private final StateAnalyzer analyzer = new StateAnalyzer(geometry);
+    private final BattleState   state    = new BattleState();
+
+    /** まとめて推論した戦車と、その入力・出力・使ったかどうか */
+    private Tank[]    batchTanks = new Tank[8];
+    private float[]   input      = new float[8 * FEATURES];
+    private float[]   output     = new float[0];
+    private boolean[] used       = new boolean[8];
+    private int       batchCount;
+
+    /** 直前の判断の価値（出力に価値がなければ 0） */
+    private float lastValue;
+
+    /** パターンごとの選択回数（動作確認用） */
+    private final long[] chosen = new long[PLANS.length];
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param maxGrid グリッドサイズ - 1（EnemyAI3 と同じ）
+     * @param model   入力 FEATURES 個・出力 Plan の数（+ 価値1個）のネット
+     */
+    public MlpAI(int maxGrid, MlpModel model) {
+        if (model.inputSize() != FEATURES || model.outputSize() < PLANS.length) {
+            throw new IllegalArgumentException("MLP の入出力の数が違います: " + model.inputSize() + " → " + model.outputSize()
+                                               + "（" + FEATURES + " → " + PLANS.length + " または " + (PLANS.length + 1) + "）");
+        }
+        this.maxGrid = maxGrid;
+        this.model   = model;
+        this.latency = metrics.controllerHistogram(name());
+    }
+
+    private String name() {
+        return "MlpAI";
+    }
+
+    // ======================================================================
+    // EnemyController
+    // ======================================================================
+
+    @Override
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        this.metrics = metrics;
+        this.latency = metrics.controllerHistogram(name());
+    }
+
+    @Override
+    public int takeTurn(Tank self, List<Tank> targets, List<Tank> friends) {
+        long startNanos = System.nanoTime();
+        if (!self.isAlive()) return 0;
+        geometry.sync(targets, friends);
+        Tank target = selectTarget(self, targets);
+        if (target == null) return 0;
+
+        // 半ターンの最初（まだ推論していない・この戦車の分を使い終えた）ならまとめて推論する
+        int row = rowOf(self);
+        if (row < 0 || used[row]) {
+            evaluate(targets, friends);
+            row = rowOf(self);
+        }
+        used[row] = true;
+
+        int   width = model.outputSize();
+        int   base  = row * width;
+        int   best  = 0;
+        for (int p = 1; p < PLANS.length; p++) {
+            if (output[base + p] > output[base + best]) best = p;
+        }
+        lastValue = (width > PLANS.length) ? (float) Math.tanh(output[base + PLANS.length]) : 0f;
+
+        PLANS[best].execute(self, target, maxGrid);
+        chosen[best]++;
+
+        latency.record(System.nanoTime() - startNanos);
+        return 0;
+    }
+
+    /** 直前の判断の価値（-1〜1。出力に価値がなければ 0） */
+    public float lastValue() {
+        return lastValue;
+    }
+
+    /** パターンごとの選択回数 */
+    public long chosenCount(Plan plan) {
+        return chosen[plan.ordinal()];
+    }
+
+    // ======================================================================
+    // まとめて推論
+    // ======================================================================
+
+    /** 自陣営の生存戦車全員の特徴量を作り、1回の forward で推論する */
+    private void evaluate(List<Tank> targets, List<Tank> friends) {
+        int n = friends.size();
+        if (batchTanks.length < n) {
+            batchTanks = new Tank[n];
+            used       = new boolean[n];
+            input      = new float[n * FEATURES];
+        }
+        if (output.length < n * model.outputSize()) output = new float[n * model.outputSize()];
+
+        batchCount = 0;
+        for (int i = 0; i < n; i++) {
+            Tank f = friends.get(i);
+            if (!f.isAlive()) continue;
+            Tank t = selectTarget(f, targets);
+            analyzer.analyze(state, f, t, friends, targets, 1);
+            encode(state, input, batchCount * FEATURES);
+            batchTanks[batchCount] = f;
+            used[batchCount]       = false;
+            batchCount++;
+        }
+        model.forward(input, batchCount, output);
+    }
+
+    private int rowOf(Tank self) {
+        for (int i = 0; i < batchCount; i++) {
+            if (batchTanks[i] == self) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * BattleState を特徴量にする（おおよそ 0〜1、向きは sin・cos）。
+     * 学習時（MlpTrainer）と推論時で同じ式を使うこと。
+     */
+    public static void encode(BattleState s, float[] dst, int at) {
+        double range = Math.max(1.0, s.selfRange);
+        double rad   = Math.toRadians(s.targetAngle);
+        dst[at]      = (float) s.selfHPRatio;
+        dst[at + 1]  = s.selfActivity / 8f;
+        dst[at + 2]  = (float) s.targetHPRatio;
+        dst[at + 3]  = (float) Math.min(3.0, s.targetDistance / range);
+        dst[at + 4]  = (float) Math.min(1.0, s.targetDistance / (range * 0.5));
+        dst[at + 5]  = (float) Math.sin(rad);
+        dst[at + 6]  = (float) Math.cos(rad);
+        dst[at + 7]  = s.targetInRange ? 1f : 0f;
+        dst[at + 8]  = s.allyCount / 4f;
+        dst[at + 9]  = (float) s.distanceRankFromEnemy / Math.max(1, s.allyCount);
+        dst[at + 10] = (float) Math.min(1.0, s.closestAllyDistance / BattleSimulator.GRID_SIZE);
+        dst[at + 11] = (float) s.averageAllyHP;
+        dst[at + 12] = (float) s.remainingEnemies / Math.max(1, s.totalEnemies);
+    }
+
+    /** EnemyAI3.selectTarget と同じ（HP割合×5 + 距離 が最小の相手） */
+    private Tank selectTarget(Tank self, List<Tank> targets) {
+        Tank   best      = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            Tank t = targets.get(i);
+            if (!t.isAlive()) continue;
+            double score = (double) t.getHp() / t.getMaxHp() * 5.0 + geometry.distance(self, t);
+            if (score < bestScore) {
+                bestScore = score;
+                best      = t;
+            }
+        }
+        return best;
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 1. 十分に回した後の takeTurn がヒープを割り当てないことを確認する（EnemyAI3 の main と同じ方法）
+    // 2. 同じシードで EnemyAI3 と試合の速さ・敵勝率を比べる
+
+    public static void main(String[] args) {
+        String path  = (args.length >= 1) ? args[0] : DEFAULT_MODEL;
+        int    games = (args.length >= 2) ? Integer.parseInt(args[1]) : 4000;
+        long   seed  = (args.length >= 3) ? Long.parseLong(args[2])   : 20260101L;
+        AIConfig config = AIConfig.fromJson("./ai_config.json");
+        int maxGrid = BattleSimulator.GRID_SIZE - 1;
+
+        // --- 割り当て ---
+        List<Tank> player = new ArrayList<>();
+        List<Tank> pc     = new ArrayList<>();
+        player.add(new MediumTank("P1", 0, 5, 5));
+        pc.add(new LightTank("E1", 1, 12, 12));
+        pc.add(new MediumTank("E2", 1, 3, 14));
+        pc.add(new MediumTank("E3", 1, 14, 3));
+        MlpAI probe = new MlpAI(maxGrid, MlpModel.load(path));
+        probe.setDecisionMetrics(new DecisionMetrics());
+        for (int i = 0; i < 200_000; i++) decide(probe, player, pc, i);
+        com.sun.management.ThreadMXBean mx =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int  measured = 100_000;
+        long before   = mx.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < measured; i++) decide(probe, player, pc, i);
+        long bytes = mx.getCurrentThreadAllocatedBytes() - before;
+        boolean ok = bytes < measured;
+        System.out.printf("判断 %d 回: 割り当て %d バイト（%.3f バイト/回） %s%n",
+                          measured, bytes, (double) bytes / measured, ok ? "OK" : "NG");
+
+        // --- 試合 ---
+        MlpAI[] ai = new MlpAI[1];
+        BattleSimulator flowchart = new BattleSimulator(config, seed);
+        BattleSimulator mlp       = new BattleSimulator(config, seed,
+            () -> ai[0] = new MlpAI(maxGrid, MlpModel.load(path)));
+        flowchart.setVerbose(false);
+        mlp.setVerbose(false);
+        flowchart.runBatchSilent(games / 4);                       // JIT を温める
+        mlp.runBatchSilent(games / 4);
+
+        long   t0       = System.nanoTime();
+        double flowRate = flowchart.runBatchSilent(games);
+        long   t1       = System.nanoTime();
+        double mlpRate  = mlp.runBatchSilent(games);
+        long   t2       = System.nanoTime();
+
+        System.out.printf("EnemyAI3: 敵勝率 %.4f  %8.0f 試合/秒  判断 %s%n", flowRate,
+                          games / ((t1 - t0) / 1e9),
+                          flowchart.getDecisionMetrics().controllerLatency("EnemyAI3[PC]").summary());
+        System.out.printf("MlpAI   : 敵勝率 %.4f  %8.0f 試合/秒  判断 %s%n", mlpRate,
+                          games / ((t2 - t1) / 1e9),
+                          mlp.getDecisionMetrics().controllerLatency("MlpAI").summary());
+        StringBuilder sb = new StringBuilder("選んだパターン:");
+        for (Plan p : PLANS) sb.append(' ').append(p.label).append('=').append(ai[0].chosenCount(p));
+        System.out.println(sb);
+        if (!ok) System.exit(1);
+    }
+
+    /** 配置を少しずつ変えて1回判断させる（EnemyAI3 の main と同じ配置） */
+    private static void decide(MlpAI ai, List<Tank> player, List<Tank> pc, int i) {
+        player.get(0).reset(2 + i % 11, 2 + (i / 11) % 13, (i % 12) * 30.0);
+        pc.get(0).reset(12, 12, 180);
+        pc.get(1).reset(3, 14, 90);
+        pc.get(2).reset(14, 3, 270);
+        ai.takeTurn(pc.get(i % 3), player, pc);
+    }
+}
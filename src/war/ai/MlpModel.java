@@ -0,0 +1,207 @@
+package war.ai;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * MlpModel - 全結合層を重ねたニューラルネットの推論（float の配列だけで計算する）
+ *
+ * 重みは外部（Python など）で学習して、次の形式のバイナリファイルに書き出したものを読む。
+ * 数値はすべてビッグエンディアン（Java の DataOutputStream、numpy なら '>i4' / '>f4'）。
+ *
+ *   int   MAGIC（0x4D4C5031 = "MLP1"）
+ *   int   層の数 L
+ *   層ごとに:
+ *     int   入力の数 in
+ *     int   出力の数 out
+ *     int   活性化関数（0: なし, 1: ReLU, 2: tanh）
+ *     float 重み [out][in]（出力ごとに入力の数だけ並べる。PyTorch の Linear.weight と同じ並び）
+ *     float バイアス [out]
+ *
+ * forward は複数の入力（戦車ごとの特徴量など）をまとめて1回で計算する。
+ * 途中の層の値は作業用の配列に持ち、まとめる数が前回以下なら割り当てをしない
+ * （増えたときだけ作業用の配列を大きくする）。
+ * スレッドセーフではない（AI のインスタンスごとに load する）。
+ *
+ * 使い方:
+ *   MlpModel model = MlpModel.load("./mlp_policy.bin");
+ *   model.forward(features, batch, out);      // features: [batch][inputSize()]  out: [batch][outputSize()]
+ */
+public final class MlpModel {
+
+    /** ファイルの先頭の印（"MLP1"） */
+    public static final int MAGIC = 0x4D4C5031;
+
+    /** 活性化関数 */
+    public static final int LINEAR = 0, RELU = 1, TANH = 2;
+
+    private final int[]     inSize, outSize, activation;
+    private final float[][] weight, bias;
+
+    /** 層の出力の作業領域（偶数番目・奇数番目の層で交互に使う） */
+    private float[] bufA = new float[0], bufB = new float[0];
+
+    // ======================================================================
+    // 生成・読み書き
+    // ======================================================================
+
+    /**
+     * @param sizes      各層の大きさ（入力の数, 1層目の出力の数, ..., 最後の層の出力の数）
+     * @param activation 層ごとの活性化関数（sizes.length - 1 個）
+     */
+    public MlpModel(int[] sizes, int[] activation) {
+        int layers = sizes.length - 1;
+        if (layers < 1 || activation.length != layers) {
+            throw new IllegalArgumentException("層の数が合いません: " + sizes.length + " / " + activation.length);
+        }
+        this.inSize     = Arrays.copyOf(sizes, layers);
+        this.outSize    = Arrays.copyOfRange(sizes, 1, sizes.length);
+        this.activation = activation.clone();
+        this.weight     = new float[layers][];
+        this.bias       = new float[layers][];
+        for (int l = 0; l < layers; l++) {
+            weight[l] = new float[outSize[l] * inSize[l]];
+            bias[l]   = new float[outSize[l]];
+        }
+    }
+
+    /** ファイルから読み込む（形式はクラスのコメント） */
+    public static MlpModel load(String path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path)))) {
+            if (in.readInt() != MAGIC) throw new IllegalStateException("MLP のファイルではありません: " + path);
+            int layers = in.readInt();
+            int[] sizes = new int[layers + 1];
+            int[] act   = new int[layers];
+            float[][] w = new float[layers][], b = new float[layers][];
+            for (int l = 0; l < layers; l++) {
+                int nIn = in.readInt(), nOut = in.readInt();
+                if (l > 0 && nIn != sizes[l]) {
+                    throw new IllegalStateException(l + "層目の入力の数 " + nIn + " が前の層の出力の数 " + sizes[l] + " と違います: " + path);
+                }
+                sizes[l]     = nIn;
+                sizes[l + 1] = nOut;
+                act[l]       = in.readInt();
+                w[l] = readFloats(in, nIn * nOut);
+                b[l] = readFloats(in, nOut);
+            }
+            MlpModel model = new MlpModel(sizes, act);
+            for (int l = 0; l < layers; l++) {
+                System.arraycopy(w[l], 0, model.weight[l], 0, w[l].length);
+                System.arraycopy(b[l], 0, model.bias[l],   0, b[l].length);
+            }
+            return model;
+        } catch (IOException e) {
+            throw new RuntimeException("MLP の重みの読み込みに失敗: " + path, e);
+        }
+    }
+
+    /** ファイルに書き出す（load と同じ形式） */
+    public void save(String path) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(layerCount());
+            for (int l = 0; l < layerCount(); l++) {
+                out.writeInt(inSize[l]);
+                out.writeInt(outSize[l]);
+                out.writeInt(activation[l]);
+                for (float v : weight[l]) out.writeFloat(v);
+                for (float v : bias[l])   out.writeFloat(v);
+            }
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in, int n) throws IOException {
+        float[] v = new float[n];
+        for (int i = 0; i < n; i++) v[i] = in.readFloat();
+        return v;
+    }
+
+    /** 重みを乱数で初期化する（He の初期値。バイアスは0） */
+    public void randomize(Random rnd) {
+        for (int l = 0; l < layerCount(); l++) {
+            double scale = Math.sqrt(2.0 / inSize[l]);
+            for (int i = 0; i < weight[l].length; i++) weight[l][i] = (float) (rnd.nextGaussian() * scale);
+            Arrays.fill(bias[l], 0f);
+        }
+    }
+
+    // ======================================================================
+    // 参照
+    // ======================================================================
+
+    public int layerCount()      { return weight.length; }
+    public int inputSize()       { return inSize[0]; }
+    public int outputSize()      { return outSize[outSize.length - 1]; }
+    public int inputSize(int l)  { return inSize[l]; }
+    public int outputSize(int l) { return outSize[l]; }
+    public int activation(int l) { return activation[l]; }
+
+    /** l 層目の重み [out][in]（学習用。書き換えてよい） */
+    public float[] weights(int l) { return weight[l]; }
+
+    /** l 層目のバイアス（学習用。書き換えてよい） */
+    public float[] biases(int l)  { return bias[l]; }
+
+    // ======================================================================
+    // 推論
+    // ======================================================================
+
+    /**
+     * batch 個の入力をまとめて計算する。
+     *
+     * @param input  [batch][inputSize()] を行ごとに詰めた配列
+     * @param batch  入力の数
+     * @param output [batch][outputSize()] を書き込む配列
+     */
+    public void forward(float[] input, int batch, float[] output) {
+        forward(input, batch, output, null);
+    }
+
+    /**
+     * forward と同じ。hidden が null でなければ、l 層目の出力（活性化後）を hidden[l] にも写す（学習用）。
+     */
+    void forward(float[] input, int batch, float[] output, float[][] hidden) {
+        int layers = layerCount();
+        float[] src = input;
+        for (int l = 0; l < layers; l++) {
+            int     nIn  = inSize[l], nOut = outSize[l];
+            float[] dst  = (l == layers - 1) ? output : buffer(l, batch * nOut);
+            float[] w    = weight[l], b = bias[l];
+            int     act  = activation[l];
+
+            for (int r = 0; r < batch; r++) {
+                int si = r * nIn, di = r * nOut;
+                for (int o = 0; o < nOut; o++) {
+                    float sum = b[o];
+                    int   wi  = o * nIn;
+                    for (int i = 0; i < nIn; i++) sum += w[wi + i] * src[si + i];
+                    switch (act) {
+                        case RELU: sum = (sum > 0f) ? sum : 0f;      break;
+                        case TANH: sum = (float) Math.tanh(sum);     break;
+                        default:                                     break;
+                    }
+                    dst[di + o] = sum;
+                }
+            }
+            if (hidden != null) System.arraycopy(dst, 0, hidden[l], 0, batch * nOut);
+            src = dst;
+        }
+    }
+
+    /** l 層目の出力の作業領域（足りなければ大きくする） */
+    private float[] buffer(int l, int size) {
+        if ((l & 1) == 0) {
+            if (bufA.length < size) bufA = new float[size];
+            return bufA;
+        }
+        if (bufB.length < size) bufB = new float[size];
+        return bufB;
+    }
+}
@@ -0,0 +1,313 @@
+package war.ai;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import war.main.BattleSimulator;
+import war.main.BattleSimulator.BattleResult;
+import war.tank.Tank;
+
+/**
+ * MlpTrainer - MlpAI の重みファイルを作る（教師AIの判断をまねる学習）
+ *
+ * 敵側を教師AI（RolloutPlanner または EnemyAI3）にして試合を行い、判断のたびに
+ *   入力: その戦車の BattleState の特徴量（MlpAI.encode）
+ *   方策の正解: 教師AIが実行した Plan
+ *   価値の正解: その試合の結果（敵側の勝ち 1・負け -1・引き分け 0）
+ * を集め、MlpModel（FEATURES → 32 → 32 → Plan の数 + 1）を Adam で学習して書き出す。
+ * 損失は 方策の交差エントロピー + VALUE_WEIGHT × 価値（tanh）の二乗誤差。
+ *
+ * 外部の学習スクリプトで重みを作る場合も、MlpModel の形式で書き出せば MlpAI でそのまま使える。
+ *
+ * 使い方:
+ *   java war.ai.MlpTrainer [試合数] [教師 rollout|flowchart] [出力ファイル] [シード]
+ */
+public class MlpTrainer {
+
+    private static final int    HIDDEN       = 32;
+    private static final int    EPOCHS       = 60;
+    private static final int    BATCH        = 64;
+    private static final double LEARNING     = 0.003;
+    private static final double VALUE_WEIGHT = 0.5;
+
+    private static final int NPLAN = Plan.values().length;
+
+    // ======================================================================
+    // 教師データ
+    // ======================================================================
+
+    private final List<float[]> inputs = new ArrayList<>();
+    private int[]   plans  = new int[1024];
+    private float[] values = new float[1024];
+
+    /** 今の試合で集めた判断の始まり（試合が終わったら価値の正解を書き込む） */
+    private int gameStart;
+
+    private void add(float[] x, int plan) {
+        int n = inputs.size();
+        if (n == plans.length) {
+            plans  = java.util.Arrays.copyOf(plans,  n * 2);
+            values = java.util.Arrays.copyOf(values, n * 2);
+        }
+        inputs.add(x);
+        plans[n] = plan;
+    }
+
+    private void endGame(int winner) {
+        float v = (winner == 1) ? 1f : (winner == 0) ? -1f : 0f;
+        for (int i = gameStart; i < inputs.size(); i++) values[i] = v;
+        gameStart = inputs.size();
+    }
+
+    /** 教師AIの判断を記録する敵側AI */
+    private final class Recorder implements EnemyController {
+        private final EnemyController teacher;
+        private final PairGeometry    geometry = new PairGeometry();
+        private final StateAnalyzer   analyzer = new StateAnalyzer(geometry);
+        private final BattleState     state    = new BattleState();
+        private Branch lastBranch;
+
+        Recorder(EnemyController teacher) {
+            this.teacher = teacher;
+            // EnemyAI3 の分岐は判断の記録から受け取る
+            teacher.setDecisionMetrics(new DecisionMetrics() {
+                @Override
+                public void record(Branch branch, Tank self, long nanos) {
+                    lastBranch = branch;
+                    super.record(branch, self, nanos);
+                }
+            });
+        }
+
+        @Override
+        public void setDecisionMetrics(DecisionMetrics metrics) {
+            // 教師の記録先は差し替えない（分岐を受け取るため）
+        }
+
+        @Override
+        public void close() {
+            teacher.close();
+        }
+
+        @Override
+        public int takeTurn(Tank self, List<Tank> targets, List<Tank> friends) {
+            if (!self.isAlive()) return 0;
+            geometry.sync(targets, friends);
+            Tank target = selectTarget(self, targets);
+            if (target == null) return 0;
+            analyzer.analyze(state, self, target, friends, targets, 1);
+            float[] x = new float[MlpAI.FEATURES];
+            MlpAI.encode(state, x, 0);
+
+            lastBranch = null;
+            teacher.takeTurn(self, targets, friends);
+            Plan plan = (teacher instanceof RolloutPlanner) ? ((RolloutPlanner) teacher).lastPlan()
+                                                            : (lastBranch != null) ? Plan.of(lastBranch) : null;
+            if (plan != null) add(x, plan.ordinal());
+            return 0;
+        }
+
+        private Tank selectTarget(Tank self, List<Tank> targets) {
+            Tank   best      = null;
+            double bestScore = Double.MAX_VALUE;
+            for (int i = 0; i < targets.size(); i++) {
+                Tank t = targets.get(i);
+                if (!t.isAlive()) continue;
+                double score = (double) t.getHp() / t.getMaxHp() * 5.0 + geometry.distance(self, t);
+                if (score < bestScore) {
+                    bestScore = score;
+                    best      = t;
+                }
+            }
+            return best;
+        }
+    }
+
+    // ======================================================================
+    // 学習（Adam）
+    // ======================================================================
+
+    private final MlpModel model;
+    private final float[][] m, v, mb, vb;
+    private long step;
+
+    MlpTrainer(MlpModel model) {
+        this.model = model;
+        int layers = model.layerCount();
+        m  = new float[layers][];  v  = new float[layers][];
+        mb = new float[layers][];  vb = new float[layers][];
+        for (int l = 0; l < layers; l++) {
+            m[l]  = new float[model.weights(l).length];  v[l]  = new float[model.weights(l).length];
+            mb[l] = new float[model.biases(l).length];   vb[l] = new float[model.biases(l).length];
+        }
+    }
+
+    /** rows の先頭 n 件で1回更新する（戻り値は損失の平均） */
+    private double update(int[] rows, int n) {
+        int layers = model.layerCount();
+        int in     = model.inputSize();
+        int out    = model.outputSize();
+
+        float[] x = new float[n * in];
+        for (int r = 0; r < n; r++) System.arraycopy(inputs.get(rows[r]), 0, x, r * in, in);
+        float[][] act = new float[layers][];
+        for (int l = 0; l < layers; l++) act[l] = new float[n * model.outputSize(l)];
+        float[] y = new float[n * out];
+        model.forward(x, n, y, act);
+
+        // 出力層の勾配（方策: softmax - 正解、価値: tanh の二乗誤差）
+        double loss = 0;
+        float[] dz = new float[n * out];
+        for (int r = 0; r < n; r++) {
+            int    o   = r * out;
+            double max = Double.NEGATIVE_INFINITY, sum = 0;
+            for (int p = 0; p < NPLAN; p++) max = Math.max(max, y[o + p]);
+            for (int p = 0; p < NPLAN; p++) sum += Math.exp(y[o + p] - max);
+            int label = plans[rows[r]];
+            for (int p = 0; p < NPLAN; p++) {
+                double prob = Math.exp(y[o + p] - max) / sum;
+                dz[o + p] = (float) ((prob - (p == label ? 1 : 0)) / n);
+                if (p == label) loss -= Math.log(Math.max(prob, 1e-12));
+            }
+            if (out > NPLAN) {
+                double val = Math.tanh(y[o + NPLAN]);
+                double err = val - values[rows[r]];
+                dz[o + NPLAN] = (float) (VALUE_WEIGHT * 2 * err * (1 - val * val) / n);
+                loss += VALUE_WEIGHT * err * err;
+            }
+        }
+
+        // 逆伝播
+        step++;
+        for (int l = layers - 1; l >= 0; l--) {
+            int     nIn  = model.inputSize(l), nOut = model.outputSize(l);
+            float[] prev = (l == 0) ? x : act[l - 1];
+            float[] w    = model.weights(l);
+            float[] gw   = new float[w.length];
+            float[] gb   = new float[nOut];
+            for (int r = 0; r < n; r++) {
+                for (int o = 0; o < nOut; o++) {
+                    float g = dz[r * nOut + o];
+                    if (g == 0f) continue;
+                    gb[o] += g;
+                    for (int i = 0; i < nIn; i++) gw[o * nIn + i] += g * prev[r * nIn + i];
+                }
+            }
+            if (l > 0) {
+                float[] dprev = new float[n * nIn];
+                for (int r = 0; r < n; r++) {
+                    for (int o = 0; o < nOut; o++) {
+                        float g = dz[r * nOut + o];
+                        if (g == 0f) continue;
+                        for (int i = 0; i < nIn; i++) dprev[r * nIn + i] += g * w[o * nIn + i];
+                    }
+                }
+                int prevAct = model.activation(l - 1);
+                for (int k = 0; k < dprev.length; k++) {
+                    if (prevAct == MlpModel.RELU)      dprev[k] = (prev[k] > 0f) ? dprev[k] : 0f;
+                    else if (prevAct == MlpModel.TANH) dprev[k] *= 1f - prev[k] * prev[k];
+                }
+                dz = dprev;
+            }
+            adam(w, gw, m[l], v[l]);
+            adam(model.biases(l), gb, mb[l], vb[l]);
+        }
+        return loss / n;
+    }
+
+    private void adam(float[] p, float[] g, float[] m, float[] v) {
+        double b1 = 0.9, b2 = 0.999;
+        double c1 = 1 - Math.pow(b1, step), c2 = 1 - Math.pow(b2, step);
+        for (int i = 0; i < p.length; i++) {
+            m[i] = (float) (b1 * m[i] + (1 - b1) * g[i]);
+            v[i] = (float) (b2 * v[i] + (1 - b2) * g[i] * g[i]);
+            p[i] -= (float) (LEARNING * (m[i] / c1) / (Math.sqrt(v[i] / c2) + 1e-8));
+        }
+    }
+
+    /** rows の件数のうち、方策の最大が正解と一致した割合 */
+    private double accuracy(int[] rows, int from, int to) {
+        int in = model.inputSize(), out = model.outputSize();
+        float[] x = new float[MlpAI.FEATURES];
+        float[] y = new float[out];
+        int hit = 0;
+        for (int k = from; k < to; k++) {
+            System.arraycopy(inputs.get(rows[k]), 0, x, 0, in);
+            model.forward(x, 1, y);
+            int best = 0;
+            for (int p = 1; p < NPLAN; p++) if (y[p] > y[best]) best = p;
+            if (best == plans[rows[k]]) hit++;
+        }
+        return (double) hit / Math.max(1, to - from);
+    }
+
+    // ======================================================================
+    // main
+    // ======================================================================
+
+    public static void main(String[] args) throws IOException {
+        int    games   = (args.length >= 1) ? Integer.parseInt(args[0]) : 400;
+        String teacher = (args.length >= 2) ? args[1] : "rollout";
+        String path    = (args.length >= 3) ? args[2] : MlpAI.DEFAULT_MODEL;
+        long   seed    = (args.length >= 4) ? Long.parseLong(args[3]) : 20260101L;
+        AIConfig config = AIConfig.fromJson("./ai_config.json");
+        int maxGrid = BattleSimulator.GRID_SIZE - 1;
+
+        MlpModel model = new MlpModel(new int[] { MlpAI.FEATURES, HIDDEN, HIDDEN, NPLAN + 1 },
+                                      new int[] { MlpModel.RELU, MlpModel.RELU, MlpModel.LINEAR });
+        Random rnd = new Random(seed);
+        model.randomize(rnd);
+        MlpTrainer trainer = new MlpTrainer(model);
+
+        // --- 教師データ ---
+        long t0 = System.nanoTime();
+        BattleSimulator sim = new BattleSimulator(config, seed,
+            () -> trainer.new Recorder(EnemyController.create(teacher, maxGrid, config)));
+        sim.setVerbose(false);
+        int wins = 0;
+        for (int g = 1; g <= games; g++) {
+            BattleResult r = sim.runGame(g);
+            trainer.endGame(r.winner);
+            if (r.winner == 1) wins++;
+        }
+        int n = trainer.inputs.size();
+        System.out.printf("教師 %s: %d試合（敵勝率 %.3f）から判断 %d件  %.1f秒%n",
+                          teacher, games, (double) wins / games, n, (System.nanoTime() - t0) / 1e9);
+        sim.close();
+
+        // --- 学習（1割を検証用に取り分ける） ---
+        int[] rows = new int[n];
+        for (int i = 0; i < n; i++) rows[i] = i;
+        for (int i = n - 1; i > 0; i--) {
+            int j = rnd.nextInt(i + 1), tmp = rows[i];
+            rows[i] = rows[j];
+            rows[j] = tmp;
+        }
+        int train = n - n / 10;
+        int[] batch = new int[BATCH];
+        for (int epoch = 1; epoch <= EPOCHS; epoch++) {
+            for (int i = train - 1; i > 0; i--) {
+                int j = rnd.nextInt(i + 1), tmp = rows[i];
+                rows[i] = rows[j];
+                rows[j] = tmp;
+            }
+            double loss = 0;
+            int    steps = 0;
+            for (int s = 0; s < train; s += BATCH) {
+                int k = Math.min(BATCH, train - s);
+                System.arraycopy(rows, s, batch, 0, k);
+                loss += trainer.update(batch, k);
+                steps++;
+            }
+            if (epoch % 10 == 0 || epoch == EPOCHS) {
+                System.out.printf("epoch %3d  損失 %.4f  一致率 学習 %.3f / 検証 %.3f%n", epoch, loss / steps,
+                                  trainer.accuracy(rows, 0, train), trainer.accuracy(rows, train, n));
+            }
+        }
+
+        model.save(path);
+        System.out.println("書き出し: " + path);
+    }
+}
@@ -0,0 +1,216 @@
+package war.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import war.tank.LightTank;
+import war.tank.MediumTank;
+import war.tank.Tank;
+
+/**
+ * PairGeometry - 戦車どうしの距離・方向のキャッシュ
+ *
+ * 1回の takeTurn の中で、同じ2両の距離を何度も計算している
+ * （StateAnalyzer.analyze を2回、距離順位・距離リスト・最寄りの味方、脅威値の順位、ゾーン判定）。
+ * 戦車の組ごとに距離と方向を1回だけ計算して表に持ち、移動した戦車の行・列だけを計算し直す。
+ *
+ *   - sync() で半ターンに登場する戦車（敵・味方のリスト）を登録する（登録済みなら何もしない）
+ *   - 戦車の位置が変わったかどうかは Tank.positionVersion() で判定する。
+ *     変わっていれば、その戦車と他の全戦車の距離を計算し直す（他の組はそのまま）
+ *   - 方向（atan2）は使う組が少なく計算も重いので、問い合わせのあった組だけ計算し、
+ *     両者の positionVersion が変わるまで使い回す
+ *   - 登録していない戦車（試算用の DummyTank など）は毎回そのまま計算する
+ *
+ * 値は StateAnalyzer・Tank.distance と同じ式で計算するので、キャッシュの有無で結果は変わらない。
+ * スレッドセーフではない（AI のインスタンスごとに1つ持つ）。
+ *
+ * 使い方:
+ *   geometry.sync(targets, friends);                // takeTurn の最初に
+ *   double d = geometry.distance(self, target);
+ */
+public class PairGeometry {
+
+    /** 表の大きさ。戦車の番号は TankSlots で決める（serial の下位ビットが同じ戦車も別の番号になる） */
+    private static final int SLOTS = TankSlots.CAPACITY;
+
+    private final TankSlots slots = new TankSlots();
+    private final Tank[]   tanks      = slots.tanks;
+    private final int[]    version    = new int[SLOTS];             // 行・列を計算したときの positionVersion
+    private final double[] dist       = new double[SLOTS * SLOTS];
+    private final double[] bearing    = new double[SLOTS * SLOTS];
+    private final long[]   bearingKey = new long[SLOTS * SLOTS];    // 計算時の両者の positionVersion
+
+    /** 前回 sync() したリストとその長さ（同じなら登録をやり直さない） */
+    private List<Tank> lastA, lastB;
+    private int        lastSizeA = -1, lastSizeB = -1;
+
+    /** 戦車の組について計算し直した回数（動作確認用） */
+    private long recomputed;
+
+    // ======================================================================
+    // 登録
+    // ======================================================================
+
+    /**
+     * 敵・味方のリストに入っている戦車を登録する（登録済みの戦車は何もしない）。
+     * 前回と同じリスト・同じ長さなら調べ直さない（SideRoster のビューは破壊時にしか変わらない）。
+     * 見落とした戦車があっても、その戦車の距離は毎回計算になるだけで値は変わらない。
+     * 表が満杯になったら（前の試合の戦車が残っている場合など）、登録を消して今のリストだけを登録し直す。
+     */
+    public void sync(List<Tank> a, List<Tank> b) {
+        if (a == lastA && b == lastB && a.size() == lastSizeA && b.size() == lastSizeB) return;
+        if (!register(a) || !register(b)) {
+            clear();
+            register(a);
+            register(b);
+        }
+        lastA = a;  lastSizeA = a.size();
+        lastB = b;  lastSizeB = b.size();
+    }
+
+    /** リストの戦車を登録する（表が満杯で登録できない戦車があれば false） */
+    private boolean register(List<Tank> list) {
+        for (int i = 0; i < list.size(); i++) {
+            Tank t = list.get(i);
+            if (slots.find(t) >= 0) continue;
+            int s = slots.add(t);
+            if (s < 0) return false;
+            version[s] = t.positionVersion() - 1;           // 初回の問い合わせで計算させる
+            for (int j = 0; j < SLOTS; j++) {               // 以前この番号にいた戦車の方向を無効にする
+                bearingKey[s * SLOTS + j] = -1;
+                bearingKey[j * SLOTS + s] = -1;
+            }
+        }
+        return true;
+    }
+
+    /** 登録を全て消す */
+    public void clear() {
+        slots.clear();
+        lastA = lastB = null;
+    }
+
+    /** 登録済みなら番号、未登録なら -1 */
+    private int slotOf(Tank t) {
+        return slots.find(t);
+    }
+
+    // ======================================================================
+    // 問い合わせ
+    // ======================================================================
+
+    /** 2両の距離（StateAnalyzer.calcDistance と同じ式） */
+    public double distance(Tank a, Tank b) {
+        // 呼び出し元のループにインライン展開されるよう、両方が最初の番号にいてキャッシュが使える場合だけをここで扱う
+        int i = TankSlots.home(a), j = TankSlots.home(b);
+        if (tanks[i] == a && tanks[j] == b
+                && version[i] == a.positionVersion() && version[j] == b.positionVersion()) {
+            return dist[i * SLOTS + j];
+        }
+        return distanceSlow(a, b);
+    }
+
+    /** 未登録の戦車を含む・位置が変わった戦車を含む場合 */
+    private double distanceSlow(Tank a, Tank b) {
+        int i = slotOf(a), j = slotOf(b);
+        if (i < 0 || j < 0) return calcDistance(a, b);
+        if (version[i] != a.positionVersion()) refresh(i);
+        if (version[j] != b.positionVersion()) refresh(j);
+        return dist[i * SLOTS + j];
+    }
+
+    /**
+     * to から見た from の方向（北を0度とした時計回り 0〜360度。StateAnalyzer.calcAngle の途中の値）
+     */
+    public double bearing(Tank from, Tank to) {
+        int i = slotOf(from), j = slotOf(to);
+        if (i < 0 || j < 0) return calcBearing(from, to);
+        long key = ((long) from.positionVersion() << 32) | (to.positionVersion() & 0xFFFFFFFFL);
+        int  k   = i * SLOTS + j;
+        if (bearingKey[k] != key) {
+            bearing[k]    = calcBearing(from, to);
+            bearingKey[k] = key;
+        }
+        return bearing[k];
+    }
+
+    /** これまでに計算し直した組の数 */
+    public long recomputedPairs() {
+        return recomputed;
+    }
+
+    /** 戦車 i の位置が変わったので、i と他の全戦車の距離（行と列）を計算し直す */
+    private void refresh(int i) {
+        Tank t = tanks[i];
+        version[i] = t.positionVersion();
+        int count = slots.count();
+        for (int k = 0; k < count; k++) {
+            int j = slots.slotAt(k);
+            double d = calcDistance(t, tanks[j]);
+            dist[i * SLOTS + j] = d;
+            dist[j * SLOTS + i] = d;
+        }
+        recomputed += count;
+    }
+
+    // ======================================================================
+    // 式（StateAnalyzer と同じ）
+    // ======================================================================
+
+    static double calcDistance(Tank a, Tank b) {
+        double dx = a.getX() - b.getX();
+        double dy = a.getY() - b.getY();
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    static double calcBearing(Tank from, Tank to) {
+        double dx = to.getX() - from.getX();
+        double dy = to.getY() - from.getY();
+        return Math.toDegrees(Math.atan2(dx, -dy)) + 180;
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 戦車をランダムに動かしながら、キャッシュの値と毎回計算した値が一致するかを調べる
+
+    public static void main(String[] args) {
+        List<Tank> a = new ArrayList<>();
+        List<Tank> b = new ArrayList<>();
+        a.add(new MediumTank("A1", 0, 3, 3));
+        a.add(new MediumTank("A2", 0, 5, 3));
+        b.add(new LightTank("B1", 1, 20, 20));
+        b.add(new MediumTank("B2", 1, 18, 4));
+        b.add(new MediumTank("B3", 1, 4, 19));
+
+        // serial の下位ビットが A1 と同じ戦車も入れる（同じ番号から探し始める戦車どうしが追い出し合わないこと）
+        Tank twin;
+        do {
+            twin = new LightTank("B4", 1, 20, 4);
+        } while (TankSlots.home(twin) != TankSlots.home(a.get(0)));
+        b.add(twin);
+
+        PairGeometry g = new PairGeometry();
+        Random r = new Random(1);
+        long queries = 0, mismatch = 0;
+        for (int step = 0; step < 100_000; step++) {
+            g.sync(a, b);
+            Tank mover = (r.nextBoolean() ? a : b).get(r.nextInt(2));
+            mover.resetAct();
+            mover.move(r.nextInt(23), r.nextInt(23));
+            for (Tank p : a) for (Tank q : b) {
+                if (g.distance(p, q) != calcDistance(p, q) || g.distance(q, p) != calcDistance(q, p)
+                 || g.bearing(p, q) != calcBearing(p, q)   || g.bearing(q, p) != calcBearing(q, p)) {
+                    mismatch++;
+                }
+                queries += 4;
+            }
+        }
+        boolean distinct = g.slotOf(a.get(0)) >= 0 && g.slotOf(twin) >= 0 && g.slotOf(a.get(0)) != g.slotOf(twin);
+        System.out.printf("問い合わせ %d 回: 不一致 %d, 計算し直した組 %d, 下位ビットが同じ戦車の番号 %d / %d %s%n",
+                          queries, mismatch, g.recomputedPairs(), g.slotOf(a.get(0)), g.slotOf(twin),
+                          distinct ? "OK" : "NG");
+        if (mismatch > 0 || !distinct) System.exit(1);
+    }
+}
@@ -0,0 +1,75 @@
+package war.ai;
+
+import war.tank.Tank;
+
+/**
+ * Plan - 1ターン分の行動パターン（EnemyAI3 のフローチャートの各分岐と同じ組み立て）
+ *
+ * EnemyAI3 は閾値で1つのパターンに決め打ちするが、RolloutPlanner は全パターンを候補にして比べる。
+ * 中身が同じ分岐（P1 と P6、P7 と P9 など）は1つにまとめてある。
+ *
+ *   ATC: 攻撃  ESC: 退避  APR: 前進  REP: 修理（残りの行動力をすべて使う）  RLD: 弾薬補給
+ */
+public enum Plan {
+    ATC_ATC("ATC,ATC", Step.ATC, Step.ATC),      // P1, P6
+    ATC_ESC("ATC,ESC", Step.ATC, Step.ESC),      // P2
+    ESC_REP("ESC,REP", Step.ESC, Step.REP),      // P3, P7, P9
+    ESC_ESC("ESC,ESC", Step.ESC, Step.ESC),      // P4, P8
+    APR_ATC("APR,ATC", Step.APR, Step.ATC),      // P5, P12
+    APR_APR("APR,APR", Step.APR, Step.APR),      // P11
+    APR    ("APR",     Step.APR),                // P13
+    RLD_REP("RLD,REP", Step.RLD, Step.REP);      // ETC1
+
+    /** 行動の種類 */
+    public enum Step { ATC, ESC, APR, REP, RLD }
+
+    public final String label;
+    private final Step[] steps;
+
+    Plan(String label, Step... steps) {
+        this.label = label;
+        this.steps = steps;
+    }
+
+    /** EnemyAI3 の分岐と同じ組み立てのパターン（ETC0 は行動しないので null） */
+    public static Plan of(Branch branch) {
+        switch (branch) {
+            case P1: case P6:           return ATC_ATC;
+            case P2:                    return ATC_ESC;
+            case P3: case P7: case P9:  return ESC_REP;
+            case P4: case P8:           return ESC_ESC;
+            case P5: case P12:          return APR_ATC;
+            case P11:                   return APR_APR;
+            case P13:                   return APR;
+            case ETC1:                  return RLD_REP;
+            default:                    return null;
+        }
+    }
+
+    /** 行動の数 */
+    public int length() {
+        return steps.length;
+    }
+
+    /** i 番目の行動 */
+    public Step step(int i) {
+        return steps[i];
+    }
+
+    /**
+     * 実際の戦車でこのパターンを実行する（EnemyAI3 の各分岐と同じ呼び出し）。
+     *
+     * @param maxGrid グリッドサイズ - 1
+     */
+    public void execute(Tank self, Tank target, int maxGrid) {
+        for (Step s : steps) {
+            switch (s) {
+                case ATC: self.attackTarget(target);                             break;
+                case ESC: Maneuver.escapeOne(self, target, maxGrid);             break;
+                case APR: Maneuver.progOne(self, target.getX(), target.getY(), maxGrid); break;
+                case REP: self.repair();                                         break;
+                case RLD: self.reloadAmmo(self.getMaxAmmo() - self.getAmmo());   break;
+            }
+        }
+    }
+}
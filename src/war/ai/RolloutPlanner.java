@@ -0,0 +1,356 @@
+package war.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+
+import war.main.ArrayBattleEngine;
+import war.main.BattleSimulator;
+import war.main.BattleSimulator.BattleResult;
+import war.tank.Tank;
+
+/**
+ * RolloutPlanner - 残りの試合を乱数で進めた結果で行動パターンを選ぶ敵側AI
+ *
+ * EnemyAI3 は閾値で1つの行動パターンに決め打ちする。このAIは全パターン（Plan）を候補にして、
+ * それぞれ「そのパターンを実行 → 以後は両陣営ともフローチャートのAIで horizon ターン進める」を
+ * 乱数を変えて rollouts 回ずつ行い、平均の評価値が最も高いパターンを実行する。
+ *
+ *   - 試合は ArrayBattleEngine で進める（盤面を配列に読み込むだけで、Tank は生成しない）
+ *   - 候補どうしは同じ乱数シードの列で比べる（共通乱数法。差が乱数のばらつきに埋もれにくい）
+ *   - 乱数シードは盤面から決めるので、同じ試合を再実行すれば同じ行動を選ぶ
+ *   - 全候補を1回ずつ試すのを1巡とし、判断時間の予算を超えたら次の巡に進まない
+ *     （最低1巡は行う。予算で打ち切った判断だけは実行環境の速さで結果が変わる）
+ *   - parallelism を2以上にすると、巡をワーカーに振り分けて並列に進める
+ *     （ワーカーごとにエンジンを持つ。並列バッチの中で使う場合は1のままにする。使い終わったら close）
+ *
+ * 先読みの試合はプレイヤー側を PlayerAI（pAiConfig）として進める。
+ * スレッドセーフではない（シミュレーター・ゲームごとにインスタンスを作る）。
+ */
+public class RolloutPlanner implements EnemyController {
+
+    // ======================================================================
+    // 定数（デフォルト値）
+    // ======================================================================
+
+    /** 1候補あたりの試行回数 */
+    public static final int  DEFAULT_ROLLOUTS = 16;
+
+    /** 先読みするターン数 */
+    public static final int  DEFAULT_HORIZON = 8;
+
+    /** 1回の判断の時間予算（ナノ秒） */
+    public static final long DEFAULT_BUDGET_NANOS = 20_000_000L;
+
+    private static final Plan[] PLANS = Plan.values();
+
+    // ======================================================================
+    // 設定
+    // ======================================================================
+
+    private final int      maxGrid;
+    private final AIConfig config;
+    private final int      rollouts;
+    private final int      horizon;
+    private final long     budgetNanos;
+    private final int      parallelism;
+
+    /** 分岐選択回数・判断時間の記録先 */
+    private DecisionMetrics  metrics = DecisionMetrics.GLOBAL;
+    private LatencyHistogram latency;
+
+    // ======================================================================
+    // 先読み用の作業領域（登場する戦車が変わったときだけ作り直す）
+    // ======================================================================
+
+    /** エンジンのスロット順の戦車（陣営0の戦車が先。先頭がプレイヤー側の操作戦車） */
+    private final List<Tank> lineup = new ArrayList<>();
+
+    /** ワーカーごとのエンジンと集計 */
+    private Worker[] workers = new Worker[0];
+
+    /** 巡ごとの各候補の評価値と、その巡を終えたか（ワーカーは自分の受け持ちの巡だけ書く） */
+    private final double[][] results;
+    private final boolean[]  done;
+
+    /** parallelism が2以上のときだけ作る */
+    private ForkJoinPool pool;
+
+    /** パターンごとの選択回数（動作確認用） */
+    private final long[] chosen = new long[PLANS.length];
+
+    /** 直前に実行したパターン（MlpTrainer が教師データに使う） */
+    private Plan lastPlan;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param maxGrid グリッドサイズ - 1（EnemyAI3 と同じ）
+     * @param config  先読みの試合で敵側のフローチャートに使うパラメータ
+     */
+    public RolloutPlanner(int maxGrid, AIConfig config) {
+        this(maxGrid, config, DEFAULT_ROLLOUTS, DEFAULT_HORIZON, DEFAULT_BUDGET_NANOS, 1);
+    }
+
+    /**
+     * @param maxGrid     グリッドサイズ - 1
+     * @param config      先読みの試合で敵側のフローチャートに使うパラメータ
+     * @param rollouts    1候補あたりの試行回数（1以上）
+     * @param horizon     先読みするターン数（1以上）
+     * @param budgetNanos 1回の判断の時間予算（0 以下なら制限なし）
+     * @param parallelism 試行を並列に進めるワーカー数（1なら呼び出し元のスレッドで進める）
+     */
+    public RolloutPlanner(int maxGrid, AIConfig config, int rollouts, int horizon,
+                          long budgetNanos, int parallelism) {
+        this.maxGrid     = maxGrid;
+        this.config      = config;
+        this.rollouts    = Math.max(1, rollouts);
+        this.horizon     = Math.max(1, horizon);
+        this.budgetNanos = budgetNanos;
+        this.parallelism = Math.max(1, parallelism);
+        this.results     = new double[this.rollouts][PLANS.length];
+        this.done        = new boolean[this.rollouts];
+        this.latency     = metrics.controllerHistogram(name());
+    }
+
+    private String name() {
+        return "RolloutPlanner";
+    }
+
+    /** ワーカーのスレッドを止める（作っていなければ何もしない） */
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+    }
+
+    // ======================================================================
+    // EnemyController
+    // ======================================================================
+
+    @Override
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        this.metrics = metrics;
+        this.latency = metrics.controllerHistogram(name());
+    }
+
+    @Override
+    public int takeTurn(Tank self, List<Tank> targets, List<Tank> friends) {
+        long startNanos = System.nanoTime();
+        if (!self.isAlive()) return 0;
+        Tank target = selectTarget(self, targets);
+        if (target == null) return 0;
+
+        sync(targets, friends);
+
+        Plan best = choose(self, target, startNanos);
+        best.execute(self, target, maxGrid);
+        chosen[best.ordinal()]++;
+        lastPlan = best;
+
+        latency.record(System.nanoTime() - startNanos);
+        return 0;
+    }
+
+    /** 直前に実行したパターン（まだ判断していなければ null） */
+    public Plan lastPlan() {
+        return lastPlan;
+    }
+
+    /** パターンごとの選択回数 */
+    public long chosenCount(Plan plan) {
+        return chosen[plan.ordinal()];
+    }
+
+    // ======================================================================
+    // 候補の比較
+    // ======================================================================
+
+    private Plan choose(Tank self, Tank target, long startNanos) {
+        int  selfSlot   = lineup.indexOf(self);
+        int  targetSlot = lineup.indexOf(target);
+        long seed       = boardSeed(selfSlot);
+        long deadline   = (budgetNanos > 0) ? startNanos + budgetNanos : Long.MAX_VALUE;
+
+        for (Worker w : workers) w.prepare(selfSlot, targetSlot, seed, deadline);
+        if (workers.length == 1) {
+            workers[0].call();
+        } else {
+            pool.invokeAll(List.of(workers));
+        }
+
+        // 巡の順に足す（足す順序が並列度によらないので、打ち切りがなければ並列度を変えても同じ値）
+        Plan   best      = PLANS[0];
+        double bestScore = -Double.MAX_VALUE;
+        for (int p = 0; p < PLANS.length; p++) {
+            double sum = 0;
+            int    n   = 0;
+            for (int k = 0; k < rollouts; k++) {
+                if (!done[k]) continue;
+                sum += results[k][p];
+                n++;
+            }
+            double score = sum / n;
+            if (score > bestScore) {
+                bestScore = score;
+                best      = PLANS[p];
+            }
+        }
+        return best;
+    }
+
+    /** 盤面（全戦車の HP・位置・向き）と行動する戦車から乱数シードを決める */
+    private long boardSeed(int selfSlot) {
+        long h = 0x9E3779B97F4A7C15L * (selfSlot + 1);
+        for (int s = 0; s < lineup.size(); s++) {
+            Tank t = lineup.get(s);
+            h = h * 31 + (t.isAlive() ? t.getHp() : 0);
+            h = h * 31 + (long) t.getX();
+            h = h * 31 + (long) t.getY();
+            h = h * 31 + (long) t.getAngle();
+        }
+        return h;
+    }
+
+    /** EnemyAI3.selectTarget と同じ（HP割合×5 + 距離 が最小の相手） */
+    private Tank selectTarget(Tank self, List<Tank> targets) {
+        Tank   best      = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < targets.size(); i++) {
+            Tank t = targets.get(i);
+            if (!t.isAlive()) continue;
+            double score = (double) t.getHp() / t.getMaxHp() * 5.0 + PairGeometry.calcDistance(self, t);
+            if (score < bestScore) {
+                bestScore = score;
+                best      = t;
+            }
+        }
+        return best;
+    }
+
+    // ======================================================================
+    // エンジンの準備
+    // ======================================================================
+
+    /** 知らない戦車が登場したら、エンジンのスロット順を決め直してエンジンを作り直す */
+    private void sync(List<Tank> targets, List<Tank> friends) {
+        if (!known(targets) || !known(friends)) {
+            lineup.clear();
+            boolean targetsFirst = !targets.isEmpty() && targets.get(0).getJinei() == 0;
+            lineup.addAll(targetsFirst ? targets : friends);
+            lineup.addAll(targetsFirst ? friends : targets);
+
+            // PlayerAI(GRID_SIZE - 1) は内部で EnemyAI3(GRID_SIZE - 2) を使う
+            workers = new Worker[parallelism];
+            for (int w = 0; w < parallelism; w++) {
+                workers[w] = new Worker(w, new ArrayBattleEngine(lineup, new pAiConfig(), maxGrid - 1,
+                                                              config, maxGrid, 0L));
+            }
+            if (parallelism > 1 && pool == null) pool = new ForkJoinPool(parallelism);
+        }
+        for (Worker w : workers) w.engine.load(lineup);
+    }
+
+    private boolean known(List<Tank> list) {
+        for (int i = 0; i < list.size(); i++) {
+            if (!lineup.contains(list.get(i))) return false;
+        }
+        return true;
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 同じシード・同じ試合番号で、敵側を EnemyAI3 にした場合と比べる。
+    // 並列度を変えても（予算で打ち切らなければ）同じ試合結果になることも確かめる
+
+    public static void main(String[] args) {
+        int  games    = (args.length >= 1) ? Integer.parseInt(args[0]) : 200;
+        long seed     = (args.length >= 2) ? Long.parseLong(args[1])   : 20260101L;
+        int  parallel = (args.length >= 3) ? Integer.parseInt(args[2]) : 2;
+        AIConfig config = AIConfig.fromJson("./ai_config.json");
+        int maxGrid = BattleSimulator.GRID_SIZE - 1;
+
+        RolloutPlanner[] ai = new RolloutPlanner[1];
+        BattleSimulator flowchart = new BattleSimulator(config, seed);
+        BattleSimulator serial    = new BattleSimulator(config, seed,
+            () -> ai[0] = new RolloutPlanner(maxGrid, config, DEFAULT_ROLLOUTS, DEFAULT_HORIZON, 0, 1));
+        BattleSimulator parallelSim = new BattleSimulator(config, seed,
+            () -> new RolloutPlanner(maxGrid, config, DEFAULT_ROLLOUTS, DEFAULT_HORIZON, 0, parallel));
+        flowchart.setVerbose(false);
+        serial.setVerbose(false);
+        parallelSim.setVerbose(false);
+
+        int  mismatches = 0;
+        long flowWins = 0, planWins = 0, flowNanos = 0, planNanos = 0;
+        for (int i = 1; i <= games; i++) {
+            long t0 = System.nanoTime();
+            BattleResult f = flowchart.runGame(i);
+            long t1 = System.nanoTime();
+            BattleResult r = serial.runGame(i);
+            long t2 = System.nanoTime();
+            if (!r.toCsvRow(i).equals(parallelSim.runGame(i).toCsvRow(i))) mismatches++;
+            flowNanos += t1 - t0;
+            planNanos += t2 - t1;
+            if (f.winner == 1) flowWins++;
+            if (r.winner == 1) planWins++;
+        }
+
+        System.out.printf("EnemyAI3      : 敵勝率 %.4f  %8.1f 試合/秒%n",
+                          (double) flowWins / games, games / (flowNanos / 1e9));
+        System.out.printf("RolloutPlanner: 敵勝率 %.4f  %8.1f 試合/秒  判断 %s%n",
+                          (double) planWins / games, games / (planNanos / 1e9),
+                          serial.getDecisionMetrics().controllerLatency("RolloutPlanner").summary());
+        StringBuilder sb = new StringBuilder("選んだパターン:");
+        for (Plan p : PLANS) sb.append(' ').append(p.label).append('=').append(ai[0].chosenCount(p));
+        System.out.println(sb);
+        System.out.printf("並列度 %d との比較: %d試合中 不一致 %d%n", parallel, games, mismatches);
+        parallelSim.close();
+        if (mismatches > 0) System.exit(1);
+    }
+
+    // ======================================================================
+    // 内部クラス: Worker（巡を w, w + P, w + 2P, ... と受け持つ）
+    // ======================================================================
+
+    private final class Worker implements Callable<Void> {
+        final int index;
+        final ArrayBattleEngine engine;
+
+        private int  self, target;
+        private long seed, deadline;
+
+        Worker(int index, ArrayBattleEngine engine) {
+            this.index  = index;
+            this.engine = engine;
+        }
+
+        void prepare(int self, int target, long seed, long deadline) {
+            this.self     = self;
+            this.target   = target;
+            this.seed     = seed;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public Void call() {
+            for (int k = index; k < rollouts; k += parallelism) {
+                done[k] = false;
+            }
+            for (int k = index; k < rollouts; k += parallelism) {
+                if (k > 0 && System.nanoTime() > deadline) break;     // 1巡目は必ず行う
+                long s = seed + 0x9E3779B97F4A7C15L * k;               // 全候補で同じシード
+                for (int p = 0; p < PLANS.length; p++) {
+                    results[k][p] = engine.rollout(self, target, PLANS[p], s, horizon);
+                }
+                done[k] = true;
+            }
+            return null;
+        }
+    }
+}
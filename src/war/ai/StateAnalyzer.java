@@ -13,8 +13,20 @@ import war.tank.Tank;
  */
 public class StateAnalyzer {
 
+    /** 距離・方向のキャッシュ（null なら毎回計算する） */
+    private final PairGeometry geometry;
+
+    public StateAnalyzer() {
+        this(null);
+    }
+
+    /** 距離・方向を geometry から引く（同じ半ターンで analyze を何度呼んでも計算は1回） */
+    public StateAnalyzer(PairGeometry geometry) {
+        this.geometry = geometry;
+    }
+
     /**
-     * 現在の戦場状態を収集して BattleState を返す
+     * 現在の戦場状態を収集して、新しい BattleState を返す
      *
      * @param self      自分の戦車
      * @param target    攻撃対象の敵戦車（最も近い敵など、呼び出し元が選定する）
@@ -25,8 +37,17 @@ public class StateAnalyzer {
      */
     public BattleState analyze(Tank self, Tank target, List<Tank> allies,
                                List<Tank> enemies, int turnNumber) {
+        return analyze(new BattleState(), self, target, allies, enemies, turnNumber);
+    }
 
-        BattleState state = new BattleState();
+    /**
+     * 現在の戦場状態を収集して state に上書きする（毎回 BattleState を作らずに済む）。
+     * 距離リストは state が持つ配列を使い回し、足りないときだけ作り直す。
+     *
+     * @return state
+     */
+    public BattleState analyze(BattleState state, Tank self, Tank target, List<Tank> allies,
+                               List<Tank> enemies, int turnNumber) {
 
         // ========================================
         // 1. 自分の状態
@@ -70,7 +91,7 @@ public class StateAnalyzer {
 
         // 距離順位：target（敵）からみた距離順位とリスト
         state.distanceRankFromEnemy = calcDistanceRank(self, allies, target);
-        state.disListFromEnemy = getDistanceList(allies, target);
+        fillDistanceList(state, allies, target);
 
         // 最も近い味方との距離
         state.closestAllyDistance = calcClosestAllyDistance(self, allies);
@@ -96,9 +117,8 @@ public class StateAnalyzer {
 
     /** 2点間のユークリッド距離 */
     private double calcDistance(Tank a, Tank b) {
-        double dx = a.getX() - b.getX();
-        double dy = a.getY() - b.getY();
-        return Math.sqrt(dx * dx + dy * dy);
+        if (geometry != null) return geometry.distance(a, b);
+        return PairGeometry.calcDistance(a, b);
     }
     
     /**
@@ -107,10 +127,9 @@ public class StateAnalyzer {
      * 正面が0（度）で、時計回りに真後ろが180度、逆回りはマイナスで範囲は-180～+180。ただし-180の場合は180とする。
      */
     private double calcAngle(Tank self, Tank target) {
-        // target からみた　selfの方向
-        double dx = target.getX() - self.getX();
-        double dy = target.getY() - self.getY();
-        double dirToA = Math.toDegrees(Math.atan2(dx, -dy)) + 180; // atan2は0除算を防げる。dx=0もうまく処理する
+        // target からみた　selfの方向（atan2は0除算を防げる。dx=0もうまく処理する）
+        double dirToA = (geometry != null) ? geometry.bearing(self, target)
+                                           : PairGeometry.calcBearing(self, target);
         double diff =  dirToA-self.getAngle() ;
         while (diff >=  180.0) diff -= 360.0;
         while (diff < -180.0) diff += 360.0;
@@ -122,8 +141,8 @@ public class StateAnalyzer {
     private int countAlive(List<Tank> tanks) {
         if (tanks == null) return 0;
         int count = 0;
-        for (Tank t : tanks) {
-            if (t.isAlive()) count++;
+        for (int i = 0; i < tanks.size(); i++) {
+            if (tanks.get(i).isAlive()) count++;
         }
         return count;
     }
@@ -138,7 +157,8 @@ public class StateAnalyzer {
         double selfDist = calcDistance(self, target);
         int rank = 1;
 
-        for (Tank ally : allies) {
+        for (int i = 0; i < allies.size(); i++) {
+            Tank ally = allies.get(i);
             if (ally.isAlive()) {
                 double allyDist = calcDistance(ally, target);
                 if (allyDist < selfDist) {
@@ -151,23 +171,29 @@ public class StateAnalyzer {
 
     
     /**
-     * 距離リストを求める
+     * 距離リストを求める（state.disListFromEnemy に詰め、個数を disListCount に入れる）
      */
     
-    private double[] getDistanceList(List<Tank> allies, Tank target) {
-        if (target == null) return null;
-
-        double disList[] ;
-        disList = new double[countAlive(allies)];
+    private void fillDistanceList(BattleState state, List<Tank> allies, Tank target) {
+        state.disListCount = 0;
+        if (target == null) return;
+
+        int alive = countAlive(allies);
+        double disList[] = state.disListFromEnemy;
+        if (disList == null || disList.length < alive) {
+            disList = new double[alive];
+            state.disListFromEnemy = disList;
+        }
 
         int i = 0;
-        for (Tank ally : allies) {
+        for (int k = 0; k < allies.size(); k++) {
+            Tank ally = allies.get(k);
             if (ally.isAlive()) {
                 disList[i] = calcDistance(ally, target);
                 i++;
             }
         }
-        return disList;
+        state.disListCount = i;
     }
 
     
@@ -175,7 +201,8 @@ public class StateAnalyzer {
     /** 生存している味方の中で最も近い距離 */
     private double calcClosestAllyDistance(Tank self, List<Tank> allies) {
         double minDist = Double.MAX_VALUE;
-        for (Tank ally : allies) {
+        for (int i = 0; i < allies.size(); i++) {
+            Tank ally = allies.get(i);
             if (ally.isAlive()) {
                 double d = calcDistance(self, ally);
                 if (d < minDist) minDist = d;
@@ -188,7 +215,8 @@ public class StateAnalyzer {
     private double calcAverageHPRatio(List<Tank> allies) {
         int aliveCount = 0;
         double totalRatio = 0.0;
-        for (Tank ally : allies) {
+        for (int i = 0; i < allies.size(); i++) {
+            Tank ally = allies.get(i);
             if (ally.isAlive() && ally.getMaxHp() > 0) {
                 totalRatio += (double) ally.getHp() / ally.getMaxHp();
                 aliveCount++;
@@ -0,0 +1,68 @@
+package war.ai;
+
+import war.tank.Tank;
+
+/**
+ * TankSlots - 戦車に表の番号（0〜CAPACITY-1）を割り当てる（PairGeometry・InfluenceMap 用）
+ *
+ * 番号は Tank.getSerial() の下位ビットから探し始め、埋まっていれば次の番号を順に調べる（線形探査）。
+ * 下位ビットが同じ戦車どうしでも別の番号になるので、同じ盤面の戦車が番号を奪い合うことはない。
+ * 1両ずつは外さず、満杯になったら clear して登録し直す（呼び出し側で行う）。
+ * スレッドセーフではない。
+ */
+final class TankSlots {
+
+    /** 番号の数（2のべき乗） */
+    static final int CAPACITY = 32;
+    private static final int MASK = CAPACITY - 1;
+
+    /** 番号 → 戦車（空きは null。速く引けるよう呼び出し側から直接読んでよい） */
+    final Tank[] tanks = new Tank[CAPACITY];
+
+    /** 使用中の番号（登録順） */
+    private final int[] used = new int[CAPACITY];
+    private int count;
+
+    /** 最初に調べる番号（ほとんどの戦車はこの番号にいる） */
+    static int home(Tank t) {
+        return (int) t.getSerial() & MASK;
+    }
+
+    /** 登録済みなら番号、未登録なら -1 */
+    int find(Tank t) {
+        int s = home(t);
+        for (int k = 0; k < CAPACITY; k++) {
+            Tank u = tanks[s];
+            if (u == t)    return s;
+            if (u == null) return -1;
+            s = (s + 1) & MASK;
+        }
+        return -1;
+    }
+
+    /** 未登録の戦車を空いている番号に登録する（満杯なら -1） */
+    int add(Tank t) {
+        if (count == CAPACITY) return -1;
+        int s = home(t);
+        while (tanks[s] != null) s = (s + 1) & MASK;
+        tanks[s]      = t;
+        used[count++] = s;
+        return s;
+    }
+
+    /** 登録している戦車の数 */
+    int count() {
+        return count;
+    }
+
+    /** k 番目（登録順）に使っている番号 */
+    int slotAt(int k) {
+        return used[k];
+    }
+
+    /** 登録を全て消す */
+    void clear() {
+        for (int k = 0; k < count; k++) tanks[used[k]] = null;
+        count = 0;
+    }
+}
@@ -34,7 +34,7 @@ public class TestAi {
 	    final PlayerController playerController = new PlayerController(20, 35);
 
 	    /** 敵AI担当 */
-	    final EnemyAI2 enemyAI2 = new EnemyAI2(19);;
+	    final EnemyAI2 enemyAI2 = new EnemyAI2(19, EnemyAI2.Side.PC);
 	    
 	    		
         tanks.clear();
@@ -1,6 +1,7 @@
 package war.ai;
 
 import war.tank.Tank;
+import war.tank.TankSnapshot;
 
 /**
  * ThreatEvaluator - 行動判断
@@ -11,12 +12,18 @@ public class ThreatEvaluator {
 
     private final AIConfig config;
     private BattleState state;
+    private final PairGeometry geometry;    // 距離のキャッシュ（null なら毎回計算）
  /*
   * コンストラクタ
   */
     public ThreatEvaluator(AIConfig config,BattleState sts) {
+        this(config, sts, null);
+    }
+
+    public ThreatEvaluator(AIConfig config, BattleState sts, PairGeometry geometry) {
         this.config = config;
         this.state = sts;
+        this.geometry = geometry;
     }
 
     // ========================================
@@ -36,6 +43,17 @@ public class ThreatEvaluator {
     public double calcDC(Times times , Tank self , Tank target) {return getParam(times , target , self) * calcRankThreat(self,target);}
     public double calcAT(Times times , Tank SimuSelf , Tank target) {return getParam(times , SimuSelf , target);}
     public double calcDT(Times times , Tank SimuSelf , Tank target) {return getParam(times , target , SimuSelf) * calcRankThreat(SimuSelf,target);}
+
+    //　試算用スナップショット版（Tank を介さずに同じ値を求める）
+    public double calcAT(Times times, TankSnapshot simuSelf, Tank target) {
+        return getParam(times, simuSelf.normalDamage(target), simuSelf.hitRate(target),
+                        simuSelf.getRrate(), target.getHp());
+    }
+    public double calcDT(Times times, TankSnapshot simuSelf, Tank target) {
+        return getParam(times, simuSelf.normalDamageFrom(target), simuSelf.hitRateFrom(target),
+                        target.getRrate(), simuSelf.getHp())
+             * rankThreat(config, this.state.disListFromEnemy, this.state.disListCount, simuSelf.distance(target));
+    }
     
     //　本体
     public double getParam(Times times, Tank offence, Tank deffence) {
@@ -45,16 +63,26 @@ public class ThreatEvaluator {
     *  AT 　　 selfSIM   terget   
     *  DT 　　 target    selfSIM  */
 
-        double damageRng = offence.normalDamage(deffence) * 2 * offence.getRrate();
-    	double damageMax = offence.normalDamage(deffence) + damageRng / 2;
-    	double damageMin = offence.normalDamage(deffence) - damageRng / 2;
+        return getParam(times, offence.normalDamage(deffence), offence.HitRate(deffence),
+                        offence.getRrate(), deffence.getHp());
+    }
 
-    	double HP = deffence.getHp();
-        double hit = offence.HitRate(deffence);
-        
-        double getResult = 0 ;
+    /**
+     * getParam の計算本体（戦車オブジェクトを使わない版）。
+     * ArrayBattleEngine からも同じ式を使うため static にしている。
+     *
+     * @param normalDamage 攻撃側の基準ダメージ
+     * @param hit          攻撃側の命中率
+     * @param rRate        攻撃側のばらつき係数
+     * @param HP           防御側の残HP
+     */
+    public static double getParam(Times times, double normalDamage, double hit, double rRate, double HP) {
 
-        hit = offence.HitRate(deffence);
+        double damageRng = normalDamage * 2 * rRate;
+    	double damageMax = normalDamage + damageRng / 2;
+    	double damageMin = normalDamage - damageRng / 2;
+
+        double getResult = 0 ;
 
         switch (times) {
             case SINGLE: //1回で倒せるかどうか
@@ -93,10 +121,23 @@ public class ThreatEvaluator {
      * 敵に最も近い＝最も狙われやすい＝脅威が高い
      */
     private double calcRankThreat(Tank self,Tank target) {
+    	double selfDist = (geometry != null) ? geometry.distance(self, target) : self.distance(target);
+    	return rankThreat(config, this.state.disListFromEnemy,
+    	                  this.state.disListCount, selfDist);
+    }
+
+    /**
+     * 距離順位による脅威値の本体（戦車オブジェクトを使わない版）。
+     *
+     * @param disList  敵からの味方距離リスト
+     * @param size     disList の有効要素数
+     * @param selfDist 自分と敵の距離
+     */
+    public static double rankThreat(AIConfig config, double[] disList, int size, double selfDist) {
 
     	int count = 0;
-        for (double value : this.state.disListFromEnemy) {
-            if (value < self.distance(target)) {
+        for (int i = 0; i < size; i++) {
+            if (disList[i] < selfDist) {
                 count++;
             }
         }
@@ -113,6 +154,8 @@ public class ThreatEvaluator {
    
     /******************************************************************
      * 0-1の乱数n個の和がtを超える確率を計算する
+     * n = 3, 6（SINGLE / DOUBLE で使う値）は区間ごとの多項式表で計算し、
+     * それ以外は包除原理の和（irwinHallTail）で計算する。
      * @param t 閾値 (0 <= t <= 1)
      * @param n 重ね合わせ回数
      * @return 確率 (0.0 ～ 1.0)
@@ -120,7 +163,23 @@ public class ThreatEvaluator {
     public static double getProbabilityGreaterThan(double t, int n) {
         if (t <= 0) return 1.0;
         if (t >= 1) return 0.0;
-        
+
+        switch (n) {
+            case 3:  return tailFromTable(IRWIN_HALL_TAIL_3, t * 3, 1.0 / 6);
+            case 6:  return tailFromTable(IRWIN_HALL_TAIL_6, t * 6, 1.0 / 720);
+            default: return irwinHallTail(t, n);
+        }
+    }
+
+    /**
+     * 包除原理による計算（表を使わない版。n が 3, 6 以外の場合と、表の検算に使う）
+     * @param t 閾値 (0 < t < 1)
+     * @param n 重ね合わせ回数
+     */
+    public static double irwinHallTail(double t, int n) {
+        if (t <= 0) return 1.0;
+        if (t >= 1) return 0.0;
+
         t = t * n;
 
         double cdf = 0.0;
@@ -141,6 +200,67 @@ public class ThreatEvaluator {
         return 1.0 - cdf;
     }
 
+    // ========================================
+    // Irwin-Hall 分布の区間多項式表
+    // ========================================
+    // 和 x (0 <= x < n) の上側確率は、区間 [k, k+1) ごとに n 次多項式になる。
+    //   P(S > x) = 1 - (1/n!) Σ_{j<=k} (-1)^j nCj (x - j)^n
+    // x = k + u（0 <= u < 1）と置いて u の多項式に展開すると、係数 × n! は整数になる。
+    // 表には整数係数（double で誤差なく表せる）を持ち、Horner 法で評価してから 1/n! を掛ける。
+    //   → 呼び出しごとの pow・nCr・factorial が、掛け算と足し算 n 回ずつになる
+
+    /** [区間 k][u の次数] → 上側確率 × 3! の係数 */
+    private static final double[][] IRWIN_HALL_TAIL_3 = buildTailTable(3);
+
+    /** [区間 k][u の次数] → 上側確率 × 6! の係数 */
+    private static final double[][] IRWIN_HALL_TAIL_6 = buildTailTable(6);
+
+    /** 表から上側確率を求める（x = t * n、0 < x < n） */
+    private static double tailFromTable(double[][] table, double x, double invFactorial) {
+        int      k = (int) x;
+        double   u = x - k;
+        double[] c = table[k];
+        double   p = c[c.length - 1];
+        for (int m = c.length - 2; m >= 0; m--) {
+            p = p * u + c[m];
+        }
+        return p * invFactorial;
+    }
+
+    /** 区間多項式表を作る（係数は long で厳密に計算する） */
+    private static double[][] buildTailTable(int n) {
+        long fact = 1;
+        for (int i = 2; i <= n; i++) fact *= i;
+
+        double[][] table = new double[n][n + 1];
+        for (int k = 0; k < n; k++) {
+            long[] coef = new long[n + 1];
+            coef[0] = fact;                                 // 1 × n!
+            for (int j = 0; j <= k; j++) {
+                // (u + (k - j))^n = Σ_m nCm u^m (k - j)^(n-m)
+                long sign = (j % 2 == 0) ? -1 : 1;          // 1 - CDF なので符号を反転
+                long ncj  = binomial(n, j);
+                for (int m = 0; m <= n; m++) {
+                    coef[m] += sign * ncj * binomial(n, m) * power(k - j, n - m);
+                }
+            }
+            for (int m = 0; m <= n; m++) table[k][m] = coef[m];
+        }
+        return table;
+    }
+
+    private static long binomial(int n, int r) {
+        long res = 1;
+        for (int i = 1; i <= r; i++) res = res * (n - i + 1) / i;
+        return res;
+    }
+
+    private static long power(long base, int exp) {
+        long res = 1;
+        for (int i = 0; i < exp; i++) res *= base;
+        return res;
+    }
+
     // 二項係数 nCr
     private static double nCr(int n, int r) {
         if (r < 0 || r > n) return 0;
@@ -164,6 +284,47 @@ public class ThreatEvaluator {
     }
     //******************************************************************
 
+    // ========================================
+    // main（動作確認用）
+    // ========================================
+    // 表による計算と包除原理の和を細かい格子で比べ、最大誤差と1回あたりの時間を出す
+
+    public static void main(String[] args) {
+        int points = (args.length >= 1) ? Integer.parseInt(args[0]) : 1_000_000;
+
+        for (int n : new int[] { 3, 6 }) {
+            double maxErr = 0, worstT = 0;
+            for (int i = 0; i <= points; i++) {
+                double t   = (double) i / points;
+                double err = Math.abs(getProbabilityGreaterThan(t, n) - irwinHallTail(t, n));
+                if (err > maxErr) { maxErr = err; worstT = t; }
+            }
+            // 区間の境目（x が整数）の前後
+            for (int k = 1; k < n; k++) {
+                for (double t : new double[] { Math.nextDown((double) k / n), (double) k / n,
+                                               Math.nextUp((double) k / n) }) {
+                    double err = Math.abs(getProbabilityGreaterThan(t, n) - irwinHallTail(t, n));
+                    if (err > maxErr) { maxErr = err; worstT = t; }
+                }
+            }
+
+            long t0 = System.nanoTime();
+            double sumTable = 0;
+            for (int r = 0; r < 5; r++)
+                for (int i = 0; i <= points; i++) sumTable += getProbabilityGreaterThan((double) i / points, n);
+            long t1 = System.nanoTime();
+            double sumRef = 0;
+            for (int r = 0; r < 5; r++)
+                for (int i = 0; i <= points; i++) sumRef += irwinHallTail((double) i / points, n);
+            long t2 = System.nanoTime();
+
+            long calls = 5L * (points + 1);
+            System.out.printf("n=%d 最大誤差=%.3e (t=%.6f) 表=%.1fns/回 包除=%.1fns/回 (検算 %.6f / %.6f)%n",
+                              n, maxErr, worstT, (double) (t1 - t0) / calls, (double) (t2 - t1) / calls,
+                              sumTable / calls, sumRef / calls);
+        }
+    }
+
 	
 	    
 
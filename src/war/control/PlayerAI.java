@@ -18,8 +18,9 @@ package war.control;
 // 独自の戦術（より慎重、より攻撃的など）を実装することも可能。
 //======================================================================
 
-import java.util.ArrayList;
+import java.util.List;
 
+import war.ai.DecisionMetrics;
 import war.ai.EnemyAI3;
 import war.ai.pAiConfig;
 import war.tank.Tank;
@@ -39,10 +40,10 @@ public class PlayerAI implements TankController {
     private Tank controlledTank;
 
     /** 敵戦車リスト（攻撃対象） */
-    private ArrayList<Tank> enemies;
+    private List<Tank> enemies;
 
     /** 友軍リスト */
-    private ArrayList<Tank> friendries;
+    private List<Tank> friendries;
 
     /** AI ロジック（EnemyAI を流用） */
     private final EnemyAI3 aiLogic;
@@ -57,6 +58,7 @@ public class PlayerAI implements TankController {
     public PlayerAI(int gridSize) {
     	pAiConfig aiConfig = new pAiConfig();
         this.aiLogic = new EnemyAI3(gridSize - 1,EnemyAI3.Side.PLAYER, aiConfig);
+        this.aiLogic.setControllerName("PlayerAI");     // 判断時間は "PlayerAI" として集計
     }
 
     // ======================================================================
@@ -76,13 +78,20 @@ public class PlayerAI implements TankController {
     /**
      * 敵戦車リストを設定する（takeTurn 実行前に呼ぶ必要がある）。
      *
+     * 渡したリストはコピーせずに保持するので、SideRoster のビューを渡せば毎ターン設定し直す必要はない。
+     *
      * @param enemies 攻撃対象の敵戦車リスト
      */
-    public void setTankList(ArrayList<Tank> enemies, ArrayList<Tank> friendries) {
+    public void setTankList(List<Tank> enemies, List<Tank> friendries) {
         this.enemies = enemies;
         this.friendries = friendries;
     }
 
+    /** 分岐選択回数の記録先を設定する（EnemyAI3.setDecisionMetrics に渡す） */
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        aiLogic.setDecisionMetrics(metrics);
+    }
+
     @Override
     public int takeTurn() {
         if (controlledTank == null || !controlledTank.isAlive()) {
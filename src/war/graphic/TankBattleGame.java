@@ -7,6 +7,8 @@ package war.graphic;
 //   v1: 描画処理 → TankRenderer へ移管
 //   v2: 敵AI処理 → EnemyAI へ移管
 //   v3: プレイヤー操作 → PlayerController へ移管 ★NEW
+//   v4: AI判断時間の表示（Lキー、ゲーム終了時）
+//   v5: 敵AIを EnemyController で切り替え（-DenemyAI=rollout / expectimax）
 //
 // このクラスの責務:
 //   - ゲームフロー制御（初期化、ターン管理、勝敗判定）
@@ -20,6 +22,7 @@ package war.graphic;
 
 import java.awt.Color;
 import java.awt.Dimension;
+import java.awt.Font;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Point;
@@ -29,19 +32,24 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.JDialog;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
 import javax.swing.SwingUtilities;
 
 import war.ai.AIConfig;
-import war.ai.EnemyAI3;
+import war.ai.DecisionMetrics;
+import war.ai.EnemyController;
 import war.control.PlayerAI;
 import war.control.PlayerController;
 import war.tank.LightTank;
 import war.tank.MediumTank;
+import war.tank.SideRoster;
 import war.tank.Tank;
 import war.tank.Tiger2;
 
@@ -88,10 +96,16 @@ public class TankBattleGame extends JPanel implements KeyListener, MouseListener
     
     /** 敵AI担当 */
 //    private final EnemyAI enemyAI;
-     private final EnemyAI3 enemyAI2;
+     private final EnemyController enemyAI2;
 
-     ArrayList<Tank> friendlies;
-     ArrayList<Tank> enemyes;
+     /** 陣営ごとの生存名簿（破壊時に自動更新される） */
+     private SideRoster roster;
+
+     /** AIの分岐選択回数・判断時間（起動してからの累計） */
+     private final DecisionMetrics metrics = new DecisionMetrics();
+
+     List<Tank> friendlies;
+     List<Tank> enemyes;
      
      
     // ======================================================================
@@ -112,9 +126,14 @@ public class TankBattleGame extends JPanel implements KeyListener, MouseListener
 //        if (isPlayerTurn) {
 //        	enemyAI2         = new EnemyAI3(GRID_SIZE - 1,EnemyAI3.Side.PLAYER);
 //        } else {
-        	enemyAI2         = new EnemyAI3(GRID_SIZE - 1,EnemyAI3.Side.PC,config);
+        	// -DenemyAI=rollout / expectimax / mcts で差し替える（省略時は EnemyAI3）
+        	// 1試合だけなので rollout はコア数（2以上）のワーカーで先読みする（-Drollout.parallelism で変更）
+        	enemyAI2         = EnemyController.create(System.getProperty("enemyAI"), GRID_SIZE - 1, config,
+        	                                          Math.max(2, Runtime.getRuntime().availableProcessors()));
 //        }
         playerAI         = new PlayerAI(GRID_SIZE - 1);  
+        enemyAI2.setDecisionMetrics(metrics);
+        playerAI.setDecisionMetrics(metrics);
 
         tanks = new ArrayList<>();
 
@@ -139,6 +158,9 @@ public class TankBattleGame extends JPanel implements KeyListener, MouseListener
 //      tanks.add(new HeavyTank( "重戦車", ENEMY_SIDE,  3, 20));
 //      tanks.add(new Tiger(     "ライオン",      ENEMY_SIDE,  16,  16));
         selectedIndex = 0;
+
+        roster = new SideRoster(2, tanks.size());
+        roster.rebuild(tanks);
         
         
     }
@@ -169,9 +191,16 @@ public class TankBattleGame extends JPanel implements KeyListener, MouseListener
 
     @Override
     public void keyPressed(KeyEvent e) {
-        if (!isPlayerTurn) return;  							// ← AIターン中は無視
         int key = e.getKeyCode();
 
+        // Lキー: AI判断時間の表示（オートモードでも受け付ける）
+        if (key == KeyEvent.VK_L) {
+            showLatencyReport();
+            return;
+        }
+
+        if (!isPlayerTurn) return;  							// ← AIターン中は無視
+
         // スペースキー: ターン終了
         if (key == KeyEvent.VK_SPACE) {
             endPlayerTurn();
@@ -280,43 +309,36 @@ public class TankBattleGame extends JPanel implements KeyListener, MouseListener
     // ======================================================================
     // ヘルパーメソッド
     // ======================================================================
-    /** 生存中のプレーヤー戦車リストを返す（EnemyAI に渡すため） */
-    private ArrayList<Tank> getFriendlyTanks() {
-        ArrayList<Tank> list = new ArrayList<>();
-        for (Tank t : tanks) {
-            if (t.getJinei() == FREND_SIDE && t.isAlive()) list.add(t);
-        }
-        return list;
+    /** 生存中のプレーヤー戦車リストを返す（EnemyAI に渡すため。名簿のビューでコピーしない） */
+    private List<Tank> getFriendlyTanks() {
+        return roster.alive(FREND_SIDE);
     }
 
-    /** 生存中の敵戦車リストを返す（EnemyAI に渡すため） */
-    private ArrayList<Tank> getEnemyTanks() {
-        ArrayList<Tank> list = new ArrayList<>();
-        for (Tank t : tanks) {
-            if (t.getJinei() == ENEMY_SIDE && t.isAlive()) list.add(t);
-        }
-        return list;
+    /** 生存中の敵戦車リストを返す（EnemyAI に渡すため。名簿のビューでコピーしない） */
+    private List<Tank> getEnemyTanks() {
+        return roster.alive(ENEMY_SIDE);
     }
 
     /** 勝敗を判定し、ゲーム終了ダイアログを表示する */
     private int gameEndChk() {
-        int friends = 0, enemies = 0;
-        for (Tank t : tanks) {
-            if (!t.isAlive()) continue;
-            if (t.getJinei() == FREND_SIDE) friends++;
-            else                          enemies++;
-        }
+        int friends = roster.aliveCount(FREND_SIDE);
+        int enemies = roster.aliveCount(ENEMY_SIDE);
 
         if (friends * enemies == 0) {
             String msg = (friends == 0) ? "戦車が破壊されたので負けです"
                                         : "敵を殲滅しました。勝利です!!";
             System.out.println(msg);
-
-            Object[] options = { "再プレイ", "終了" };
-            int result = JOptionPane.showOptionDialog(
-            	getParentFrame(), msg, "ゲーム終了",
-                JOptionPane.YES_NO_OPTION, JOptionPane.INFORMATION_MESSAGE,
-                null, options, options[0]);
+            System.out.print(metrics.latencyReport());
+
+            Object[] options = { "再プレイ", "終了", "判断時間" };
+            int result;
+            do {
+                result = JOptionPane.showOptionDialog(
+                	getParentFrame(), msg, "ゲーム終了",
+                    JOptionPane.YES_NO_CANCEL_OPTION, JOptionPane.INFORMATION_MESSAGE,
+                    null, options, options[0]);
+                if (result == 2) showLatencyReport();
+            } while (result == 2);
 
             if (result == 0) {
                 startGame();
@@ -341,6 +363,16 @@ public class TankBattleGame extends JPanel implements KeyListener, MouseListener
         return (JFrame) SwingUtilities.getWindowAncestor(this);
     }
     
+    /** AI判断時間（p50 / p99 / p999 / max）をダイアログで表示する */
+    private void showLatencyReport() {
+        JTextArea text = new JTextArea(metrics.latencyReport());
+        text.setEditable(false);
+        text.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 12));
+        JOptionPane.showMessageDialog(getParentFrame(), new JScrollPane(text),
+            "AI判断時間", JOptionPane.INFORMATION_MESSAGE);
+        requestFocusInWindow();
+    }
+
     //　フロートダイアログヘルパー
     private int showConfirmDialog(String message, String title, int optionType) {
         JOptionPane pane = new JOptionPane(message, JOptionPane.QUESTION_MESSAGE, optionType);
@@ -0,0 +1,571 @@
+package war.main;
+
+// ======================================================================
+// AIConfigOptimizer.java - AIConfig パラメータ最適化（CMA-ES）
+// ======================================================================
+// 使い方:
+//   java -cp <classpath> war.main.AIConfigOptimizer [generations] [games] [seed] [checkpoint] [output] [precision]
+//
+//   引数（すべて省略可）:
+//     generations  最大世代数（デフォルト 50）
+//     games        1候補あたりの試合数（デフォルト 200）
+//     seed         マスターシード（省略時はランダム。チェックポイントから再開する場合はそちらの値）
+//     checkpoint   チェックポイントファイル（デフォルト optimizer_checkpoint.txt）
+//     output       最良Configの出力先（デフォルト best_ai_config.json）
+//     precision    指定すると逐次評価で打ち切る（games は上限。例: 0.03）
+//
+// 設計:
+//   - AIConfig の15パラメータ（THREAT_ZONE_*, P01〜P11, RANK_*_THREAT）を
+//     CMA-ES（共分散行列適応進化戦略）で最適化する。目的は敵軍勝率の最大化
+//   - 候補の評価は同じJVM内で行い、1世代の全候補を1つのワーカープールで同時に実行する
+//     → 外部プロセス起動・WIN_RATE 行のパースが不要になり、全コアを使い切れる
+//   - 1世代の全候補は同じシード（= 同じ試合列）で評価する → 候補間の順位づけのノイズが減る
+//   - パラメータ範囲（0〜1）の外に出た候補は、範囲内に丸めた値で評価し、
+//     はみ出した距離の2乗をペナルティとして加える（分布の更新には丸める前の値を使う）
+//   - 世代ごとにチェックポイントを書き出し、同じファイルを指定して起動すれば続きから再開する。
+//     標本抽出の乱数も世代番号から決めるので、中断しても同じ経過をたどる
+//   - 世代の最高勝率の候補が通算最良の勝率を上回ったら、世代の評価とは別のシードで
+//     候補と通算最良を games 試合ずつ対比較（PairedEvaluator）し、勝った場合だけ入れ替える。
+//     世代の最高値は打ち切り・乱数で高めに出やすい（勝者の呪い）ので、そのままは記録しない。
+//     通算最良の勝率も、この比較で得た games 試合の値にする
+//   - 最良の候補が更新されるたびに best_ai_config.json と同じ形式で書き出す
+//   - precision を指定すると、候補ごとに SequentialEvaluator で評価する。
+//     閾値はその時点の通算最良勝率で、明らかに劣る／勝る候補は少ない試合数で打ち切る
+// ======================================================================
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+import war.ai.AIConfig;
+import war.tank.GameRandom;
+
+/**
+ * CMA-ES による AIConfig 最適化。
+ */
+public class AIConfigOptimizer {
+
+    // ======================================================================
+    // 定数
+    // ======================================================================
+
+    private static final int    DEFAULT_GENERATIONS = 50;
+    private static final int    DEFAULT_GAMES       = 200;
+    private static final String DEFAULT_CHECKPOINT  = "optimizer_checkpoint.txt";
+    private static final String DEFAULT_OUTPUT      = "best_ai_config.json";
+
+    /** 初期ステップ幅（パラメータ範囲 0〜1 に対する比率） */
+    private static final double INITIAL_SIGMA = 0.2;
+
+    /** 範囲外ペナルティの係数（勝率1.0の差 = はみ出し距離1.0） */
+    private static final double BOUND_PENALTY = 1.0;
+
+    /** ステップ幅がこれを下回ったら収束とみなして打ち切る */
+    private static final double MIN_SIGMA = 1e-4;
+
+    // ======================================================================
+    // 実行設定
+    // ======================================================================
+
+    private final int          games;
+    private final ForkJoinPool pool;
+    private final Path         checkpointPath;
+    private final Path         outputPath;
+    private long               masterSeed;
+
+    /** 逐次評価の精度（0 なら毎回 games 試合すべてを実行） */
+    private double             earlyStopPrecision = 0.0;
+
+    /** 直前の世代で実際に使った試合数の合計 */
+    private long               lastGenerationGames;
+
+    // ======================================================================
+    // CMA-ES の戦略パラメータ（次元数から決まる定数）
+    // ======================================================================
+
+    private final int      n;           // 次元数
+    private final int      lambda;      // 1世代の候補数
+    private final int      mu;          // 親の数
+    private final double[] weights;     // 親の重み（合計1）
+    private final double   mueff;
+    private final double   cc, cs, c1, cmu, damps, chiN;
+
+    // ======================================================================
+    // CMA-ES の状態（チェックポイント対象）
+    // ======================================================================
+
+    private int        generation;
+    private double     sigma;
+    private double[]   mean;
+    private double[]   pc;              // 共分散行列の進化パス
+    private double[]   ps;              // ステップ幅の進化パス
+    private double[][] C;               // 共分散行列
+
+    private double[]   best;            // これまでの最良候補（範囲内に丸めた値）
+    private double     bestWinRate = -1.0;
+
+    /** C = B * diag(D^2) * B^T（世代ごとに C から求め直す） */
+    private final double[][] B;
+    private final double[]   D;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param initial        初期平均にするConfig
+     * @param games          1候補あたりの試合数
+     * @param masterSeed     マスターシード
+     * @param pool           候補評価に使うワーカープール
+     * @param checkpointPath チェックポイントファイル
+     * @param outputPath     最良Configの出力先
+     */
+    public AIConfigOptimizer(AIConfig initial, int games, long masterSeed, ForkJoinPool pool,
+                             Path checkpointPath, Path outputPath) {
+        this.games          = games;
+        this.masterSeed     = masterSeed;
+        this.pool           = pool;
+        this.checkpointPath = checkpointPath;
+        this.outputPath     = outputPath;
+
+        // --- 戦略パラメータ（Hansen の標準設定） ---
+        n      = AIConfig.PARAM_NAMES.length;
+        lambda = 4 + (int) Math.floor(3 * Math.log(n));
+        mu     = lambda / 2;
+
+        weights = new double[mu];
+        double sum = 0;
+        for (int i = 0; i < mu; i++) {
+            weights[i] = Math.log(mu + 0.5) - Math.log(i + 1);
+            sum += weights[i];
+        }
+        double sumSq = 0;
+        for (int i = 0; i < mu; i++) {
+            weights[i] /= sum;
+            sumSq += weights[i] * weights[i];
+        }
+        mueff = 1.0 / sumSq;
+
+        cc    = (4 + mueff / n) / (n + 4 + 2 * mueff / n);
+        cs    = (mueff + 2) / (n + mueff + 5);
+        c1    = 2 / ((n + 1.3) * (n + 1.3) + mueff);
+        cmu   = Math.min(1 - c1, 2 * (mueff - 2 + 1 / mueff) / ((n + 2) * (n + 2) + mueff));
+        damps = 1 + 2 * Math.max(0, Math.sqrt((mueff - 1) / (n + 1)) - 1) + cs;
+        chiN  = Math.sqrt(n) * (1 - 1.0 / (4 * n) + 1.0 / (21.0 * n * n));
+
+        // --- 初期状態 ---
+        generation = 0;
+        sigma      = INITIAL_SIGMA;
+        mean       = clamp(initial.toArray());
+        pc         = new double[n];
+        ps         = new double[n];
+        C          = new double[n][n];
+        for (int i = 0; i < n; i++) C[i][i] = 1.0;
+
+        B = new double[n][n];
+        D = new double[n];
+    }
+
+    // ======================================================================
+    // メイン
+    // ======================================================================
+
+    public static void main(String[] args) throws IOException {
+        int    generations = (args.length >= 1) ? Integer.parseInt(args[0]) : DEFAULT_GENERATIONS;
+        int    games       = (args.length >= 2) ? Integer.parseInt(args[1]) : DEFAULT_GAMES;
+        long   seed        = (args.length >= 3) ? Long.parseLong(args[2])   : new SplittableRandom().nextLong();
+        Path   checkpoint  = Paths.get((args.length >= 4) ? args[3] : DEFAULT_CHECKPOINT);
+        Path   output      = Paths.get((args.length >= 5) ? args[4] : DEFAULT_OUTPUT);
+        double precision   = (args.length >= 6) ? Double.parseDouble(args[5]) : 0.0;
+
+        // 既存の最良Configがあればそこから探索を始める
+        AIConfig initial = Files.exists(output) ? AIConfig.fromJson(output.toString()) : new AIConfig();
+
+        ForkJoinPool pool = new ForkJoinPool(ParallelBatchRunner.defaultParallelism());
+        try {
+            AIConfigOptimizer opt = new AIConfigOptimizer(initial, games, seed, pool, checkpoint, output);
+            opt.setEarlyStopping(precision);
+            if (Files.exists(checkpoint)) {
+                opt.loadCheckpoint();
+                System.out.printf("チェックポイントから再開: 世代 %d, シード %d%n",
+                                  opt.generation, opt.masterSeed);
+            } else {
+                System.out.printf("最適化開始: シード %d, 候補数 %d, 試合数 %d%n",
+                                  opt.masterSeed, opt.lambda, games);
+            }
+            opt.run(generations);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // ======================================================================
+    // 公開API
+    // ======================================================================
+
+    /**
+     * 指定世代数に達するか収束するまで最適化を進める。
+     *
+     * @param maxGenerations 最大世代数（再開時は通算の世代数）
+     * @return これまでの最良Config
+     */
+    public AIConfig run(int maxGenerations) throws IOException {
+        while (generation < maxGenerations && sigma > MIN_SIGMA) {
+            long start = System.nanoTime();
+            double[] winRates = step();
+            double sec = (System.nanoTime() - start) / 1e9;
+
+            double genBest = 0, genMean = 0;
+            for (double w : winRates) {
+                genBest = Math.max(genBest, w);
+                genMean += w / winRates.length;
+            }
+            System.out.printf("世代 %3d  最良 %.4f  平均 %.4f  通算最良 %.4f  sigma %.4f  試合数 %d  (%.1f秒)%n",
+                              generation, genBest, genMean, bestWinRate, sigma, lastGenerationGames, sec);
+            saveCheckpoint();
+        }
+        return AIConfig.fromArray(best != null ? best : mean);
+    }
+
+    /**
+     * 逐次評価による打ち切りを有効にする。
+     *
+     * @param precision 信頼区間の半幅がこれ以下になったら打ち切る（0 で無効 = 毎回 games 試合）
+     */
+    public void setEarlyStopping(double precision) {
+        this.earlyStopPrecision = precision;
+    }
+
+    /** これまでの最良Config の勝率（未評価なら -1） */
+    public double getBestWinRate() {
+        return bestWinRate;
+    }
+
+    // ======================================================================
+    // CMA-ES 1世代
+    // ======================================================================
+
+    /**
+     * 候補の生成・評価・分布の更新を1世代分行う。
+     *
+     * @return 各候補の勝率（生成順）
+     */
+    private double[] step() throws IOException {
+        updateEigen();
+
+        // --- 候補の生成: x = mean + sigma * B * D * z ---
+        GameRandom rng = new GameRandom(GameRandom.seedFor(~masterSeed, generation + 1));
+        double[][] z = new double[lambda][n];
+        double[][] x = new double[lambda][n];
+        for (int k = 0; k < lambda; k++) {
+            for (int i = 0; i < n; i++) z[k][i] = rng.nextGaussian();
+            for (int i = 0; i < n; i++) {
+                double v = 0;
+                for (int j = 0; j < n; j++) v += B[i][j] * D[j] * z[k][j];
+                x[k][i] = mean[i] + sigma * v;
+            }
+        }
+
+        // --- 評価（全候補を同時に、同じ試合列で） ---
+        long evalSeed = GameRandom.seedFor(masterSeed, generation + 1);
+        List<CompletableFuture<SequentialEvaluator.Estimate>> jobs = new ArrayList<>();
+        for (int k = 0; k < lambda; k++) {
+            AIConfig cfg = AIConfig.fromArray(clamp(x[k]));
+            jobs.add(CompletableFuture.supplyAsync(() -> evaluate(cfg, evalSeed), pool));
+        }
+        double[] winRates = new double[lambda];
+        double[] fitness  = new double[lambda];     // 小さいほど良い
+        lastGenerationGames = 0;
+        for (int k = 0; k < lambda; k++) {
+            SequentialEvaluator.Estimate e = jobs.get(k).join();
+            winRates[k] = e.winRate;
+            fitness[k]  = (1.0 - winRates[k]) + BOUND_PENALTY * boundViolation(x[k]);
+            lastGenerationGames += e.games;
+        }
+
+        // --- 並べ替え（fitness 昇順の添字） ---
+        Integer[] order = new Integer[lambda];
+        for (int k = 0; k < lambda; k++) order[k] = k;
+        Arrays.sort(order, (a, b) -> Double.compare(fitness[a], fitness[b]));
+
+        // 最良の記録は勝率そのもので比べる（評価は範囲内に丸めた値で行っているのでペナルティは不要）
+        int top = 0;
+        for (int k = 1; k < lambda; k++) {
+            if (winRates[k] > winRates[top]) top = k;
+        }
+        if (winRates[top] > bestWinRate) challenge(clamp(x[top]));
+
+        // --- 平均の更新 ---
+        double[] oldMean = mean.clone();
+        double[] zMean   = new double[n];
+        mean = new double[n];
+        for (int r = 0; r < mu; r++) {
+            int k = order[r];
+            for (int i = 0; i < n; i++) {
+                mean[i]  += weights[r] * x[k][i];
+                zMean[i] += weights[r] * z[k][i];
+            }
+        }
+
+        // --- 進化パスの更新 ---
+        // ps は B * z（= C^(-1/2) * (mean - oldMean) / sigma）で更新する
+        double csFactor = Math.sqrt(cs * (2 - cs) * mueff);
+        for (int i = 0; i < n; i++) {
+            double bz = 0;
+            for (int j = 0; j < n; j++) bz += B[i][j] * zMean[j];
+            ps[i] = (1 - cs) * ps[i] + csFactor * bz;
+        }
+        double psNorm = norm(ps);
+        boolean hsig = psNorm / Math.sqrt(1 - Math.pow(1 - cs, 2.0 * (generation + 1))) / chiN
+                     < 1.4 + 2.0 / (n + 1);
+
+        double ccFactor = Math.sqrt(cc * (2 - cc) * mueff);
+        for (int i = 0; i < n; i++) {
+            pc[i] = (1 - cc) * pc[i] + (hsig ? ccFactor * (mean[i] - oldMean[i]) / sigma : 0);
+        }
+
+        // --- 共分散行列の更新（rank-1 + rank-mu） ---
+        double hsigCorr = hsig ? 0 : cc * (2 - cc);
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j <= i; j++) {
+                double rankMu = 0;
+                for (int r = 0; r < mu; r++) {
+                    int k = order[r];
+                    rankMu += weights[r] * (x[k][i] - oldMean[i]) * (x[k][j] - oldMean[j]);
+                }
+                rankMu /= sigma * sigma;
+                double v = (1 - c1 - cmu) * C[i][j]
+                         + c1 * (pc[i] * pc[j] + hsigCorr * C[i][j])
+                         + cmu * rankMu;
+                C[i][j] = v;
+                C[j][i] = v;
+            }
+        }
+
+        // --- ステップ幅の更新 ---
+        sigma *= Math.exp((cs / damps) * (psNorm / chiN - 1));
+        sigma  = Math.min(sigma, 1.0);      // 範囲幅（1.0）より大きく広がらないように
+
+        generation++;
+        return winRates;
+    }
+
+    /**
+     * 世代の最良候補を、世代の評価とは別のシードで games 試合評価し直し、通算最良より良ければ入れ替える。
+     * 通算最良があれば同じ試合列で対比較し、候補だけが勝った試合の方が多い場合に入れ替える。
+     * どちらの場合も通算最良の勝率は、この games 試合での値にする（選んだときの値は使わない）。
+     */
+    private void challenge(double[] candidate) throws IOException {
+        long     seed = GameRandom.seedFor(masterSeed, -(generation + 1));
+        AIConfig cfg  = AIConfig.fromArray(candidate);
+        if (best == null) {
+            ParallelBatchRunner runner = new ParallelBatchRunner(ParallelBatchRunner.quietWorkers(cfg, seed), pool);
+            best        = candidate;
+            bestWinRate = runner.enemyWinRate(games);
+            lastGenerationGames += games;
+            writeBest();
+            return;
+        }
+        PairedEvaluator.Comparison c =
+            new PairedEvaluator(cfg, AIConfig.fromArray(best), seed, pool).compare(Math.max(2, games));
+        lastGenerationGames += 2L * c.games;
+        if (c.diff > 0) {
+            best        = candidate;
+            bestWinRate = c.candidateWinRate;
+            writeBest();
+        } else {
+            bestWinRate = c.baselineWinRate;
+        }
+    }
+
+    /** 候補1つを評価する（逐次評価が無効なら games 試合を1ブロックで実行） */
+    private SequentialEvaluator.Estimate evaluate(AIConfig cfg, long evalSeed) {
+        ParallelBatchRunner runner =
+            new ParallelBatchRunner(ParallelBatchRunner.quietWorkers(cfg, evalSeed), pool);
+        SequentialEvaluator eval = new SequentialEvaluator(runner, games);
+        if (earlyStopPrecision <= 0) {
+            return eval.setBlockSize(games).evaluate();
+        }
+        return eval.setPrecision(earlyStopPrecision)
+                   .setThreshold(bestWinRate >= 0 ? bestWinRate : Double.NaN)
+                   .evaluate();
+    }
+
+    /** 共分散行列 C を固有値分解し、B（固有ベクトル）と D（固有値の平方根）を求める */
+    private void updateEigen() {
+        double[][] a = new double[n][];
+        for (int i = 0; i < n; i++) a[i] = C[i].clone();
+        double[] eigen = new double[n];
+        jacobi(a, B, eigen);
+        for (int i = 0; i < n; i++) {
+            D[i] = Math.sqrt(Math.max(eigen[i], 1e-20));
+        }
+    }
+
+    /**
+     * 対称行列の固有値分解（ヤコビ法）。15次元なので毎世代計算しても十分速い。
+     *
+     * @param a      対称行列（破壊される）
+     * @param v      固有ベクトルの出力先（列ごと）
+     * @param eigen  固有値の出力先
+     */
+    private static void jacobi(double[][] a, double[][] v, double[] eigen) {
+        int size = a.length;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) v[i][j] = (i == j) ? 1.0 : 0.0;
+        }
+
+        for (int sweep = 0; sweep < 100; sweep++) {
+            double off = 0;
+            for (int i = 0; i < size; i++) {
+                for (int j = i + 1; j < size; j++) off += a[i][j] * a[i][j];
+            }
+            if (off < 1e-30) break;
+
+            for (int p = 0; p < size; p++) {
+                for (int q = p + 1; q < size; q++) {
+                    if (Math.abs(a[p][q]) < 1e-300) continue;
+                    double theta = (a[q][q] - a[p][p]) / (2 * a[p][q]);
+                    double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+                    if (theta == 0) t = 1.0;
+                    double c = 1 / Math.sqrt(t * t + 1);
+                    double s = t * c;
+
+                    for (int k = 0; k < size; k++) {        // 列 p, q の回転
+                        double akp = a[k][p], akq = a[k][q];
+                        a[k][p] = c * akp - s * akq;
+                        a[k][q] = s * akp + c * akq;
+                    }
+                    for (int k = 0; k < size; k++) {        // 行 p, q の回転
+                        double apk = a[p][k], aqk = a[q][k];
+                        a[p][k] = c * apk - s * aqk;
+                        a[q][k] = s * apk + c * aqk;
+                    }
+                    for (int k = 0; k < size; k++) {
+                        double vkp = v[k][p], vkq = v[k][q];
+                        v[k][p] = c * vkp - s * vkq;
+                        v[k][q] = s * vkp + c * vkq;
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < size; i++) eigen[i] = a[i][i];
+    }
+
+    // ======================================================================
+    // 範囲制約
+    // ======================================================================
+
+    /** 各要素をパラメータ範囲内に丸めたコピーを返す */
+    private static double[] clamp(double[] x) {
+        double[] c = new double[x.length];
+        for (int i = 0; i < x.length; i++) {
+            c[i] = Math.max(AIConfig.PARAM_MIN, Math.min(AIConfig.PARAM_MAX, x[i]));
+        }
+        return c;
+    }
+
+    /** 範囲からはみ出した距離の2乗和 */
+    private static double boundViolation(double[] x) {
+        double sum = 0;
+        for (double v : x) {
+            double d = (v < AIConfig.PARAM_MIN) ? AIConfig.PARAM_MIN - v
+                     : (v > AIConfig.PARAM_MAX) ? v - AIConfig.PARAM_MAX : 0;
+            sum += d * d;
+        }
+        return sum;
+    }
+
+    private static double norm(double[] v) {
+        double sum = 0;
+        for (double e : v) sum += e * e;
+        return Math.sqrt(sum);
+    }
+
+    // ======================================================================
+    // 入出力
+    // ======================================================================
+
+    /** 最良Configを best_ai_config.json と同じ形式で書き出す */
+    private void writeBest() throws IOException {
+        writeAtomically(outputPath, AIConfig.fromArray(best).toJson() + "\n");
+    }
+
+    /**
+     * 状態をチェックポイントファイルに書き出す（1行1項目「キー=値」、配列は空白区切り）。
+     * 値は Double.toString で書くので、読み戻すと完全に同じ状態になる。
+     */
+    private void saveCheckpoint() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        sb.append("masterSeed=").append(masterSeed).append('\n');
+        sb.append("generation=").append(generation).append('\n');
+        sb.append("sigma=").append(sigma).append('\n');
+        sb.append("bestWinRate=").append(bestWinRate).append('\n');
+        appendArray(sb, "mean", mean);
+        appendArray(sb, "pc", pc);
+        appendArray(sb, "ps", ps);
+        if (best != null) appendArray(sb, "best", best);
+        for (int i = 0; i < n; i++) appendArray(sb, "C" + i, C[i]);
+        writeAtomically(checkpointPath, sb.toString());
+    }
+
+    /** チェックポイントファイルから状態を読み込む */
+    private void loadCheckpoint() throws IOException {
+        Map<String, String> kv = new HashMap<>();
+        for (String line : Files.readAllLines(checkpointPath, StandardCharsets.UTF_8)) {
+            int eq = line.indexOf('=');
+            if (eq > 0) kv.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+        }
+        masterSeed  = Long.parseLong(require(kv, "masterSeed"));
+        generation  = Integer.parseInt(require(kv, "generation"));
+        sigma       = Double.parseDouble(require(kv, "sigma"));
+        bestWinRate = Double.parseDouble(require(kv, "bestWinRate"));
+        mean        = parseArray(require(kv, "mean"));
+        pc          = parseArray(require(kv, "pc"));
+        ps          = parseArray(require(kv, "ps"));
+        best        = kv.containsKey("best") ? parseArray(kv.get("best")) : null;
+        for (int i = 0; i < n; i++) C[i] = parseArray(require(kv, "C" + i));
+    }
+
+    private String require(Map<String, String> kv, String key) {
+        String v = kv.get(key);
+        if (v == null) throw new IllegalStateException("チェックポイントに " + key + " がありません: " + checkpointPath);
+        return v;
+    }
+
+    private static void appendArray(StringBuilder sb, String key, double[] v) {
+        sb.append(key).append('=');
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) sb.append(' ');
+            sb.append(v[i]);
+        }
+        sb.append('\n');
+    }
+
+    private double[] parseArray(String s) {
+        String[] parts = s.trim().split("\\s+");
+        if (parts.length != n) throw new IllegalStateException("配列の長さが違います: " + parts.length);
+        double[] v = new double[n];
+        for (int i = 0; i < n; i++) v[i] = Double.parseDouble(parts[i]);
+        return v;
+    }
+
+    /** 一時ファイルに書いてから置き換える（書き込み中に中断してもファイルが壊れない） */
+    private static void writeAtomically(Path path, String content) throws IOException {
+        Path dir = path.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, path.getFileName().toString(), ".tmp");
+        Files.write(tmp, content.getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,938 @@
+package war.main;
+
+// ======================================================================
+// ArrayBattleEngine.java - 配列ベースのヘッドレス対戦エンジン（最適化用）
+// ======================================================================
+// BattleSimulator と同じルール・同じAI（EnemyAI3 のフローチャート）で対戦するが、
+// 戦場の状態を Tank オブジェクトのリストではなく、戦車スロット番号で引く
+// プリミティブ配列（hp, x, y, angle, ammo, activePoint, side）で持つ。
+//
+//   - 試合開始時は配列を初期値で上書きするだけ（Tank の生成なし）
+//   - EnemyAI3 が毎回作る DummyTank の代わりに「影スロット」を1つ持ち、
+//     行動前の試算（AT/DT）はそのスロットに自分の状態をコピーして行う
+//   - 1試合あたりの割り当ては結果オブジェクト（BattleResult）のみ
+//
+// ルールの式（命中率・基準ダメージ・ばらつき・被弾方向）は Tank の static メソッド
+// （マス目上の距離なら Tank と同じ CombatTable の表）、
+// AC/DC/AT/DT の計算は ThreatEvaluator の static メソッドを共用しているので、
+// 同じマスターシードなら BattleSimulator.runGame と同じ試合結果になる。
+// （確認は main を実行 → 両者を同じシードで対戦させて全試合を比較する）
+//
+// 速さは BattleSimulator のおよそ3倍（main で測る）。向き・被弾方向の atan2 と double の % は
+// 表引き・引き算に置き換えてあり、残りの時間は AC/DC/AT/DT の計算（ThreatEvaluator）・移動・
+// 命中判定にほぼ均等にかかっている。これらは BattleSimulator と共用のルールの式なので、
+// 結果を変えずにこれ以上大きく（10倍など）速くする余地は少ない。
+//
+// 使い方:
+//   ArrayBattleEngine engine = ArrayBattleEngine.standard(config, seed);
+//   BattleResult r = engine.runGame(gameNo);
+//
+// 途中の盤面から試合を進めることもできる（RolloutPlanner・MctsAI の先読み）:
+//   engine.load(tanks);                                     // 実際の戦車の状態を読み込む
+//   double v = engine.rollout(self, target, plan, seed, horizon);
+//   engine.restore(seed);  engine.advance(self, target, plan);  engine.playout(self, horizon);
+//
+// スレッドセーフではない。並列実行時はスレッドごとにインスタンスを作ること。
+// ======================================================================
+
+import java.util.List;
+
+import war.ai.AIConfig;
+import war.ai.Plan;
+import war.ai.ThreatEvaluator;
+import war.ai.ThreatEvaluator.Times;
+import war.ai.pAiConfig;
+import war.main.BattleSimulator.BattleResult;
+import war.tank.CombatTable;
+import war.tank.GameRandom;
+import war.tank.Tank;
+
+/**
+ * 戦場状態をプリミティブ配列で持つ高速対戦エンジン。
+ */
+public class ArrayBattleEngine {
+
+    // ======================================================================
+    // 定数
+    // ======================================================================
+
+    private static final int FREND_SIDE = 0;
+    private static final int ENEMY_SIDE = 1;
+
+    /** angleGain の表の段数（0,30,...,180度） */
+    private static final int GAIN_STEPS = 7;
+
+    /** 向きの表で引ける座標差の範囲（-HEADING_SPAN〜HEADING_SPAN。外れたら atan2 で計算する） */
+    private static final int HEADING_SPAN  = BattleSimulator.GRID_SIZE * 2;
+    private static final int HEADING_WIDTH = HEADING_SPAN * 2 + 1;
+
+    /**
+     * progOne・escapeOne の向き（30度刻み）を座標差 [(dy + SPAN) * WIDTH + dx + SPAN] で引く表。
+     * 座標は整数なので、向きは座標差だけで決まる。atan2 が実行時間の大半だったので表にした。
+     * 値は実行時と同じ式で作る（座標差が 0 のときの符号 +0.0 / -0.0 も含めて同じ）。
+     */
+    private static final double[] PROG_HEADING   = new double[HEADING_WIDTH * HEADING_WIDTH];
+    private static final double[] ESCAPE_HEADING = new double[HEADING_WIDTH * HEADING_WIDTH];
+
+    /** 被弾方向の計算に使う、撃った戦車の方位（Tank.impactAngle の途中の値。30度刻みにしない） */
+    private static final double[] IMPACT_BEARING = new double[HEADING_WIDTH * HEADING_WIDTH];
+
+    static {
+        for (int dy = -HEADING_SPAN; dy <= HEADING_SPAN; dy++) {
+            for (int dx = -HEADING_SPAN; dx <= HEADING_SPAN; dx++) {
+                int at = (dy + HEADING_SPAN) * HEADING_WIDTH + dx + HEADING_SPAN;
+                PROG_HEADING[at]   = progHeading(dx, 0.0, dy, 0.0);
+                ESCAPE_HEADING[at] = escapeHeading(dx - 0.0, dy - 0.0);
+                IMPACT_BEARING[at] = impactBearing(dx, 0.0, dy, 0.0);
+            }
+        }
+    }
+
+    // ======================================================================
+    // 諸元（テンプレート戦車ごと・不変）
+    // ======================================================================
+
+    /** 戦車数（影スロットを除く） */
+    private final int n;
+
+    /** 試算用の影スロット番号（= n） */
+    private final int shadow;
+
+    private final int[]    maxHp, attack, defense, range, ahd, maxAct;
+    private final int[]    repCst, atcCst, chgCst, movCst, rotCst;
+    private final double[] speed, rRate;
+
+    /** 被弾方向による倍率 [諸元番号 * GAIN_STEPS + 30度刻みの段] */
+    private final double[] gain;
+
+    /** 命中率・基準ダメージの表 [攻撃側の諸元番号 * n + 防御側の諸元番号] */
+    private final CombatTable[] combat;
+
+    // ======================================================================
+    // 初期状態（テンプレート戦車から取得）
+    // ======================================================================
+
+    private final int[]    hp0, ammo0, act0;
+    private final double[] x0, y0, angle0;
+
+    /** load した盤面（rollout の開始状態） */
+    private final int[]    baseHp, baseAmmo, baseAct;
+    private final double[] baseX, baseY, baseAngle;
+
+    // ======================================================================
+    // 戦場の状態（スロット番号で引く。最後の1つは影スロット）
+    // ======================================================================
+
+    private final int[]    hp;
+    private final double[] x, y, angle;
+    private final int[]    ammo;
+    private final int[]    activePoint;
+    private final int[]    side;
+
+    /** スロットが使う諸元の番号（影スロットはコピー元の諸元を使う） */
+    private final int[]    spec;
+
+    // ======================================================================
+    // AI設定（陣営ごと）
+    // ======================================================================
+
+    private final AIConfig[] sideConfig = new AIConfig[2];
+    private final int[]      sideMaxGrid = new int[2];
+
+    /** プレイヤー側で操作する戦車のスロット（BattleSimulator の tanks.get(0)） */
+    private final int controlledSlot;
+
+    // ======================================================================
+    // 乱数・作業領域
+    // ======================================================================
+
+    private final long         masterSeed;
+
+    /** スロットごとの命中判定・ダメージの乱数源（BattleSimulator と同じ分け方） */
+    private final GameRandom[] hitRng;
+    private final GameRandom[] damageRng;
+
+    /** 陣営ごとの生存戦車スロット（半ターン開始時点のスナップショット） */
+    private final int[][] sideSlots;
+    private final int[]   sideCount = new int[2];
+
+    /** 敵からの味方距離リスト（BattleState.disListFromEnemy 相当） */
+    private final double[] disList;
+
+    private int turns;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param lineup       初期配置の戦車（先頭がプレイヤー側の操作戦車。値を読むだけで変更しない）
+     * @param friendConfig プレイヤー側AIのパラメータ
+     * @param friendGrid   プレイヤー側AIの MAX_GRID
+     * @param enemyConfig  敵側AIのパラメータ
+     * @param enemyGrid    敵側AIの MAX_GRID
+     * @param masterSeed   バッチ全体の乱数シード
+     */
+    public ArrayBattleEngine(List<Tank> lineup,
+                             AIConfig friendConfig, int friendGrid,
+                             AIConfig enemyConfig,  int enemyGrid,
+                             long masterSeed) {
+        n      = lineup.size();
+        shadow = n;
+
+        maxHp   = new int[n];    attack  = new int[n];    defense = new int[n];
+        range   = new int[n];    ahd     = new int[n];    maxAct  = new int[n];
+        repCst  = new int[n];    atcCst  = new int[n];    chgCst  = new int[n];
+        movCst  = new int[n];    rotCst  = new int[n];
+        speed   = new double[n]; rRate   = new double[n];
+        gain    = new double[n * GAIN_STEPS];
+        combat  = new CombatTable[n * n];
+
+        hp0 = new int[n];    ammo0 = new int[n];    act0 = new int[n];
+        x0  = new double[n]; y0    = new double[n]; angle0 = new double[n];
+
+        baseHp = new int[n];    baseAmmo = new int[n];    baseAct = new int[n];
+        baseX  = new double[n]; baseY    = new double[n]; baseAngle = new double[n];
+
+        hp          = new int[n + 1];
+        x           = new double[n + 1];
+        y           = new double[n + 1];
+        angle       = new double[n + 1];
+        ammo        = new int[n + 1];
+        activePoint = new int[n + 1];
+        side        = new int[n + 1];
+        spec        = new int[n + 1];
+
+        for (int i = 0; i < n; i++) {
+            Tank t = lineup.get(i);
+            maxHp[i]   = t.getMaxHp();
+            attack[i]  = t.getAttack();
+            defense[i] = t.getDefense();
+            range[i]   = t.getRange();
+            ahd[i]     = t.getAhd();
+            maxAct[i]  = t.getMaxAct();
+            repCst[i]  = t.getRepCost();
+            atcCst[i]  = t.getAtcCost();
+            chgCst[i]  = t.getChgCost();
+            movCst[i]  = t.getMovCost();
+            rotCst[i]  = t.getRotCost();
+            speed[i]   = t.getSpeed();
+            rRate[i]   = t.getRrate();
+            for (int k = 0; k < GAIN_STEPS; k++) {
+                gain[i * GAIN_STEPS + k] = t.angleGain(k * 30.0);
+            }
+
+            hp0[i]    = t.getHp();
+            ammo0[i]  = t.getAmmo();
+            act0[i]   = t.activity();
+            x0[i]     = t.getX();
+            y0[i]     = t.getY();
+            angle0[i] = t.getAngle();
+            side[i]   = t.getJinei();
+            spec[i]   = i;
+        }
+
+        for (int o = 0; o < n; o++) {
+            for (int d = 0; d < n; d++) {
+                combat[o * n + d] = CombatTable.of(lineup.get(o).getCombatSpec(),
+                                                   lineup.get(d).getCombatSpec());
+            }
+        }
+
+        sideConfig[FREND_SIDE]  = friendConfig;
+        sideConfig[ENEMY_SIDE]  = enemyConfig;
+        sideMaxGrid[FREND_SIDE] = friendGrid;
+        sideMaxGrid[ENEMY_SIDE] = enemyGrid;
+        controlledSlot  = 0;
+        this.masterSeed = masterSeed;
+
+        sideSlots = new int[2][n];
+        disList   = new double[n];
+        hitRng    = new GameRandom[n];
+        damageRng = new GameRandom[n];
+        for (int s = 0; s < n; s++) {
+            hitRng[s]    = new GameRandom();
+            damageRng[s] = new GameRandom();
+        }
+    }
+
+    /**
+     * BattleSimulator と同じ編成・同じAI設定のエンジンを生成する。
+     *
+     * @param enemyConfig 敵側AIに使わせるパラメータ
+     * @param masterSeed  バッチ全体の乱数シード
+     */
+    public static ArrayBattleEngine standard(AIConfig enemyConfig, long masterSeed) {
+        // PlayerAI(GRID_SIZE - 1) は内部で EnemyAI3(GRID_SIZE - 2) を作る
+        return new ArrayBattleEngine(BattleSimulator.newLineup(),
+                                     new pAiConfig(),  BattleSimulator.GRID_SIZE - 2,
+                                     enemyConfig,      BattleSimulator.GRID_SIZE - 1,
+                                     masterSeed);
+    }
+
+    // ======================================================================
+    // 公開API
+    // ======================================================================
+
+    /**
+     * 指定した試合番号で1試合を実行する（BattleSimulator.runGame(gameNo) と同じ展開）。
+     *
+     * @param gameNo 試合番号（1始まり）
+     */
+    public BattleResult runGame(long gameNo) {
+        reset(gameNo);
+        turns = 0;
+
+        while (turns < BattleSimulator.MAX_TURNS) {
+            turns++;
+
+            // --- プレイヤー側ターン（操作戦車1両のみ行動） ---
+            playerHalfTurn();
+
+            int endResult = checkGameEnd();
+            if (endResult != -1) return buildResult(endResult);
+
+            // --- 敵側ターン ---
+            snapshotSides();
+            enemyHalfTurn(0, n);
+
+            endResult = checkGameEnd();
+            if (endResult != -1) return buildResult(endResult);
+        }
+
+        return buildResult(-1); // 引き分け
+    }
+
+    /**
+     * N試合（試合番号 1..N）を実行し、敵軍勝率を返す。
+     */
+    public double runBatchSilent(int gameCount) {
+        int enemyWins = 0;
+        for (int i = 1; i <= gameCount; i++) {
+            if (runGame(i).winner == ENEMY_SIDE) enemyWins++;
+        }
+        return (double) enemyWins / gameCount;
+    }
+
+    // ======================================================================
+    // 途中の盤面からの試合（RolloutPlanner 用）
+    // ======================================================================
+
+    /**
+     * 実際の戦場の状態（HP・位置・向き・弾薬・行動力）を読み込む。
+     * 以後の rollout はすべてこの盤面から始める。
+     *
+     * @param tanks コンストラクタに渡した lineup と同じ戦車を同じ順で（破壊された戦車も含める）
+     */
+    public void load(List<Tank> tanks) {
+        for (int s = 0; s < n; s++) {
+            Tank t = tanks.get(s);
+            baseHp[s]     = t.isAlive() ? t.getHp() : 0;
+            baseAmmo[s]   = t.getAmmo();
+            baseAct[s]    = t.activity();
+            baseX[s]      = t.getX();
+            baseY[s]      = t.getY();
+            baseAngle[s]  = t.getAngle();
+        }
+    }
+
+    /**
+     * load した盤面で、戦車 self が行動パターン plan を実行し、
+     * その後は両陣営ともフローチャートのAIで horizon ターン先まで（決着すればそこまで）進める。
+     * 手番の順序は BattleSimulator と同じ（self より後ろの自陣営の戦車が続けて行動する）。
+     *
+     * @param self    行動する戦車のスロット
+     * @param target  plan の攻撃・前進・退避の相手のスロット
+     * @param seed    命中判定・ダメージの乱数シード（同じなら同じ展開。候補どうしで揃えて比べる）
+     * @param horizon 先読みするターン数
+     * @return self の陣営から見た評価値（勝ち 1、負け -1、未決着なら HP割合の差 -1〜1）
+     */
+    public double rollout(int self, int target, Plan plan, long seed, int horizon) {
+        restore(seed);
+        int endResult = act(self, target, plan);
+        endResult = playTurns(side[self], endResult, horizon);
+        return evaluate(side[self], endResult);
+    }
+
+    /**
+     * load した盤面に戻し、命中判定・ダメージの乱数を seed で振り直す（ターン数も0に戻す）。
+     * 以後は advance / playout で1手ずつ進められる（MctsAI の探索）。
+     */
+    public void restore(long seed) {
+        for (int s = 0; s < n; s++) {
+            hp[s]          = baseHp[s];
+            ammo[s]        = baseAmmo[s];
+            activePoint[s] = baseAct[s];
+            x[s]           = baseX[s];
+            y[s]           = baseY[s];
+            angle[s]       = baseAngle[s];
+            hitRng[s].reseed(GameRandom.streamSeed(seed, 0, s, GameRandom.HIT));
+            damageRng[s].reseed(GameRandom.streamSeed(seed, 0, s, GameRandom.DAMAGE));
+        }
+        turns = 0;
+    }
+
+    /**
+     * self の手番の盤面から、self が plan を実行し、次に self の手番が来るまで
+     * （他の戦車はフローチャートのAIで）進める。
+     *
+     * @return 決着していれば勝った陣営、未決着なら -1
+     */
+    public int advance(int self, int target, Plan plan) {
+        int ownSide   = side[self];
+        int endResult = act(self, target, plan);
+        if (endResult != -1) return endResult;
+
+        turns++;
+        if (ownSide == ENEMY_SIDE) {
+            playerHalfTurn();
+            endResult = checkGameEnd();
+            if (endResult != -1) return endResult;
+            snapshotSides();
+            enemyHalfTurn(0, self);                 // self より前の戦車
+        } else {
+            snapshotSides();
+            enemyHalfTurn(0, n);
+        }
+        return checkGameEnd();
+    }
+
+    /**
+     * self の手番の盤面から、self も含めて全戦車フローチャートのAIで horizon ターン先まで進める。
+     *
+     * @return self の陣営から見た評価値（rollout と同じ）
+     */
+    public double playout(int self, int horizon) {
+        int ownSide = side[self];
+        if (ownSide == ENEMY_SIDE) {
+            snapshotSides();
+            enemyHalfTurn(self, n);
+        } else {
+            playerHalfTurn();
+        }
+        int endResult = playTurns(ownSide, checkGameEnd(), horizon);
+        return evaluate(ownSide, endResult);
+    }
+
+    /**
+     * 陣営 ownSide から見た評価値（勝ち 1、負け -1、未決着なら HP割合の差 -1〜1）。
+     *
+     * @param endResult 勝った陣営（未決着なら -1）
+     */
+    public double evaluate(int ownSide, int endResult) {
+        if (endResult == ownSide)     return  1.0;
+        if (endResult == 1 - ownSide) return -1.0;
+        return hpRatio(ownSide) - hpRatio(1 - ownSide);
+    }
+
+    /** self がフローチャートで選ぶ攻撃対象のスロット（いなければ -1） */
+    public int targetOf(int self) {
+        snapshotSides();
+        return selectTarget(self, 1 - side[self]);
+    }
+
+    /** self が plan を実行し、同じ半ターンの残りの自陣営の戦車を行動させる */
+    private int act(int self, int target, Plan plan) {
+        int ownSide = side[self];
+        snapshotSides();
+        executePlan(self, target, plan, sideMaxGrid[ownSide]);
+        activePoint[self] = maxAct[spec[self]];
+
+        int endResult = checkGameEnd();
+        if (endResult == -1 && ownSide == ENEMY_SIDE) {
+            enemyHalfTurn(self + 1, n);
+            endResult = checkGameEnd();
+        }
+        return endResult;
+    }
+
+    /** 半ターンの区切りから、決着するか horizon ターンに達するまで進める */
+    private int playTurns(int ownSide, int endResult, int horizon) {
+        while (endResult == -1 && turns < horizon) {
+            turns++;
+            if (ownSide == ENEMY_SIDE) {
+                playerHalfTurn();
+                endResult = checkGameEnd();
+                if (endResult != -1) break;
+                snapshotSides();
+                enemyHalfTurn(0, n);
+            } else {
+                snapshotSides();
+                enemyHalfTurn(0, n);
+                endResult = checkGameEnd();
+                if (endResult != -1) break;
+                playerHalfTurn();
+            }
+            endResult = checkGameEnd();
+        }
+        return endResult;
+    }
+
+    // ======================================================================
+    // 盤面の参照（局面のハッシュ計算用）
+    // ======================================================================
+
+    /** 戦車数 */
+    public int slotCount()         { return n; }
+    public int    hp(int s)        { return hp[s]; }
+    public int    maxHp(int s)     { return maxHp[spec[s]]; }
+    public double x(int s)         { return x[s]; }
+    public double y(int s)         { return y[s]; }
+    public double angle(int s)     { return angle[s]; }
+    public int    ammo(int s)      { return ammo[s]; }
+    public int    maxAmmo(int s)   { return ammo0[spec[s]]; }
+    public int    activity(int s)  { return activePoint[s]; }
+    public int    side(int s)      { return side[s]; }
+    /** restore してから進んだターン数 */
+    public int    turns()          { return turns; }
+
+    /** 行動パターンを実行する（Plan.execute の配列版） */
+    private void executePlan(int s, int t, Plan plan, int maxGrid) {
+        for (int i = 0; i < plan.length(); i++) {
+            switch (plan.step(i)) {
+                case ATC: attackTarget(s, t);                        break;
+                case ESC: escapeOne(s, t, maxGrid);                  break;
+                case APR: progOne(s, x[t], y[t], maxGrid);           break;
+                case REP: repair(s);                                 break;
+                case RLD: reloadAmmo(s, ammo0[spec[s]] - ammo[s]);   break;
+            }
+        }
+    }
+
+    /** 陣営の残りHPの合計 / 最大HPの合計 */
+    private double hpRatio(int sd) {
+        int sum = 0, max = 0;
+        for (int s = 0; s < n; s++) {
+            if (side[s] != sd) continue;
+            sum += hp[s];
+            max += maxHp[spec[s]];
+        }
+        return (max > 0) ? (double) sum / max : 0.0;
+    }
+
+    // ======================================================================
+    // 試合進行
+    // ======================================================================
+
+    private void reset(long gameNo) {
+        for (int s = 0; s < n; s++) {
+            hp[s]          = hp0[s];
+            ammo[s]        = ammo0[s];
+            activePoint[s] = act0[s];
+            x[s]           = x0[s];
+            y[s]           = y0[s];
+            angle[s]       = angle0[s];
+            hitRng[s].reseed(GameRandom.streamSeed(masterSeed, gameNo, s, GameRandom.HIT));
+            damageRng[s].reseed(GameRandom.streamSeed(masterSeed, gameNo, s, GameRandom.DAMAGE));
+        }
+    }
+
+    /** 陣営ごとの生存戦車をスロット順に記録する */
+    private void snapshotSides() {
+        sideCount[FREND_SIDE] = 0;
+        sideCount[ENEMY_SIDE] = 0;
+        for (int s = 0; s < n; s++) {
+            if (!alive(s)) continue;
+            int sd = side[s];
+            sideSlots[sd][sideCount[sd]++] = s;
+        }
+    }
+
+    /** プレイヤー側の半ターン（操作戦車1両のみ行動し、終わったら行動力を戻す） */
+    private void playerHalfTurn() {
+        snapshotSides();
+        if (alive(controlledSlot) && sideCount[ENEMY_SIDE] > 0) {
+            takeTurn(controlledSlot, ENEMY_SIDE, FREND_SIDE);
+        }
+        for (int s = 0; s < n; s++) {
+            if (side[s] == FREND_SIDE && alive(s)) activePoint[s] = maxAct[spec[s]];
+        }
+    }
+
+    /** 敵側の半ターン（snapshotSides 済みの生存戦車のうち、スロット番号が from 以上 to 未満の戦車が順に行動） */
+    private void enemyHalfTurn(int from, int to) {
+        for (int i = 0; i < sideCount[ENEMY_SIDE]; i++) {
+            int s = sideSlots[ENEMY_SIDE][i];
+            if (s < from || s >= to || !alive(s)) continue;
+            takeTurn(s, FREND_SIDE, ENEMY_SIDE);
+            activePoint[s] = maxAct[spec[s]];
+        }
+    }
+
+    private int checkGameEnd() {
+        int friends = 0, enemies = 0;
+        for (int s = 0; s < n; s++) {
+            if (!alive(s)) continue;
+            if (side[s] == FREND_SIDE) friends++;
+            else                        enemies++;
+        }
+        if (friends == 0) return ENEMY_SIDE;
+        if (enemies == 0) return FREND_SIDE;
+        return -1;
+    }
+
+    private BattleResult buildResult(int winner) {
+        int friendSurvivors = 0, enemySurvivors = 0;
+        for (int s = 0; s < n; s++) {
+            if (!alive(s)) continue;
+            if (side[s] == FREND_SIDE) friendSurvivors++;
+            else                        enemySurvivors++;
+        }
+        return new BattleResult(winner, turns, friendSurvivors, enemySurvivors);
+    }
+
+    // ======================================================================
+    // AI（EnemyAI3.takeTurn のフローチャートと同じ判断）
+    // ======================================================================
+
+    /**
+     * @param self       行動する戦車
+     * @param targetSide 攻撃対象の陣営
+     * @param ownSide    自分の陣営
+     */
+    private void takeTurn(int self, int targetSide, int ownSide) {
+        if (!alive(self)) return;
+        int target = selectTarget(self, targetSide);
+        if (target < 0) return;
+
+        AIConfig cfg     = sideConfig[side[self]];
+        int      maxGrid = sideMaxGrid[side[self]];
+
+        // *******  情報収集（StateAnalyzer.getDistanceList 相当）  *******
+        int disCount = 0;
+        int[] allies = sideSlots[ownSide];
+        for (int i = 0; i < sideCount[ownSide]; i++) {
+            int ally = allies[i];
+            if (alive(ally)) disList[disCount++] = calcDistance(ally, target);
+        }
+
+        copyToShadow(self);
+
+        double AC2 = param(Times.DOUBLE, self, target);
+        double DC2 = param(Times.DOUBLE, target, self)
+                   * ThreatEvaluator.rankThreat(cfg, disList, disCount, distance(self, target));
+
+        progOne(shadow, x[target], y[target], maxGrid);
+        double AT1 = param(Times.SINGLE, shadow, target);
+        double DT2 = param(Times.DOUBLE, target, shadow)
+                   * ThreatEvaluator.rankThreat(cfg, disList, disCount, distance(shadow, target));
+
+        double z = distance(self, target) / range[spec[self]];
+
+        if (z < cfg.THREAT_ZONE_1) {
+            if (AC2 > cfg.P01_Z1_AA_AC_2_O) {                    // P1 ATC,ATC
+                attackTarget(self, target);
+                attackTarget(self, target);
+            } else if (DT2 < cfg.P02_Z1_AE_DT_2_U) {             // P2 ATC,ESC
+                attackTarget(self, target);
+                escapeOne(self, target, maxGrid);
+            } else if (DT2 < cfg.P03_Z1_ER_DT_2_U) {             // P3 REP,ESC
+                escapeOne(self, target, maxGrid);
+                repair(self);
+            } else {                                             // P4 ESC,ESC
+                escapeOne(self, target, maxGrid);
+                escapeOne(self, target, maxGrid);
+            }
+        } else if (z < cfg.THREAT_ZONE_2) {
+            if (AT1 > cfg.P05_Z2_CA_AT_1_O) {                    // P5 APR,ATC
+                progOne(self, x[target], y[target], maxGrid);
+                attackTarget(self, target);
+            } else if (DC2 < cfg.P06_Z2_AA_DC_2_U) {             // P6 ATC,ATC
+                attackTarget(self, target);
+                attackTarget(self, target);
+            } else if (DT2 < cfg.P07_Z2_AE_DT_2_U) {             // P7 ESC,REP
+                escapeOne(self, target, maxGrid);
+                repair(self);
+            } else if (DT2 > cfg.P08_Z2_EE_DT_2_O) {             // P8 ESC,ESC
+                escapeOne(self, target, maxGrid);
+                escapeOne(self, target, maxGrid);
+            } else {                                             // P9 ESC,REP
+                escapeOne(self, target, maxGrid);
+                repair(self);
+            }
+        } else if (hp[self] < maxHp[spec[self]]) {               // ETC1
+            reloadAmmo(self, ammo0[spec[self]] - ammo[self]);
+            repair(self);
+        } else {
+            if (DT2 < cfg.P10_Z3_CC_DT_2_U) {
+                progOne(self, x[target], y[target], maxGrid);
+                progOne(shadow, x[target], y[target], maxGrid);
+                DT2 = param(Times.DOUBLE, target, shadow)
+                    * ThreatEvaluator.rankThreat(cfg, disList, disCount, distance(shadow, target));
+                if (DT2 < cfg.P11_Z3_CA_DT_2_U) {                // P11 APR,APR
+                    progOne(self, x[target], y[target], maxGrid);
+                } else {                                         // P12 APR,ATC
+                    attackTarget(self, target);
+                }
+            } else {                                             // P13
+                progOne(self, x[target], y[target], maxGrid);
+            }
+        }
+    }
+
+    /** EnemyAI3.selectTarget と同じ（HP割合×5 + 距離 が最小の相手） */
+    private int selectTarget(int self, int targetSide) {
+        int    best      = -1;
+        double bestScore = Double.MAX_VALUE;
+        int[]  cand      = sideSlots[targetSide];
+        for (int i = 0; i < sideCount[targetSide]; i++) {
+            int t = cand[i];
+            if (!alive(t)) continue;
+            double hpRatio = (double) hp[t] / maxHp[spec[t]];
+            double score   = hpRatio * 5.0 + distance(self, t);
+            if (score < bestScore) {
+                bestScore = score;
+                best      = t;
+            }
+        }
+        return best;
+    }
+
+    /** ThreatEvaluator.getParam(times, offence, deffence) と同じ */
+    private double param(Times times, int offence, int deffence) {
+        return ThreatEvaluator.getParam(times, normalDamage(offence, deffence), hitRate(offence, deffence),
+                                        rRate[spec[offence]], hp[deffence]);
+    }
+
+    /** DummyTank(self) と同じ状態を影スロットに作る（行動力は満タン） */
+    private void copyToShadow(int self) {
+        int sp = spec[self];
+        spec[shadow]        = sp;
+        side[shadow]        = side[self];
+        hp[shadow]          = hp[self];
+        x[shadow]           = x[self];
+        y[shadow]           = y[self];
+        angle[shadow]       = angle[self];
+        ammo[shadow]        = ammo0[sp];
+        activePoint[shadow] = maxAct[sp];
+    }
+
+    /** EnemyAI3.progOne と同じ（目標方向を向いて前進） */
+    private void progOne(int s, double tx, double ty, int maxGrid) {
+        double nx = clamp(tx, 0, maxGrid - 1);
+        double ny = clamp(ty, 0, maxGrid - 1);
+
+        double curAngle = angle[s];
+        int    at       = headingIndex(tx - x[s], ty - y[s]);
+        double tarAngle = (at >= 0) ? PROG_HEADING[at] : progHeading(tx, x[s], ty, y[s]);
+
+        rotate(s, tarAngle - curAngle);
+
+        if (activePoint[s] > 0 && Math.abs(tx - x[s]) + Math.abs(ty - y[s]) > 1.1) {
+            move(s, nx, ny);
+        }
+    }
+
+    /** EnemyAI3.escapeOne と同じ（敵に正面を向けたまま後退） */
+    private void escapeOne(int s, int teki, int maxGrid) {
+        if (activePoint[s] <= 0) return;
+
+        double escWayX = x[s] - x[teki];
+        double escWayY = y[s] - y[teki];
+        double nx = clamp(escWayX + x[s], 0, maxGrid - 1);
+        double ny = clamp(escWayY + y[s], 0, maxGrid - 1);
+
+        double curAngle = angle[s];
+        int    at       = headingIndex(escWayX, escWayY);
+        double tarAngle = (at >= 0) ? ESCAPE_HEADING[at] : escapeHeading(escWayX, escWayY);
+
+        rotate(s, tarAngle - curAngle);
+        if (activePoint[s] > 0) move(s, nx, ny);
+    }
+
+    /** 目標 (tx, ty) へ向かう向き（EnemyAI3.progOne と同じ式） */
+    private static double progHeading(double tx, double x, double ty, double y) {
+        return (int)(((450 - Math.toDegrees(Math.atan2(-ty + y, tx - x))) % 360 + 15)/30) * 30.0;
+    }
+
+    /** 敵に正面を向けて後退するときの向き（EnemyAI3.escapeOne と同じ式） */
+    private static double escapeHeading(double escWayX, double escWayY) {
+        return (int)(((450 - Math.toDegrees(Math.atan2( - escWayY, escWayX)) + 180 ) % 360 + 15)/30) * 30.0;
+    }
+
+    /** 撃った戦車 (fromX, fromY) の方位（Tank.impactAngle と同じ式） */
+    private static double impactBearing(double fromX, double x, double fromY, double y) {
+        return (450.0 - Math.toDegrees(Math.atan2(-fromY + y, fromX - x))) % 360.0;
+    }
+
+    /** 座標差が整数で表の範囲内なら向きの表の添字、そうでなければ -1 */
+    private static int headingIndex(double dx, double dy) {
+        int ix = (int) dx, iy = (int) dy;
+        if (ix != dx || iy != dy || Math.abs(ix) > HEADING_SPAN || Math.abs(iy) > HEADING_SPAN) return -1;
+        return (iy + HEADING_SPAN) * HEADING_WIDTH + ix + HEADING_SPAN;
+    }
+
+    // ======================================================================
+    // 戦車の行動（Tank の各メソッドと同じ規則）
+    // ======================================================================
+
+    private boolean alive(int s) {
+        return hp[s] > 0;
+    }
+
+    /** Tank.attackTarget */
+    private void attackTarget(int s, int t) {
+        int sp = spec[s];
+        if (!alive(s) || activePoint[s] < atcCst[sp] || ammo[s] <= 0) return;
+        ammo[s]--;
+
+        if (hitRng[s].nextDouble() < hitRate(s, t)) {
+            double nd = normalDamage(s, t);
+            takeDamage(t, Tank.rollDamage(nd, rRate[sp], damageRng[s]), x[s], y[s]);
+        }
+        activePoint[s] -= atcCst[sp];
+    }
+
+    /** Tank.takeDamage(damage, fromX, fromY)（被弾方向は Tank.impactAngle と同じ式を表で引く） */
+    private void takeDamage(int s, int damage, double fromX, double fromY) {
+        int    at          = headingIndex(fromX - x[s], fromY - y[s]);
+        double bearing     = (at >= 0) ? IMPACT_BEARING[at] : impactBearing(fromX, x[s], fromY, y[s]);
+        double impactAngle = mod360(bearing - angle[s] + 360);
+        hp[s] -= damage * angleGain(s, impactAngle);
+        if (hp[s] <= 0) hp[s] = 0;
+    }
+
+    /** 各戦車クラスの angleGain（30度刻みの段階関数）を表で引く */
+    private double angleGain(int s, double a) {
+        a = mod360(Math.abs(a));
+        if (a > 180) a = 360 - a;
+        int step = (int)(a / 30);
+        return (step < GAIN_STEPS) ? gain[spec[s] * GAIN_STEPS + step] : 2.0;
+    }
+
+    /** Tank.move（マス目ベースの移動） */
+    private void move(int s, double targetX, double targetY) {
+        int sp = spec[s];
+        if (!alive(s) || activePoint[s] < movCst[sp]) return;
+
+        final int count = (int)(speed[sp] * movCst[sp]);
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(targetX - x[s]) >= Math.abs(targetY - y[s])) {
+                if (targetX - x[s] >= 0) x[s] += 1;
+                else                     x[s] -= 1;
+            } else {
+                if (targetY - y[s] >= 0) y[s] += 1;
+                else                     y[s] -= 1;
+            }
+        }
+        activePoint[s] -= movCst[sp];
+    }
+
+    /** Tank.rotate（30度単位・行動力不足時の扱いも同じ） */
+    private void rotate(int s, double degrees) {
+        if (!alive(s)) return;
+        if (degrees == 0) return;
+        double rate = 1.0;
+
+        double tempDeg = Math.floorMod((long)degrees + 180, 360) - 180;
+        int angleCount = (int)(Math.round(Math.abs(tempDeg) / 30));
+
+        if (activePoint[s] < Math.abs(angleCount) * rotCst[spec[s]]) {
+            rate = activePoint[s] / angleCount;
+            angleCount = activePoint[s];
+        }
+        angle[s] = mod360(angle[s] + tempDeg * rate + 360);
+        activePoint[s] -= angleCount;
+    }
+
+    /** Tank.repair（残行動力をすべて使って回復） */
+    private void repair(int s) {
+        if (!alive(s)) return;
+        int sp = spec[s];
+        double amount = (double) activePoint[s] / repCst[sp] * maxHp[sp] / 2;
+        hp[s] = (int)Math.min(maxHp[sp], hp[s] + amount);
+        activePoint[s] = 0;
+    }
+
+    /** Tank.reloadAmmo */
+    private void reloadAmmo(int s, int amount) {
+        if (!alive(s) || activePoint[s] < chgCst[spec[s]]) return;
+        ammo[s] += amount;
+        activePoint[s] -= chgCst[spec[s]];
+    }
+
+    // ======================================================================
+    // 距離
+    // ======================================================================
+
+    /** Tank.distance と同じ式 */
+    private double distance(int a, int b) {
+        return Math.sqrt(Math.pow(x[b] - x[a], 2.0) + Math.pow(y[b] - y[a], 2.0));
+    }
+
+    /** Tank.HitRate と同じ（マス目上の距離なら表引き） */
+    private double hitRate(int s, int t) {
+        int d2 = CombatTable.gridDistanceSQ(x[t] - x[s], y[t] - y[s]);
+        if (d2 >= 0) return combat[spec[s] * n + spec[t]].hitRate(d2);
+        int sp = spec[s];
+        return Tank.hitRate(distance(s, t), ahd[sp], range[sp]);
+    }
+
+    /** Tank.normalDamage(target) と同じ（マス目上の距離なら表引き） */
+    private double normalDamage(int s, int t) {
+        int d2 = CombatTable.gridDistanceSQ(x[t] - x[s], y[t] - y[s]);
+        if (d2 >= 0) return combat[spec[s] * n + spec[t]].normalDamage(d2);
+        int sp = spec[s];
+        return Tank.normalDamage(distance(s, t), range[sp], attack[sp], defense[spec[t]]);
+    }
+
+    /** StateAnalyzer.calcDistance と同じ式 */
+    private double calcDistance(int a, int b) {
+        double dx = x[a] - x[b];
+        double dy = y[a] - y[b];
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * v % 360 と同じ値（double の % は遅いので、よく通る 0 <= v < 720 は引き算で済ませる）。
+     * 360 <= v < 720 の v - 360 は丸め誤差なしで計算できるので、% と結果は変わらない。
+     */
+    private static double mod360(double v) {
+        if (v >= 0 && v < 720) return (v >= 360) ? v - 360 : v;
+        return v % 360;
+    }
+
+    private static double clamp(double value, double min, double max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    // ======================================================================
+    // main（BattleSimulator との一致確認と速度比較）
+    // ======================================================================
+
+    public static void main(String[] args) {
+        int  games = (args.length >= 1) ? Integer.parseInt(args[0]) : 2000;
+        long seed  = (args.length >= 2) ? Long.parseLong(args[1])   : 20260101L;
+
+        AIConfig config = AIConfig.fromJson("./ai_config.json");
+        BattleSimulator   sim    = new BattleSimulator(config, seed);
+        ArrayBattleEngine engine = ArrayBattleEngine.standard(config, seed);
+        sim.setVerbose(false);
+
+        // 1. 同じシード・同じ試合番号で全試合を比較
+        int mismatches = 0;
+        for (int i = 1; i <= games; i++) {
+            String expected = sim.runGame(i).toCsvRow(i);
+            String actual   = engine.runGame(i).toCsvRow(i);
+            if (!expected.equals(actual)) {
+                if (mismatches < 10) {
+                    System.out.println("不一致: " + expected + " / " + actual);
+                }
+                mismatches++;
+            }
+        }
+        System.out.printf("一致確認: %d試合中 不一致 %d%n", games, mismatches);
+
+        // 2. 速度比較（ウォームアップ済み）
+        long t0 = System.nanoTime();
+        double simRate = sim.runBatchSilent(games);
+        long t1 = System.nanoTime();
+        double engRate = engine.runBatchSilent(games);
+        long t2 = System.nanoTime();
+        System.out.printf("BattleSimulator  : %8.0f 試合/秒（敵勝率 %.4f）%n", games / ((t1 - t0) / 1e9), simRate);
+        System.out.printf("ArrayBattleEngine: %8.0f 試合/秒（敵勝率 %.4f）BattleSimulator の %.1f 倍%n",
+                          games / ((t2 - t1) / 1e9), engRate, (double) (t1 - t0) / (t2 - t1));
+
+        if (mismatches > 0) System.exit(1);
+    }
+}
@@ -4,24 +4,127 @@ package war.main;
 // BattleEvaluator.java - Python最適化連携用エントリポイント
 // ======================================================================
 // 使い方:
-//   java -cp <classpath> war.main.BattleEvaluator <json_path> <games>
+//   java -cp <classpath> war.main.BattleEvaluator <json_path> <games> [seed]
 //
 //   引数:
 //     json_path  AIConfigのJSONファイルパス（Pythonが生成）
 //     games      試合数（例: 200）
+//     seed       乱数のマスターシード（省略時はランダム。同じ値なら同じ試合展開）
 //
 //   標準出力:
 //     WIN_RATE:0.6750
 //     （Pythonがこの行をパースして勝率を取得する）
+//
+// サーバーモード（JVMを起動したまま連続評価する）:
+//   java -cp <classpath> war.main.BattleEvaluator --server [threads]
+//
+//   標準入力（1行1リクエスト。config の中身は ai_config.json と同じキー）:
+//     {"id": 17, "games": 200, "seed": 12345, "config": {"THREAT_ZONE_1": 0.3, ...}}
+//       id     結果と対応づけるための値（数値か文字列。文字列はエスケープを解釈して書き直して返す。
+//              それ以外（配列・オブジェクトなど）は id を null にした error 行を返す）
+//       games  試合数（省略時 200）
+//       seed   マスターシード（省略時はランダム）
+//
+//   標準出力（1行1結果。完了した順に出力するので、id で対応づけること）:
+//     {"id": 17, "WIN_RATE": 0.675000, "games": 200, "seed": 12345}
+//     {"id": 18, "error": "..."}
+//
+//   - リクエストは読み込んだ順にすぐ投入し、完了を待たずに次の行を読む
+//     → Python側は結果を待たずに次々と書き込める（パイプライン化）
+//   - 全リクエストが1つのワーカープールを共有するので、JITコンパイル済みの
+//     シミュレーターがリクエスト間でも温まったまま使われる
+//   - 標準入力が閉じられたら、実行中のリクエストを終えてから終了する
+//
+//   逐次評価（早期打ち切り）: リクエストに precision / threshold を書くと、
+//   games を上限として、勝率の精度・判定が決まった時点で打ち切る（SequentialEvaluator）
+//     {"id": 19, "games": 400, "precision": 0.03, "threshold": 0.62, "config": {...}}
+//       precision  信頼区間（95%）の半幅がこれ以下になったら終了
+//       threshold  勝率がこの値より確実に上／下と分かったら終了
+//     → {"id": 19, "WIN_RATE": 0.540000, "games": 100, "seed": 12345,
+//        "ci_low": 0.421234, "ci_high": 0.654321, "stop": "BELOW"}
+//       games は実際に使った試合数
+//
+// 一括モード（1世代分の候補をまとめて評価する）:
+//   java -cp <classpath> war.main.BattleEvaluator --batch <configs.jsonl> <games> [seed] [threads]
+//
+//   configs.jsonl（1行1候補。ai_config.json と同じキーを1行に並べたもの）:
+//     {"THREAT_ZONE_1": 0.3, "THREAT_ZONE_2": 0.6, ...}
+//     {"games": 400, "THREAT_ZONE_1": 0.25, ...}      ← games を書けばその候補だけ試合数を変えられる
+//
+//   標準出力（1行1候補。完了した順なので index で対応づけること。index は0始まりの行番号）:
+//     {"index": 0, "WIN_RATE": 0.675000, "games": 200, "seed": 12345}
+//
+//   - 全候補を1つのワーカープールで同時に評価する
+//   - seed は全候補で共通（省略時はランダムに1つ決める）→ 候補どうしが同じ試合列で比較される
+//   - 行に precision / threshold を書けば、その候補はサーバーモードと同じ逐次評価になる
+//
+// 対比較モード（候補と基準を同じ乱数列で対戦させ、勝率差を求める）:
+//   java -cp <classpath> war.main.BattleEvaluator --compare <candidate.json> <baseline.json> <games> [seed]
+//
+//   標準出力:
+//     WIN_RATE:0.675000            候補の勝率
+//     BASELINE_WIN_RATE:0.640000   基準の勝率
+//     DIFF:0.035000                勝率差（候補 - 基準）
+//     STD_ERR:0.008200             勝率差の標準誤差（共通乱数法。独立に評価するより小さい）
 // ======================================================================
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Pattern;
+
 import war.ai.AIConfig;
 
 public class BattleEvaluator {
 
+    /** サーバーモードで games 省略時の試合数 */
+    private static final int DEFAULT_GAMES = 200;
+
     public static void main(String[] args) {
+        if (args.length >= 1 && args[0].equals("--server")) {
+            int threads = (args.length >= 2) ? Integer.parseInt(args[1])
+                                             : ParallelBatchRunner.defaultParallelism();
+            runServer(threads);
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("--batch")) {
+            int  games   = Integer.parseInt(args[2]);
+            long seed    = (args.length >= 4) ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+            int  threads = (args.length >= 5) ? Integer.parseInt(args[4])
+                                              : ParallelBatchRunner.defaultParallelism();
+            runConfigBatch(args[1], games, seed, threads);
+            return;
+        }
+
+        if (args.length >= 4 && args[0].equals("--compare")) {
+            AIConfig candidate = AIConfig.fromJson(args[1]);
+            AIConfig baseline  = AIConfig.fromJson(args[2]);
+            int      games     = Integer.parseInt(args[3]);
+            long     seed      = (args.length >= 5) ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+            PairedEvaluator.Comparison c = new PairedEvaluator(candidate, baseline, seed,
+                ParallelBatchRunner.defaultParallelism()).compare(games);
+            System.out.printf("WIN_RATE:%.6f%n",          c.candidateWinRate);
+            System.out.printf("BASELINE_WIN_RATE:%.6f%n", c.baselineWinRate);
+            System.out.printf("DIFF:%.6f%n",              c.diff);
+            System.out.printf("STD_ERR:%.6f%n",           c.stdErr);
+            return;
+        }
+
         if (args.length < 2) {
-            System.err.println("Usage: BattleEvaluator <json_path> <games>");
+            System.err.println("Usage: BattleEvaluator <json_path> <games> [seed]");
+            System.err.println("       BattleEvaluator --server [threads]");
+            System.err.println("       BattleEvaluator --batch <configs.jsonl> <games> [seed] [threads]");
+            System.err.println("       BattleEvaluator --compare <candidate.json> <baseline.json> <games> [seed]");
             System.exit(1);
         }
 
@@ -32,10 +135,277 @@ public class BattleEvaluator {
         AIConfig config = AIConfig.fromJson(jsonPath);
 
         // シミュレーター実行
-        BattleSimulator sim = new BattleSimulator(config);
-        double winRate = sim.runBatchSilent(games);
+        BattleSimulator sim = (args.length >= 3)
+                            ? new BattleSimulator(config, Long.parseLong(args[2]))
+                            : new BattleSimulator(config);
+        double winRate = sim.runBatchSilent(games, ParallelBatchRunner.defaultParallelism());
 
         // Python側が読み取る固定フォーマットで出力
         System.out.printf("WIN_RATE:%.6f%n", winRate);
     }
+
+    // ======================================================================
+    // サーバーモード
+    // ======================================================================
+
+    /**
+     * 標準入力からリクエストを読み続け、結果を標準出力に書く。
+     *
+     * @param threads ワーカースレッド数
+     */
+    private static void runServer(int threads) {
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PrintStream  out  = System.out;
+        ConcurrentLinkedQueue<CompletableFuture<Void>> inFlight = new ConcurrentLinkedQueue<>();
+
+        try (BufferedReader in = new BufferedReader(
+                new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isBlank()) continue;
+                final String request = line;
+                CompletableFuture<Void> f = CompletableFuture
+                    .supplyAsync(() -> evaluate(request, pool), pool)
+                    .thenAccept(result -> writeLine(out, result));
+                inFlight.add(f);
+                inFlight.removeIf(CompletableFuture::isDone);
+            }
+        } catch (IOException e) {
+            System.err.println("リクエスト読み込みエラー: " + e.getMessage());
+        }
+
+        // 入力終了 → 実行中のリクエストを待ってから終了
+        CompletableFuture.allOf(inFlight.toArray(new CompletableFuture<?>[0])).join();
+        pool.shutdown();
+    }
+
+    /**
+     * 1リクエストを評価し、出力する1行を返す（例外は error 行にする）。
+     */
+    private static String evaluate(String request, ForkJoinPool pool) {
+        String id;
+        try {
+            id = idJson(request);
+        } catch (IllegalArgumentException e) {
+            return String.format("{\"id\": null, \"error\": \"%s\"}", jsonEscape(String.valueOf(e.getMessage())));
+        }
+        try {
+            if (!request.trim().startsWith("{")) throw new IllegalArgumentException("JSONオブジェクトではない行");
+            String gamesStr = rawValue(request, "games");
+            String seedStr  = rawValue(request, "seed");
+            int  games = (gamesStr != null) ? Integer.parseInt(gamesStr) : DEFAULT_GAMES;
+            long seed  = (seedStr  != null) ? Long.parseLong(seedStr)     : new SplittableRandom().nextLong();
+            if (games <= 0) throw new IllegalArgumentException("games は1以上: " + games);
+
+            AIConfig config = AIConfig.fromJsonString(request);
+            return String.format("{\"id\": %s, %s}", id, resultFields(request, config, games, seed, pool));
+        } catch (RuntimeException e) {
+            return String.format("{\"id\": %s, \"error\": \"%s\"}", id, jsonEscape(String.valueOf(e.getMessage())));
+        }
+    }
+
+    // ======================================================================
+    // 一括モード
+    // ======================================================================
+
+    /**
+     * 候補ファイルの全Configを1つのプールで同時に評価し、完了した順に結果行を出力する。
+     *
+     * @param path         候補ファイル（1行1Config）
+     * @param defaultGames 行に games がない場合の試合数
+     * @param seed         全候補共通のマスターシード
+     * @param threads      ワーカースレッド数
+     */
+    private static void runConfigBatch(String path, int defaultGames, long seed, int threads) {
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Paths.get(path), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException("候補ファイルの読み込みに失敗: " + path, e);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PrintStream  out  = System.out;
+        List<CompletableFuture<Void>> jobs = new ArrayList<>();
+
+        int index = 0;
+        for (String line : lines) {
+            if (line.isBlank()) continue;
+            final int    idx  = index++;
+            final String json = line;
+            jobs.add(CompletableFuture
+                .supplyAsync(() -> evaluateCandidate(idx, json, defaultGames, seed, pool), pool)
+                .thenAccept(result -> writeLine(out, result)));
+        }
+
+        CompletableFuture.allOf(jobs.toArray(new CompletableFuture<?>[0])).join();
+        pool.shutdown();
+    }
+
+    /** 候補1件を評価し、出力する1行を返す（例外は error 行にする） */
+    private static String evaluateCandidate(int index, String json, int defaultGames, long seed,
+                                            ForkJoinPool pool) {
+        try {
+            String gamesStr = rawValue(json, "games");
+            int games = (gamesStr != null) ? Integer.parseInt(gamesStr) : defaultGames;
+            if (games <= 0) throw new IllegalArgumentException("games は1以上: " + games);
+
+            AIConfig config = AIConfig.fromJsonString(json);
+            return String.format("{\"index\": %d, %s}", index, resultFields(json, config, games, seed, pool));
+        } catch (RuntimeException e) {
+            return String.format("{\"index\": %d, \"error\": \"%s\"}", index, jsonEscape(String.valueOf(e.getMessage())));
+        }
+    }
+
+    // ======================================================================
+    // 共通処理
+    // ======================================================================
+
+    /**
+     * 共有プール上で評価し、結果行の WIN_RATE 以降の項目を返す。
+     * 要求に precision / threshold があれば逐次評価（games は上限）、なければ games 試合すべてを実行する。
+     */
+    private static String resultFields(String request, AIConfig config, int games, long seed,
+                                       ForkJoinPool pool) {
+        ParallelBatchRunner runner =
+            new ParallelBatchRunner(ParallelBatchRunner.quietWorkers(config, seed), pool);
+
+        String precisionStr = rawValue(request, "precision");
+        String thresholdStr = rawValue(request, "threshold");
+        if (precisionStr == null && thresholdStr == null) {
+            return String.format("\"WIN_RATE\": %.6f, \"games\": %d, \"seed\": %d",
+                                 runner.enemyWinRate(games), games, seed);
+        }
+
+        SequentialEvaluator.Estimate e = new SequentialEvaluator(runner, games)
+            .setPrecision((precisionStr != null) ? Double.parseDouble(precisionStr) : 0.0)
+            .setThreshold((thresholdStr != null) ? Double.parseDouble(thresholdStr) : Double.NaN)
+            .evaluate();
+        return String.format("\"WIN_RATE\": %.6f, \"games\": %d, \"seed\": %d, "
+                           + "\"ci_low\": %.6f, \"ci_high\": %.6f, \"stop\": \"%s\"",
+                             e.winRate, e.games, seed, e.lower, e.upper, e.reason);
+    }
+
+    /** 複数スレッドから呼ばれるので1行単位で排他し、すぐ flush する */
+    private static void writeLine(PrintStream out, String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+
+    /**
+     * JSON の文字列値として書けるようにエスケープする（引用符は付けない）。
+     * 例外メッセージの \（Windows のパスなど）・"・改行などで行の形式が壊れないようにする。
+     */
+    private static String jsonEscape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  sb.append("\\\""); break;
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n");  break;
+                case '\r': sb.append("\\r");  break;
+                case '\t': sb.append("\\t");  break;
+                default:
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else          sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /** JSON の数値の書式 */
+    private static final Pattern JSON_NUMBER = Pattern.compile("-?(0|[1-9][0-9]*)(\\.[0-9]+)?([eE][+-]?[0-9]+)?");
+
+    /**
+     * リクエスト行の id を、結果行にそのまま書ける JSON の値にする（なければ null）。
+     * 文字列はエスケープを解釈してから jsonEscape で書き直すので、\" などを含んでも結果行が壊れない。
+     *
+     * @throws IllegalArgumentException id が文字列・数値でない、または文字列が閉じていない
+     */
+    private static String idJson(String request) {
+        int start = valueStart(request, "id");
+        if (start < 0) return "null";
+        if (request.charAt(start) == '"') return "\"" + jsonEscape(parseString(request, start)) + "\"";
+
+        String raw = rawValue(request, "id");
+        if (!JSON_NUMBER.matcher(raw).matches()) {
+            throw new IllegalArgumentException("id は文字列か数値にすること");
+        }
+        return raw;
+    }
+
+    /** start の引用符から始まる JSON 文字列を、エスケープを解釈して返す */
+    private static String parseString(String json, int start) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = start + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') return sb.toString();
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i >= json.length()) break;
+            char e = json.charAt(i);
+            switch (e) {
+                case '"': case '\\': case '/': sb.append(e);    break;
+                case 'b':  sb.append('\b'); break;
+                case 'f':  sb.append('\f'); break;
+                case 'n':  sb.append('\n'); break;
+                case 'r':  sb.append('\r'); break;
+                case 't':  sb.append('\t'); break;
+                case 'u':
+                    if (i + 4 >= json.length()) throw new IllegalArgumentException("不正な \\u エスケープ");
+                    try {
+                        sb.append((char) Integer.parseInt(json.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException ex) {
+                        throw new IllegalArgumentException("不正な \\u エスケープ");
+                    }
+                    i += 4;
+                    break;
+                default:
+                    throw new IllegalArgumentException("不正なエスケープ: \\" + e);
+            }
+        }
+        throw new IllegalArgumentException("文字列が閉じていない");
+    }
+
+    /** 指定キーの値の先頭の位置（見つからなければ -1） */
+    private static int valueStart(String json, String key) {
+        String pattern = "\"" + key + "\"";
+        int keyIdx = json.indexOf(pattern);
+        if (keyIdx < 0) return -1;
+
+        int colonIdx = json.indexOf(':', keyIdx + pattern.length());
+        if (colonIdx < 0) return -1;
+
+        int start = colonIdx + 1;
+        while (start < json.length() && Character.isWhitespace(json.charAt(start))) start++;
+        return (start < json.length()) ? start : -1;
+    }
+
+    /**
+     * JSON文字列から指定キーの値をそのままの文字列で取り出す（"..." も引用符ごと返す）。
+     * リクエスト行の games / seed / precision / threshold 用。見つからなければ null。
+     */
+    private static String rawValue(String json, String key) {
+        int start = valueStart(json, key);
+        if (start < 0) return null;
+
+        int end;
+        if (json.charAt(start) == '"') {
+            end = start + 1;
+            while (end < json.length() && json.charAt(end) != '"') {
+                end += (json.charAt(end) == '\\') ? 2 : 1;     // \" で終わらない
+            }
+            if (end >= json.length()) return null;
+            end++;                                      // 閉じ引用符まで含める
+        } else {
+            end = start;
+            while (end < json.length() && ",}".indexOf(json.charAt(end)) < 0) end++;
+        }
+        return json.substring(start, end).trim();
+    }
 }
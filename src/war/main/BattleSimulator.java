@@ -7,18 +7,34 @@ package war.main;
 //   - コンストラクタに AIConfig を受け取るオーバーロードを追加
 //   - runBatchSilent(): 標準出力なしで勝率だけ返すメソッドを追加
 //   - EnemyAI3 の初期化に AIConfig を渡すよう変更
+//   - runBatch / runBatchSilent に並列度指定版を追加（ParallelBatchRunner）
+//   - 乱数をマスターシード＋試合番号で決める（runGame(gameNo) で1試合だけ再現可能）
+//   - 戦車は初回だけ生成し、2試合目以降は初期配置に戻して使い回す
+//   - 陣営ごとの生存リストは SideRoster が破壊時に更新する（毎ターンの再集計なし）
+//   - runBatchAdaptive(): 勝率の精度・判定が決まった時点で打ち切る逐次評価を追加
+//   - 乱数列を戦車×用途（命中・ダメージ）ごとに分ける（PairedEvaluator の共通乱数法のため）
+//   - バッチ集計に AI の分岐選択回数（DecisionMetrics）を追加
+//   - JFR イベント（GameEvent / SideTurnEvent）を発行（記録していなければコストなし）
+//   - 敵側AIを EnemyController の生成処理で差し替え可能に（RolloutPlanner・ExpectimaxAI）
 // ======================================================================
 
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.Supplier;
 
 import war.ai.AIConfig;
+import war.ai.DecisionMetrics;
 import war.ai.EnemyAI3;
+import war.ai.EnemyController;
 import war.control.PlayerAI;
+import war.tank.GameRandom;
 import war.tank.LightTank;
 import war.tank.MediumTank;
+import war.tank.SideRoster;
 import war.tank.Tank;
 import war.tank.Tiger2;
 
@@ -33,8 +49,8 @@ public class BattleSimulator {
 
     private static final int FREND_SIDE = 0;
     private static final int ENEMY_SIDE = 1;
-    private static final int GRID_SIZE  = 24;
-    private static final int MAX_TURNS  = 200;
+    public static final int GRID_SIZE  = 24;
+    static final int MAX_TURNS  = 200;
 
     // ======================================================================
     // インスタンス変数
@@ -42,7 +58,36 @@ public class BattleSimulator {
 
     private ArrayList<Tank> tanks;
     private final PlayerAI  playerAI;
-    private final EnemyAI3  enemyAI2;
+
+    /** 各戦車の初期配置（tanks と同じ順。試合開始時にここへ戻す） */
+    private double[] startX, startY, startAngle;
+
+    /** 陣営ごとの生存名簿（初回の initGame で生成） */
+    private SideRoster roster;
+
+    /** 名簿のビュー（コピーではないので、破壊された戦車はその場で消える） */
+    private List<Tank> friendlies;
+    private List<Tank> enemies;
+    private final EnemyController enemyAI2;
+    private final AIConfig  enemyConfig;
+
+    /** 敵側AIの生成処理（並列実行時はワーカーごとにこれで作る） */
+    private final Supplier<? extends EnemyController> enemyAIFactory;
+
+    /** 試合終了時の残弾・HP表示（並列ワーカーでは出力競合を避けるため false） */
+    private boolean verbose = true;
+
+    /** バッチ全体の乱数シード（試合ごとのシードはここから導出する） */
+    private long masterSeed;
+
+    /** 引数なし runGame() 用の試合番号カウンター */
+    private long gameCounter = 0;
+
+    /** 両陣営のAIの分岐選択回数（並列実行時はランナーの集計用インスタンスに差し替える） */
+    private DecisionMetrics metrics;
+
+    /** 戦車ごとの命中判定・ダメージの乱数源（tanks と同じ順。試合ごとに再シードして使い回す） */
+    private GameRandom[] hitRandom, damageRandom;
 
     // ======================================================================
     // コンストラクタ
@@ -59,10 +104,63 @@ public class BattleSimulator {
      * @param enemyConfig 敵側AIに使わせるパラメータ
      */
     public BattleSimulator(AIConfig enemyConfig) {
+        this(enemyConfig, new SplittableRandom().nextLong());
+    }
+
+    /**
+     * AIConfigとマスターシードを指定して生成する（再現性が必要な場合）。
+     *
+     * @param enemyConfig 敵側AIに使わせるパラメータ
+     * @param masterSeed  バッチ全体の乱数シード
+     */
+    public BattleSimulator(AIConfig enemyConfig, long masterSeed) {
         // ★ 敵AIにカスタムConfigを渡す（EnemyAI3側でコンストラクタ追加が必要）
-        enemyAI2 = new EnemyAI3(GRID_SIZE - 1, EnemyAI3.Side.PC, enemyConfig);
+        this(enemyConfig, masterSeed, () -> new EnemyAI3(GRID_SIZE - 1, EnemyAI3.Side.PC, enemyConfig));
+    }
+
+    /**
+     * 敵側AIを差し替えて生成する。
+     *
+     * @param enemyConfig    並列実行のワーカーにも渡す敵側のパラメータ
+     * @param masterSeed     バッチ全体の乱数シード
+     * @param enemyAIFactory 敵側AIの生成処理（このシミュレーター用に1回、並列実行時はワーカーごとに1回呼ぶ）
+     */
+    public BattleSimulator(AIConfig enemyConfig, long masterSeed,
+                           Supplier<? extends EnemyController> enemyAIFactory) {
+        enemyAI2 = enemyAIFactory.get();
         playerAI = new PlayerAI(GRID_SIZE - 1);
         tanks    = new ArrayList<>();
+        this.enemyConfig    = enemyConfig;
+        this.enemyAIFactory = enemyAIFactory;
+        this.masterSeed  = masterSeed;
+        setDecisionMetrics(new DecisionMetrics());
+    }
+
+    /** バッチ全体の乱数シードを返す（再現用に記録しておく） */
+    public long getMasterSeed() {
+        return masterSeed;
+    }
+
+    /** 両陣営のAIの分岐選択回数の記録先を設定する */
+    public void setDecisionMetrics(DecisionMetrics metrics) {
+        this.metrics = metrics;
+        enemyAI2.setDecisionMetrics(metrics);
+        playerAI.setDecisionMetrics(metrics);
+    }
+
+    /** 両陣営のAIの分岐選択回数 */
+    public DecisionMetrics getDecisionMetrics() {
+        return metrics;
+    }
+
+    /** 敵側AIが持つスレッドプールなどを解放する（このシミュレーターを使い終わったら呼ぶ） */
+    public void close() {
+        enemyAI2.close();
+    }
+
+    /** 試合終了時の途中経過表示を切り替える */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
     }
 
     // ======================================================================
@@ -70,37 +168,65 @@ public class BattleSimulator {
     // ======================================================================
 
     /**
-     * 1試合を実行し、結果を返す。
+     * 次の試合番号で1試合を実行し、結果を返す。
      */
     public BattleResult runGame() {
-        initGame();
+        return runGame(++gameCounter);
+    }
+
+    /**
+     * 指定した試合番号で1試合を実行し、結果を返す。
+     * 同じマスターシード・同じ試合番号なら、何試合目に呼んでも同じ展開になる。
+     *
+     * @param gameNo 試合番号（1始まり。バッチCSVの game_no と同じ）
+     */
+    public BattleResult runGame(long gameNo) {
+        GameEvent event = GameEvent.enabled() ? new GameEvent() : null;   // JFR 記録中のみ
+        if (event != null) event.begin();
+
+        BattleResult result = playGame(gameNo);
+
+        if (event != null && event.shouldCommit()) {
+            event.gameNo          = gameNo;
+            event.winner          = result.winner;
+            event.turns           = result.turns;
+            event.friendSurvivors = result.friendSurvivors;
+            event.enemySurvivors  = result.enemySurvivors;
+            event.commit();
+        }
+        return result;
+    }
+
+    private BattleResult playGame(long gameNo) {
+        initGame(gameNo);
         int turn = 0;
 
         while (turn < MAX_TURNS) {
             turn++;
 
             // --- プレイヤー側ターン ---
-            ArrayList<Tank> friendlies = getFriendlyTanks();
-            ArrayList<Tank> enemies    = getEnemyTanks();
+            SideTurnEvent sideTurn = beginSideTurn();
             playerAI.setTankList(enemies, friendlies);
             playerAI.takeTurn();
             resetSideTanks(FREND_SIDE);
+            commitSideTurn(sideTurn, gameNo, turn, FREND_SIDE);
 
             int endResult = checkGameEnd();
             if (endResult != -1) return buildResult(endResult, turn);
 
             // --- 敵側ターン ---
-            friendlies = getFriendlyTanks();
-            enemies    = getEnemyTanks();
-            for (Tank enemy : enemies) {
-                if (!enemy.isAlive()) continue;
+            // 自陣営の戦車は自分のターン中に破壊されないので、ビューを添字で回してよい
+            sideTurn = beginSideTurn();
+            for (int i = 0; i < enemies.size(); i++) {
+                Tank enemy = enemies.get(i);
                 enemyAI2.takeTurn(enemy, friendlies, enemies);
                 enemy.resetAct();
             }
+            commitSideTurn(sideTurn, gameNo, turn, ENEMY_SIDE);
 
             endResult = checkGameEnd();
             if (endResult != -1) {
-                System.out.printf("残弾=%d、HP=%d \n",tanks.get(0).getAmmo(),tanks.get(0).getHp());
+                if (verbose) System.out.printf("残弾=%d、HP=%d \n",tanks.get(0).getAmmo(),tanks.get(0).getHp());
             	
             	return buildResult(endResult, turn);
             }
@@ -118,37 +244,111 @@ public class BattleSimulator {
      */
     public double runBatchSilent(int gameCount) {
         int enemyWins = 0;
-        for (int i = 0; i < gameCount; i++) {
-            BattleResult result = runGame();
+        for (int i = 1; i <= gameCount; i++) {
+            BattleResult result = runGame(i);
             if (result.winner == ENEMY_SIDE) enemyWins++;
         }
         return (double) enemyWins / gameCount;
     }
 
+    /**
+     * N試合を並列実行し勝率を返す（標準出力なし）。
+     * ワーカーごとに専用のシミュレーターを生成するので、このインスタンスの状態は変更しない。
+     *
+     * @param gameCount   試合数
+     * @param parallelism ワーカースレッド数
+     * @return 敵軍勝率（0.0〜1.0）
+     */
+    public double runBatchSilent(int gameCount, int parallelism) {
+        return newParallelRunner(parallelism).enemyWinRate(gameCount);
+    }
+
+    /**
+     * 勝率が必要な精度に達するか、閾値より確実に上／下と分かった時点で打ち切る並列評価。
+     * 試合は第1試合から順に使うので、打ち切らなければ runBatchSilent(maxGames) と同じ試合列になる。
+     *
+     * @param maxGames    最大試合数
+     * @param precision   信頼区間の半幅がこれ以下になったら終了（0 で無効）
+     * @param threshold   この勝率より確実に上／下なら終了（NaN で無効）
+     * @param parallelism ワーカースレッド数
+     * @return 勝率・使った試合数・信頼区間
+     */
+    public SequentialEvaluator.Estimate runBatchAdaptive(int maxGames, double precision,
+                                                         double threshold, int parallelism) {
+        return new SequentialEvaluator(newParallelRunner(parallelism), maxGames)
+            .setPrecision(precision)
+            .setThreshold(threshold)
+            .evaluate();
+    }
+
     /**
      * N試合を連続実行し、結果をCSVファイルに保存する（オリジナル互換）。
      */
     public void runBatch(int gameCount, String csvPath) {
         System.out.println("=== バッチ対戦開始: " + gameCount + "試合 ===");
+        System.out.println("マスターシード: " + masterSeed);
+        metrics.reset();
+
+        BattleResult[] results = new BattleResult[gameCount];
+        int friendWins = 0;
+        for (int i = 1; i <= gameCount; i++) {
+            results[i - 1] = runGame(i);
+            if (results[i - 1].winner == FREND_SIDE) friendWins++;
+
+            if (i % 100 == 0) {
+                System.out.printf("  %d試合完了 / 友軍勝率: %.1f%%%n",
+                    i, (friendWins * 100.0 / i));
+            }
+        }
 
+        writeBatchSummary(results, csvPath);
+        System.out.print(metrics.report());
+    }
+
+    /**
+     * N試合を並列実行し、結果をCSVファイルに保存する。
+     * 集計値・CSVの行順は逐次版 runBatch と同じ（試合番号順）。
+     *
+     * @param gameCount   試合数
+     * @param csvPath     CSV出力先
+     * @param parallelism ワーカースレッド数
+     */
+    public void runBatch(int gameCount, String csvPath, int parallelism) {
+        System.out.println("=== 並列バッチ対戦開始: " + gameCount + "試合 / "
+            + parallelism + "スレッド ===");
+        System.out.println("マスターシード: " + masterSeed);
+
+        ParallelBatchRunner runner = newParallelRunner(parallelism);
+        long start = System.nanoTime();
+        BattleResult[] results = runner.run(gameCount);
+        double elapsedSec = (System.nanoTime() - start) / 1e9;
+
+        writeBatchSummary(results, csvPath);
+        System.out.printf("処理速度: %.0f 試合/秒（%.2f秒）%n", gameCount / elapsedSec, elapsedSec);
+        System.out.print(runner.getDecisionMetrics().report());
+    }
+
+    /**
+     * 試合番号順の結果をCSVファイルに書き、勝敗の集計を表示する（逐次版・並列版の runBatch 共通）。
+     *
+     * @param results 試合結果（添字0 = 第1試合）
+     * @param csvPath CSV出力先
+     */
+    private static void writeBatchSummary(BattleResult[] results, String csvPath) {
+        int gameCount = results.length;
         int friendWins = 0, enemyWins = 0, draws = 0;
 
         try (PrintWriter pw = new PrintWriter(new FileWriter(csvPath))) {
             pw.println("game_no,winner,turns,friend_survivors,enemy_survivors");
 
             for (int i = 1; i <= gameCount; i++) {
-                BattleResult result = runGame();
+                BattleResult result = results[i - 1];
 
                 pw.println(result.toCsvRow(i));
 
                 if      (result.winner == FREND_SIDE) friendWins++;
                 else if (result.winner == ENEMY_SIDE) enemyWins++;
                 else                                  draws++;
-
-                if (i % 100 == 0) {
-                    System.out.printf("  %d試合完了 / 友軍勝率: %.1f%%%n",
-                        i, (friendWins * 100.0 / i));
-                }
             }
 
         } catch (IOException e) {
@@ -166,54 +366,95 @@ public class BattleSimulator {
     // 内部処理
     // ======================================================================
 
-    private void initGame() {
-        tanks.clear();
-        tanks.add(new Tiger2("タイガー",         FREND_SIDE,  3,  3));
-        tanks.add(new LightTank("チャフィー",  ENEMY_SIDE, 20, 20));
-        tanks.add(new MediumTank("シャーマン１号", ENEMY_SIDE, 3, 20));
-        tanks.add(new MediumTank("シャーマン２号", ENEMY_SIDE, 20,  3));
-        playerAI.setControlledTank(tanks.get(0));
+    /** このシミュレーターと同じ敵Configで、ワーカー専用シミュレーターを作るランナーを返す */
+    private ParallelBatchRunner newParallelRunner(int parallelism) {
+        return new ParallelBatchRunner(
+            ParallelBatchRunner.quietWorkers(enemyConfig, masterSeed, enemyAIFactory), parallelism);
     }
 
-    private int checkGameEnd() {
-        int friends = 0, enemies = 0;
-        for (Tank t : tanks) {
-            if (!t.isAlive()) continue;
-            if (t.getJinei() == FREND_SIDE) friends++;
-            else                             enemies++;
-        }
-        if (friends == 0) return ENEMY_SIDE;
-        if (enemies == 0) return FREND_SIDE;
-        return -1;
+    /**
+     * 対戦する戦車の編成（初期配置）を生成する。
+     * 先頭がプレイヤー側の操作戦車。ArrayBattleEngine も同じ編成を使う。
+     */
+    static ArrayList<Tank> newLineup() {
+        ArrayList<Tank> lineup = new ArrayList<>();
+        lineup.add(new Tiger2("タイガー",         FREND_SIDE,  3,  3));
+        lineup.add(new LightTank("チャフィー",  ENEMY_SIDE, 20, 20));
+        lineup.add(new MediumTank("シャーマン１号", ENEMY_SIDE, 3, 20));
+        lineup.add(new MediumTank("シャーマン２号", ENEMY_SIDE, 20,  3));
+        return lineup;
     }
 
-    private BattleResult buildResult(int winner, int turns) {
-        int friendSurvivors = 0, enemySurvivors = 0;
-        for (Tank t : tanks) {
-            if (!t.isAlive()) continue;
-            if (t.getJinei() == FREND_SIDE) friendSurvivors++;
-            else                             enemySurvivors++;
+    private void initGame(long gameNo) {
+        if (tanks.isEmpty()) {
+            // 初回のみ生成し、初期配置を記録しておく
+            tanks.addAll(newLineup());
+            int n = tanks.size();
+            startX     = new double[n];
+            startY     = new double[n];
+            startAngle = new double[n];
+            for (int i = 0; i < n; i++) {
+                Tank t = tanks.get(i);
+                startX[i]     = t.getX();
+                startY[i]     = t.getY();
+                startAngle[i] = t.getAngle();
+            }
+            hitRandom    = new GameRandom[n];
+            damageRandom = new GameRandom[n];
+            for (int i = 0; i < n; i++) {
+                hitRandom[i]    = new GameRandom();
+                damageRandom[i] = new GameRandom();
+                tanks.get(i).setRandom(hitRandom[i], damageRandom[i]);
+            }
+            roster     = new SideRoster(2, n);
+            friendlies = roster.alive(FREND_SIDE);
+            enemies    = roster.alive(ENEMY_SIDE);
+        } else {
+            // 2試合目以降は生成せずに初期状態へ戻す
+            for (int i = 0; i < tanks.size(); i++) {
+                tanks.get(i).reset(startX[i], startY[i], startAngle[i]);
+            }
         }
-        return new BattleResult(winner, turns, friendSurvivors, enemySurvivors);
+        roster.rebuild(tanks);
+
+        // 戦車・用途ごとに試合専用の乱数列を使う（AI設定が違っても同じ戦車の同じ弾は同じ乱数）
+        for (int i = 0; i < tanks.size(); i++) {
+            hitRandom[i].reseed(GameRandom.streamSeed(masterSeed, gameNo, i, GameRandom.HIT));
+            damageRandom[i].reseed(GameRandom.streamSeed(masterSeed, gameNo, i, GameRandom.DAMAGE));
+        }
+        playerAI.setControlledTank(tanks.get(0));
+    }
+
+    /** JFR 記録中なら陣営ターンのイベントを開始する（記録していなければ null） */
+    private static SideTurnEvent beginSideTurn() {
+        if (!SideTurnEvent.enabled()) return null;
+        SideTurnEvent event = new SideTurnEvent();
+        event.begin();
+        return event;
     }
 
-    private ArrayList<Tank> getFriendlyTanks() {
-        ArrayList<Tank> list = new ArrayList<>();
-        for (Tank t : tanks)
-            if (t.getJinei() == FREND_SIDE && t.isAlive()) list.add(t);
-        return list;
+    private static void commitSideTurn(SideTurnEvent event, long gameNo, int turn, int side) {
+        if (event == null || !event.shouldCommit()) return;
+        event.gameNo = gameNo;
+        event.turn   = turn;
+        event.side   = side;
+        event.commit();
     }
 
-    private ArrayList<Tank> getEnemyTanks() {
-        ArrayList<Tank> list = new ArrayList<>();
-        for (Tank t : tanks)
-            if (t.getJinei() == ENEMY_SIDE && t.isAlive()) list.add(t);
-        return list;
+    private int checkGameEnd() {
+        if (roster.aliveCount(FREND_SIDE) == 0) return ENEMY_SIDE;
+        if (roster.aliveCount(ENEMY_SIDE) == 0) return FREND_SIDE;
+        return -1;
+    }
+
+    private BattleResult buildResult(int winner, int turns) {
+        return new BattleResult(winner, turns,
+            roster.aliveCount(FREND_SIDE), roster.aliveCount(ENEMY_SIDE));
     }
 
     private void resetSideTanks(int side) {
-        for (Tank t : tanks)
-            if (t.getJinei() == side && t.isAlive()) t.resetAct();
+        List<Tank> list = roster.alive(side);
+        for (int i = 0; i < list.size(); i++) list.get(i).resetAct();
     }
 
     // ======================================================================
@@ -256,7 +497,11 @@ public class BattleSimulator {
     public static void main(String[] args) {
         // デフォルト設定でバッチ実行
     	AIConfig config = AIConfig.fromJson("./ai_config.json");
-        BattleSimulator sim = new BattleSimulator(config);
-        sim.runBatch(10000, "battle_results.csv");
+        // -DenemyAI=rollout / expectimax / mcts / mlp で敵側AIを切り替える（省略時は EnemyAI3）
+        String enemyAI = System.getProperty("enemyAI");
+        BattleSimulator sim = new BattleSimulator(config, new SplittableRandom().nextLong(),
+            () -> EnemyController.create(enemyAI, GRID_SIZE - 1, config));
+        sim.runBatch(10000, "battle_results.csv", ParallelBatchRunner.defaultParallelism());
+        sim.close();
     }
 }
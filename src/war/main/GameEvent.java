@@ -0,0 +1,52 @@
+package war.main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * GameEvent - 1試合分の JFR イベント（BattleSimulator.runGame の開始〜終了）
+ *
+ * 記録していないときは enabled() が false を返し、インスタンスも作らない（DecisionEvent と同じ）。
+ *
+ * 記録方法:
+ *   java -XX:StartFlightRecording=filename=sim.jfr,settings=profile -cp ... war.main.BattleSimulator
+ *   jfr print --events war.Game sim.jfr
+ */
+@StackTrace(false)      // 発生箇所は常に同じなのでスタックは取らない
+@Name("war.Game")
+@Label("試合")
+@Category({ "War", "Simulation" })
+@Description("BattleSimulator.runGame の1試合")
+public class GameEvent extends Event {
+
+    /** イベント型（記録中のどれかで有効になっているかを、インスタンスを作らずに調べるため） */
+    private static final class Type {
+        static final EventType EVENT_TYPE = EventType.getEventType(GameEvent.class);
+    }
+
+    /** このイベントを記録中のレコーディングがあるか（無効なら BattleSimulator はインスタンスを作らない） */
+    public static boolean enabled() {
+        return Type.EVENT_TYPE.isEnabled();
+    }
+
+    @Label("試合番号")
+    public long gameNo;
+
+    @Label("勝者")
+    @Description("0 = 友軍, 1 = 敵軍, -1 = 引き分け")
+    public int winner;
+
+    @Label("ターン数")
+    public int turns;
+
+    @Label("友軍生存数")
+    public int friendSurvivors;
+
+    @Label("敵軍生存数")
+    public int enemySurvivors;
+}
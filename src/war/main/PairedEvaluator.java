@@ -0,0 +1,168 @@
+package war.main;
+
+// ======================================================================
+// PairedEvaluator.java - 共通乱数法による2つの AIConfig の対比較
+// ======================================================================
+// 使い方:
+//   PairedEvaluator pe = new PairedEvaluator(candidate, baseline, seed, 8);
+//   PairedEvaluator.Comparison c = pe.compare(400);
+//   System.out.println(c);      // 勝率差・標準誤差・独立評価との分散比
+//
+// 設計:
+//   - 2つのConfigを同じマスターシード・同じ試合番号で対戦させる。
+//     乱数列は戦車×用途（命中・ダメージ）ごとに分かれている（GameRandom.streamSeed）ので、
+//     「第 i 試合で戦車 j が k 発目に撃った弾の命中判定」は両Configで同じ乱数になる
+//   - 試合ごとの勝敗の差 d_i = (候補が勝ったか) - (基準が勝ったか) の平均と標準誤差を求める。
+//     両Configで同じ展開になる試合は d_i = 0 となり、誤差に寄与しない
+//   - 比較のため、別々の乱数で評価した場合の標準誤差（二項分布の式）も併せて出す。
+//     分散比 = 独立評価の分散 / 対比較の分散 = 同じ判定精度に必要な試合数の比
+// ======================================================================
+
+import java.util.concurrent.ForkJoinPool;
+
+import war.ai.AIConfig;
+import war.main.BattleSimulator.BattleResult;
+
+/**
+ * 2つの AIConfig を同じ乱数列で対戦させ、勝率の差を推定する。
+ */
+public class PairedEvaluator {
+
+    private static final int ENEMY_SIDE = 1;
+
+    private final ParallelBatchRunner candidateRunner;
+    private final ParallelBatchRunner baselineRunner;
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param candidate   評価したいConfig
+     * @param baseline    比較の基準にするConfig（現在の最良など）
+     * @param masterSeed  両者共通のマスターシード
+     * @param parallelism ワーカースレッド数
+     */
+    public PairedEvaluator(AIConfig candidate, AIConfig baseline, long masterSeed, int parallelism) {
+        this.candidateRunner = new ParallelBatchRunner(candidate, masterSeed, parallelism);
+        this.baselineRunner  = new ParallelBatchRunner(baseline,  masterSeed, parallelism);
+    }
+
+    /**
+     * 既存のプールで両Configを評価する（プールの終了は呼び出し側が行う）。
+     *
+     * @param candidate  評価したいConfig
+     * @param baseline   比較の基準にするConfig（現在の最良など）
+     * @param masterSeed 両者共通のマスターシード
+     * @param pool       試合を実行するプール
+     */
+    public PairedEvaluator(AIConfig candidate, AIConfig baseline, long masterSeed, ForkJoinPool pool) {
+        this.candidateRunner = new ParallelBatchRunner(ParallelBatchRunner.quietWorkers(candidate, masterSeed), pool);
+        this.baselineRunner  = new ParallelBatchRunner(ParallelBatchRunner.quietWorkers(baseline,  masterSeed), pool);
+    }
+
+    // ======================================================================
+    // 公開API
+    // ======================================================================
+
+    /**
+     * 両Configで第1〜第 gameCount 試合を実行し、勝率の差を推定する。
+     *
+     * @param gameCount 試合数（各Configごと）
+     */
+    public Comparison compare(int gameCount) {
+        if (gameCount < 2) throw new IllegalArgumentException("gameCount は2以上: " + gameCount);
+        BattleResult[] a = candidateRunner.run(gameCount);
+        BattleResult[] b = baselineRunner.run(gameCount);
+
+        int winsA = 0, winsB = 0, onlyA = 0, onlyB = 0;
+        for (int i = 0; i < gameCount; i++) {
+            boolean wa = a[i].winner == ENEMY_SIDE;
+            boolean wb = b[i].winner == ENEMY_SIDE;
+            if (wa) winsA++;
+            if (wb) winsB++;
+            if (wa && !wb) onlyA++;
+            if (wb && !wa) onlyB++;
+        }
+        return new Comparison(gameCount, winsA, winsB, onlyA, onlyB);
+    }
+
+    // ======================================================================
+    // 内部クラス: Comparison（比較結果）
+    // ======================================================================
+
+    public static class Comparison {
+        public final int    games;
+        public final double candidateWinRate;
+        public final double baselineWinRate;
+        public final int    candidateOnlyWins;      // 候補だけが勝った試合数
+        public final int    baselineOnlyWins;       // 基準だけが勝った試合数
+        public final double diff;                   // 勝率差（候補 - 基準）
+        public final double stdErr;                 // 対比較での勝率差の標準誤差
+        public final double independentStdErr;      // 別々の乱数で評価した場合の標準誤差
+
+        public Comparison(int games, int winsA, int winsB, int onlyA, int onlyB) {
+            this.games             = games;
+            this.candidateWinRate  = (double) winsA / games;
+            this.baselineWinRate   = (double) winsB / games;
+            this.candidateOnlyWins = onlyA;
+            this.baselineOnlyWins  = onlyB;
+            this.diff              = (double) (onlyA - onlyB) / games;
+
+            // d_i ∈ {-1, 0, +1} の標本分散: (Σd_i² - n·mean²) / (n-1)
+            double var = ((onlyA + onlyB) - games * diff * diff) / (games - 1);
+            this.stdErr = Math.sqrt(Math.max(var, 0.0) / games);
+
+            double pa = candidateWinRate, pb = baselineWinRate;
+            this.independentStdErr = Math.sqrt((pa * (1 - pa) + pb * (1 - pb)) / games);
+        }
+
+        /** 勝率差が標準誤差の何倍か（z値。標準誤差0なら差の符号で ±∞） */
+        public double zScore() {
+            if (stdErr > 0) return diff / stdErr;
+            return (diff == 0) ? 0.0 : Math.copySign(Double.POSITIVE_INFINITY, diff);
+        }
+
+        /** 独立評価に対する分散の比（同じ精度に必要な試合数が何分の1になるか） */
+        public double varianceRatio() {
+            if (stdErr == 0) return Double.POSITIVE_INFINITY;
+            return (independentStdErr * independentStdErr) / (stdErr * stdErr);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("候補=%.4f 基準=%.4f 差=%+.4f 標準誤差=%.4f（独立評価なら %.4f, 分散比 %.1f倍）"
+                               + " z=%.2f 不一致=%d/%d 試合数=%d",
+                                 candidateWinRate, baselineWinRate, diff, stdErr, independentStdErr,
+                                 varianceRatio(), zScore(), candidateOnlyWins, baselineOnlyWins, games);
+        }
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+
+    public static void main(String[] args) {
+        int  games = (args.length >= 1) ? Integer.parseInt(args[0]) : 2000;
+        long seed  = (args.length >= 2) ? Long.parseLong(args[1])   : 1L;
+        int  par   = ParallelBatchRunner.defaultParallelism();
+
+        // 勝率が0や1に張り付いていると差が出ないので、既定Configと最良Configの中間を基準にする
+        double[] lo = AIConfig.fromJson("./ai_config.json").toArray();
+        double[] hi = AIConfig.fromJson("./best_ai_config.json").toArray();
+        double[] mid = new double[lo.length];
+        for (int i = 0; i < mid.length; i++) mid[i] = (lo[i] + hi[i]) / 2;
+        AIConfig baseline = AIConfig.fromArray(mid);
+
+        // 基準から1パラメータずつ少しずらした候補と比べる
+        double[] v = baseline.toArray();
+        for (int i = 0; i < v.length; i += 3) {
+            double[] w = v.clone();
+            w[i] = Math.max(AIConfig.PARAM_MIN, Math.min(AIConfig.PARAM_MAX, w[i] + 0.1));
+            AIConfig candidate = AIConfig.fromArray(w);
+
+            Comparison paired = new PairedEvaluator(candidate, baseline, seed, par).compare(games);
+            System.out.printf("%-18s +0.1: %s%n", AIConfig.PARAM_NAMES[i], paired);
+        }
+    }
+}
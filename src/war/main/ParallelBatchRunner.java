@@ -0,0 +1,283 @@
+package war.main;
+
+// ======================================================================
+// ParallelBatchRunner.java - マルチコア並列バッチ実行
+// ======================================================================
+// 使い方:
+//   ParallelBatchRunner runner = new ParallelBatchRunner(config, seed, 8);
+//   BattleResult[] results = runner.run(10000);
+//
+// 設計:
+//   - ワーカースレッドごとに専用の BattleSimulator（戦車・PlayerAI・EnemyAI3）を持つ
+//     → スレッド間で共有する可変状態はない
+//   - ForkJoinPool のワークスティーリングで試合範囲を分割する
+//     → 短い試合・長い試合が混在してもスレッド間で負荷が均等になる
+//   - 結果は試合番号順の配列に格納するので、CSVの行順は逐次実行と同じ
+//   - 各試合は runGame(試合番号) で実行するので、どのスレッドが担当しても
+//     同じマスターシードなら逐次実行と同じ結果になる
+//   - AIの分岐選択回数は全ワーカーが1つの DecisionMetrics（LongAdder）に記録する
+//   - 共有プールを渡した場合は複数のバッチを同じプールで同時に実行できる
+//     （評価サーバーで複数リクエストを並行処理するため）
+// ======================================================================
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+import war.ai.AIConfig;
+import war.ai.DecisionMetrics;
+import war.ai.EnemyController;
+import war.main.BattleSimulator.BattleResult;
+
+/**
+ * 試合を複数スレッドで並列実行するバッチランナー。
+ */
+public class ParallelBatchRunner {
+
+    // ======================================================================
+    // 定数
+    // ======================================================================
+
+    /**
+     * これ以下の試合数になったら分割せずに実行する（ワークスティーリングの粒度）。
+     * 1回の実行の試合数が少ないときは、全ワーカーに仕事が行き渡るよう小さくする（leafGames）。
+     */
+    private static final int LEAF_GAMES = 16;
+
+    // ======================================================================
+    // インスタンス変数
+    // ======================================================================
+
+    /** ワーカー専用シミュレーターの生成方法 */
+    private final Supplier<BattleSimulator> simulatorFactory;
+
+    /** 並列度（ワーカースレッド数） */
+    private final int parallelism;
+
+    /** 共有プール（null なら run() のたびに専用プールを作る） */
+    private final ForkJoinPool sharedPool;
+
+    /** 全ワーカーのAI分岐選択回数（ワーカーのシミュレーターはすべてここに記録する） */
+    private final DecisionMetrics metrics = new DecisionMetrics();
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param enemyConfig 敵側AIに使わせるパラメータ
+     * @param masterSeed  バッチ全体の乱数シード（全ワーカー共通）
+     * @param parallelism ワーカースレッド数（1以上）
+     */
+    public ParallelBatchRunner(AIConfig enemyConfig, long masterSeed, int parallelism) {
+        this(quietWorkers(enemyConfig, masterSeed), parallelism);
+    }
+
+    /**
+     * @param simulatorFactory ワーカーごとに呼ばれるシミュレーター生成処理
+     *                         （全ワーカーで同じマスターシードにすること）
+     * @param parallelism      ワーカースレッド数（1以上）
+     */
+    public ParallelBatchRunner(Supplier<BattleSimulator> simulatorFactory, int parallelism) {
+        this.simulatorFactory = simulatorFactory;
+        this.parallelism      = Math.max(1, parallelism);
+        this.sharedPool       = null;
+    }
+
+    /**
+     * 既存のプールで実行するランナーを生成する（プールの終了は呼び出し側が行う）。
+     *
+     * @param simulatorFactory ワーカーごとに呼ばれるシミュレーター生成処理
+     * @param sharedPool       試合を実行するプール
+     */
+    public ParallelBatchRunner(Supplier<BattleSimulator> simulatorFactory, ForkJoinPool sharedPool) {
+        this.simulatorFactory = simulatorFactory;
+        this.parallelism      = sharedPool.getParallelism();
+        this.sharedPool       = sharedPool;
+    }
+
+    /** 標準出力なしのワーカーシミュレーターを作る生成処理を返す */
+    public static Supplier<BattleSimulator> quietWorkers(AIConfig enemyConfig, long masterSeed) {
+        return () -> {
+            BattleSimulator worker = new BattleSimulator(enemyConfig, masterSeed);
+            worker.setVerbose(false);       // 標準出力のロック競合を避ける
+            return worker;
+        };
+    }
+
+    /** 敵側AIを差し替えた、標準出力なしのワーカーシミュレーターを作る生成処理を返す */
+    public static Supplier<BattleSimulator> quietWorkers(AIConfig enemyConfig, long masterSeed,
+                                                         Supplier<? extends EnemyController> enemyAIFactory) {
+        return () -> {
+            BattleSimulator worker = new BattleSimulator(enemyConfig, masterSeed, enemyAIFactory);
+            worker.setVerbose(false);
+            return worker;
+        };
+    }
+
+    /** 実行環境のコア数を返す（並列度のデフォルト値） */
+    public static int defaultParallelism() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // ======================================================================
+    // 公開API
+    // ======================================================================
+
+    /**
+     * N試合を並列実行し、試合番号順（添字0 = 第1試合）の結果配列を返す。
+     *
+     * @param gameCount 試合数
+     * @return 各試合の結果
+     */
+    public BattleResult[] run(int gameCount) {
+        return run(1, gameCount);
+    }
+
+    /**
+     * 試合番号 firstGame から gameCount 試合を並列実行し、試合番号順の結果配列を返す。
+     * 逐次評価で「続きの試合」を追加実行するために使う。
+     *
+     * @param firstGame 最初の試合番号（1始まり）
+     * @param gameCount 試合数
+     * @return 各試合の結果（添字0 = 第 firstGame 試合）
+     */
+    public BattleResult[] run(long firstGame, int gameCount) {
+        try (Session session = open()) {
+            return session.run(firstGame, gameCount);
+        }
+    }
+
+    /**
+     * プールとワーカーのシミュレーターを保ったまま、続けて何回も実行するためのセッションを開く。
+     * 逐次評価のように少しずつ追加実行する場合に使う（実行のたびにプール・AI・JIT の状態を作り直さない）。
+     * 使い終わったら close すること。
+     */
+    public Session open() {
+        return new Session();
+    }
+
+    /** 並列度（ワーカースレッド数） */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /** このランナーで実行した全試合の、AI分岐選択回数（全ワーカー合算） */
+    public DecisionMetrics getDecisionMetrics() {
+        return metrics;
+    }
+
+    /**
+     * N試合を並列実行し、敵軍勝率を返す。
+     *
+     * @param gameCount 試合数
+     * @return 敵軍勝率（0.0〜1.0）
+     */
+    public double enemyWinRate(int gameCount) {
+        return (double) countEnemyWins(1, gameCount) / gameCount;
+    }
+
+    /**
+     * 試合番号 firstGame から gameCount 試合を並列実行し、敵軍の勝利数を返す。
+     *
+     * @param firstGame 最初の試合番号（1始まり）
+     * @param gameCount 試合数
+     * @return 敵軍勝利数
+     */
+    public int countEnemyWins(long firstGame, int gameCount) {
+        try (Session session = open()) {
+            return session.countEnemyWins(firstGame, gameCount);
+        }
+    }
+
+    /** gameCount 試合を実行するときの分割の粒度（ワーカー1つあたり数個の塊になるように） */
+    private int leafGames(int gameCount) {
+        return Math.max(1, Math.min(LEAF_GAMES, gameCount / (parallelism * 4)));
+    }
+
+    // ======================================================================
+    // 内部クラス: Session（プールとワーカーのシミュレーターを保った連続実行）
+    // ======================================================================
+
+    public final class Session implements AutoCloseable {
+
+        /** 共有プールがなければこのセッション専用に作る */
+        private final ForkJoinPool pool = (sharedPool != null) ? sharedPool : new ForkJoinPool(parallelism);
+
+        /** このセッション専用のスレッドローカル → close 後は参照されなくなり破棄される */
+        private final Queue<BattleSimulator> created = new ConcurrentLinkedQueue<>();
+        private final ThreadLocal<BattleSimulator> workerSim = ThreadLocal.withInitial(() -> {
+            BattleSimulator sim = simulatorFactory.get();
+            sim.setDecisionMetrics(metrics);
+            created.add(sim);
+            return sim;
+        });
+
+        private Session() {}
+
+        /** 試合番号 firstGame から gameCount 試合を並列実行し、試合番号順の結果配列を返す */
+        public BattleResult[] run(long firstGame, int gameCount) {
+            BattleResult[] results = new BattleResult[gameCount];
+            if (gameCount <= 0) return results;
+            pool.invoke(new GameRange(results, workerSim, firstGame, 0, gameCount, leafGames(gameCount)));
+            return results;
+        }
+
+        /** 試合番号 firstGame から gameCount 試合を並列実行し、敵軍の勝利数を返す */
+        public int countEnemyWins(long firstGame, int gameCount) {
+            int enemyWins = 0;
+            for (BattleResult result : run(firstGame, gameCount)) {
+                if (result.winner == 1) enemyWins++;        // 1 = 敵軍勝利
+            }
+            return enemyWins;
+        }
+
+        /** 専用プールを止め、ワーカーのシミュレーターを close する（敵側AIのスレッドプールを止めるため） */
+        @Override
+        public void close() {
+            if (pool != sharedPool) pool.shutdown();
+            for (BattleSimulator sim : created) sim.close();
+        }
+    }
+
+    // ======================================================================
+    // 内部クラス: GameRange（試合範囲の分割タスク）
+    // ======================================================================
+
+    private static class GameRange extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BattleResult[] results;
+        private final ThreadLocal<BattleSimulator> workerSim;
+        private final long firstGame;   // results[0] の試合番号
+        private final int  from;        // 含む
+        private final int  to;          // 含まない
+        private final int  leaf;        // これ以下なら分割しない
+
+        GameRange(BattleResult[] results, ThreadLocal<BattleSimulator> workerSim,
+                  long firstGame, int from, int to, int leaf) {
+            this.results   = results;
+            this.workerSim = workerSim;
+            this.firstGame = firstGame;
+            this.from      = from;
+            this.to        = to;
+            this.leaf      = leaf;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= leaf) {
+                BattleSimulator sim = workerSim.get();
+                for (int i = from; i < to; i++) {
+                    results[i] = sim.runGame(firstGame + i);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new GameRange(results, workerSim, firstGame, from, mid, leaf),
+                      new GameRange(results, workerSim, firstGame, mid, to, leaf));
+        }
+    }
+}
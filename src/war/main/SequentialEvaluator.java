@@ -0,0 +1,240 @@
+package war.main;
+
+// ======================================================================
+// SequentialEvaluator.java - 逐次検定による勝率評価（早期打ち切り）
+// ======================================================================
+// 使い方:
+//   SequentialEvaluator eval = new SequentialEvaluator(runner, 400);
+//   eval.setPrecision(0.03);        // 信頼区間の半幅が 3% 以下になったら終了
+//   eval.setThreshold(0.62);        // 0.62 より確実に上 / 下と分かったら終了
+//   SequentialEvaluator.Estimate e = eval.evaluate();
+//   System.out.println(e);          // 勝率・使った試合数・信頼区間・終了理由
+//
+// 設計:
+//   - blockSize 試合ずつ（試合番号 1, 2, 3, ... の順に）追加実行し、
+//     ブロックごとに Wilson スコア信頼区間を計算して終了条件を調べる
+//     （ブロックは並列度以上にする。ランナーのセッションを1つ開いたまま追加実行するので、
+//       プール・ワーカーのシミュレーターはブロックごとに作り直さない）
+//   - 途中で何度も区間を確認するので、有意水準を確認回数で割る（Bonferroni）。
+//     → 報告する区間は全確認回を通して同時に成り立ち、打ち切りによって
+//       信頼度が見かけより下がることがない
+//   - 終了条件（どれか1つを満たしたら終了）:
+//       PRECISION  区間の半幅 ≦ precision
+//       ABOVE      区間の下限 > threshold（閾値より確実に上）
+//       BELOW      区間の上限 < threshold（閾値より確実に下）
+//       MAX_GAMES  maxGames 試合に達した
+//   - 試合番号は常に1から連番なので、同じシードなら最後まで回した場合と
+//     同じ試合列の先頭部分を使うことになる（打ち切りで試合の中身は変わらない）
+// ======================================================================
+
+import war.ai.AIConfig;
+
+/**
+ * 勝率を逐次的に推定し、十分な精度・判定が得られた時点で打ち切る評価器。
+ */
+public class SequentialEvaluator {
+
+    // ======================================================================
+    // 定数
+    // ======================================================================
+
+    /** 1回の確認までに追加する試合数のデフォルト */
+    public static final int    DEFAULT_BLOCK_SIZE = 50;
+
+    /** 信頼度のデフォルト */
+    public static final double DEFAULT_CONFIDENCE = 0.95;
+
+    /** 終了理由 */
+    public enum StopReason { PRECISION, ABOVE, BELOW, MAX_GAMES }
+
+    // ======================================================================
+    // インスタンス変数
+    // ======================================================================
+
+    private final ParallelBatchRunner runner;
+    private final int maxGames;
+
+    private int    blockSize  = DEFAULT_BLOCK_SIZE;
+    private double confidence = DEFAULT_CONFIDENCE;
+    private double precision  = 0.0;            // 0 なら精度による終了なし
+    private double threshold  = Double.NaN;     // NaN なら閾値による終了なし
+
+    // ======================================================================
+    // コンストラクタ
+    // ======================================================================
+
+    /**
+     * @param runner   試合を実行するランナー（評価するConfig・シードはランナー側で決まる）
+     * @param maxGames 最大試合数
+     */
+    public SequentialEvaluator(ParallelBatchRunner runner, int maxGames) {
+        if (maxGames <= 0) throw new IllegalArgumentException("maxGames は1以上: " + maxGames);
+        this.runner   = runner;
+        this.maxGames = maxGames;
+    }
+
+    // ======================================================================
+    // 設定
+    // ======================================================================
+
+    /** 信頼区間の半幅がこの値以下になったら終了する（0 で無効） */
+    public SequentialEvaluator setPrecision(double precision) {
+        this.precision = precision;
+        return this;
+    }
+
+    /** 勝率がこの値より確実に上または下と分かったら終了する（NaN で無効） */
+    public SequentialEvaluator setThreshold(double threshold) {
+        this.threshold = threshold;
+        return this;
+    }
+
+    /** 信頼度（例: 0.95） */
+    public SequentialEvaluator setConfidence(double confidence) {
+        if (!(confidence > 0 && confidence < 1)) {
+            throw new IllegalArgumentException("confidence は 0〜1 の範囲: " + confidence);
+        }
+        this.confidence = confidence;
+        return this;
+    }
+
+    /** 1回の確認までに追加する試合数 */
+    public SequentialEvaluator setBlockSize(int blockSize) {
+        this.blockSize = Math.max(1, blockSize);
+        return this;
+    }
+
+    // ======================================================================
+    // 評価
+    // ======================================================================
+
+    /**
+     * 終了条件を満たすまで試合を追加実行し、推定結果を返す。
+     */
+    public Estimate evaluate() {
+        // 1ブロックで全ワーカーに少なくとも1試合ずつ行き渡るようにする
+        int step = Math.max(blockSize, runner.getParallelism());
+
+        // 確認回数で有意水準を分ける（区間が全確認回で同時に成り立つように）
+        int    looks = (maxGames + step - 1) / step;
+        double z     = normalQuantile(1 - (1 - confidence) / (2.0 * looks));
+
+        try (ParallelBatchRunner.Session session = runner.open()) {
+            int games = 0, wins = 0;
+            while (true) {
+                int block = Math.min(step, maxGames - games);
+                wins  += session.countEnemyWins(games + 1, block);
+                games += block;
+
+                double[] ci = wilson(wins, games, z);
+                StopReason reason = null;
+                if (!Double.isNaN(threshold) && ci[0] > threshold)      reason = StopReason.ABOVE;
+                else if (!Double.isNaN(threshold) && ci[1] < threshold) reason = StopReason.BELOW;
+                else if ((ci[1] - ci[0]) / 2 <= precision)              reason = StopReason.PRECISION;
+                else if (games >= maxGames)                             reason = StopReason.MAX_GAMES;
+
+                if (reason != null) return new Estimate(games, wins, ci[0], ci[1], reason);
+            }
+        }
+    }
+
+    // ======================================================================
+    // 統計処理
+    // ======================================================================
+
+    /**
+     * Wilson スコア信頼区間。勝率0%・100%付近や少数試合でも範囲外にはみ出さない。
+     *
+     * @return {下限, 上限}
+     */
+    static double[] wilson(int wins, int games, double z) {
+        double p      = (double) wins / games;
+        double z2n    = z * z / games;
+        double denom  = 1 + z2n;
+        double center = (p + z2n / 2) / denom;
+        double half   = z * Math.sqrt(p * (1 - p) / games + z2n / (4.0 * games)) / denom;
+        return new double[] { Math.max(0.0, center - half), Math.min(1.0, center + half) };
+    }
+
+    /**
+     * 標準正規分布の分位点（Acklam の有理近似。相対誤差 1.2e-9 程度）。
+     *
+     * @param p 確率（0 < p < 1）
+     */
+    static double normalQuantile(double p) {
+        final double[] a = { -3.969683028665376e+01,  2.209460984245205e+02, -2.759285104469687e+02,
+                              1.383577518672690e+02, -3.066479806614716e+01,  2.506628277459239e+00 };
+        final double[] b = { -5.447609879822406e+01,  1.615858368580409e+02, -1.556989798598866e+02,
+                              6.680131188771972e+01, -1.328068155288572e+01 };
+        final double[] c = { -7.784894002430293e-03, -3.223964580411365e-01, -2.400758277161838e+00,
+                             -2.549732539343734e+00,  4.374664141464968e+00,  2.938163982698783e+00 };
+        final double[] d = {  7.784695709041462e-03,  3.224671290700398e-01,  2.445134137142996e+00,
+                              3.754408661907416e+00 };
+        final double pLow = 0.02425;
+
+        if (p < pLow) {
+            double q = Math.sqrt(-2 * Math.log(p));
+            return (((((c[0]*q + c[1])*q + c[2])*q + c[3])*q + c[4])*q + c[5])
+                 / ((((d[0]*q + d[1])*q + d[2])*q + d[3])*q + 1);
+        }
+        if (p > 1 - pLow) {
+            return -normalQuantile(1 - p);
+        }
+        double q = p - 0.5;
+        double r = q * q;
+        return (((((a[0]*r + a[1])*r + a[2])*r + a[3])*r + a[4])*r + a[5])*q
+             / (((((b[0]*r + b[1])*r + b[2])*r + b[3])*r + b[4])*r + 1);
+    }
+
+    // ======================================================================
+    // 内部クラス: Estimate（推定結果）
+    // ======================================================================
+
+    public static class Estimate {
+        public final int        games;          // 実際に使った試合数
+        public final int        enemyWins;
+        public final double     winRate;        // 敵軍勝率
+        public final double     lower;          // 信頼区間の下限
+        public final double     upper;          // 信頼区間の上限
+        public final StopReason reason;
+
+        public Estimate(int games, int enemyWins, double lower, double upper, StopReason reason) {
+            this.games     = games;
+            this.enemyWins = enemyWins;
+            this.winRate   = (double) enemyWins / games;
+            this.lower     = lower;
+            this.upper     = upper;
+            this.reason    = reason;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("勝率=%.4f [%.4f, %.4f] 試合数=%d 終了理由=%s",
+                                 winRate, lower, upper, games, reason);
+        }
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+
+    public static void main(String[] args) {
+        long seed = (args.length >= 1) ? Long.parseLong(args[0]) : 1L;
+        String[] paths = { "./ai_config.json", "./best_ai_config.json" };
+
+        for (String path : paths) {
+            ParallelBatchRunner runner = new ParallelBatchRunner(
+                AIConfig.fromJson(path), seed, ParallelBatchRunner.defaultParallelism());
+
+            // 全試合を回した場合と比べ、打ち切った推定が区間内に収まっているかを見る
+            double full = runner.enemyWinRate(1000);
+            Estimate byPrecision = new SequentialEvaluator(runner, 1000).setPrecision(0.03).evaluate();
+            Estimate byThreshold = new SequentialEvaluator(runner, 1000).setThreshold(0.5).evaluate();
+
+            System.out.println("=== " + path + " ===");
+            System.out.printf("全1000試合   : 勝率=%.4f%n", full);
+            System.out.println("精度 ±3%    : " + byPrecision);
+            System.out.println("閾値 0.5    : " + byThreshold);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package war.main;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * SideTurnEvent - 片方の陣営の1ターン分の JFR イベント
+ *
+ * GameEvent の中に、プレイヤー側・敵側のターンが交互に並ぶ。
+ */
+@StackTrace(false)      // 件数が多く、発生箇所は常に同じなのでスタックは取らない
+@Name("war.SideTurn")
+@Label("陣営ターン")
+@Category({ "War", "Simulation" })
+@Description("1陣営の全戦車が行動し終えるまで")
+public class SideTurnEvent extends Event {
+
+    /** イベント型（記録中のどれかで有効になっているかを、インスタンスを作らずに調べるため） */
+    private static final class Type {
+        static final EventType EVENT_TYPE = EventType.getEventType(SideTurnEvent.class);
+    }
+
+    /** このイベントを記録中のレコーディングがあるか（無効なら BattleSimulator はインスタンスを作らない） */
+    public static boolean enabled() {
+        return Type.EVENT_TYPE.isEnabled();
+    }
+
+    @Label("試合番号")
+    public long gameNo;
+
+    @Label("ターン")
+    public int turn;
+
+    @Label("陣営")
+    @Description("0 = 友軍, 1 = 敵軍")
+    public int side;
+}
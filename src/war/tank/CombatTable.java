@@ -0,0 +1,173 @@
+package war.tank;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * CombatTable - 命中率・基準ダメージの距離別テーブル
+ *
+ * 戦車の移動はマス目単位なので、2両の座標差は常に整数になる。
+ * 命中率（コサイン減衰）と基準ダメージ（射程 - 距離 の2乗）は距離だけの関数なので、
+ * 「距離の2乗」（整数）を添字にした表に、攻撃側・防御側の諸元の組ごとに一度だけ計算しておく。
+ *
+ * 表の値は Tank.hitRate / Tank.normalDamage に Math.sqrt(距離の2乗) を渡して作るので、
+ * 式で計算した場合とビット単位で同じになる（整数の2乗和は double で誤差なく表せるため）。
+ * 座標差が整数でない場合や表の範囲外の距離は、呼び出し側で式による計算に戻すこと。
+ *
+ * 使い方:
+ *   int spec = CombatTable.register(attack, defense, maxRng, ahd);   // 戦車の生成時に1回
+ *   int d2   = CombatTable.gridDistanceSQ(dx, dy);                    // -1 なら表は使えない
+ *   double p = CombatTable.of(attackerSpec, defenderSpec).hitRate(d2);
+ *
+ * 複数スレッドから同時に使ってよい（登録・表の作成は同期し、作成済みの表は読むだけ）。
+ */
+public final class CombatTable {
+
+    /** 表にする座標差の最大値（これを超える距離は式で計算する） */
+    public static final int MAX_DELTA = 31;
+
+    /** 表の大きさ（距離の2乗 0 〜 2 * MAX_DELTA^2） */
+    private static final int SIZE = 2 * MAX_DELTA * MAX_DELTA + 1;
+
+    // ======================================================================
+    // 諸元の登録簿（攻撃力・防御力・射程・必中距離の組 → 諸元番号）
+    // ======================================================================
+
+    private static final Map<String, Integer> SPEC_IDS = new HashMap<>();
+
+    /** 諸元番号 → {攻撃力, 防御力, 射程, 必中距離} */
+    private static int[][] specs = new int[0][];
+
+    /** [攻撃側の諸元番号][防御側の諸元番号] → 表（未作成なら null）。拡張時は配列ごと差し替える */
+    private static volatile CombatTable[][] tables = new CombatTable[0][0];
+
+    // ======================================================================
+    // 表
+    // ======================================================================
+
+    private final double[] hit;
+    private final double[] damage;
+
+    private CombatTable(int[] offence, int[] deffence) {
+        int attack = offence[0], maxRng = offence[2], ahd = offence[3];
+        int defense = deffence[1];
+
+        hit    = new double[SIZE];
+        damage = new double[SIZE];
+        for (int d2 = 0; d2 < SIZE; d2++) {
+            double d = Math.sqrt(d2);
+            hit[d2]    = Tank.hitRate(d, ahd, maxRng);
+            damage[d2] = Tank.normalDamage(d, maxRng, attack, defense);
+        }
+    }
+
+    /** 命中率（Tank.hitRate と同じ値） */
+    public double hitRate(int d2) {
+        return hit[d2];
+    }
+
+    /** 基準ダメージ（Tank.normalDamage と同じ値） */
+    public double normalDamage(int d2) {
+        return damage[d2];
+    }
+
+    // ======================================================================
+    // 公開API（static）
+    // ======================================================================
+
+    /**
+     * 諸元を登録し、諸元番号を返す（同じ諸元なら同じ番号）。
+     */
+    public static synchronized int register(int attack, int defense, int maxRng, int ahd) {
+        String key = attack + "/" + defense + "/" + maxRng + "/" + ahd;
+        Integer id = SPEC_IDS.get(key);
+        if (id != null) return id;
+
+        id = specs.length;
+        int[][] grown = new int[id + 1][];
+        System.arraycopy(specs, 0, grown, 0, id);
+        grown[id] = new int[] { attack, defense, maxRng, ahd };
+        specs = grown;
+        SPEC_IDS.put(key, id);
+        return id;
+    }
+
+    /**
+     * 攻撃側・防御側の諸元番号の組に対応する表を返す（初回だけ作成する）。
+     */
+    public static CombatTable of(int offenceSpec, int deffenceSpec) {
+        CombatTable[][] t = tables;
+        if (offenceSpec < t.length) {
+            CombatTable[] row = t[offenceSpec];
+            if (deffenceSpec < row.length && row[deffenceSpec] != null) return row[deffenceSpec];
+        }
+        return create(offenceSpec, deffenceSpec);
+    }
+
+    private static synchronized CombatTable create(int offenceSpec, int deffenceSpec) {
+        int n = specs.length;
+        CombatTable[][] t = tables;
+        if (offenceSpec < t.length && deffenceSpec < t[offenceSpec].length
+                && t[offenceSpec][deffenceSpec] != null) {
+            return t[offenceSpec][deffenceSpec];            // 他スレッドが作成済み
+        }
+
+        // 登録済みの諸元数に合わせて広げた配列に写し、作った表を入れてから公開する
+        CombatTable[][] grown = new CombatTable[n][n];
+        for (int i = 0; i < t.length; i++) {
+            System.arraycopy(t[i], 0, grown[i], 0, t[i].length);
+        }
+        CombatTable table = new CombatTable(specs[offenceSpec], specs[deffenceSpec]);
+        grown[offenceSpec][deffenceSpec] = table;
+        tables = grown;
+        return table;
+    }
+
+    /**
+     * 座標差から表の添字（距離の2乗）を求める。
+     *
+     * @return 距離の2乗。座標差が整数でない・表の範囲外なら -1
+     */
+    public static int gridDistanceSQ(double dx, double dy) {
+        if (!(Math.abs(dx) <= MAX_DELTA && Math.abs(dy) <= MAX_DELTA)) return -1;
+        int ix = (int) dx, iy = (int) dy;
+        if (ix != dx || iy != dy) return -1;
+        return ix * ix + iy * iy;
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // 登録した全諸元の組について、表の値と式の値がビット単位で一致するかを調べる
+
+    public static void main(String[] args) {
+        int[] attacks  = { 400, 600, 800 };
+        int[] defenses = { 30, 60, 90, 120 };
+        for (int a : attacks) for (int d : defenses) register(a, d, 12, 2);
+
+        long checked = 0, mismatch = 0;
+        for (int o = 0; o < specs.length; o++) {
+            for (int p = 0; p < specs.length; p++) {
+                CombatTable table = of(o, p);
+                for (int dx = -MAX_DELTA; dx <= MAX_DELTA; dx++) {
+                    for (int dy = -MAX_DELTA; dy <= MAX_DELTA; dy++) {
+                        // Tank.distance と同じ式
+                        double dist = Math.sqrt(Math.pow(dx, 2.0) + Math.pow(dy, 2.0));
+                        int d2 = gridDistanceSQ(dx, dy);
+                        double h = Tank.hitRate(dist, specs[o][3], specs[o][2]);
+                        double n = Tank.normalDamage(dist, specs[o][2], specs[o][0], specs[p][1]);
+                        if (Double.doubleToRawLongBits(h) != Double.doubleToRawLongBits(table.hitRate(d2))
+                         || Double.doubleToRawLongBits(n) != Double.doubleToRawLongBits(table.normalDamage(d2))) {
+                            mismatch++;
+                        }
+                        checked++;
+                    }
+                }
+            }
+        }
+        System.out.printf("諸元 %d 種, %d 組 × %d 座標差: 不一致 %d / %d%n",
+                          specs.length, specs.length * specs.length,
+                          (2 * MAX_DELTA + 1) * (2 * MAX_DELTA + 1), mismatch, checked);
+        System.out.println("整数でない座標差: " + gridDistanceSQ(1.5, 2) + "（-1 なら式で計算）");
+    }
+}
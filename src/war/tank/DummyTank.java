@@ -16,6 +16,8 @@ public class DummyTank extends Tank {
 		 this.setHp(original.getHp());
 		 this.setAngle(original.getAngle());
 		 this.setSpeed(original.getSpeed());    
+		 this.rnd = original.rnd;				// 試行も元の戦車と同じ乱数源を使う
+		 this.damageRnd = original.damageRnd;
 	     typeName();
 	 }
 	 
@@ -0,0 +1,91 @@
+package war.tank;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * GameRandom - 1試合分の乱数源（SplitMix64）
+ *
+ * マスターシードと試合番号だけから、その試合の乱数列を一意に決める。
+ * java.util.SplittableRandom と同じ SplitMix64 アルゴリズムを使い、
+ * 「マスターシードで初期化した列の gameNo 番目の値」を試合のシードにするので、
+ * 10万試合のバッチ中の任意の1試合を、前の試合を流さずに再現できる。
+ *
+ * 使い方:
+ *   GameRandom rng = new GameRandom();
+ *   rng.reseed(GameRandom.seedFor(masterSeed, gameNo));   // 試合ごとに再初期化（生成し直さない）
+ *   tank.setRandom(rng);
+ *
+ *   // 戦車・用途ごとに列を分ける場合（BattleSimulator / ArrayBattleEngine）
+ *   hitRng.reseed(GameRandom.streamSeed(masterSeed, gameNo, slot, GameRandom.HIT));
+ *   dmgRng.reseed(GameRandom.streamSeed(masterSeed, gameNo, slot, GameRandom.DAMAGE));
+ *   tank.setRandom(hitRng, dmgRng);
+ *
+ * スレッドセーフではない。1試合（= 1スレッド）で1インスタンスを使うこと。
+ */
+public final class GameRandom implements RandomGenerator {
+
+    /** SplitMix64 の増分（黄金比） */
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    /** 乱数の用途（streamSeed の purpose） */
+    public static final int HIT    = 0;     // 命中判定
+    public static final int DAMAGE = 1;     // ダメージのばらつき
+    private static final int PURPOSES = 2;
+
+    private long seed;
+
+    public GameRandom() {
+        this(0L);
+    }
+
+    public GameRandom(long seed) {
+        this.seed = seed;
+    }
+
+    /**
+     * マスターシードから試合番号に対応するシードを求める。
+     * new SplittableRandom(masterSeed) の gameNo 回目の nextLong() と同じ値。
+     *
+     * @param masterSeed バッチ全体のシード
+     * @param gameNo     試合番号（1始まり）
+     * @return その試合のシード
+     */
+    public static long seedFor(long masterSeed, long gameNo) {
+        return mix64(masterSeed + gameNo * GOLDEN_GAMMA);
+    }
+
+    /**
+     * 1試合の中で、戦車スロット×用途ごとに独立した乱数列のシードを求める。
+     *
+     * 全戦車で1本の乱数列を共有すると、ある戦車の射撃回数が変わっただけで
+     * 以降の全員の命中・ダメージが別の値にずれる。戦車・用途ごとに列を分けておけば
+     * 「戦車 i の k 発目の命中判定」はAIの行動が変わっても同じ乱数を使うので、
+     * 2つのAI設定を同じシードで比べたときに乱数の差による雑音が小さくなる（共通乱数法）。
+     *
+     * @param masterSeed バッチ全体のシード
+     * @param gameNo     試合番号（1始まり）
+     * @param slot       戦車スロット（編成リストの添字）
+     * @param purpose    HIT または DAMAGE
+     * @return その乱数列のシード
+     */
+    public static long streamSeed(long masterSeed, long gameNo, int slot, int purpose) {
+        return seedFor(seedFor(masterSeed, gameNo), (long) slot * PURPOSES + purpose + 1);
+    }
+
+    /** 乱数列を指定シードから始め直す（インスタンスを使い回すため） */
+    public void reseed(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public long nextLong() {
+        seed += GOLDEN_GAMMA;
+        return mix64(seed);
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,26 @@
+package war.tank;
+
+/**
+ * Movable - 移動・回転できるもの（Tank と試算用の TankSnapshot）
+ *
+ * EnemyAI3.progOne / escapeOne は、実際の戦車と試算用のスナップショットの
+ * どちらにも同じ手順で移動を指示するので、この型で受け取る。
+ */
+public interface Movable {
+
+    double getX();
+
+    double getY();
+
+    /** 車体の向き（12時を0度とした時計回り 0〜360度） */
+    double getAngle();
+
+    /** 残行動力 */
+    int activity();
+
+    /** 車体を回す（Tank.rotate の規則） */
+    int rotate(double degrees);
+
+    /** 目標座標に向けてマス目単位で移動する（Tank.move の規則） */
+    int move(double targetX, double targetY);
+}
@@ -0,0 +1,105 @@
+package war.tank;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * SideRoster - 陣営ごとの生存戦車名簿
+ *
+ * 戦車が破壊されたとき（Tank.takeDamage）に名簿から外れるので、
+ * 毎ターン全戦車を走査して生存リストを作り直す必要がない。
+ *
+ * alive(side) が返すリストは名簿そのもののビュー（読み取り専用）で、
+ * コピーせずに EnemyAI3.takeTurn や PlayerAI.setTankList に渡せる。
+ * 破壊された戦車はその場でビューから消える。並び順は登録順のまま。
+ *
+ * 使い方:
+ *   SideRoster roster = new SideRoster(2, tanks.size());
+ *   roster.rebuild(tanks);                 // 試合開始時
+ *   List<Tank> enemies = roster.alive(1);  // 以後は自動で更新される
+ */
+public class SideRoster {
+
+    /** 陣営ごとの生存戦車（先頭から count[side] 個が有効） */
+    private final Tank[][] members;
+    private final int[]    count;
+    private final List<Tank>[] views;
+
+    /**
+     * @param sides    陣営の数（陣営コードは 0 〜 sides-1）
+     * @param capacity 1陣営あたりの最大戦車数
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public SideRoster(int sides, int capacity) {
+        members = new Tank[sides][capacity];
+        count   = new int[sides];
+        views   = new List[sides];
+        for (int s = 0; s < sides; s++) {
+            views[s] = new SideView(s);
+        }
+    }
+
+    /**
+     * 名簿を作り直す（試合開始時・戦車の再配置後に呼ぶ）。
+     * 生存している戦車だけを、リストの順で登録する。
+     */
+    public void rebuild(List<Tank> tanks) {
+        for (int s = 0; s < count.length; s++) {
+            for (int i = 0; i < count[s]; i++) members[s][i] = null;
+            count[s] = 0;
+        }
+        for (Tank t : tanks) {
+            t.roster = this;
+            if (t.isAlive()) members[t.getJinei()][count[t.getJinei()]++] = t;
+        }
+    }
+
+    /** 指定陣営の生存戦車リスト（コピーしないビュー） */
+    public List<Tank> alive(int side) {
+        return views[side];
+    }
+
+    /** 指定陣営の生存戦車数 */
+    public int aliveCount(int side) {
+        return count[side];
+    }
+
+    /** 戦車が破壊されたときに Tank から呼ばれる */
+    void onDestroyed(Tank t) {
+        int     s    = t.getJinei();
+        Tank[]  list = members[s];
+        for (int i = 0; i < count[s]; i++) {
+            if (list[i] != t) continue;
+            // 並び順を保ったまま詰める（行動順・目標選択の順序を変えないため）
+            System.arraycopy(list, i + 1, list, i, count[s] - i - 1);
+            list[--count[s]] = null;
+            return;
+        }
+    }
+
+    // ======================================================================
+    // 内部クラス: SideView（陣営ごとの読み取り専用ビュー）
+    // ======================================================================
+
+    private class SideView extends AbstractList<Tank> implements RandomAccess {
+        private final int side;
+
+        SideView(int side) {
+            this.side = side;
+        }
+
+        @Override
+        public Tank get(int index) {
+            if (index < 0 || index >= count[side]) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + count[side]);
+            }
+            return members[side][index];
+        }
+
+        @Override
+        public int size() {
+            return count[side];
+        }
+    }
+}
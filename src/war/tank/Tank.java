@@ -1,8 +1,10 @@
 package war.tank;
 
-import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
 
-public abstract class Tank {
+public abstract class Tank implements Movable {
     // 戦車の基本属性
    String name;
     private int hp;              // 体力
@@ -21,6 +23,9 @@ public abstract class Tank {
     private int activePoint;     // 行動力
     private int jinei;			 // 陣営識別コード
     private long serialNo;		 // インスタンスID
+    private final int combatSpec; // 命中率・ダメージ表の諸元番号（CombatTable）
+    private int positionVersion;  // 位置が変わるたびに増える番号（距離キャッシュの更新判定用）
+    SideRoster roster;			 // 所属する生存名簿（破壊時に通知する。未登録なら null）
 
     
     //　行動力関連定数群
@@ -32,6 +37,9 @@ public abstract class Tank {
     protected int MOV_CST = 4;	//移動時消費行動力
     protected int ROT_CST = 1;	//回転時消費行動力
 
+    /** インスタンスIDの採番（連続生成しても重複しない） */
+    private static final AtomicLong SERIAL_SEQ = new AtomicLong();
+
     
     // コンストラクタ
     public Tank(String name, int jinei, int hp, int attack, int defense,double speed, double x, double y) {
@@ -51,7 +59,8 @@ public abstract class Tank {
         this.isAlive = true;
         this.activePoint = MAX_ACT;
         this.jinei = jinei;	
-        this.serialNo = System.nanoTime();  // ナノ秒単位のタイムスタンプをＩＤにする
+        this.serialNo = SERIAL_SEQ.incrementAndGet();  // 生成順の通し番号をＩＤにする
+        this.combatSpec = CombatTable.register(attack, defense, MAX_RNG, AHD);
 
     }
     
@@ -95,7 +104,7 @@ public abstract class Tank {
         
         if (this.hp <= 0) {
             this.hp = 0;
-            this.isAlive = false;
+            destroyed();
             System.out.println(this.name + "は破壊された！");
         }
     }
@@ -103,9 +112,7 @@ public abstract class Tank {
     // ダメージを受けるメソッド 角度対応版
     public void takeDamage(int damage,double fromX, double fromY) {
     	
-    	double currentAngle = this.angle;
-    	double targetAngle = ((450.0 - Math.toDegrees(Math.atan2(-fromY + this.y, fromX - this.x))) % 360.0);
-    	double impactAngle = (targetAngle - currentAngle +360) % 360 ;
+    	double impactAngle = impactAngle(this.angle, this.x, this.y, fromX, fromY);
     	
     	this.hp -= damage * angleGain(impactAngle);
 //        System.out.println(this.name + "は" + targetAngle + "の方向から攻撃された");
@@ -114,12 +121,30 @@ public abstract class Tank {
         
         if (this.hp <= 0) {
             this.hp = 0;
-            this.isAlive = false;
+            destroyed();
 //            System.out.println(this.name + "は破壊された！");
         }
     }
+
+    // 破壊処理　生存中→破壊に変わったときだけ名簿に通知する
+    private void destroyed() {
+        if (!this.isAlive) return;
+        this.isAlive = false;
+        if (roster != null) roster.onDestroyed(this);
+    }
     
+    /**
+     * 被弾方向（車体正面を0度とした時計回りの角度 0-360）を返す。
+     * ArrayBattleEngine など Tank を使わない計算でも同じ式を使うため static にしている。
+     */
+    public static double impactAngle(double angle, double x, double y, double fromX, double fromY) {
+    	double currentAngle = angle;
+    	double targetAngle = ((450.0 - Math.toDegrees(Math.atan2(-fromY + y, fromX - x))) % 360.0);
+    	return (targetAngle - currentAngle +360) % 360 ;
+    }
+
     //　角度要素を追加する場合はこれをオーバーライドする
+    //　（30度刻みの段階関数として実装すること。ArrayBattleEngine は 0,30,..,180度の値を表にして使う）
     public double angleGain(double angle) {
     	return 1;
     }
@@ -165,6 +190,7 @@ public abstract class Tank {
         		}
         	}
         }
+        if (count > 0) positionVersion++;
 
         
         
@@ -269,6 +295,16 @@ public abstract class Tank {
     public int getRange() { return MAX_RNG; }
     public int getMaxAmmo() { return maxAmmo; }
     public double getRrate() { return rRate; }
+    public int getAhd() { return AHD; }
+    public int getMaxAct() { return MAX_ACT; }
+    public int getRepCost() { return REP_CST; }
+    public int getAtcCost() { return ATC_CST; }
+    public int getChgCost() { return CHG_CST; }
+    public int getMovCost() { return MOV_CST; }
+    public int getRotCost() { return ROT_CST; }
+    public String getType() { return modelType; }
+    public int getCombatSpec() { return combatSpec; }
+    public int positionVersion() { return positionVersion; }
 
 
     
@@ -277,13 +313,28 @@ public abstract class Tank {
     protected void setHp(int n) {hp = n; return; }
     protected void setSpeed(double n) {speed = n; return; }
     protected void setAngle(double n) {angle = n; return; }
-    protected void setX(double n) {x = n; return; }
-    protected void setY(double n) {y = n; return; }
+    protected void setX(double n) {x = n; positionVersion++; return; }
+    protected void setY(double n) {y = n; positionVersion++; return; }
     public void setType(String n) { modelType = n; return; }
    
     
     public void resetAct() { activePoint = MAX_ACT; return;  }
 
+    /**
+     * 試合開始時の状態に戻す（戦車を作り直さずに次の試合で再利用するため）。
+     * 諸元（最大HP・攻撃力など）とIDはそのままで、HP・弾薬・行動力・位置・向きを初期化する。
+     */
+    public void reset(double x, double y, double angle) {
+        this.hp          = maxHp;
+        this.ammo        = maxAmmo;
+        this.isAlive     = true;
+        this.activePoint = MAX_ACT;
+        this.x           = x;
+        this.y           = y;
+        this.angle       = angle;
+        this.positionVersion++;
+    }
+
     
     // 戦車の状態を表示
     public void displayStatus() {
@@ -296,7 +347,28 @@ public abstract class Tank {
         System.out.println("状態: " + (isAlive ? "稼働中" : "破壊"));
     }
     
-	Random rnd = new Random();
+	/** 命中判定の乱数源（未設定ならスレッドごとの共有乱数を使う） */
+	RandomGenerator rnd;
+
+	/** ダメージのばらつきの乱数源（未設定ならスレッドごとの共有乱数を使う） */
+	RandomGenerator damageRnd;
+
+	/** 乱数源を設定する（試合単位で再現したい場合に GameRandom を渡す。命中・ダメージで共用） */
+	public void setRandom(RandomGenerator rnd) { setRandom(rnd, rnd); }
+
+	/** 命中判定とダメージのばらつきに別々の乱数源を設定する（共通乱数法での比較用） */
+	public void setRandom(RandomGenerator hitRnd, RandomGenerator damageRnd) {
+		this.rnd       = hitRnd;
+		this.damageRnd = damageRnd;
+	}
+
+	private RandomGenerator random() {
+		return (rnd != null) ? rnd : ThreadLocalRandom.current();
+	}
+
+	private RandomGenerator damageRandom() {
+		return (damageRnd != null) ? damageRnd : ThreadLocalRandom.current();
+	}
 
 	
 	//攻撃判定メソッド群
@@ -314,13 +386,24 @@ public abstract class Tank {
 	
 
 	public double normalDamage(Tank target) {  //基準与ダメージ（ランダム要素を含まない）
-		final double atackRange = this.MAX_RNG * 1.5;
-		return  Math.pow((atackRange - distance(target)) , 2.0) * (this.attack / (50+target.getDefense()));
+		int d2 = CombatTable.gridDistanceSQ(target.x - this.x, target.y - this.y);
+		if (d2 >= 0) return CombatTable.of(combatSpec, target.combatSpec).normalDamage(d2);	// マス目上なら表引き
+		return normalDamage(distance(target), this.MAX_RNG, this.attack, target.getDefense());
+	}
+
+	/** 基準与ダメージの式（距離と諸元だけの関数） */
+	public static double normalDamage(double D, int maxRng, int attack, int defense) {
+		final double atackRange = maxRng * 1.5;
+		return  Math.pow((atackRange - D) , 2.0) * (attack / (50+defense));
 	}
 	
 	private int damage(Tank target) {	//ランダム要素を加味し、実際に攻撃で与えるダメージ返すメソッド
-		
-  		return (int)( normalDamage(target)*((1-this.rRate) + 2 / 3 * this.rRate *( Math.random()+ Math.random()+ Math.random()))); 
+		return rollDamage(normalDamage(target), this.rRate, damageRandom());
+	}
+
+	/** 基準ダメージにばらつきを加える（乱数は3回引く） */
+	public static int rollDamage(double normalDamage, double rRate, RandomGenerator r) {
+  		return (int)( normalDamage*((1-rRate) + 2 / 3 * rRate *( r.nextDouble()+ r.nextDouble()+ r.nextDouble()))); 
 	}
 		
 	private boolean meichu(Tank target) {					//命中判定で、命中率を分割
@@ -328,7 +411,7 @@ public abstract class Tank {
 		double p = HitRate(target);
 	     
 //         System.out.print("命中率: " + p *100 +"%");
-	     double pp = Math.random();
+	     double pp = random().nextDouble();
 //         System.out.println(", 乱数: " + pp *100 +"%");
          if (pp < p) {        	 
         	 return true;
@@ -339,8 +422,13 @@ public abstract class Tank {
 	
 
 	public double HitRate(Tank target) {					//命中率のみ分割してをpublic化 
-		
-		double D = distance(target);						//敵との距離
+		int d2 = CombatTable.gridDistanceSQ(target.x - this.x, target.y - this.y);
+		if (d2 >= 0) return CombatTable.of(combatSpec, target.combatSpec).hitRate(d2);	// マス目上なら表引き
+		return hitRate(distance(target), AHD, MAX_RNG);		//敵との距離で決まる
+	}
+
+	/** 命中率の式（距離と諸元だけの関数） */
+	public static double hitRate(double D, int AHD, int MAX_RNG) {
 		double p;
 	    
 		// xが0以下の場合はTrue、xがL以上の場合はfalseを返す（範囲外の制御）
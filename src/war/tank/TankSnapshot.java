@@ -0,0 +1,286 @@
+package war.tank;
+
+import java.util.Random;
+
+/**
+ * TankSnapshot - 行動前の試算に使う戦車の写し（what-if 用）
+ *
+ * EnemyAI3 は「前進したら AT/DT はどうなるか」を試算するために、
+ * 自分の戦車の分身（DummyTank）を作って動かしていた。
+ * DummyTank は Tank そのもの（名前の文字列・通し番号・名簿への登録口などを持つ）なので、
+ * 試算に必要な位置・向き・HP・行動力・弾薬と諸元だけを持つ軽い写しに置き換える。
+ *
+ *   - set(tank) で new DummyTank(tank) と同じ状態になる（弾薬・行動力は満タン）。
+ *     諸元は写し元の戦車が変わったときだけ写すので、同じ戦車なら数フィールドの書き込みで済む
+ *   - rotate / move は Tank と同じ規則（30度単位・行動力不足時の扱い・マス目単位の移動）
+ *   - 命中率・基準ダメージは Tank と同じ CombatTable の表（マス目上でなければ式）で求めるので、
+ *     DummyTank で計算した場合とビット単位で同じ値になる
+ *   - previewAttack は乱数を引かず、弾薬と行動力を消費して期待ダメージを返す
+ *   - setCurrent(tank) は行動力・弾薬も今の値で写す（ExpectimaxAI がターンの途中から探索する場合）
+ *
+ * 使い方:
+ *   TankSnapshot what = new TankSnapshot();     // AI ごとに1つ持って使い回す
+ *   what.set(self);
+ *   ai.progOne(what, target.getX(), target.getY());
+ *   double at1 = evaluator.calcAT(Times.SINGLE, what, target);
+ */
+public final class TankSnapshot implements Movable {
+
+    // ======================================================================
+    // 状態（set のたびに写す）
+    // ======================================================================
+
+    private double x, y, angle;
+    private int    hp;
+    private int    activePoint;
+    private int    ammo;
+    private boolean alive;
+
+    // ======================================================================
+    // 諸元（写し元の戦車が変わったときだけ写す）
+    // ======================================================================
+
+    private Tank   source;
+    private int    maxHp, maxAct, maxAmmo;
+    private int    range, ahd, attack, defense, combatSpec;
+    private double speed, rRate;
+    private int    atcCst, movCst, rotCst, repCst;
+
+    // ======================================================================
+    // 写す
+    // ======================================================================
+
+    /**
+     * tank の現在の状態を写す（new DummyTank(tank) と同じ状態。弾薬・行動力は満タン）。
+     *
+     * @return this
+     */
+    public TankSnapshot set(Tank tank) {
+        if (tank != source) copySpec(tank);
+        x           = tank.getX();
+        y           = tank.getY();
+        angle       = tank.getAngle();
+        hp          = tank.getHp();
+        speed       = tank.getSpeed();
+        activePoint = maxAct;
+        ammo        = maxAmmo;
+        alive       = true;
+        return this;
+    }
+
+    /**
+     * tank の現在の状態を、行動力・弾薬・生死も含めてそのまま写す。
+     *
+     * @return this
+     */
+    public TankSnapshot setCurrent(Tank tank) {
+        set(tank);
+        activePoint = tank.activity();
+        ammo        = tank.getAmmo();
+        alive       = tank.isAlive();
+        return this;
+    }
+
+    /** 別のスナップショットの状態をそのまま写す（試算の途中経過を保存する場合など） */
+    public TankSnapshot set(TankSnapshot other) {
+        if (other.source != source) {
+            source     = other.source;
+            maxHp      = other.maxHp;     maxAct  = other.maxAct;   maxAmmo    = other.maxAmmo;
+            range      = other.range;     ahd     = other.ahd;      defense    = other.defense;
+            attack     = other.attack;    combatSpec = other.combatSpec;
+            rRate      = other.rRate;
+            atcCst     = other.atcCst;    movCst  = other.movCst;   rotCst     = other.rotCst;
+            repCst     = other.repCst;
+        }
+        x = other.x;  y = other.y;  angle = other.angle;
+        hp = other.hp;  activePoint = other.activePoint;  ammo = other.ammo;
+        alive = other.alive;  speed = other.speed;
+        return this;
+    }
+
+    private void copySpec(Tank tank) {
+        source     = tank;
+        maxHp      = tank.getMaxHp();
+        maxAct     = tank.getMaxAct();
+        maxAmmo    = tank.getMaxAmmo();
+        range      = tank.getRange();
+        ahd        = tank.getAhd();
+        attack     = tank.getAttack();
+        defense    = tank.getDefense();
+        combatSpec = tank.getCombatSpec();
+        rRate      = tank.getRrate();
+        atcCst     = tank.getAtcCost();
+        movCst     = tank.getMovCost();
+        rotCst     = tank.getRotCost();
+        repCst     = tank.getRepCost();
+    }
+
+    // ======================================================================
+    // ゲッター
+    // ======================================================================
+
+    public double getX()      { return x; }
+    public double getY()      { return y; }
+    public double getAngle()  { return angle; }
+    public int    getHp()     { return hp; }
+    public int    getMaxHp()  { return maxHp; }
+    public int    getAmmo()   { return ammo; }
+    public int    activity()  { return activePoint; }
+    public double getRrate()  { return rRate; }
+    public int    getRange()  { return range; }
+    public int    getDefense(){ return defense; }
+    public boolean isAlive()  { return alive; }
+
+    /** 攻撃できる行動力・弾薬があるか（Tank.attackTarget の条件） */
+    public boolean canAttack() { return alive && activePoint >= atcCst && ammo > 0; }
+
+    /** 移動できる行動力があるか（Tank.move の条件） */
+    public boolean canMove()   { return alive && activePoint >= movCst; }
+
+    /** 写し元の戦車 */
+    public Tank source()      { return source; }
+
+    // ======================================================================
+    // 行動の試算（Tank と同じ規則）
+    // ======================================================================
+
+    /** Tank.rotate と同じ（30度単位。行動力が足りなければその範囲で回る） */
+    public int rotate(double degrees) {
+        if (!alive) return -1;
+        if (degrees == 0) return 0;
+        double rate = 1.0;
+
+        double tempDeg = Math.floorMod((long)degrees + 180, 360) - 180;
+        int angleCount = (int)(Math.round(Math.abs(tempDeg) / 30));
+
+        if (activePoint < Math.abs(angleCount) * rotCst) {
+            rate = activePoint / angleCount;
+            angleCount = activePoint;
+        }
+        angle = (angle + tempDeg * rate + 360) % 360;
+        activePoint -= angleCount;
+        return angleCount;
+    }
+
+    /** Tank.move と同じ（X・Y の遠い方へ1マスずつ、速度 × 移動コスト マス） */
+    public int move(double targetX, double targetY) {
+        if (!alive || activePoint < movCst) return -1;
+
+        final int count = (int)(speed * movCst);
+        for (int i = 0; i < count; i++) {
+            if (Math.abs(targetX - x) >= Math.abs(targetY - y)) {
+                if (targetX - x >= 0) x += 1;
+                else                  x -= 1;
+            } else {
+                if (targetY - y >= 0) y += 1;
+                else                  y -= 1;
+            }
+        }
+        activePoint -= movCst;
+        return 0;
+    }
+
+    /**
+     * 攻撃の試算。Tank.attackTarget と同じ条件で弾薬・行動力を消費し、
+     * 乱数を引かずに期待ダメージ（命中率 × 基準ダメージ）を返す。
+     *
+     * @return 期待ダメージ。攻撃できない場合は -1
+     */
+    public double previewAttack(Tank target) {
+        if (!alive || activePoint < atcCst || ammo <= 0) return -1;
+        ammo--;
+        activePoint -= atcCst;
+        return hitRate(target) * normalDamage(target);
+    }
+
+    /** Tank.repair と同じ（残りの行動力をすべて使って回復） */
+    public int repair() {
+        if (!alive) return -1;
+        double amount = (double) activePoint / repCst * maxHp / 2;
+        hp = (int) Math.min(maxHp, hp + amount);
+        activePoint = 0;
+        return 0;
+    }
+
+    // ======================================================================
+    // 命中率・基準ダメージ（Tank.HitRate / normalDamage と同じ値）
+    // ======================================================================
+
+    /** Tank.distance と同じ式 */
+    public double distance(Tank target) {
+        return Math.sqrt(Math.pow(target.getX() - x, 2.0) + Math.pow(target.getY() - y, 2.0));
+    }
+
+    /** この戦車が target を撃ったときの命中率 */
+    public double hitRate(Tank target) {
+        int d2 = CombatTable.gridDistanceSQ(target.getX() - x, target.getY() - y);
+        if (d2 >= 0) return CombatTable.of(combatSpec, target.getCombatSpec()).hitRate(d2);
+        return Tank.hitRate(distance(target), ahd, range);
+    }
+
+    /** この戦車が target を撃ったときの基準ダメージ */
+    public double normalDamage(Tank target) {
+        int d2 = CombatTable.gridDistanceSQ(target.getX() - x, target.getY() - y);
+        if (d2 >= 0) return CombatTable.of(combatSpec, target.getCombatSpec()).normalDamage(d2);
+        return Tank.normalDamage(distance(target), range, attack, target.getDefense());
+    }
+
+    /** attacker がこの戦車を撃ったときの命中率 */
+    public double hitRateFrom(Tank attacker) {
+        int d2 = CombatTable.gridDistanceSQ(x - attacker.getX(), y - attacker.getY());
+        if (d2 >= 0) return CombatTable.of(attacker.getCombatSpec(), combatSpec).hitRate(d2);
+        return Tank.hitRate(distance(attacker), attacker.getAhd(), attacker.getRange());
+    }
+
+    /** attacker がこの戦車を撃ったときの基準ダメージ */
+    public double normalDamageFrom(Tank attacker) {
+        int d2 = CombatTable.gridDistanceSQ(x - attacker.getX(), y - attacker.getY());
+        if (d2 >= 0) return CombatTable.of(attacker.getCombatSpec(), combatSpec).normalDamage(d2);
+        return Tank.normalDamage(distance(attacker), attacker.getRange(), attacker.getAttack(), defense);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("snapshot(%s) (%.0f, %.0f) %.0f度 HP%d 行動力%d",
+                             (source != null) ? source.getName() : "-", x, y, angle, hp, activePoint);
+    }
+
+    // ======================================================================
+    // main（動作確認用）
+    // ======================================================================
+    // ランダムな配置・回転・移動について、DummyTank と同じ状態・同じ値になるかを調べる
+
+    public static void main(String[] args) {
+        Random r = new Random(1);
+        Tank[] kinds = { new LightTank("L", 1, 0, 0), new MediumTank("M", 1, 0, 0), new HeavyTank("H", 0, 0, 0) };
+        TankSnapshot snap = new TankSnapshot();
+        long trials = 0, mismatch = 0;
+
+        for (int i = 0; i < 200_000; i++) {
+            Tank self  = kinds[r.nextInt(kinds.length)];
+            Tank enemy = kinds[r.nextInt(kinds.length)];
+            self.reset(r.nextInt(23), r.nextInt(23), r.nextInt(12) * 30.0);
+            enemy.reset(r.nextInt(23), r.nextInt(23), r.nextInt(12) * 30.0);
+            if (self == enemy) continue;
+
+            DummyTank dummy = new DummyTank(self);
+            snap.set(self);
+            for (int k = 0; k < 3; k++) {
+                double deg = (r.nextInt(25) - 12) * 30.0;
+                double tx  = r.nextInt(23), ty = r.nextInt(23);
+                if (dummy.rotate(deg) != snap.rotate(deg)) mismatch++;
+                if (dummy.move(tx, ty) != snap.move(tx, ty)) mismatch++;
+            }
+            boolean same = dummy.getX() == snap.getX() && dummy.getY() == snap.getY()
+                        && dummy.getAngle() == snap.getAngle() && dummy.activity() == snap.activity()
+                        && dummy.HitRate(enemy) == snap.hitRate(enemy)
+                        && dummy.normalDamage(enemy) == snap.normalDamage(enemy)
+                        && enemy.HitRate(dummy) == snap.hitRateFrom(enemy)
+                        && enemy.normalDamage(dummy) == snap.normalDamageFrom(enemy)
+                        && dummy.distance(enemy) == snap.distance(enemy);
+            if (!same) mismatch++;
+            trials++;
+        }
+        System.out.printf("試行 %d 回: DummyTank との不一致 %d%n", trials, mismatch);
+    }
+}